@@ -47,6 +47,7 @@ public class AccessLog {
     private Integer status; // 访问结果状态（如CONNECT/SOCKS握手成功=200，失败为错误码）
     private String errorCode; // 可选错误码
     private String errorMsg;  // 可选错误信息
+    private Boolean sampled;  // true 表示已计入工作节点的分钟聚合，仅作为抽样明细保存，统计流量时不再重复计算
 
     // DNS 应答内容
     private List<String> dnsAnswerIps;
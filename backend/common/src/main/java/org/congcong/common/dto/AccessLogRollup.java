@@ -0,0 +1,37 @@
+package org.congcong.common.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * 访问日志分钟聚合
+ * 工作节点对开启边缘聚合的入站，按 (分钟, 用户, 入站, 路由, 目标主机, 状态) 汇总访问日志后上报，
+ * 同一维度组合下被抽样上报的明细带 {@link AccessLog#getSampled()} 标记，不重复计入流量。
+ */
+@Data
+public class AccessLogRollup {
+    // 分钟起点
+    private Instant ts;
+
+    // 聚合维度
+    private Long userId;
+    private Long inboundId;
+    private Long routePolicyId;
+    private String originalTargetHost;
+    private Integer status;
+
+    // 维度附带信息，取窗口内第一条
+    private String username;
+    private String proxyName;
+    private String inboundProtocolType;
+    private String outboundProtocolType;
+    private String routePolicyName;
+
+    // 汇总值
+    private Long requests;
+    private Long bytesIn;
+    private Long bytesOut;
+    private Long requestDurationMs; // 请求耗时之和
+    private Long sampled; // 其中作为明细上报的条数
+}
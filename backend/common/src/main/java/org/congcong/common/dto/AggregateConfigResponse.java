@@ -15,6 +15,12 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 public class AggregateConfigResponse {
+
+    /**
+     * worker 请求聚合配置时携带该请求头（值为 true）表示支持按摘要下载规则集产物；
+     * 不携带的旧版 worker 仍随配置收到规则项
+     */
+    public static final String RULE_SET_ARTIFACTS_HEADER = "X-Rule-Set-Artifacts";
     /**
      * 配置版本
      */
@@ -35,6 +35,12 @@ public class RuleSetDTO {
 
     private List<RuleSetItemDTO> items;
 
+    /**
+     * 编译后二进制产物的 SHA-256，下发给支持产物的 worker 时只携带摘要，items 为空，worker 按摘要下载产物；
+     * 下发给旧版 worker 时为空，items 照常携带（见 {@link AggregateConfigResponse#RULE_SET_ARTIFACTS_HEADER}）
+     */
+    private String artifactDigest;
+
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
@@ -3,5 +3,7 @@ package org.congcong.common.enums;
 public enum RuleSetItemType {
     DOMAIN,
     DOMAIN_SUFFIX,
-    DOMAIN_KEYWORD
+    DOMAIN_KEYWORD,
+    IP_CIDR,
+    IP_CIDR6
 }
@@ -0,0 +1,16 @@
+package org.congcong.common.util;
+
+/**
+ * 工作节点向管理端上报日志的编码约定
+ * 默认以 gzip 压缩的 Jackson Smile 数组发送（字段名与短字符串值在同一批内只写一次），
+ * 管理端不支持时（返回 415）工作节点退回 JSON 数组，旧版管理端、旧版工作节点都可以继续互通。
+ */
+public final class LogWireFormat {
+
+    public static final String SMILE_CONTENT_TYPE = "application/x-jackson-smile";
+    public static final String JSON_CONTENT_TYPE = "application/json";
+    public static final String GZIP_ENCODING = "gzip";
+
+    private LogWireFormat() {
+    }
+}
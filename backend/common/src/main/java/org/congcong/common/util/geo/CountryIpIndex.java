@@ -0,0 +1,327 @@
+package org.congcong.common.util.geo;
+
+import com.maxmind.db.CHMCache;
+import com.maxmind.db.DatabaseRecord;
+import com.maxmind.db.MaxMindDbConstructor;
+import com.maxmind.db.MaxMindDbParameter;
+import com.maxmind.db.Reader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IP 段 -> 国家代码（ISO 3166-1 alpha-2）的区间索引
+ * 启动时遍历一次 mmdb 的全部网段，只解码国家代码，相邻且国家相同的网段合并成一个区间，存放在基本类型数组中；
+ * 查询时二分查找，过程不分配内存，不再为每次查询读取 City 记录、比较本地化的国家名称。构建后只读，可以跨线程共享。
+ */
+@Slf4j
+public final class CountryIpIndex {
+
+    private static final CountryIpIndex EMPTY = new Builder().build();
+
+    /**
+     * 国家代码表，区间中存放的是它的下标
+     */
+    private final String[] codes;
+    private final int[] v4Starts;
+    private final int[] v4Ends;
+    private final short[] v4Countries;
+    private final long[] v6StartHi;
+    private final long[] v6StartLo;
+    private final long[] v6EndHi;
+    private final long[] v6EndLo;
+    private final short[] v6Countries;
+
+    private CountryIpIndex(Builder builder) {
+        this.codes = builder.codes.toArray(new String[0]);
+        this.v4Starts = Arrays.copyOf(builder.v4Starts, builder.v4Size);
+        this.v4Ends = Arrays.copyOf(builder.v4Ends, builder.v4Size);
+        this.v4Countries = Arrays.copyOf(builder.v4Countries, builder.v4Size);
+        this.v6StartHi = Arrays.copyOf(builder.v6StartHi, builder.v6Size);
+        this.v6StartLo = Arrays.copyOf(builder.v6StartLo, builder.v6Size);
+        this.v6EndHi = Arrays.copyOf(builder.v6EndHi, builder.v6Size);
+        this.v6EndLo = Arrays.copyOf(builder.v6EndLo, builder.v6Size);
+        this.v6Countries = Arrays.copyOf(builder.v6Countries, builder.v6Size);
+    }
+
+    public static CountryIpIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 遍历 mmdb（City 或 Country 库均可）构建索引
+     * mmdb 4.x 的读取器没有网段迭代接口，这里从 0 开始查询所在网段，再跳到网段末尾的下一个地址继续，
+     * 每个网段只查询一次；相同的国家数据经 {@link CHMCache} 只解码一次。
+     */
+    public static CountryIpIndex load(Path mmdb) throws IOException {
+        long start = System.nanoTime();
+        Builder builder = new Builder();
+        try (Reader reader = new Reader(mmdb.toFile(), new CHMCache())) {
+            walkV4(reader, builder);
+            if (reader.getMetadata().getIpVersion() == 6) {
+                walkV6(reader, builder);
+            }
+        }
+        CountryIpIndex index = builder.build();
+        log.info("国家 IP 索引构建完成: IPv4 区间 {}，IPv6 区间 {}，国家 {}，耗时 {} ms",
+                index.v4Starts.length, index.v6StartHi.length, index.codes.length, (System.nanoTime() - start) / 1_000_000);
+        return index;
+    }
+
+    private static void walkV4(Reader reader, Builder builder) throws IOException {
+        long next = 0;
+        while (next <= 0xffffffffL) {
+            byte[] address = {(byte) (next >>> 24), (byte) (next >>> 16), (byte) (next >>> 8), (byte) next};
+            DatabaseRecord<CountryRecord> record = reader.getRecord(InetAddress.getByAddress(address), CountryRecord.class);
+            int prefix = record.getNetwork().getPrefixLength();
+            builder.add(address, prefix, isoCode(record.getData()));
+            next += 1L << (32 - prefix);
+        }
+    }
+
+    private static void walkV6(Reader reader, Builder builder) throws IOException {
+        long hi = 0;
+        long lo = 0;
+        while (true) {
+            // IPv4 子树（::/96）已单独遍历，::ffff:0:0/96、Teredo、6to4 是指向它的别名
+            if (hi == 0 && lo >>> 32 == 0) {
+                lo = 1L << 32;
+                continue;
+            }
+            if (hi == 0 && lo >>> 32 == 0xffff) {
+                lo = 1L << 48;
+                continue;
+            }
+            if (hi >>> 32 == 0x20010000L) {
+                hi = 0x20010001L << 32;
+                lo = 0;
+                continue;
+            }
+            if (hi >>> 48 == 0x2002) {
+                hi = 0x2003L << 48;
+                lo = 0;
+                continue;
+            }
+            byte[] address = new byte[16];
+            for (int i = 0; i < 8; i++) {
+                address[i] = (byte) (hi >>> (56 - 8 * i));
+                address[8 + i] = (byte) (lo >>> (56 - 8 * i));
+            }
+            DatabaseRecord<CountryRecord> record = reader.getRecord(InetAddress.getByAddress(address), CountryRecord.class);
+            int prefix = record.getNetwork().getPrefixLength();
+            builder.add(address, prefix, isoCode(record.getData()));
+            // 跳到网段末尾的下一个地址，越过 ::/0 末尾时结束
+            long hiMask = IpBits.v6HiHostMask(prefix);
+            long loMask = IpBits.v6LoHostMask(prefix);
+            long endHi = hi | hiMask;
+            long endLo = lo | loMask;
+            if (endHi == -1L && endLo == -1L) {
+                return;
+            }
+            lo = endLo + 1;
+            hi = lo == 0 ? endHi + 1 : endHi;
+        }
+    }
+
+    private static String isoCode(CountryRecord record) {
+        if (record == null) {
+            return null;
+        }
+        // 卫星、匿名代理等网段没有 country，按注册国家归属
+        Country country = record.country != null && record.country.isoCode != null ? record.country : record.registeredCountry;
+        return country == null ? null : country.isoCode;
+    }
+
+    public boolean isEmpty() {
+        return v4Starts.length == 0 && v6StartHi.length == 0;
+    }
+
+    /**
+     * @param address 4 字节 IPv4 或 16 字节 IPv6 地址，IPv4 映射的 IPv6 地址按 IPv4 查询
+     * @return 国家代码，库中未收录时返回 null
+     */
+    public String country(byte[] address) {
+        if (address == null) {
+            return null;
+        }
+        int found;
+        short[] countries;
+        if (address.length == 4 || (address.length == 16 && IpBits.isV4Mapped(address))) {
+            found = findV4(IpBits.toInt(address, address.length - 4) ^ Integer.MIN_VALUE);
+            countries = v4Countries;
+        } else if (address.length == 16) {
+            found = findV6(IpBits.toLong(address, 0) ^ IpBits.SIGN, IpBits.toLong(address, 8) ^ IpBits.SIGN);
+            countries = v6Countries;
+        } else {
+            return null;
+        }
+        return found < 0 ? null : codes[countries[found]];
+    }
+
+    private int findV4(int key) {
+        int low = 0;
+        int high = v4Starts.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (v4Starts[mid] <= key) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found >= 0 && key <= v4Ends[found] ? found : -1;
+    }
+
+    private int findV6(long hi, long lo) {
+        int low = 0;
+        int high = v6StartHi.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (IpBits.compare(v6StartHi[mid], v6StartLo[mid], hi, lo) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found >= 0 && IpBits.compare(hi, lo, v6EndHi[found], v6EndLo[found]) <= 0 ? found : -1;
+    }
+
+    /**
+     * mmdb 记录中与国家相关的字段，仅供读取器解码使用
+     */
+    public static final class CountryRecord {
+        private final Country country;
+        private final Country registeredCountry;
+
+        @MaxMindDbConstructor
+        public CountryRecord(@MaxMindDbParameter(name = "country") Country country,
+                             @MaxMindDbParameter(name = "registered_country") Country registeredCountry) {
+            this.country = country;
+            this.registeredCountry = registeredCountry;
+        }
+    }
+
+    public static final class Country {
+        private final String isoCode;
+
+        @MaxMindDbConstructor
+        public Country(@MaxMindDbParameter(name = "iso_code") String isoCode) {
+            this.isoCode = isoCode;
+        }
+    }
+
+    /**
+     * 网段须按地址升序添加，与上一个区间首尾相接且国家相同时直接合并
+     */
+    static final class Builder {
+
+        private final List<String> codes = new ArrayList<>();
+        private final Map<String, Short> codeIndex = new HashMap<>();
+        private int[] v4Starts = new int[1024];
+        private int[] v4Ends = new int[1024];
+        private short[] v4Countries = new short[1024];
+        private int v4Size;
+        private long[] v6StartHi = new long[1024];
+        private long[] v6StartLo = new long[1024];
+        private long[] v6EndHi = new long[1024];
+        private long[] v6EndLo = new long[1024];
+        private short[] v6Countries = new short[1024];
+        private int v6Size;
+
+        /**
+         * @param countryCode 为 null 时表示未收录，不加入索引
+         */
+        void add(byte[] address, int prefix, String countryCode) {
+            if (countryCode == null) {
+                return;
+            }
+            short country = codeIndex.computeIfAbsent(countryCode, code -> {
+                codes.add(code);
+                return (short) (codes.size() - 1);
+            });
+            if (address.length == 4) {
+                addV4(address, prefix, country);
+            } else {
+                addV6(address, prefix, country);
+            }
+        }
+
+        private void addV4(byte[] address, int prefix, short country) {
+            int hostMask = prefix == 0 ? -1 : (int) ((1L << (32 - prefix)) - 1);
+            int start = (IpBits.toInt(address, 0) & ~hostMask) ^ Integer.MIN_VALUE;
+            int end = (IpBits.toInt(address, 0) | hostMask) ^ Integer.MIN_VALUE;
+            if (v4Size > 0) {
+                int last = v4Size - 1;
+                if (start <= v4Ends[last]) {
+                    throw new IllegalArgumentException("网段须按地址升序添加且互不重叠");
+                }
+                if (v4Countries[last] == country && start == v4Ends[last] + 1) {
+                    v4Ends[last] = end;
+                    return;
+                }
+            }
+            if (v4Size == v4Starts.length) {
+                v4Starts = Arrays.copyOf(v4Starts, v4Size * 2);
+                v4Ends = Arrays.copyOf(v4Ends, v4Size * 2);
+                v4Countries = Arrays.copyOf(v4Countries, v4Size * 2);
+            }
+            v4Starts[v4Size] = start;
+            v4Ends[v4Size] = end;
+            v4Countries[v4Size] = country;
+            v4Size++;
+        }
+
+        private void addV6(byte[] address, int prefix, short country) {
+            long hiMask = IpBits.v6HiHostMask(prefix);
+            long loMask = IpBits.v6LoHostMask(prefix);
+            long hi = IpBits.toLong(address, 0);
+            long lo = IpBits.toLong(address, 8);
+            long startHi = (hi & ~hiMask) ^ IpBits.SIGN;
+            long startLo = (lo & ~loMask) ^ IpBits.SIGN;
+            long endHi = (hi | hiMask) ^ IpBits.SIGN;
+            long endLo = (lo | loMask) ^ IpBits.SIGN;
+            if (v6Size > 0) {
+                int last = v6Size - 1;
+                if (IpBits.compare(startHi, startLo, v6EndHi[last], v6EndLo[last]) <= 0) {
+                    throw new IllegalArgumentException("网段须按地址升序添加且互不重叠");
+                }
+                // 上一个区间终点的下一个地址（翻转最高位后低 64 位从 MAX 进位到 MIN）
+                long nextLo = v6EndLo[last] + 1;
+                long nextHi = v6EndLo[last] == Long.MAX_VALUE ? v6EndHi[last] + 1 : v6EndHi[last];
+                if (v6Countries[last] == country && startHi == nextHi && startLo == nextLo) {
+                    v6EndHi[last] = endHi;
+                    v6EndLo[last] = endLo;
+                    return;
+                }
+            }
+            if (v6Size == v6StartHi.length) {
+                v6StartHi = Arrays.copyOf(v6StartHi, v6Size * 2);
+                v6StartLo = Arrays.copyOf(v6StartLo, v6Size * 2);
+                v6EndHi = Arrays.copyOf(v6EndHi, v6Size * 2);
+                v6EndLo = Arrays.copyOf(v6EndLo, v6Size * 2);
+                v6Countries = Arrays.copyOf(v6Countries, v6Size * 2);
+            }
+            v6StartHi[v6Size] = startHi;
+            v6StartLo[v6Size] = startLo;
+            v6EndHi[v6Size] = endHi;
+            v6EndLo[v6Size] = endLo;
+            v6Countries[v6Size] = country;
+            v6Size++;
+        }
+
+        CountryIpIndex build() {
+            return new CountryIpIndex(this);
+        }
+    }
+}
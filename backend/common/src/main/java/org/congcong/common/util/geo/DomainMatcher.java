@@ -5,6 +5,7 @@ import java.util.Locale;
 
 /**
  * Lightweight local domain matcher used by user-defined route rules.
+ * 热路径上应先用 {@link #normalizeHost(String)} 对主机名规范化一次，再与 {@link #compile(String)} 预编译的规则比较。
  */
 public final class DomainMatcher {
 
@@ -15,32 +16,55 @@ public final class DomainMatcher {
         if (host == null || pattern == null) {
             return false;
         }
-        String normalizedHost = normalize(host);
-        String normalizedPattern = normalize(pattern);
+        return compile(pattern).matches(normalizeHost(host));
+    }
 
-        if ("*".equals(normalizedPattern)) {
-            return !normalizedHost.isEmpty();
-        }
-        if (normalizedHost.isEmpty() || normalizedPattern.isEmpty()) {
-            return false;
+    public static DomainPattern compile(String pattern) {
+        String normalized = normalizeHost(pattern);
+        if ("*".equals(normalized)) {
+            return new DomainPattern(DomainPattern.Kind.ANY, "");
         }
-        if (normalizedPattern.startsWith("*.")) {
-            String suffix = normalizedPattern.substring(1);
-            return normalizedHost.endsWith(suffix) && normalizedHost.length() > suffix.length();
+        if (normalized.startsWith("*.")) {
+            return of(DomainPattern.Kind.SUBDOMAIN, normalized.substring(2));
         }
-        if (normalizedPattern.startsWith(".")) {
-            String base = normalizedPattern.substring(1);
-            return normalizedHost.equals(base)
-                    || (normalizedHost.endsWith(normalizedPattern) && normalizedHost.length() > normalizedPattern.length());
+        if (normalized.startsWith(".")) {
+            return of(DomainPattern.Kind.DOMAIN_AND_SUBDOMAIN, normalized.substring(1));
         }
-        return normalizedHost.equals(normalizedPattern);
+        return of(DomainPattern.Kind.EXACT, normalized);
+    }
+
+    private static DomainPattern of(DomainPattern.Kind kind, String domain) {
+        return domain.isEmpty() ? new DomainPattern(DomainPattern.Kind.NONE, "") : new DomainPattern(kind, domain);
     }
 
-    private static String normalize(String value) {
+    /**
+     * 去掉首尾空白和结尾的点，转小写并把国际化域名转成 punycode。
+     * 已经是小写 ASCII 的主机名（绝大多数情况）原样返回，不产生新对象。
+     */
+    public static String normalizeHost(String value) {
+        if (value == null) {
+            return "";
+        }
         String normalized = value.trim();
         if (normalized.endsWith(".")) {
             normalized = normalized.substring(0, normalized.length() - 1);
         }
+        boolean ascii = true;
+        boolean lowerCase = true;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+                break;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                lowerCase = false;
+            }
+        }
+        if (ascii) {
+            // 纯 ASCII 时 IDN.toASCII 只会原样返回
+            return lowerCase ? normalized : normalized.toLowerCase(Locale.ROOT);
+        }
         try {
             return IDN.toASCII(normalized.toLowerCase(Locale.ROOT));
         } catch (IllegalArgumentException ignored) {
@@ -0,0 +1,83 @@
+package org.congcong.common.util.geo;
+
+/**
+ * 预先规范化的域名规则，由 {@link DomainMatcher#compile(String)} 生成
+ * 匹配时只对已规范化的主机名做区间比较，不创建任何字符串。
+ */
+public final class DomainPattern {
+
+    enum Kind {
+        /**
+         * "*"：任意非空主机名
+         */
+        ANY,
+        /**
+         * "*.example.com"：仅子域名
+         */
+        SUBDOMAIN,
+        /**
+         * ".example.com"：域名本身及子域名
+         */
+        DOMAIN_AND_SUBDOMAIN,
+        /**
+         * "example.com"：完全相等
+         */
+        EXACT,
+        /**
+         * 规范化后为空，永不命中
+         */
+        NONE
+    }
+
+    private final Kind kind;
+    /**
+     * 不含前导 "*." 或 "." 的规范化域名
+     */
+    private final String domain;
+
+    DomainPattern(Kind kind, String domain) {
+        this.kind = kind;
+        this.domain = domain;
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    String domain() {
+        return domain;
+    }
+
+    /**
+     * @param normalizedHost 经 {@link DomainMatcher#normalizeHost(String)} 处理过的主机名
+     */
+    public boolean matches(String normalizedHost) {
+        if (normalizedHost == null || normalizedHost.isEmpty()) {
+            return false;
+        }
+        return switch (kind) {
+            case ANY -> true;
+            case EXACT -> normalizedHost.equals(domain);
+            case SUBDOMAIN -> isSubdomain(normalizedHost);
+            case DOMAIN_AND_SUBDOMAIN -> normalizedHost.equals(domain) || isSubdomain(normalizedHost);
+            case NONE -> false;
+        };
+    }
+
+    private boolean isSubdomain(String host) {
+        int offset = host.length() - domain.length();
+        return offset > 1
+                && host.charAt(offset - 1) == '.'
+                && host.regionMatches(offset, domain, 0, domain.length());
+    }
+
+    @Override
+    public String toString() {
+        return switch (kind) {
+            case ANY -> "*";
+            case SUBDOMAIN -> "*." + domain;
+            case DOMAIN_AND_SUBDOMAIN -> "." + domain;
+            case EXACT, NONE -> domain;
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package org.congcong.common.util.geo;
+
+/**
+ * 多条域名规则合并后的后缀索引，每条规则带一个优先级（数值越小越优先）
+ * 一次从右到左的 label 遍历即可得到命中规则中的最小优先级，遍历过程不分配内存。
+ */
+public final class DomainPriorityIndex {
+
+    public static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private static final class Node {
+        private final LabelTable<Node> children = new LabelTable<>();
+        /**
+         * 主机名恰好等于该节点时命中的最小优先级（EXACT 与 DOMAIN_AND_SUBDOMAIN）
+         */
+        private int selfPriority = NO_MATCH;
+        /**
+         * 主机名是该节点的子域名时命中的最小优先级（SUBDOMAIN 与 DOMAIN_AND_SUBDOMAIN）
+         */
+        private int descendantPriority = NO_MATCH;
+    }
+
+    private final Node root = new Node();
+    private int anyPriority = NO_MATCH;
+    private int size;
+
+    public void add(DomainPattern pattern, int priority) {
+        switch (pattern.kind()) {
+            case ANY -> anyPriority = Math.min(anyPriority, priority);
+            case EXACT -> {
+                Node node = node(pattern.domain());
+                node.selfPriority = Math.min(node.selfPriority, priority);
+            }
+            case SUBDOMAIN -> {
+                Node node = node(pattern.domain());
+                node.descendantPriority = Math.min(node.descendantPriority, priority);
+            }
+            case DOMAIN_AND_SUBDOMAIN -> {
+                Node node = node(pattern.domain());
+                node.selfPriority = Math.min(node.selfPriority, priority);
+                node.descendantPriority = Math.min(node.descendantPriority, priority);
+            }
+            case NONE -> {
+                return;
+            }
+        }
+        size++;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param normalizedHost 经 {@link DomainMatcher#normalizeHost(String)} 处理过的主机名
+     * @return 命中规则的最小优先级，未命中返回 {@link #NO_MATCH}
+     */
+    public int find(String normalizedHost) {
+        if (normalizedHost == null || normalizedHost.isEmpty()) {
+            return NO_MATCH;
+        }
+        int best = anyPriority;
+        Node cur = root;
+        int end = normalizedHost.length();
+        while (true) {
+            int start = normalizedHost.lastIndexOf('.', end - 1) + 1;
+            cur = cur.children.get(normalizedHost, start, end);
+            if (cur == null) {
+                break;
+            }
+            if (start == 0) {
+                best = Math.min(best, cur.selfPriority);
+                break;
+            }
+            if (start > 1) {
+                // 与 DomainPattern 一致：子域名部分至少要有一个字符
+                best = Math.min(best, cur.descendantPriority);
+            }
+            end = start - 1;
+        }
+        return best;
+    }
+
+    private Node node(String domain) {
+        Node cur = root;
+        int end = domain.length();
+        while (end > 0) {
+            int start = domain.lastIndexOf('.', end - 1) + 1;
+            String label = domain.substring(start, end);
+            cur = cur.children.computeIfAbsent(label, Node::new);
+            end = start - 1;
+        }
+        return cur;
+    }
+}
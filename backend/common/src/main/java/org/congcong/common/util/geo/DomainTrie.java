@@ -1,12 +1,19 @@
 package org.congcong.common.util.geo;
 
-import java.util.HashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * 按 label 反向存储的域名前缀树
+ * 查询时从主机名右侧按下标逐个 label 查找子节点（见 {@link LabelTable}），不需要 split 或 substring。
+ */
 public class DomainTrie {
 
     public static class Node {
-        Map<String, Node> children = new HashMap<>();
+        private final LabelTable<Node> children = new LabelTable<>();
         boolean hasDomainRule; // domain: 或无前缀规则
         boolean hasFullRule;   // full: 规则
     }
@@ -22,7 +29,7 @@ public class DomainTrie {
     }
 
     private void add(String host, boolean isFull) {
-        String normalized = host.trim().toLowerCase();
+        String normalized = DomainMatcher.normalizeHost(host);
         if (normalized.isEmpty()) {
             return;
         }
@@ -32,7 +39,7 @@ public class DomainTrie {
         for (int i = labels.length - 1; i >= 0; i--) {
             String label = labels[i];
             if (label.isEmpty()) continue;
-            cur = cur.children.computeIfAbsent(label, k -> new Node());
+            cur = cur.children.computeIfAbsent(label, Node::new);
         }
         if (isFull) {
             cur.hasFullRule = true;
@@ -57,20 +64,24 @@ public class DomainTrie {
         if (host == null || host.isEmpty()) {
             return MatchType.NONE;
         }
-        String normalized = host.toLowerCase();
-        // 去掉结尾的点，比如 "example.com."
-        if (normalized.endsWith(".")) {
-            normalized = normalized.substring(0, normalized.length() - 1);
-        }
+        return matchTypeNormalized(DomainMatcher.normalizeHost(host));
+    }
 
-        String[] labels = normalized.split("\\.");
+    /**
+     * @param normalizedHost 经 {@link DomainMatcher#normalizeHost(String)} 处理过的主机名，查询过程不分配内存
+     */
+    public MatchType matchTypeNormalized(String normalizedHost) {
+        if (normalizedHost == null || normalizedHost.isEmpty()) {
+            return MatchType.NONE;
+        }
         Node cur = root;
         MatchType best = MatchType.NONE;
 
         // 从 TLD 往前走
-        for (int i = labels.length - 1; i >= 0; i--) {
-            String label = labels[i];
-            cur = cur.children.get(label);
+        int end = normalizedHost.length();
+        while (end >= 0) {
+            int start = normalizedHost.lastIndexOf('.', end - 1) + 1;
+            cur = cur.children.get(normalizedHost, start, end);
             if (cur == null) {
                 break;
             }
@@ -79,12 +90,54 @@ public class DomainTrie {
                 best = MatchType.DOMAIN;
             }
             // full: 规则：必须刚好用完所有 label 才算
-            if (cur.hasFullRule && i == 0) {
-                best = MatchType.FULL;
-                // FULL 可以直接认为是最优命中，提前结束
+            if (start == 0) {
+                if (cur.hasFullRule) {
+                    // FULL 可以直接认为是最优命中，提前结束
+                    best = MatchType.FULL;
+                }
                 break;
             }
+            end = start - 1;
         }
         return best;
     }
+
+    /**
+     * 按前序写出全部节点，子节点按 label 排序，同样的规则总是得到同样的字节
+     */
+    void writeTo(DataOutput out) throws IOException {
+        writeNode(root, out);
+    }
+
+    private static void writeNode(Node node, DataOutput out) throws IOException {
+        out.writeByte((node.hasDomainRule ? 1 : 0) | (node.hasFullRule ? 2 : 0));
+        Map<String, Node> sorted = new TreeMap<>();
+        node.children.forEach(sorted::put);
+        out.writeInt(sorted.size());
+        for (Map.Entry<String, Node> child : sorted.entrySet()) {
+            out.writeUTF(child.getKey());
+            writeNode(child.getValue(), out);
+        }
+    }
+
+    static DomainTrie readFrom(DataInput in) throws IOException {
+        DomainTrie trie = new DomainTrie();
+        readNode(trie.root, in);
+        return trie;
+    }
+
+    private static void readNode(Node node, DataInput in) throws IOException {
+        int flags = in.readByte();
+        node.hasDomainRule = (flags & 1) != 0;
+        node.hasFullRule = (flags & 2) != 0;
+        int childCount = in.readInt();
+        if (childCount < 0) {
+            throw new IOException("invalid child count: " + childCount);
+        }
+        node.children.ensureCapacity(childCount);
+        for (int i = 0; i < childCount; i++) {
+            String label = in.readUTF();
+            readNode(node.children.computeIfAbsent(label, Node::new), in);
+        }
+    }
 }
@@ -19,6 +19,7 @@ import java.util.concurrent.TimeUnit;
  * 支持：
  * - 通过域名或IP解析最终IP地址
  * - 使用 GeoLite2-City.mmdb 解析国家与城市
+ * - 启动时由同一个库构建 {@link CountryIpIndex}，路由只需要国家代码时直接查区间索引
  * - 可选启用 Guava 缓存提升性能
  */
 @Slf4j
@@ -33,9 +34,19 @@ public class GeoIPUtil implements AutoCloseable {
         return GeoIPUtil.Holder.INSTANCE;
     }
 
+    /**
+     * 内网、回环、链路本地等保留地址的国家代码
+     */
+    public static final String PRIVATE = "PRIVATE";
+    /**
+     * 库中未收录的公网地址的国家代码
+     */
+    public static final String UNKNOWN = "UNKNOWN";
+
     private final boolean cacheEnabled;
     private final Cache<String, GeoLocation> cache;
     private DatabaseReader dbReader;
+    private CountryIpIndex countryIndex = CountryIpIndex.empty();
 
     /**
      * 构造函数。
@@ -56,6 +67,7 @@ public class GeoIPUtil implements AutoCloseable {
                 Path mmdbPath = mmdb.get();
                 log.info("load GeoLite2-City.mmdb from {}", mmdbPath);
                 dbReader = new DatabaseReader.Builder(mmdbPath.toFile()).build();
+                loadCountryIndex(mmdbPath);
             } else {
                 log.info("not find GeoLite2-City.mmdb");
             }
@@ -65,14 +77,32 @@ public class GeoIPUtil implements AutoCloseable {
     }
 
 
-    public boolean isForeign(String ip, InetAddress addr) {
-        Optional<GeoLocation> lookup = lookup(ip, addr);
-        if (lookup.isPresent()) {
-            GeoLocation geoLocation = lookup.get();
-            String country = geoLocation.getCountry();
-            return !"中国".equalsIgnoreCase(country);
+    private void loadCountryIndex(Path mmdbPath) {
+        try {
+            countryIndex = CountryIpIndex.load(mmdbPath);
+        } catch (Exception e) {
+            // 索引构建失败不影响 City 查询，路由按没有 GeoIP 库处理
+            log.warn("build country index from {} failed", mmdbPath, e);
         }
-        return false;
+    }
+
+    /**
+     * 查询 IP 所属国家，只查区间索引，不读取 City 记录、不发起 DNS 查询，可以在 event loop 上调用
+     * @return ISO 3166-1 alpha-2 国家代码（如 CN、US）；保留地址返回 {@link #PRIVATE}，未收录返回 {@link #UNKNOWN}；
+     * 没有可用的 GeoIP 库时返回 null
+     */
+    public String countryCode(InetAddress addr) {
+        if (addr == null) {
+            return null;
+        }
+        if (isPrivateOrReserved(addr)) {
+            return PRIVATE;
+        }
+        if (countryIndex.isEmpty()) {
+            return null;
+        }
+        String code = countryIndex.country(addr.getAddress());
+        return code == null ? UNKNOWN : code;
     }
 
 
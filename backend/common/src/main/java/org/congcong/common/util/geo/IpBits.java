@@ -0,0 +1,54 @@
+package org.congcong.common.util.geo;
+
+/**
+ * IP 地址字节与基本类型之间的转换，供按区间查找的 IP 索引共用
+ * 区间存储时翻转最高位，使无符号比较可以直接用有符号比较完成。
+ */
+final class IpBits {
+
+    static final long SIGN = Long.MIN_VALUE;
+
+    private IpBits() {
+    }
+
+    static int toInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16
+                | (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+    }
+
+    static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    static boolean isV4Mapped(byte[] address) {
+        for (int i = 0; i < 10; i++) {
+            if (address[i] != 0) {
+                return false;
+            }
+        }
+        return address[10] == (byte) 0xff && address[11] == (byte) 0xff;
+    }
+
+    static int compare(long hiA, long loA, long hiB, long loB) {
+        int c = Long.compare(hiA, hiB);
+        return c != 0 ? c : Long.compare(loA, loB);
+    }
+
+    /**
+     * 前缀长度为 prefix 的 IPv6 网段在高 64 位上的主机位掩码
+     */
+    static long v6HiHostMask(int prefix) {
+        return prefix >= 64 ? 0 : prefix == 0 ? -1L : -1L >>> prefix;
+    }
+
+    /**
+     * 前缀长度为 prefix 的 IPv6 网段在低 64 位上的主机位掩码
+     */
+    static long v6LoHostMask(int prefix) {
+        return prefix >= 128 ? 0 : prefix <= 64 ? -1L : -1L >>> (prefix - 64);
+    }
+}
@@ -0,0 +1,285 @@
+package org.congcong.common.util.geo;
+
+import com.google.common.net.InetAddresses;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * IP/CIDR 集合
+ * 构建时 IPv4 与 IPv6 的网段各自排序并合并成互不相交的区间，存放在基本类型数组中；
+ * 查询时二分查找起点不大于目标地址的最后一个区间，再比较终点，几十万条网段也只需十几次数组访问，过程不分配内存。
+ * 地址按无符号数比较，存储时翻转最高位后即可直接用有符号比较。构建后只读，可以跨线程共享。
+ */
+public final class IpCidrSet {
+
+    /**
+     * IPv4 区间，值为翻转最高位后的 32 位地址
+     */
+    private final int[] v4Starts;
+    private final int[] v4Ends;
+    /**
+     * IPv6 区间，高低 64 位分开存放，值为翻转最高位后的结果
+     */
+    private final long[] v6StartHi;
+    private final long[] v6StartLo;
+    private final long[] v6EndHi;
+    private final long[] v6EndLo;
+
+    private IpCidrSet(int[] v4Starts, int[] v4Ends, long[] v6StartHi, long[] v6StartLo, long[] v6EndHi, long[] v6EndLo) {
+        this.v4Starts = v4Starts;
+        this.v4Ends = v4Ends;
+        this.v6StartHi = v6StartHi;
+        this.v6StartLo = v6StartLo;
+        this.v6EndHi = v6EndHi;
+        this.v6EndLo = v6EndLo;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return 4 或 6；不是合法的 IP 或 CIDR（如 10.0.0.0/8、2001:db8::/32）时返回 0
+     */
+    public static int ipVersion(String cidr) {
+        Cidr parsed = Cidr.parse(cidr);
+        return parsed == null ? 0 : parsed.address.length == 4 ? 4 : 6;
+    }
+
+    public boolean isEmpty() {
+        return v4Starts.length == 0 && v6StartHi.length == 0;
+    }
+
+    /**
+     * @param ip IP 字面量，不是合法 IP 时返回 false
+     */
+    public boolean contains(String ip) {
+        if (ip == null || !InetAddresses.isInetAddress(ip)) {
+            return false;
+        }
+        return contains(InetAddresses.forString(ip).getAddress());
+    }
+
+    /**
+     * @param address 4 字节 IPv4 或 16 字节 IPv6 地址，IPv4 映射的 IPv6 地址按 IPv4 匹配
+     */
+    public boolean contains(byte[] address) {
+        if (address == null) {
+            return false;
+        }
+        if (address.length == 4) {
+            return containsV4(IpBits.toInt(address, 0));
+        }
+        if (address.length != 16) {
+            return false;
+        }
+        if (IpBits.isV4Mapped(address)) {
+            return containsV4(IpBits.toInt(address, 12));
+        }
+        return containsV6(IpBits.toLong(address, 0) ^ IpBits.SIGN, IpBits.toLong(address, 8) ^ IpBits.SIGN);
+    }
+
+    private boolean containsV4(int address) {
+        int key = address ^ Integer.MIN_VALUE;
+        int low = 0;
+        int high = v4Starts.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (v4Starts[mid] <= key) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found >= 0 && key <= v4Ends[found];
+    }
+
+    private boolean containsV6(long hi, long lo) {
+        int low = 0;
+        int high = v6StartHi.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (IpBits.compare(v6StartHi[mid], v6StartLo[mid], hi, lo) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found >= 0 && IpBits.compare(hi, lo, v6EndHi[found], v6EndLo[found]) <= 0;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(v4Starts.length);
+        for (int i = 0; i < v4Starts.length; i++) {
+            out.writeInt(v4Starts[i]);
+            out.writeInt(v4Ends[i]);
+        }
+        out.writeInt(v6StartHi.length);
+        for (int i = 0; i < v6StartHi.length; i++) {
+            out.writeLong(v6StartHi[i]);
+            out.writeLong(v6StartLo[i]);
+            out.writeLong(v6EndHi[i]);
+            out.writeLong(v6EndLo[i]);
+        }
+    }
+
+    static IpCidrSet readFrom(DataInput in) throws IOException {
+        int v4Count = in.readInt();
+        if (v4Count < 0) {
+            throw new IOException("invalid IPv4 range count: " + v4Count);
+        }
+        int[] v4Starts = new int[v4Count];
+        int[] v4Ends = new int[v4Count];
+        for (int i = 0; i < v4Count; i++) {
+            v4Starts[i] = in.readInt();
+            v4Ends[i] = in.readInt();
+        }
+        int v6Count = in.readInt();
+        if (v6Count < 0) {
+            throw new IOException("invalid IPv6 range count: " + v6Count);
+        }
+        long[] startHi = new long[v6Count];
+        long[] startLo = new long[v6Count];
+        long[] endHi = new long[v6Count];
+        long[] endLo = new long[v6Count];
+        for (int i = 0; i < v6Count; i++) {
+            startHi[i] = in.readLong();
+            startLo[i] = in.readLong();
+            endHi[i] = in.readLong();
+            endLo[i] = in.readLong();
+        }
+        return new IpCidrSet(v4Starts, v4Ends, startHi, startLo, endHi, endLo);
+    }
+
+    private record Cidr(byte[] address, int prefix) {
+
+        static Cidr parse(String value) {
+            if (value == null) {
+                return null;
+            }
+            String trimmed = value.trim();
+            int slash = trimmed.indexOf('/');
+            String ip = slash < 0 ? trimmed : trimmed.substring(0, slash);
+            if (!InetAddresses.isInetAddress(ip)) {
+                return null;
+            }
+            // IPv4 映射的 IPv6 字面量会被解析成 Inet4Address，前缀长度仍按 IPv6 给出，这种写法不支持
+            byte[] address = InetAddresses.forString(ip).getAddress();
+            if (address.length == 4 && ip.contains(":")) {
+                return null;
+            }
+            int bits = address.length * 8;
+            int prefix = bits;
+            if (slash >= 0) {
+                try {
+                    prefix = Integer.parseInt(trimmed.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                if (prefix < 0 || prefix > bits) {
+                    return null;
+                }
+            }
+            return new Cidr(address, prefix);
+        }
+    }
+
+    public static final class Builder {
+
+        /**
+         * IPv4 区间，按无符号值存放在 long 中
+         */
+        private final List<long[]> v4 = new ArrayList<>();
+        /**
+         * IPv6 区间 {startHi, startLo, endHi, endLo}，已翻转最高位
+         */
+        private final List<long[]> v6 = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param cidr 如 10.0.0.0/8、2001:db8::/32，或不带前缀长度的单个地址
+         * @return 不是合法的 IP 或 CIDR 时返回 false 并忽略
+         */
+        public boolean add(String cidr) {
+            Cidr parsed = Cidr.parse(cidr);
+            if (parsed == null) {
+                return false;
+            }
+            byte[] address = parsed.address();
+            if (address.length == 4) {
+                long start = IpBits.toInt(address, 0) & 0xffffffffL;
+                long hostMask = parsed.prefix() == 0 ? 0xffffffffL : (1L << (32 - parsed.prefix())) - 1;
+                start &= ~hostMask;
+                v4.add(new long[]{start, start | hostMask});
+            } else {
+                long hi = IpBits.toLong(address, 0);
+                long lo = IpBits.toLong(address, 8);
+                int prefix = parsed.prefix();
+                long hiMask = IpBits.v6HiHostMask(prefix);
+                long loMask = IpBits.v6LoHostMask(prefix);
+                hi &= ~hiMask;
+                lo &= ~loMask;
+                v6.add(new long[]{hi ^ IpBits.SIGN, lo ^ IpBits.SIGN, (hi | hiMask) ^ IpBits.SIGN, (lo | loMask) ^ IpBits.SIGN});
+            }
+            return true;
+        }
+
+        public IpCidrSet build() {
+            v4.sort(Comparator.comparingLong(range -> range[0]));
+            List<long[]> mergedV4 = new ArrayList<>();
+            for (long[] range : v4) {
+                long[] last = mergedV4.isEmpty() ? null : mergedV4.get(mergedV4.size() - 1);
+                // 重叠或首尾相接的网段合并
+                if (last != null && range[0] <= last[1] + 1) {
+                    last[1] = Math.max(last[1], range[1]);
+                } else {
+                    mergedV4.add(new long[]{range[0], range[1]});
+                }
+            }
+            int[] v4Starts = new int[mergedV4.size()];
+            int[] v4Ends = new int[mergedV4.size()];
+            for (int i = 0; i < mergedV4.size(); i++) {
+                v4Starts[i] = (int) mergedV4.get(i)[0] ^ Integer.MIN_VALUE;
+                v4Ends[i] = (int) mergedV4.get(i)[1] ^ Integer.MIN_VALUE;
+            }
+
+            v6.sort((a, b) -> IpBits.compare(a[0], a[1], b[0], b[1]));
+            List<long[]> mergedV6 = new ArrayList<>();
+            for (long[] range : v6) {
+                long[] last = mergedV6.isEmpty() ? null : mergedV6.get(mergedV6.size() - 1);
+                if (last != null && IpBits.compare(range[0], range[1], last[2], last[3]) <= 0) {
+                    if (IpBits.compare(range[2], range[3], last[2], last[3]) > 0) {
+                        last[2] = range[2];
+                        last[3] = range[3];
+                    }
+                } else {
+                    mergedV6.add(range.clone());
+                }
+            }
+            int n = mergedV6.size();
+            long[] startHi = new long[n];
+            long[] startLo = new long[n];
+            long[] endHi = new long[n];
+            long[] endLo = new long[n];
+            for (int i = 0; i < n; i++) {
+                long[] range = mergedV6.get(i);
+                startHi[i] = range[0];
+                startLo[i] = range[1];
+                endHi[i] = range[2];
+                endLo[i] = range[3];
+            }
+            return new IpCidrSet(v4Starts, v4Ends, startHi, startLo, endHi, endLo);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.congcong.common.util.geo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 域名关键字（子串）匹配的 Aho-Corasick 自动机
+ * 构建时先把全部关键字插入普通 trie，再按层序计算失败指针，最后压平成基本类型数组：
+ * 状态 s 的出边按字符排序存放在 edgeChars/edgeTargets 的 [edgeStart[s], edgeStart[s + 1]) 区间。
+ * 查询时主机名只扫描一遍，耗时与关键字数量无关，过程不分配内存；构建后只读，可以跨线程共享。
+ */
+public final class KeywordAutomaton {
+
+    private static final int ROOT = 0;
+
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] fail;
+    /**
+     * 到达该状态时，状态本身或其失败链上有关键字结束
+     */
+    private final boolean[] terminal;
+
+    private KeywordAutomaton(int[] edgeStart, char[] edgeChars, int[] edgeTargets, int[] fail, boolean[] terminal) {
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.terminal = terminal;
+    }
+
+    /**
+     * @param keywords 已经过 {@link DomainMatcher#normalizeHost(String)} 处理的关键字，null 与空串忽略
+     */
+    public static KeywordAutomaton build(Collection<String> keywords) {
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        children.add(new TreeMap<>());
+        ends.add(false);
+        for (String keyword : keywords) {
+            if (keyword == null || keyword.isEmpty()) {
+                continue;
+            }
+            int state = ROOT;
+            for (int i = 0; i < keyword.length(); i++) {
+                Integer next = children.get(state).get(keyword.charAt(i));
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<>());
+                    ends.add(false);
+                    children.get(state).put(keyword.charAt(i), next);
+                }
+                state = next;
+            }
+            ends.set(state, true);
+        }
+
+        int stateCount = children.size();
+        int[] fail = new int[stateCount];
+        boolean[] terminal = new boolean[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            terminal[s] = ends.get(s);
+        }
+        // 层序遍历保证处理某个状态时，比它浅的状态的失败指针都已确定
+        ArrayDeque<Integer> queue = new ArrayDeque<>(children.get(ROOT).values());
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : children.get(state).entrySet()) {
+                int target = edge.getValue();
+                int f = fail[state];
+                Integer next;
+                while ((next = children.get(f).get(edge.getKey())) == null && f != ROOT) {
+                    f = fail[f];
+                }
+                fail[target] = next != null && state != ROOT ? next : ROOT;
+                terminal[target] |= terminal[fail[target]];
+                queue.add(target);
+            }
+        }
+
+        int edgeCount = stateCount - 1;
+        int[] edgeStart = new int[stateCount + 1];
+        char[] edgeChars = new char[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        int e = 0;
+        for (int s = 0; s < stateCount; s++) {
+            edgeStart[s] = e;
+            for (Map.Entry<Character, Integer> edge : children.get(s).entrySet()) {
+                edgeChars[e] = edge.getKey();
+                edgeTargets[e] = edge.getValue();
+                e++;
+            }
+        }
+        edgeStart[stateCount] = e;
+        return new KeywordAutomaton(edgeStart, edgeChars, edgeTargets, fail, terminal);
+    }
+
+    public boolean isEmpty() {
+        return edgeStart[ROOT + 1] == 0;
+    }
+
+    /**
+     * @param normalizedHost 经 {@link DomainMatcher#normalizeHost(String)} 处理过的主机名
+     * @return 是否包含任一关键字
+     */
+    public boolean containsAny(String normalizedHost) {
+        if (normalizedHost == null || isEmpty()) {
+            return false;
+        }
+        int state = ROOT;
+        for (int i = 0; i < normalizedHost.length(); i++) {
+            char c = normalizedHost.charAt(i);
+            int next;
+            while ((next = next(state, c)) < 0 && state != ROOT) {
+                state = fail[state];
+            }
+            state = next < 0 ? ROOT : next;
+            if (terminal[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int next(int state, char c) {
+        int low = edgeStart[state];
+        int high = edgeStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = edgeChars[mid];
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 直接写出各数组，加载时不需要重新计算失败指针
+     */
+    void writeTo(DataOutput out) throws IOException {
+        int stateCount = fail.length;
+        int edgeCount = edgeChars.length;
+        out.writeInt(stateCount);
+        out.writeInt(edgeCount);
+        for (int start : edgeStart) {
+            out.writeInt(start);
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            out.writeChar(edgeChars[e]);
+            out.writeInt(edgeTargets[e]);
+        }
+        for (int s = 0; s < stateCount; s++) {
+            out.writeInt(fail[s]);
+            out.writeBoolean(terminal[s]);
+        }
+    }
+
+    static KeywordAutomaton readFrom(DataInput in) throws IOException {
+        int stateCount = in.readInt();
+        int edgeCount = in.readInt();
+        if (stateCount < 1 || edgeCount != stateCount - 1) {
+            throw new IOException("invalid automaton size: " + stateCount + "/" + edgeCount);
+        }
+        int[] edgeStart = new int[stateCount + 1];
+        for (int s = 0; s <= stateCount; s++) {
+            edgeStart[s] = in.readInt();
+        }
+        char[] edgeChars = new char[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            edgeChars[e] = in.readChar();
+            edgeTargets[e] = in.readInt();
+        }
+        int[] fail = new int[stateCount];
+        boolean[] terminal = new boolean[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            fail[s] = in.readInt();
+            terminal[s] = in.readBoolean();
+        }
+        return new KeywordAutomaton(edgeStart, edgeChars, edgeTargets, fail, terminal);
+    }
+}
@@ -0,0 +1,103 @@
+package org.congcong.common.util.geo;
+
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 域名 label 到子节点的开放寻址表
+ * 哈希算法与 {@link String#hashCode()} 一致，查询时可以直接对主机名的某个区间计算哈希并比较，不需要 substring。
+ */
+final class LabelTable<V> {
+
+    private String[] labels = new String[0];
+    private Object[] values = new Object[0];
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    V get(String host, int start, int end) {
+        if (size == 0) {
+            return null;
+        }
+        int mask = labels.length - 1;
+        int length = end - start;
+        for (int i = hash(host, start, end) & mask; ; i = (i + 1) & mask) {
+            String label = labels[i];
+            if (label == null) {
+                return null;
+            }
+            if (label.length() == length && label.regionMatches(0, host, start, length)) {
+                return (V) values[i];
+            }
+        }
+    }
+
+    V computeIfAbsent(String label, Supplier<V> factory) {
+        V existing = get(label, 0, label.length());
+        if (existing != null) {
+            return existing;
+        }
+        if ((size + 1) * 2 > labels.length) {
+            resize(Math.max(4, labels.length * 2));
+        }
+        V value = factory.get();
+        insert(labels, values, label, value);
+        size++;
+        return value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<String, V> action) {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] != null) {
+                action.accept(labels[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * 预先扩容到可容纳 expectedSize 个 label，批量加载时避免逐次扩容
+     */
+    void ensureCapacity(int expectedSize) {
+        int capacity = 4;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        if (capacity > labels.length) {
+            resize(capacity);
+        }
+    }
+
+    private void resize(int capacity) {
+        String[] newLabels = new String[capacity];
+        Object[] newValues = new Object[capacity];
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] != null) {
+                insert(newLabels, newValues, labels[i], values[i]);
+            }
+        }
+        labels = newLabels;
+        values = newValues;
+    }
+
+    private static void insert(String[] labels, Object[] values, String label, Object value) {
+        int mask = labels.length - 1;
+        int i = label.hashCode() & mask;
+        while (labels[i] != null) {
+            i = (i + 1) & mask;
+        }
+        labels[i] = label;
+        values[i] = value;
+    }
+
+    private static int hash(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+}
@@ -0,0 +1,165 @@
+package org.congcong.common.util.geo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.congcong.common.dto.RuleSetItemDTO;
+import org.congcong.common.enums.RuleSetItemType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 编译好的规则集：DOMAIN/DOMAIN_SUFFIX 组成的 {@link DomainTrie}，DOMAIN_KEYWORD 组成的 {@link KeywordAutomaton}，
+ * IP_CIDR/IP_CIDR6 组成的 {@link IpCidrSet}
+ * 控制面按版本编译一次并序列化成二进制产物，以内容的 SHA-256 作为摘要分发；worker 按摘要下载、缓存，加载时不再解析规则项。
+ * 二进制格式（gzip 压缩）：magic、格式版本，随后依次是 trie（前序遍历）、自动机数组、IP 区间数组。
+ * 编译过程与规则项顺序无关，同样的规则项总是得到同样的字节。
+ */
+@Slf4j
+public final class RuleSetArtifact {
+
+    private static final int MAGIC = 0x52534131;
+    private static final int FORMAT_VERSION = 1;
+
+    private final DomainTrie trie;
+    private final KeywordAutomaton keywords;
+    private final IpCidrSet cidrs;
+
+    private RuleSetArtifact(DomainTrie trie, KeywordAutomaton keywords, IpCidrSet cidrs) {
+        this.trie = trie;
+        this.keywords = keywords;
+        this.cidrs = cidrs;
+    }
+
+    /**
+     * @param ruleKey 仅用于日志
+     */
+    public static RuleSetArtifact compile(String ruleKey, List<RuleSetItemDTO> items) {
+        DomainTrie trie = new DomainTrie();
+        // 关键字排序去重后再构建，自动机的状态编号与规则项顺序无关
+        TreeSet<String> keywords = new TreeSet<>();
+        IpCidrSet.Builder cidrs = IpCidrSet.builder();
+        if (items != null) {
+            for (RuleSetItemDTO item : items) {
+                if (item == null || item.getType() == null || item.getValue() == null || item.getValue().isBlank()) {
+                    continue;
+                }
+                if (item.getType() == RuleSetItemType.IP_CIDR || item.getType() == RuleSetItemType.IP_CIDR6) {
+                    if (!cidrs.add(item.getValue())) {
+                        log.warn("规则集 {} 中的网段 {} 无效，已忽略", ruleKey, item.getValue());
+                    }
+                    continue;
+                }
+                String normalized = DomainMatcher.normalizeHost(item.getValue());
+                if (normalized.isEmpty()) {
+                    continue;
+                }
+                if (item.getType() == RuleSetItemType.DOMAIN) {
+                    trie.addFull(normalized);
+                } else if (item.getType() == RuleSetItemType.DOMAIN_SUFFIX) {
+                    trie.addDomain(normalized);
+                } else if (item.getType() == RuleSetItemType.DOMAIN_KEYWORD) {
+                    keywords.add(normalized);
+                }
+            }
+        }
+        return new RuleSetArtifact(trie, KeywordAutomaton.build(keywords), cidrs.build());
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            trie.writeTo(out);
+            keywords.writeTo(out);
+            cidrs.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException 不是本格式或内容不完整
+     */
+    public static RuleSetArtifact fromBytes(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a rule set artifact");
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("unsupported rule set artifact version: " + version);
+            }
+            DomainTrie trie = DomainTrie.readFrom(in);
+            KeywordAutomaton keywords = KeywordAutomaton.readFrom(in);
+            IpCidrSet cidrs = IpCidrSet.readFrom(in);
+            return new RuleSetArtifact(trie, keywords, cidrs);
+        }
+    }
+
+    /**
+     * @return 产物字节的 SHA-256，小写十六进制
+     */
+    public static String digest(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 规则项内容的 SHA-256，与规则项顺序无关，用于判断随配置下发规则项的规则集是否变化
+     * 按“类型 + 值”排序去重后逐条写入，每条带长度前缀，不同的规则项列表不会拼出同样的输入
+     *
+     * @return 小写十六进制
+     */
+    public static String itemsDigest(List<RuleSetItemDTO> items) {
+        TreeSet<String> canonical = new TreeSet<>();
+        if (items != null) {
+            for (RuleSetItemDTO item : items) {
+                if (item == null || item.getType() == null || item.getValue() == null || item.getValue().isBlank()) {
+                    continue;
+                }
+                canonical.add(item.getType().name() + '\t' + item.getValue());
+            }
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String entry : canonical) {
+                byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+                digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public DomainTrie trie() {
+        return trie;
+    }
+
+    public KeywordAutomaton keywords() {
+        return keywords;
+    }
+
+    public IpCidrSet cidrs() {
+        return cidrs;
+    }
+}
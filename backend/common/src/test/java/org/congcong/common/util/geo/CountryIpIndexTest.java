@@ -0,0 +1,72 @@
+package org.congcong.common.util.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountryIpIndexTest {
+
+    @Test
+    void findsCountryOfIpv4RangesAndLeavesGapsUnknown() throws Exception {
+        CountryIpIndex.Builder builder = new CountryIpIndex.Builder();
+        builder.add(bytes("1.0.0.0"), 24, "AU");
+        builder.add(bytes("1.0.1.0"), 24, "CN");
+        builder.add(bytes("1.0.2.0"), 23, "CN");
+        builder.add(bytes("8.8.8.0"), 24, null);
+        builder.add(bytes("223.255.255.0"), 24, "AU");
+        CountryIpIndex index = builder.build();
+
+        assertEquals("AU", index.country(bytes("1.0.0.255")));
+        assertEquals("CN", index.country(bytes("1.0.1.0")));
+        assertEquals("CN", index.country(bytes("1.0.3.255")));
+        assertEquals("AU", index.country(bytes("223.255.255.1")));
+        assertEquals("CN", index.country(bytes("::ffff:1.0.2.1")));
+        assertNull(index.country(bytes("1.0.4.0")));
+        assertNull(index.country(bytes("8.8.8.8")));
+        assertNull(index.country(bytes("0.0.0.1")));
+    }
+
+    @Test
+    void findsCountryOfIpv6Ranges() throws Exception {
+        CountryIpIndex.Builder builder = new CountryIpIndex.Builder();
+        builder.add(bytes("2001:200::"), 23, "JP");
+        builder.add(bytes("2400:da00::"), 32, "CN");
+        builder.add(bytes("2400:da01::"), 32, "CN");
+        builder.add(bytes("ffff::"), 16, "ZZ");
+        CountryIpIndex index = builder.build();
+
+        assertEquals("JP", index.country(bytes("2001:3ff::1")));
+        assertEquals("CN", index.country(bytes("2400:da01:ffff::")));
+        assertEquals("ZZ", index.country(bytes("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff")));
+        assertNull(index.country(bytes("2400:da02::")));
+        assertNull(index.country(bytes("2001:400::")));
+    }
+
+    @Test
+    void rejectsRangesAddedOutOfOrder() throws Exception {
+        CountryIpIndex.Builder builder = new CountryIpIndex.Builder();
+        builder.add(bytes("10.0.0.0"), 8, "CN");
+        byte[] overlapping = bytes("10.1.0.0");
+
+        assertThrows(IllegalArgumentException.class, () -> builder.add(overlapping, 16, "US"));
+        assertTrue(CountryIpIndex.empty().isEmpty());
+    }
+
+    private static byte[] bytes(String ip) throws Exception {
+        byte[] address = InetAddress.getByName(ip).getAddress();
+        if (ip.startsWith("::ffff:")) {
+            // InetAddress 会把 IPv4 映射地址转成 4 字节，这里保留 16 字节形式
+            byte[] mapped = new byte[16];
+            mapped[10] = (byte) 0xff;
+            mapped[11] = (byte) 0xff;
+            System.arraycopy(address, 0, mapped, 12, 4);
+            return mapped;
+        }
+        return address;
+    }
+}
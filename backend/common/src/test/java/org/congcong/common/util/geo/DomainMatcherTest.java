@@ -2,7 +2,9 @@ package org.congcong.common.util.geo;
 
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class DomainMatcherTest {
@@ -31,4 +33,23 @@ class DomainMatcherTest {
         assertTrue(DomainMatcher.matches("my-home-page.com", "my-home-page.com"));
         assertFalse(DomainMatcher.matches("www.my-home-page.com", "my-home-page.com"));
     }
+
+    @Test
+    void compiledPatternMatchesNormalizedHost() {
+        DomainPattern pattern = DomainMatcher.compile(" .Example.COM. ");
+        String host = DomainMatcher.normalizeHost("WWW.example.com.");
+
+        assertTrue(pattern.matches(host));
+        assertTrue(pattern.matches("example.com"));
+        assertFalse(pattern.matches("badexample.com"));
+    }
+
+    @Test
+    void normalizeHostConvertsIdnAndKeepsLowerCaseAsciiInstance() {
+        String host = "www.example.com";
+
+        assertSame(host, DomainMatcher.normalizeHost(host));
+        assertEquals("xn--fiqs8s.cn", DomainMatcher.normalizeHost("中国.CN"));
+        assertTrue(DomainMatcher.matches("www.中国.cn", ".xn--fiqs8s.cn"));
+    }
 }
@@ -0,0 +1,34 @@
+package org.congcong.common.util.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DomainPriorityIndexTest {
+
+    @Test
+    void returnsLowestPriorityAmongMatchingPatterns() {
+        DomainPriorityIndex index = new DomainPriorityIndex();
+        index.add(DomainMatcher.compile("*"), 9);
+        index.add(DomainMatcher.compile(".example.com"), 5);
+        index.add(DomainMatcher.compile("*.example.com"), 3);
+        index.add(DomainMatcher.compile("api.example.com"), 1);
+
+        assertEquals(5, index.find("example.com"));
+        assertEquals(3, index.find("www.example.com"));
+        assertEquals(1, index.find("api.example.com"));
+        assertEquals(3, index.find("v1.api.example.com"));
+        assertEquals(9, index.find("badexample.com"));
+        assertEquals(DomainPriorityIndex.NO_MATCH, index.find(""));
+    }
+
+    @Test
+    void subdomainPatternRequiresNonEmptyPrefix() {
+        DomainPriorityIndex index = new DomainPriorityIndex();
+        index.add(DomainMatcher.compile("*.example.com"), 0);
+
+        assertEquals(DomainPriorityIndex.NO_MATCH, index.find("example.com"));
+        assertEquals(DomainPriorityIndex.NO_MATCH, index.find(".example.com"));
+        assertEquals(0, index.find("a.example.com"));
+    }
+}
@@ -0,0 +1,43 @@
+package org.congcong.common.util.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DomainTrieTest {
+
+    @Test
+    void domainRuleMatchesDomainAndSubdomainsFullRuleOnlyExactHost() {
+        DomainTrie trie = new DomainTrie();
+        trie.addDomain("example.com");
+        trie.addFull("api.test.org");
+
+        assertEquals(DomainTrie.MatchType.DOMAIN, trie.matchTypeNormalized("example.com"));
+        assertEquals(DomainTrie.MatchType.DOMAIN, trie.matchTypeNormalized("a.b.example.com"));
+        assertEquals(DomainTrie.MatchType.NONE, trie.matchTypeNormalized("badexample.com"));
+        assertEquals(DomainTrie.MatchType.FULL, trie.matchTypeNormalized("api.test.org"));
+        assertEquals(DomainTrie.MatchType.NONE, trie.matchTypeNormalized("www.api.test.org"));
+        assertEquals(DomainTrie.MatchType.NONE, trie.matchTypeNormalized("test.org"));
+    }
+
+    @Test
+    void matchTypeNormalizesHostBeforeLookup() {
+        DomainTrie trie = new DomainTrie();
+        trie.addDomain("Example.COM");
+
+        assertEquals(DomainTrie.MatchType.DOMAIN, trie.matchType("WWW.EXAMPLE.com."));
+    }
+
+    @Test
+    void childTableGrowsWithManySiblingLabels() {
+        DomainTrie trie = new DomainTrie();
+        for (int i = 0; i < 1000; i++) {
+            trie.addFull("host" + i + ".example.com");
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(DomainTrie.MatchType.FULL, trie.matchTypeNormalized("host" + i + ".example.com"));
+        }
+        assertEquals(DomainTrie.MatchType.NONE, trie.matchTypeNormalized("host1000.example.com"));
+    }
+}
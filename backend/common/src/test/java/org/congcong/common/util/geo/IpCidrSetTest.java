@@ -0,0 +1,74 @@
+package org.congcong.common.util.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IpCidrSetTest {
+
+    @Test
+    void matchesIpv4RangesIncludingBoundariesAndHighAddresses() {
+        IpCidrSet.Builder builder = IpCidrSet.builder();
+        builder.add("10.0.0.0/8");
+        builder.add("192.168.1.7");
+        builder.add("200.0.0.0/8");
+        IpCidrSet set = builder.build();
+
+        assertTrue(set.contains("10.0.0.0"));
+        assertTrue(set.contains("10.255.255.255"));
+        assertTrue(set.contains("192.168.1.7"));
+        // 最高位为 1 的地址按无符号比较
+        assertTrue(set.contains("200.1.2.3"));
+        assertFalse(set.contains("11.0.0.0"));
+        assertFalse(set.contains("9.255.255.255"));
+        assertFalse(set.contains("192.168.1.8"));
+        assertFalse(set.contains("201.0.0.0"));
+        assertFalse(set.contains("2001:db8::1"));
+    }
+
+    @Test
+    void mergesOverlappingAndAdjacentRanges() {
+        IpCidrSet.Builder builder = IpCidrSet.builder();
+        builder.add("10.1.0.0/16");
+        builder.add("10.0.0.0/8");
+        builder.add("11.0.0.0/8");
+        builder.add("0.0.0.0/1");
+        IpCidrSet set = builder.build();
+
+        assertTrue(set.contains("10.1.2.3"));
+        assertTrue(set.contains("11.255.0.1"));
+        assertTrue(set.contains("127.255.255.255"));
+        assertFalse(set.contains("128.0.0.0"));
+    }
+
+    @Test
+    void matchesIpv6RangesAndIpv4MappedAddresses() {
+        IpCidrSet.Builder builder = IpCidrSet.builder();
+        builder.add("2001:db8::/32");
+        builder.add("fe80::/10");
+        builder.add("100.64.0.0/10");
+        IpCidrSet set = builder.build();
+
+        assertTrue(set.contains("2001:db8:ffff::1"));
+        assertTrue(set.contains("febf::1"));
+        assertFalse(set.contains("2001:db9::"));
+        assertFalse(set.contains("fec0::"));
+        assertTrue(set.contains("::ffff:100.64.1.1"));
+        assertTrue(set.contains(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff, 100, 64, 1, 1}));
+    }
+
+    @Test
+    void rejectsInvalidCidrs() {
+        IpCidrSet.Builder builder = IpCidrSet.builder();
+
+        assertFalse(builder.add("10.0.0.0/33"));
+        assertFalse(builder.add("example.com"));
+        assertFalse(builder.add("2001:db8::/abc"));
+        assertTrue(builder.build().isEmpty());
+        assertEquals(4, IpCidrSet.ipVersion("10.0.0.0/8"));
+        assertEquals(6, IpCidrSet.ipVersion("2001:db8::/32"));
+        assertEquals(0, IpCidrSet.ipVersion("10.0.0.0/-1"));
+    }
+}
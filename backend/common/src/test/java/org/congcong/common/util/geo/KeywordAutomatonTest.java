@@ -0,0 +1,75 @@
+package org.congcong.common.util.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeywordAutomatonTest {
+
+    @Test
+    void matchesKeywordsAnywhereInHostIncludingOverlaps() {
+        KeywordAutomaton automaton = KeywordAutomaton.build(List.of("ads", "tracker", "dsp", "analytics"));
+
+        assertTrue(automaton.containsAny("ads.example.com"));
+        assertTrue(automaton.containsAny("cdn.tracker.net"));
+        assertTrue(automaton.containsAny("google-analytics.com"));
+        // "adsp" 中 "ads" 不完整时需沿失败指针转到 "dsp"
+        assertTrue(automaton.containsAny("adsp.example"));
+        assertTrue(automaton.containsAny("xadxdsp"));
+        assertFalse(automaton.containsAny("example.com"));
+        assertFalse(automaton.containsAny("track.example"));
+    }
+
+    @Test
+    void keywordContainedInLongerKeywordIsReportedThroughFailureLinks() {
+        KeywordAutomaton automaton = KeywordAutomaton.build(List.of("doubleclick", "click"));
+
+        assertTrue(automaton.containsAny("doubleclick.net"));
+        assertTrue(automaton.containsAny("doublclick.net"));
+        assertTrue(automaton.containsAny("doubleclic.click"));
+        assertFalse(automaton.containsAny("doubleclic.net"));
+    }
+
+    @Test
+    void emptyAutomatonMatchesNothing() {
+        List<String> keywords = new ArrayList<>();
+        keywords.add("");
+        keywords.add(null);
+        KeywordAutomaton automaton = KeywordAutomaton.build(keywords);
+
+        assertTrue(automaton.isEmpty());
+        assertFalse(automaton.containsAny("anything.example"));
+    }
+
+    @Test
+    void agreesWithStringContainsForRandomKeywordsAndHosts() {
+        Random random = new Random(42);
+        List<String> keywords = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            keywords.add(randomLabel(random, 2, 6));
+        }
+        KeywordAutomaton automaton = KeywordAutomaton.build(keywords);
+
+        for (int i = 0; i < 2000; i++) {
+            String host = randomLabel(random, 3, 12) + "." + randomLabel(random, 2, 8) + ".com";
+            boolean expected = keywords.stream().anyMatch(host::contains);
+            assertEquals(expected, automaton.containsAny(host), host);
+        }
+    }
+
+    private static String randomLabel(Random random, int minLength, int maxLength) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // 字母表取小一些，让关键字之间有较多公共前后缀
+            builder.append((char) ('a' + random.nextInt(6)));
+        }
+        return builder.toString();
+    }
+}
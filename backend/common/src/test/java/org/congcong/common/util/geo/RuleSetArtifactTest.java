@@ -0,0 +1,82 @@
+package org.congcong.common.util.geo;
+
+import org.congcong.common.dto.RuleSetItemDTO;
+import org.congcong.common.enums.RuleSetItemType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleSetArtifactTest {
+
+    @Test
+    void loadedArtifactMatchesLikeCompiledOne() throws IOException {
+        RuleSetArtifact artifact = RuleSetArtifact.fromBytes(RuleSetArtifact.compile("test", items()).toBytes());
+
+        assertEquals(DomainTrie.MatchType.DOMAIN, artifact.trie().matchType("www.google.com"));
+        assertEquals(DomainTrie.MatchType.FULL, artifact.trie().matchType("ads.example.com"));
+        assertEquals(DomainTrie.MatchType.NONE, artifact.trie().matchType("cdn.ads.example.com"));
+        assertTrue(artifact.keywords().containsAny("cdn.tracker.net"));
+        assertFalse(artifact.keywords().containsAny("example.net"));
+        assertTrue(artifact.cidrs().contains("10.1.2.3"));
+        assertTrue(artifact.cidrs().contains("2001:db8::1"));
+        assertFalse(artifact.cidrs().contains("11.0.0.1"));
+    }
+
+    @Test
+    void sameItemsInAnyOrderProduceSameBytes() {
+        List<RuleSetItemDTO> shuffled = new ArrayList<>(items());
+        Collections.reverse(shuffled);
+
+        byte[] expected = RuleSetArtifact.compile("test", items()).toBytes();
+        byte[] actual = RuleSetArtifact.compile("test", shuffled).toBytes();
+
+        assertArrayEquals(expected, actual);
+        assertEquals(RuleSetArtifact.digest(expected), RuleSetArtifact.digest(actual));
+        assertEquals(64, RuleSetArtifact.digest(expected).length());
+    }
+
+    @Test
+    void itemsDigestIgnoresOrderButNotContent() {
+        List<RuleSetItemDTO> shuffled = new ArrayList<>(items());
+        Collections.reverse(shuffled);
+
+        assertEquals(RuleSetArtifact.itemsDigest(items()), RuleSetArtifact.itemsDigest(shuffled));
+        assertEquals(64, RuleSetArtifact.itemsDigest(items()).length());
+        assertNotEquals(RuleSetArtifact.itemsDigest(List.of(item(RuleSetItemType.DOMAIN, "Aa"))),
+                RuleSetArtifact.itemsDigest(List.of(item(RuleSetItemType.DOMAIN, "BB"))));
+        assertNotEquals(RuleSetArtifact.itemsDigest(List.of(item(RuleSetItemType.DOMAIN, "example.com"))),
+                RuleSetArtifact.itemsDigest(List.of(item(RuleSetItemType.DOMAIN_SUFFIX, "example.com"))));
+    }
+
+    @Test
+    void rejectsBytesOfOtherFormats() {
+        assertThrows(IOException.class, () -> RuleSetArtifact.fromBytes(new byte[]{1, 2, 3}));
+    }
+
+    private static List<RuleSetItemDTO> items() {
+        return List.of(
+                item(RuleSetItemType.DOMAIN_SUFFIX, "google.com"),
+                item(RuleSetItemType.DOMAIN, "ads.example.com"),
+                item(RuleSetItemType.DOMAIN_KEYWORD, "tracker"),
+                item(RuleSetItemType.DOMAIN_KEYWORD, "analytics"),
+                item(RuleSetItemType.IP_CIDR, "10.0.0.0/8"),
+                item(RuleSetItemType.IP_CIDR6, "2001:db8::/32"));
+    }
+
+    private static RuleSetItemDTO item(RuleSetItemType type, String value) {
+        RuleSetItemDTO item = new RuleSetItemDTO();
+        item.setType(type);
+        item.setValue(value);
+        return item;
+    }
+}
@@ -0,0 +1,144 @@
+package org.congcong.controlmanager.clickhouse;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 旧版明细表 default.access_log 按分区搬到 {@link AccessLogTables#RAW_TABLE}
+ * <ul>
+ *     <li>新日志从启动起就只写新表，旧表不再变化，搬迁在后台线程中进行，不阻塞启动和接口；
+ *     未记为完成的分区查询时与新表合并读取</li>
+ *     <li>每个分区先整体写入与新表结构相同的中转表，记下进度后再 MOVE PARTITION 一次性移到新表，查询看不到半个分区</li>
+ *     <li>进度记在 {@link AccessLogTables#LEGACY_MIGRATION_TABLE}，分 {@link #STAGED} 和 {@link #DONE} 两个阶段。
+ *     移动后、记录完成前进程退出的话，重启时看到中转表里已没有该分区，直接记为完成，不会重复挂载；
+ *     从最近的月份往前搬</li>
+ *     <li>旧表全部搬完后保留不删，确认无误后可手动 DROP</li>
+ * </ul>
+ */
+@Slf4j
+final class AccessLogMigration {
+
+    private static final String STAGING_TABLE = "default.access_log_v2_staging";
+    private static final String PROGRESS_TABLE = AccessLogTables.LEGACY_MIGRATION_TABLE;
+
+    /**
+     * 分区已写入中转表、已移到新表；旧版本记录的进度没有阶段列，按已完成处理
+     */
+    static final int STAGED = 0;
+    static final int DONE = 1;
+
+    private final ClickHouseJdbcClient client;
+
+    AccessLogMigration(ClickHouseJdbcClient client) {
+        this.client = client;
+    }
+
+    /**
+     * 同步建好进度表（查询时据此判断哪些旧分区还需合并读取），再在后台线程中搬迁
+     */
+    void start() {
+        createProgressTable();
+        Thread t = new Thread(() -> {
+            try {
+                migrate();
+            } catch (RuntimeException e) {
+                log.error("访问日志迁移中断，下次启动时继续: {}", e.getMessage(), e);
+            }
+        }, "access-log-migration");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void createProgressTable() {
+        client.execute("""
+                CREATE TABLE IF NOT EXISTS %s
+                (
+                    partition_id String,
+                    rows         UInt64,
+                    stage        UInt8 DEFAULT 1,
+                    migrated_at  DateTime DEFAULT now()
+                )
+                ENGINE = ReplacingMergeTree
+                ORDER BY partition_id
+                """.formatted(PROGRESS_TABLE));
+        client.execute("ALTER TABLE " + PROGRESS_TABLE + " ADD COLUMN IF NOT EXISTS stage UInt8 DEFAULT 1 AFTER rows");
+    }
+
+    /**
+     * @return 本次搬迁的分区数
+     */
+    int migrate() {
+        createProgressTable();
+        Map<String, Long> staged = new HashMap<>();
+        List<String> pending = pendingPartitions(staged);
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        log.info("开始迁移访问日志 {} -> {}，待迁移分区: {}", AccessLogTables.LEGACY_RAW_TABLE, AccessLogTables.RAW_TABLE, pending);
+        client.execute("CREATE TABLE IF NOT EXISTS " + STAGING_TABLE + " AS " + AccessLogTables.RAW_TABLE);
+        String columns = String.join(", ", AccessLogRowBinary.COLUMNS);
+        for (String partition : pending) {
+            long start = System.currentTimeMillis();
+            Long rows = staged.get(partition);
+            if (rows == null) {
+                client.execute("TRUNCATE TABLE " + STAGING_TABLE);
+                client.execute("INSERT INTO " + STAGING_TABLE + " (" + columns + ") SELECT " + columns +
+                        " FROM " + AccessLogTables.LEGACY_RAW_TABLE + " WHERE _partition_id = ?", partition);
+                rows = count("SELECT count() AS c FROM " + STAGING_TABLE);
+                client.execute("INSERT INTO " + PROGRESS_TABLE + " (partition_id, rows, stage) VALUES (?, ?, ?)", partition, rows, STAGED);
+            }
+            // MOVE 之后分区就不在中转表里了：上次已经移过去的不再移第二次
+            if (stagingHas(partition)) {
+                // 分区 ID 来自 system.parts，两张表分区键相同
+                client.execute("ALTER TABLE " + STAGING_TABLE + " MOVE PARTITION ID '" + partition + "' TO TABLE " + AccessLogTables.RAW_TABLE);
+            } else {
+                log.info("访问日志分区 {} 上次已移到新表，补记完成", partition);
+            }
+            client.execute("INSERT INTO " + PROGRESS_TABLE + " (partition_id, rows, stage) VALUES (?, ?, ?)", partition, rows, DONE);
+            log.info("访问日志分区 {} 迁移完成，{} 行，耗时 {} ms", partition, rows, System.currentTimeMillis() - start);
+        }
+        client.execute("DROP TABLE IF EXISTS " + STAGING_TABLE);
+        log.info("访问日志迁移完成，旧表 {} 已不再使用，确认后可手动删除", AccessLogTables.LEGACY_RAW_TABLE);
+        return pending.size();
+    }
+
+    /**
+     * @param staged 输出：已写入中转表、尚未记录完成的分区及其行数
+     * @return 待搬迁的分区，已写入中转表的排在最前，中转表只容得下一个分区
+     */
+    private List<String> pendingPartitions(Map<String, Long> staged) {
+        Map<String, Integer> stages = new HashMap<>();
+        for (Map<String, Object> r : client.query("SELECT partition_id, rows, stage FROM " + PROGRESS_TABLE + " FINAL")) {
+            String partition = String.valueOf(r.get("partition_id"));
+            int stage = ((Number) r.get("stage")).intValue();
+            stages.put(partition, stage);
+            if (stage == STAGED) {
+                staged.put(partition, ((Number) r.get("rows")).longValue());
+            }
+        }
+        List<String> pending = new ArrayList<>(staged.keySet());
+        List<Map<String, Object>> rows = client.query(
+                "SELECT DISTINCT partition_id FROM system.parts WHERE database = 'default' AND table = 'access_log' AND active " +
+                        "ORDER BY partition_id DESC");
+        rows.stream()
+                .map(r -> String.valueOf(r.get("partition_id")))
+                .filter(p -> !stages.containsKey(p))
+                .forEach(pending::add);
+        return pending;
+    }
+
+    private boolean stagingHas(String partition) {
+        return client.query("SELECT DISTINCT partition_id FROM system.parts " +
+                        "WHERE database = 'default' AND table = 'access_log_v2_staging' AND active").stream()
+                .anyMatch(r -> partition.equals(String.valueOf(r.get("partition_id"))));
+    }
+
+    private long count(String sql) {
+        List<Map<String, Object>> rows = client.query(sql);
+        return rows.isEmpty() ? 0L : ((Number) rows.get(0).get("c")).longValue();
+    }
+}
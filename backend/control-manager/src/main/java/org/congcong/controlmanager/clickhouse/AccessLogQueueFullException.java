@@ -0,0 +1,10 @@
+package org.congcong.controlmanager.clickhouse;
+
+/**
+ * 访问日志写入积压超过容量上限，调用方应稍后重试
+ */
+public class AccessLogQueueFullException extends RuntimeException {
+    public AccessLogQueueFullException(int rows, int capacity) {
+        super("access log queue full: " + rows + " rows rejected, capacity " + capacity);
+    }
+}
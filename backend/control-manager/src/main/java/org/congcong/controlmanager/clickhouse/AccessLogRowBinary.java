@@ -0,0 +1,96 @@
+package org.congcong.controlmanager.clickhouse;
+
+import com.clickhouse.data.format.BinaryStreamUtils;
+import org.congcong.common.dto.AccessLog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 明细表（{@link AccessLogTables#RAW_TABLE}）的 RowBinary 行编码
+ * 列顺序与 {@link #COLUMNS} 一致，类型与 {@link AccessLogTableInitializer} 建表语句一致（app 列由表默认值计算，不写入）：
+ * DateTime64(3) 写毫秒 Int64，(LowCardinality)String 写 varint 长度 + UTF-8，UInt 系列按位宽小端写入并截断到取值范围。
+ */
+public final class AccessLogRowBinary {
+
+    public static final List<String> COLUMNS = List.of(
+            "ts", "request_id", "user_id", "username", "proxy_name", "inbound_id",
+            "client_ip", "client_port", "src_geo_country", "src_geo_city",
+            "original_target_host", "original_target_ip", "original_target_port",
+            "rewrite_target_host", "rewrite_target_port", "dst_geo_country", "dst_geo_city",
+            "inbound_protocol_type", "outbound_protocol_type", "route_policy_name", "route_policy_id",
+            "bytes_in", "bytes_out", "status", "error_code", "error_msg", "dns_answer_ips",
+            "request_duration_ms", "dns_duration_ms", "connect_duration_ms", "connect_target_duration_ms",
+            "sampled");
+
+    private static final long UINT32_MAX = 0xFFFF_FFFFL;
+
+    private AccessLogRowBinary() {
+    }
+
+    public static void write(OutputStream out, AccessLog l) throws IOException {
+        Instant ts = l.getTs() == null ? Instant.now() : l.getTs();
+        BinaryStreamUtils.writeInt64(out, ts.toEpochMilli());
+        writeString(out, l.getRequestId());
+        writeUInt64(out, l.getUserId());
+        writeString(out, l.getUsername());
+        writeString(out, l.getProxyName());
+        writeUInt64(out, l.getInboundId());
+        writeString(out, l.getClientIp());
+        writeUInt16(out, l.getClientPort());
+        writeString(out, l.getSrcGeoCountry());
+        writeString(out, l.getSrcGeoCity());
+        writeString(out, l.getOriginalTargetHost());
+        writeString(out, l.getOriginalTargetIP());
+        writeUInt16(out, l.getOriginalTargetPort());
+        writeString(out, l.getRewriteTargetHost());
+        writeUInt16(out, l.getRewriteTargetPort());
+        writeString(out, l.getDstGeoCountry());
+        writeString(out, l.getDstGeoCity());
+        writeString(out, l.getInboundProtocolType());
+        writeString(out, l.getOutboundProtocolType());
+        writeString(out, l.getRoutePolicyName());
+        writeUInt64(out, l.getRoutePolicyId());
+        writeUInt64(out, l.getBytesIn());
+        writeUInt64(out, l.getBytesOut());
+        BinaryStreamUtils.writeInt32(out, l.getStatus() == null ? 0 : l.getStatus());
+        writeString(out, l.getErrorCode());
+        // Nullable(String)：先写空标记
+        if (l.getErrorMsg() == null) {
+            BinaryStreamUtils.writeNull(out);
+        } else {
+            BinaryStreamUtils.writeNonNull(out);
+            BinaryStreamUtils.writeString(out, l.getErrorMsg());
+        }
+        List<String> answers = l.getDnsAnswerIps() == null ? List.of() : l.getDnsAnswerIps();
+        BinaryStreamUtils.writeVarInt(out, answers.size());
+        for (String answer : answers) {
+            writeString(out, answer);
+        }
+        writeUInt32(out, l.getRequestDurationMs());
+        writeUInt32(out, l.getDnsDurationMs());
+        writeUInt32(out, l.getConnectDurationMs());
+        writeUInt32(out, l.getConnectTargetDurationMs());
+        BinaryStreamUtils.writeUnsignedInt8(out, Boolean.TRUE.equals(l.getSampled()) ? 1 : 0);
+    }
+
+    private static void writeString(OutputStream out, String s) throws IOException {
+        BinaryStreamUtils.writeString(out, s == null ? "" : s);
+    }
+
+    private static void writeUInt64(OutputStream out, Long v) throws IOException {
+        BinaryStreamUtils.writeInt64(out, v == null || v < 0 ? 0L : v);
+    }
+
+    private static void writeUInt32(OutputStream out, Long v) throws IOException {
+        long value = v == null || v < 0 ? 0L : Math.min(v, UINT32_MAX);
+        BinaryStreamUtils.writeUnsignedInt32(out, value);
+    }
+
+    private static void writeUInt16(OutputStream out, Integer v) throws IOException {
+        int value = v == null || v < 0 ? 0 : Math.min(v, 0xFFFF);
+        BinaryStreamUtils.writeUnsignedInt16(out, value);
+    }
+}
@@ -15,7 +15,7 @@ public class AccessLogTableInitializer implements ApplicationRunner {
     @Override
     public void run(ApplicationArguments args) {
         String createTable = """
-                CREATE TABLE IF NOT EXISTS default.access_log
+                CREATE TABLE IF NOT EXISTS default.access_log_v2
                 (
                     ts                         DateTime64(3, 'UTC'),
                     request_id                 String,
@@ -52,14 +52,69 @@ public class AccessLogTableInitializer implements ApplicationRunner {
                     request_duration_ms        UInt32,
                     dns_duration_ms            UInt32,
                     connect_duration_ms        UInt32,
-                    connect_target_duration_ms UInt32
+                    connect_target_duration_ms UInt32,
+
+                    -- 1 表示该行已计入工作节点上报的分钟聚合，仅作为抽样明细，流量统计时排除
+                    sampled                    UInt8 DEFAULT 0,
+                    -- 写入时按目标主机算好的应用（一级可注册域名或 IP），TopN 不再逐行解析域名
+                    app                        LowCardinality(String) DEFAULT %s,
+
+                    INDEX idx_request_id request_id TYPE bloom_filter(0.001) GRANULARITY 1,
+                    INDEX idx_client_ip client_ip TYPE bloom_filter(0.01) GRANULARITY 4,
+                    INDEX idx_original_target_host original_target_host TYPE bloom_filter(0.01) GRANULARITY 4,
+                    INDEX idx_rewrite_target_host rewrite_target_host TYPE bloom_filter(0.01) GRANULARITY 4,
+
+                    -- 按用户筛选的列表和统计按 (user_id, ts) 读取
+                    PROJECTION p_user_ts (SELECT * ORDER BY (user_id, ts))
                 )
                 ENGINE = MergeTree
                 PARTITION BY toYYYYMM(ts)
-                ORDER BY (ts, request_id, inbound_id, user_id, route_policy_id)
+                ORDER BY (ts, request_id)
                 SETTINGS index_granularity = 8192
-                """;
+                """.formatted(AccessLogTables.APP_KEY_EXPR);
         client.execute(createTable);
-        client.execute("ALTER TABLE default.access_log ADD COLUMN IF NOT EXISTS dns_answer_ips Array(String)");
+
+        // 旧版明细表补齐列，供迁移和汇总回填读取
+        boolean legacy = client.tableExists(AccessLogTables.LEGACY_RAW_TABLE);
+        if (legacy) {
+            client.execute("ALTER TABLE default.access_log ADD COLUMN IF NOT EXISTS dns_answer_ips Array(String)");
+            client.execute("ALTER TABLE default.access_log ADD COLUMN IF NOT EXISTS sampled UInt8 DEFAULT 0");
+        }
+
+        // 工作节点边缘聚合上报的分钟汇总，同一维度组合的多次上报在合并时累加
+        String createRollupTable = """
+                CREATE TABLE IF NOT EXISTS default.access_log_rollup
+                (
+                    ts                     DateTime64(3, 'UTC'),
+                    user_id                UInt64,
+                    inbound_id             UInt64,
+                    route_policy_id        UInt64,
+                    original_target_host   LowCardinality(String),
+                    status                 Int32,
+
+                    username               LowCardinality(String),
+                    proxy_name             LowCardinality(String),
+                    inbound_protocol_type  LowCardinality(String),
+                    outbound_protocol_type LowCardinality(String),
+                    route_policy_name      LowCardinality(String),
+
+                    requests               UInt64,
+                    bytes_in               UInt64,
+                    bytes_out              UInt64,
+                    request_duration_ms    UInt64,
+                    sampled                UInt64
+                )
+                ENGINE = SummingMergeTree((requests, bytes_in, bytes_out, request_duration_ms, sampled))
+                PARTITION BY toYYYYMM(ts)
+                ORDER BY (ts, user_id, inbound_id, route_policy_id, original_target_host, status)
+                """;
+        client.execute(createRollupTable);
+
+        new TrafficRollupViews(client).ensure();
+
+        // 汇总视图建好后再搬旧数据，按分区移动不触发物化视图，不会重复计入汇总
+        if (legacy) {
+            new AccessLogMigration(client).start();
+        }
     }
 }
@@ -0,0 +1,115 @@
+package org.congcong.controlmanager.clickhouse;
+
+/**
+ * 访问日志相关表与查询片段
+ */
+public final class AccessLogTables {
+
+    /**
+     * 明细表与工作节点分钟聚合表，物化视图以这两张表为源
+     */
+    public static final String RAW_TABLE = "default.access_log_v2";
+    public static final String ROLLUP_TABLE = "default.access_log_rollup";
+
+    /**
+     * 旧版明细表，只在迁移到 {@link #RAW_TABLE} 期间读取
+     */
+    public static final String LEGACY_RAW_TABLE = "default.access_log";
+
+    /**
+     * 旧版明细表的搬迁进度，记为完成的分区已在 {@link #RAW_TABLE}
+     */
+    public static final String LEGACY_MIGRATION_TABLE = "default.access_log_migration";
+
+    /**
+     * 旧版明细表中尚未搬完的分区，迁移期间与新表一起读取；已记为完成的分区只从新表读。
+     * 写入中转表、MOVE PARTITION 完成前分区仍从旧表读，搬迁过程中查询不会漏掉该分区
+     * （MOVE 之后到记为完成之间的两条语句间隙内会重复读到）。
+     */
+    public static final String LEGACY_PENDING_FILTER =
+            "_partition_id NOT IN (SELECT partition_id FROM " + LEGACY_MIGRATION_TABLE + " WHERE stage = " + AccessLogMigration.DONE + ")";
+
+    /**
+     * 日志列表、计数用到的列（含筛选和排序列），新旧明细表都有
+     */
+    private static final String LOG_COLUMNS = "ts, request_id, user_id, username, proxy_name, inbound_id, " +
+            "client_ip, client_port, src_geo_country, src_geo_city, " +
+            "original_target_host, original_target_ip, original_target_port, rewrite_target_host, rewrite_target_port, " +
+            "dst_geo_country, dst_geo_city, inbound_protocol_type, outbound_protocol_type, route_policy_name, route_policy_id, " +
+            "bytes_in, bytes_out, status, error_code, error_msg, " +
+            "request_duration_ms, dns_duration_ms, connect_duration_ms, connect_target_duration_ms";
+
+    /**
+     * 迁移期间的明细数据源：新表 + 旧表中尚未搬迁的分区
+     */
+    public static final String RAW_WITH_LEGACY_SOURCE = "(" +
+            "SELECT " + LOG_COLUMNS + " FROM " + RAW_TABLE + " " +
+            "UNION ALL " +
+            "SELECT " + LOG_COLUMNS + " FROM " + LEGACY_RAW_TABLE + " WHERE " + LEGACY_PENDING_FILTER + ")";
+
+    /**
+     * 分钟流量汇总：(minute, user_id, inbound_id)，用于趋势图、总流量和入站流量
+     */
+    public static final String MINUTE_TABLE = "default.access_traffic_minute";
+
+    /**
+     * 按天 / 按月的 TopN 汇总：(period, dim, dim_key, user_id)，period 为展示时区（Asia/Shanghai）的当天 / 当月零点
+     */
+    public static final String DAILY_TABLE = "default.access_traffic_daily";
+    public static final String MONTHLY_TABLE = "default.access_traffic_monthly";
+
+    /**
+     * 按天 / 按月汇总表中 dim 列的取值，dim_key 的含义与 TopN 维度一致
+     */
+    public static final String DIM_APP = "app";
+    public static final String DIM_HOST = "host";
+    public static final String DIM_SRC_GEO = "src_geo";
+    public static final String DIM_DST_GEO = "dst_geo";
+    public static final String DIM_ROUTE = "route";
+
+    /**
+     * 应用维度：IP 原样保留，域名取一级可注册域名。明细表写入时预先算好存在 app 列，分钟聚合表查询时现算
+     */
+    public static final String APP_KEY_EXPR = "multiIf(" +
+            "IPv4StringToNumOrNull(coalesce(original_target_host, '')) IS NOT NULL, original_target_host, " +
+            "IPv6StringToNumOrNull(coalesce(original_target_host, '')) IS NOT NULL, original_target_host, " +
+            "cutToFirstSignificantSubdomain(lower(coalesce(original_target_host, ''))))";
+
+    public static final String USER_LABEL_EXPR = "multiIf(length(username)>0, username, toString(user_id))";
+    public static final String SRC_GEO_EXPR = "concat(coalesce(src_geo_country,''), '/', coalesce(src_geo_city,''))";
+    public static final String DST_GEO_EXPR = "concat(coalesce(dst_geo_country,''), '/', coalesce(dst_geo_city,''))";
+    public static final String ROUTE_EXPR = "concat(toString(route_policy_id), ':', coalesce(route_policy_name, ''))";
+
+    private static final String ROLLUP_TRAFFIC_SELECT =
+            "SELECT ts, user_id, username, inbound_id, original_target_host, " + APP_KEY_EXPR + " AS app, " +
+            "'' AS src_geo_country, '' AS src_geo_city, '' AS dst_geo_country, '' AS dst_geo_city, " +
+            "route_policy_id, route_policy_name, bytes_in, bytes_out, requests " +
+            "FROM " + ROLLUP_TABLE;
+
+    /**
+     * 流量统计的数据源：未被边缘聚合的明细 + 工作节点上报的分钟聚合。
+     * 抽样明细（sampled = 1）已计入分钟聚合，这里排除；每行带 requests 列，请求数统计用 sum(requests) 而不是 count()。
+     * 外层 WHERE 的时间、用户等条件会下推到两个子查询。
+     */
+    public static final String TRAFFIC_SOURCE = "(" +
+            rawTrafficSelect(RAW_TABLE, "app", "sampled = 0") +
+            " UNION ALL " + ROLLUP_TRAFFIC_SELECT + ")";
+
+    /**
+     * 迁移期间的流量统计数据源，在 {@link #TRAFFIC_SOURCE} 之外加上旧表中尚未搬迁的分区
+     */
+    public static final String TRAFFIC_WITH_LEGACY_SOURCE = "(" +
+            rawTrafficSelect(RAW_TABLE, "app", "sampled = 0") +
+            " UNION ALL " + rawTrafficSelect(LEGACY_RAW_TABLE, APP_KEY_EXPR + " AS app", "sampled = 0 AND " + LEGACY_PENDING_FILTER) +
+            " UNION ALL " + ROLLUP_TRAFFIC_SELECT + ")";
+
+    private static String rawTrafficSelect(String table, String app, String filter) {
+        return "SELECT ts, user_id, username, inbound_id, original_target_host, " + app + ", " +
+                "src_geo_country, src_geo_city, dst_geo_country, dst_geo_city, " +
+                "route_policy_id, route_policy_name, bytes_in, bytes_out, toUInt64(1) AS requests " +
+                "FROM " + table + " WHERE " + filter;
+    }
+
+    private AccessLogTables() {
+    }
+}
@@ -1,53 +1,271 @@
 package org.congcong.controlmanager.clickhouse;
 
-import lombok.RequiredArgsConstructor;
+import com.clickhouse.client.api.Client;
+import com.clickhouse.client.api.ServerException;
+import com.clickhouse.client.api.insert.InsertResponse;
+import com.clickhouse.client.api.insert.InsertSettings;
+import com.clickhouse.client.api.serde.DataSerializationException;
+import com.clickhouse.data.ClickHouseFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.congcong.common.dto.AccessLog;
+import org.congcong.common.dto.AccessLogRollup;
 import org.congcong.common.util.geo.GeoIPUtil;
 import org.congcong.common.util.geo.GeoLocation;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+/**
+ * 访问日志写入 ClickHouse
+ * <ul>
+ *     <li>HTTP 线程只占用容量许可并入队，GeoIP 补全和写库都在独立的刷写线程中完成；明细和工作节点上报的分钟聚合各有一条写入通道</li>
+ *     <li>队列容量按许可计（包含正在写入、写失败待重试的行），整批许可在 enqueueTimeoutMs 内拿不到时抛出
+ *     {@link AccessLogQueueFullException}，接口返回 503，工作节点保留这批日志退避重试</li>
+ *     <li>凑满 batchSize 或距本批第一行超过 maxDelayMs 即写入，不依赖后续请求触发</li>
+ *     <li>明细以 RowBinary 流式写入，不经过 JDBC 的逐列装箱</li>
+ *     <li>写入失败时按指数退避（最长 30 秒一次）一直重试同一批，期间不释放许可，积压反压到接口返回 503，
+ *     ClickHouse 长时间不可用时数据留在工作节点的磁盘缓冲中，恢复后照常送达</li>
+ *     <li>只有 ClickHouse 判定为数据错误（重试也不会成功）的批次，整批以 JSON Lines 写入 deadLetterDir 下的死信文件并释放许可，
+ *     不再阻塞后续批次；停止时仍未写入的数据已向工作节点确认过，同样写入死信文件</li>
+ * </ul>
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class ClickHouseAccessLogWriter {
 
-    private final ClickHouseJdbcClient client;
+    private static final String TABLE = AccessLogTables.RAW_TABLE;
+    private static final long IDLE_POLL_MS = 1000;
+    private static final long INITIAL_RETRY_MS = 1000;
+    private static final long MAX_RETRY_MS = 30_000;
+    private static final long INSERT_TIMEOUT_SECONDS = 60;
 
-    @Value("${logs.clickhouse.batchSize:3000}")
-    private int batchSize;
+    /**
+     * 数据本身有问题的 ClickHouse 错误码，同一批重试也不会成功：
+     * 解析失败、类型不匹配、列不存在、数值越界等
+     */
+    private static final Set<Integer> PERMANENT_ERROR_CODES = Set.of(
+            6,   // CANNOT_PARSE_TEXT
+            8,   // THERE_IS_NO_COLUMN
+            16,  // NO_SUCH_COLUMN_IN_TABLE
+            27,  // CANNOT_PARSE_INPUT_ASSERTION_FAILED
+            33,  // CANNOT_READ_ALL_DATA
+            41,  // CANNOT_PARSE_DATETIME
+            53,  // TYPE_MISMATCH
+            69,  // ARGUMENT_OUT_OF_BOUND
+            70,  // CANNOT_CONVERT_TYPE
+            72,  // CANNOT_PARSE_NUMBER
+            117  // INCORRECT_DATA
+    );
 
-    @Value("${logs.clickhouse.maxDelayMs:60000}")
-    private long maxDelayMs;
+    /**
+     * 一批数据的写入方式，测试时替换
+     */
+    interface BatchInserter<T> {
+        void insert(List<T> batch) throws Exception;
+    }
+
+    private final int batchSize;
+    private final long maxDelayMs;
+    private final long enqueueTimeoutMs;
+    private final int queueCapacity;
+    private final Path deadLetterDir;
+
+    private final ObjectMapper deadLetterMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final AtomicLong deadLetterSeq = new AtomicLong();
+    private final Lane<AccessLog> accessLogs;
+    private final Lane<AccessLogRollup> rollups;
+    private volatile boolean running;
+    private final CountDownLatch stopSignal = new CountDownLatch(1);
+
+    @Autowired
+    public ClickHouseAccessLogWriter(ClickHouseJdbcClient client,
+                                     Client clickHouseClient,
+                                     @Value("${logs.clickhouse.batchSize:3000}") int batchSize,
+                                     @Value("${logs.clickhouse.maxDelayMs:5000}") long maxDelayMs,
+                                     @Value("${logs.clickhouse.queueCapacity:100000}") int queueCapacity,
+                                     @Value("${logs.clickhouse.enqueueTimeoutMs:2000}") long enqueueTimeoutMs,
+                                     @Value("${logs.clickhouse.deadLetterDir:data/access-log-dead-letter}") String deadLetterDir) {
+        this(rowBinaryInserter(clickHouseClient), rollupInserter(client),
+                batchSize, maxDelayMs, queueCapacity, enqueueTimeoutMs, Paths.get(deadLetterDir));
+    }
+
+    ClickHouseAccessLogWriter(BatchInserter<AccessLog> inserter, BatchInserter<AccessLogRollup> rollupInserter,
+                              int batchSize, long maxDelayMs, int queueCapacity, long enqueueTimeoutMs,
+                              Path deadLetterDir) {
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelayMs = Math.max(1, maxDelayMs);
+        this.queueCapacity = Math.max(this.batchSize, queueCapacity);
+        this.enqueueTimeoutMs = Math.max(0, enqueueTimeoutMs);
+        this.deadLetterDir = deadLetterDir;
+        this.accessLogs = new Lane<>("access-log", inserter, this::parse);
+        this.rollups = new Lane<>("access-log-rollup", rollupInserter, r -> { });
+    }
+
+    private static BatchInserter<AccessLog> rowBinaryInserter(Client clickHouseClient) {
+        return batch -> {
+            InsertSettings settings = new InsertSettings();
+            try (InsertResponse ignored = clickHouseClient.insert(TABLE, AccessLogRowBinary.COLUMNS, out -> {
+                for (AccessLog l : batch) {
+                    AccessLogRowBinary.write(out, l);
+                }
+            }, ClickHouseFormat.RowBinary, settings).get(INSERT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                // 写入完成
+            }
+        };
+    }
+
+    private static BatchInserter<AccessLogRollup> rollupInserter(ClickHouseJdbcClient client) {
+        String sql = "INSERT INTO " + AccessLogTables.ROLLUP_TABLE + " (" +
+                "ts, user_id, inbound_id, route_policy_id, original_target_host, status, " +
+                "username, proxy_name, inbound_protocol_type, outbound_protocol_type, route_policy_name, " +
+                "requests, bytes_in, bytes_out, request_duration_ms, sampled" +
+                ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        return batch -> {
+            List<List<Object>> params = new ArrayList<>(batch.size());
+            for (AccessLogRollup r : batch) {
+                List<Object> p = new ArrayList<>(16);
+                p.add(toTimestamp(r.getTs()));
+                p.add(nullToZero(r.getUserId()));
+                p.add(nullToZero(r.getInboundId()));
+                p.add(nullToZero(r.getRoutePolicyId()));
+                p.add(nullToEmpty(r.getOriginalTargetHost()));
+                p.add(nullToZero(r.getStatus()));
+                p.add(nullToEmpty(r.getUsername()));
+                p.add(nullToEmpty(r.getProxyName()));
+                p.add(nullToEmpty(r.getInboundProtocolType()));
+                p.add(nullToEmpty(r.getOutboundProtocolType()));
+                p.add(nullToEmpty(r.getRoutePolicyName()));
+                p.add(nullToZero(r.getRequests()));
+                p.add(nullToZero(r.getBytesIn()));
+                p.add(nullToZero(r.getBytesOut()));
+                p.add(nullToZero(r.getRequestDurationMs()));
+                p.add(nullToZero(r.getSampled()));
+                params.add(p);
+            }
+            client.batchExecute(sql, params);
+        };
+    }
 
-    private final ConcurrentLinkedQueue<AccessLog> buffer = new ConcurrentLinkedQueue<>();
-    private final AtomicInteger bufferSize = new AtomicInteger(0);
-    private final ReentrantLock flushLock = new ReentrantLock();
-    private volatile long firstBufferedAt = 0L;
+    @PostConstruct
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        accessLogs.start();
+        rollups.start();
+    }
+
+    /**
+     * 停止前把已入队的数据写完；写库失败时只再试一次，之后转入死信文件（这些数据已向工作节点确认，不能丢弃）
+     */
+    @PreDestroy
+    public void stop() {
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+        }
+        stopSignal.countDown();
+        accessLogs.stop();
+        rollups.stop();
+    }
 
+    /**
+     * 整批入队，要么全部接收要么全部拒绝，避免工作节点重试时重复写入
+     * @return 接收的条数
+     * @throws AccessLogQueueFullException 积压超过容量上限
+     */
     public int ingest(List<AccessLog> logs) {
-        if (logs == null || logs.isEmpty()) return 0;
-        long now = System.currentTimeMillis();
-        for (AccessLog l : logs) {
-            parse(l);
-            buffer.add(l);
-            int size = bufferSize.incrementAndGet();
-            if (size == 1) firstBufferedAt = now;
+        return accessLogs.ingest(logs);
+    }
+
+    /**
+     * 工作节点上报的分钟聚合，与明细一样整批入队后由刷写线程写入
+     * @return 接收的条数
+     * @throws AccessLogQueueFullException 积压超过容量上限
+     */
+    public int writeRollups(List<AccessLogRollup> rollupList) {
+        return rollups.ingest(rollupList);
+    }
+
+    /**
+     * 当前积压（已接收未写入）的明细行数
+     */
+    public int pending() {
+        return accessLogs.pending();
+    }
+
+    /**
+     * 当前积压（已接收未写入）的分钟聚合行数
+     */
+    public int pendingRollups() {
+        return rollups.pending();
+    }
+
+    /**
+     * 判断写入失败是否为数据错误：ClickHouse 返回数据类错误码，或客户端无法序列化这批数据
+     */
+    static boolean isPermanent(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ServerException se) {
+                return PERMANENT_ERROR_CODES.contains(se.getCode());
+            }
+            if (t instanceof SQLException se && se.getErrorCode() > 0) {
+                return PERMANENT_ERROR_CODES.contains(se.getErrorCode());
+            }
+            if (t instanceof DataSerializationException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
         }
-        if (shouldFlush(now)) {
-            return flush();
+        return false;
+    }
+
+    /**
+     * 把写不进去的一批数据写入死信文件，每批一个文件，每行一条 JSON；写文件也失败时只能记录日志丢弃
+     */
+    private void deadLetter(String name, List<?> batch, String reason) {
+        Path file = deadLetterDir.resolve(name + "-" + System.currentTimeMillis() + "-" + deadLetterSeq.incrementAndGet() + ".jsonl");
+        try {
+            Files.createDirectories(deadLetterDir);
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (Object row : batch) {
+                    out.write(deadLetterMapper.writeValueAsString(row));
+                    out.newLine();
+                }
+            }
+            log.error("{} rows of {} moved to dead letter file {}: {}", batch.size(), name, file, reason);
+        } catch (IOException e) {
+            log.error("Dropping {} rows of {}, dead letter file {} not writable ({}): {}",
+                    batch.size(), name, file, e.toString(), reason);
         }
-        return 0;
     }
 
     private void parse(AccessLog accessLog) {
@@ -69,91 +287,157 @@ public class ClickHouseAccessLogWriter {
             accessLog.setSrcGeoCity(city);
             accessLog.setSrcGeoCountry(country);
         }
-
-
     }
 
-    private boolean shouldFlush(long now) {
-        if (bufferSize.get() >= Math.max(1, batchSize)) return true;
-        if (bufferSize.get() > 0 && (now - firstBufferedAt) >= Math.max(1, maxDelayMs)) return true;
-        return false;
+    private static Timestamp toTimestamp(Instant instant) {
+        if (instant == null) return Timestamp.from(Instant.now());
+        return Timestamp.from(instant);
     }
 
-    private int flush() {
-        if (!flushLock.tryLock()) return 0;
-        long startTime = System.currentTimeMillis();
-        int size = 0;
-        try {
-            size = bufferSize.get();
-            if (size <= 0) return 0;
-            List<List<Object>> params = new ArrayList<>(size);
-            AccessLog l;
-            while ((l = buffer.poll()) != null) {
-                params.add(toParams(l));
-            }
-            bufferSize.set(0);
-            firstBufferedAt = 0L;
-            String sql = "INSERT INTO default.access_log (" +
-                    "ts, request_id, user_id, username, proxy_name, inbound_id, " +
-                    "client_ip, client_port, src_geo_country, src_geo_city, " +
-                    "original_target_host, original_target_ip, original_target_port, " +
-                    "rewrite_target_host, rewrite_target_port, dst_geo_country, dst_geo_city, " +
-                    "inbound_protocol_type, outbound_protocol_type, route_policy_name, route_policy_id, " +
-                    "bytes_in, bytes_out, status, error_code, error_msg, dns_answer_ips, " +
-                    "request_duration_ms, dns_duration_ms, connect_duration_ms, connect_target_duration_ms" +
-                    ") VALUES (" +
-                    "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?" +
-                    ")";
-            client.batchExecute(sql, params);
-            return params.size();
-        } finally {
-            log.info("write {} cost time {} ms", size, System.currentTimeMillis() - startTime);
-            flushLock.unlock();
+    private static long nullToZero(Long v) { return v == null ? 0L : v; }
+    private static int nullToZero(Integer v) { return v == null ? 0 : v; }
+    private static String nullToEmpty(String s) { return s == null ? "" : s; }
+
+    /**
+     * 一条写入通道：容量许可、队列和刷写线程
+     */
+    private final class Lane<T> {
+
+        private final String name;
+        private final BatchInserter<T> inserter;
+        private final Consumer<T> prepare;
+        private final BlockingQueue<T> queue = new LinkedBlockingQueue<>();
+        private final Semaphore capacity = new Semaphore(queueCapacity);
+        private Thread flusher;
+
+        Lane(String name, BatchInserter<T> inserter, Consumer<T> prepare) {
+            this.name = name;
+            this.inserter = inserter;
+            this.prepare = prepare;
         }
-    }
 
-    private List<Object> toParams(AccessLog l) {
-        List<Object> p = new ArrayList<>(31);
-        p.add(toTimestamp(l.getTs()));
-        p.add(l.getRequestId());
-        p.add(nullToZero(l.getUserId()));
-        p.add(nullToEmpty(l.getUsername()));
-        p.add(nullToEmpty(l.getProxyName()));
-        p.add(nullToZero(l.getInboundId()));
-        p.add(nullToEmpty(l.getClientIp()));
-        p.add(nullToZero(l.getClientPort()));
-        p.add(nullToEmpty(l.getSrcGeoCountry()));
-        p.add(nullToEmpty(l.getSrcGeoCity()));
-        p.add(nullToEmpty(l.getOriginalTargetHost()));
-        p.add(nullToEmpty(l.getOriginalTargetIP()));
-        p.add(nullToZero(l.getOriginalTargetPort()));
-        p.add(nullToEmpty(l.getRewriteTargetHost()));
-        p.add(nullToZero(l.getRewriteTargetPort()));
-        p.add(nullToEmpty(l.getDstGeoCountry()));
-        p.add(nullToEmpty(l.getDstGeoCity()));
-        p.add(nullToEmpty(l.getInboundProtocolType()));
-        p.add(nullToEmpty(l.getOutboundProtocolType()));
-        p.add(nullToEmpty(l.getRoutePolicyName()));
-        p.add(nullToZero(l.getRoutePolicyId()));
-        p.add(nullToZero(l.getBytesIn()));
-        p.add(nullToZero(l.getBytesOut()));
-        p.add(nullToZero(l.getStatus()));
-        p.add(l.getErrorCode());
-        p.add(l.getErrorMsg());
-        p.add(l.getDnsAnswerIps() == null ? List.of() : l.getDnsAnswerIps());
-        p.add(nullToZero(l.getRequestDurationMs()));
-        p.add(nullToZero(l.getDnsDurationMs()));
-        p.add(nullToZero(l.getConnectDurationMs()));
-        p.add(nullToZero(l.getConnectTargetDurationMs()));
-        return p;
-    }
-
-    private Timestamp toTimestamp(Instant instant) {
-        if (instant == null) return Timestamp.from(Instant.now());
-        return Timestamp.from(instant);
-    }
+        void start() {
+            flusher = new Thread(this::flushLoop, "clickhouse-" + name + "-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+
+        void stop() {
+            Thread t = flusher;
+            flusher = null;
+            if (t == null) return;
+            try {
+                t.join(INSERT_TIMEOUT_SECONDS * 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<T> left = new ArrayList<>();
+            queue.drainTo(left);
+            if (!left.isEmpty()) {
+                deadLetter(name, left, "writer stopped before they were written");
+                capacity.release(left.size());
+            }
+        }
 
-    private long nullToZero(Long v) { return v == null ? 0L : v; }
-    private int nullToZero(Integer v) { return v == null ? 0 : v; }
-    private String nullToEmpty(String s) { return s == null ? "" : s; }
+        int ingest(List<T> rows) {
+            if (rows == null || rows.isEmpty()) return 0;
+            int n = rows.size();
+            if (n > queueCapacity) {
+                throw new AccessLogQueueFullException(n, queueCapacity);
+            }
+            boolean acquired;
+            try {
+                acquired = capacity.tryAcquire(n, enqueueTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                throw new AccessLogQueueFullException(n, queueCapacity);
+            }
+            queue.addAll(rows);
+            return n;
+        }
+
+        int pending() {
+            return queueCapacity - capacity.availablePermits();
+        }
+
+        private void flushLoop() {
+            List<T> batch = new ArrayList<>(batchSize);
+            long deadline = 0L;
+            while (true) {
+                boolean stopping = !running;
+                if (batch.isEmpty()) {
+                    if (stopping && queue.isEmpty()) {
+                        break;
+                    }
+                    T first = stopping ? queue.poll() : poll(IDLE_POLL_MS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    deadline = System.currentTimeMillis() + maxDelayMs;
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+                long remaining = deadline - System.currentTimeMillis();
+                if (batch.size() < batchSize && !stopping && remaining > 0) {
+                    // 分段等待，停止时最多延迟 IDLE_POLL_MS
+                    T next = poll(Math.min(remaining, IDLE_POLL_MS));
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                    continue;
+                }
+                writeWithRetry(batch);
+                batch.clear();
+            }
+        }
+
+        private T poll(long timeoutMs) {
+            try {
+                return queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+
+        private void writeWithRetry(List<T> batch) {
+            for (T row : batch) {
+                prepare.accept(row);
+            }
+            long retryMs = INITIAL_RETRY_MS;
+            for (int attempt = 1; ; attempt++) {
+                long startTime = System.currentTimeMillis();
+                try {
+                    inserter.insert(batch);
+                    log.info("write {} {} rows cost time {} ms", batch.size(), name, System.currentTimeMillis() - startTime);
+                    capacity.release(batch.size());
+                    return;
+                } catch (Exception e) {
+                    String reason = e.toString();
+                    if (isPermanent(e)) {
+                        deadLetter(name, batch, "rejected by ClickHouse: " + reason);
+                        capacity.release(batch.size());
+                        return;
+                    }
+                    if (!running) {
+                        deadLetter(name, batch, "writer stopped after " + attempt + " failed attempts: " + reason);
+                        capacity.release(batch.size());
+                        return;
+                    }
+                    // 临时错误不转死信，继续占用许可，接口返回 503，由工作节点的磁盘缓冲保留后续数据
+                    log.warn("Failed to write {} {} rows (attempt {}), retrying in {} ms ({} pending): {}",
+                            batch.size(), name, attempt, retryMs, pending(), reason);
+                }
+                try {
+                    // 停止时提前醒来，再试最后一次
+                    stopSignal.await(retryMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                retryMs = Math.min(retryMs * 2, MAX_RETRY_MS);
+            }
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package org.congcong.controlmanager.clickhouse;
 
+import com.clickhouse.client.api.Client;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -8,6 +9,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import javax.sql.DataSource;
+import java.net.URI;
 
 @Configuration
 @ConditionalOnProperty(name = "logs.persistence", havingValue = "clickhouse")
@@ -38,4 +40,35 @@ public class ClickHouseConfig {
         }
         return new HikariDataSource(cfg);
     }
+
+    /**
+     * 访问日志批量写入使用的 HTTP 客户端，按 RowBinary 流式插入；地址与账号沿用 JDBC 配置
+     */
+    @Bean(name = "clickHouseClient", destroyMethod = "close")
+    public Client clickHouseClient(ClickHouseProperties props) {
+        URI uri = httpUri(props.getUrl());
+        String database = uri.getPath() == null || uri.getPath().length() <= 1 ? "default" : uri.getPath().substring(1);
+        Client.Builder builder = new Client.Builder()
+                .addEndpoint(uri.getScheme() + "://" + uri.getHost() + ":" + (uri.getPort() > 0 ? uri.getPort() : 8123))
+                .setDefaultDatabase(database)
+                .setUsername(props.getUsername() == null ? "default" : props.getUsername())
+                .setPassword(props.getPassword() == null ? "" : props.getPassword())
+                .compressClientRequest(true);
+        return builder.build();
+    }
+
+    /**
+     * jdbc:ch://host:8123/db、jdbc:clickhouse:https://host:8443/db 等 JDBC 地址转为 HTTP 地址
+     */
+    static URI httpUri(String jdbcUrl) {
+        String s = jdbcUrl.trim();
+        if (s.startsWith("jdbc:")) {
+            s = s.substring("jdbc:".length());
+        }
+        s = s.replaceFirst("^(ch|clickhouse):", "");
+        if (!s.startsWith("http:") && !s.startsWith("https:")) {
+            s = "http:" + s;
+        }
+        return URI.create(s);
+    }
 }
\ No newline at end of file
@@ -71,6 +71,18 @@ public class ClickHouseJdbcClient {
         }
     }
 
+    /**
+     * @param qualifiedName 形如 default.access_log 的表名（视图同样适用）
+     */
+    public boolean tableExists(String qualifiedName) {
+        int dot = qualifiedName.indexOf('.');
+        String database = dot < 0 ? "default" : qualifiedName.substring(0, dot);
+        String name = qualifiedName.substring(dot + 1);
+        List<Map<String, Object>> rows = query(
+                "SELECT count() AS c FROM system.tables WHERE database = ? AND name = ?", database, name);
+        return !rows.isEmpty() && ((Number) rows.get(0).get("c")).longValue() > 0;
+    }
+
     private void setParams(PreparedStatement stmt, Object... params) throws SQLException {
         if (params == null) return;
         for (int i = 0; i < params.length; i++) {
@@ -0,0 +1,250 @@
+package org.congcong.controlmanager.clickhouse;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.congcong.controlmanager.clickhouse.AccessLogTables.*;
+
+/**
+ * 流量统计汇总表及其物化视图
+ * <ul>
+ *     <li>分钟表、按天表、按月表均为 SummingMergeTree，由明细表（排除抽样行）和工作节点分钟聚合表各一个物化视图写入，插入时同步汇总</li>
+ *     <li>按天 / 按月表用 ARRAY JOIN 把一行日志展开到各个 TopN 维度，period 按展示时区（Asia/Shanghai）切分</li>
+ *     <li>物化视图只接收创建时刻之后的数据，创建时刻之前的存量由一次性回填补齐。回填进度按 (视图, 界) 记在
+ *     {@link #BACKFILL_TABLE}：先清空中转表再写入存量，最后按分区 MOVE 到汇总表。
+ *     任一步骤中途退出，重启后从记录的阶段继续，不会漏算或重复累加</li>
+ * </ul>
+ */
+@Slf4j
+final class TrafficRollupViews {
+
+    static final String BACKFILL_TABLE = "default.access_traffic_backfill";
+
+    /**
+     * 回填阶段：视图已按界创建、存量已写入中转表、中转表已全部移入汇总表
+     */
+    static final int VIEW_CREATED = 0;
+    static final int STAGED = 1;
+    static final int DONE = 2;
+
+    private static final String DISPLAY_ZONE = "Asia/Shanghai";
+    private static final DateTimeFormatter CUTOFF_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneOffset.UTC);
+
+    private final ClickHouseJdbcClient client;
+
+    TrafficRollupViews(ClickHouseJdbcClient client) {
+        this.client = client;
+    }
+
+    void ensure() {
+        client.execute("""
+                CREATE TABLE IF NOT EXISTS %s
+                (
+                    view        String,
+                    cutoff      DateTime64(3, 'UTC'),
+                    stage       UInt8,
+                    updated_at  DateTime DEFAULT now()
+                )
+                ENGINE = ReplacingMergeTree(stage)
+                ORDER BY (view, cutoff)
+                """.formatted(BACKFILL_TABLE));
+        client.execute("""
+                CREATE TABLE IF NOT EXISTS %s
+                (
+                    minute      DateTime64(3, 'UTC'),
+                    user_id     UInt64,
+                    inbound_id  UInt64,
+                    requests    UInt64,
+                    bytes_in    UInt64,
+                    bytes_out   UInt64
+                )
+                ENGINE = SummingMergeTree((requests, bytes_in, bytes_out))
+                PARTITION BY toYYYYMM(minute)
+                ORDER BY (minute, user_id, inbound_id)
+                """.formatted(MINUTE_TABLE));
+        client.execute(periodTable(DAILY_TABLE, "toYYYYMM(period)"));
+        client.execute(periodTable(MONTHLY_TABLE, "toYear(period)"));
+
+        ensureViews(MINUTE_TABLE, TrafficRollupViews::minuteSelect);
+        ensureViews(DAILY_TABLE, source -> periodSelect(source,
+                "toDateTime64(toDate(ts, '" + DISPLAY_ZONE + "'), 3, '" + DISPLAY_ZONE + "')"));
+        ensureViews(MONTHLY_TABLE, source -> periodSelect(source,
+                "toDateTime64(toStartOfMonth(ts, '" + DISPLAY_ZONE + "'), 3, '" + DISPLAY_ZONE + "')"));
+    }
+
+    /**
+     * 旧版明细表上的视图已经把旧表数据计入汇总，换成新表上的视图后删除；
+     * 汇总表首次创建、旧表仍在时，旧表的存量随新视图一起回填。
+     * 先建新视图再删旧视图，中途失败重启时不会把旧表重复回填。
+     */
+    private void ensureViews(String target, Function<Source, String> select) {
+        String legacyView = viewName(target, Source.LEGACY_LOG);
+        boolean legacyFed = client.tableExists(legacyView);
+        List<String> backfill = new ArrayList<>();
+        if (!legacyFed && client.tableExists(LEGACY_RAW_TABLE)) {
+            backfill.add(select.apply(Source.LEGACY_LOG));
+        }
+        ensureView(viewName(target, Source.LOG), target, select.apply(Source.LOG), backfill);
+        if (legacyFed) {
+            client.execute("DROP VIEW IF EXISTS " + legacyView);
+        }
+        ensureView(viewName(target, Source.ROLLUP), target, select.apply(Source.ROLLUP), List.of());
+    }
+
+    private static String periodTable(String table, String partition) {
+        // username 不在排序键中，合并时任取一个，只用于展示
+        return """
+                CREATE TABLE IF NOT EXISTS %s
+                (
+                    period      DateTime64(3, 'UTC'),
+                    dim         LowCardinality(String),
+                    dim_key     String,
+                    user_id     UInt64,
+                    username    LowCardinality(String),
+                    requests    UInt64,
+                    bytes_in    UInt64,
+                    bytes_out   UInt64
+                )
+                ENGINE = SummingMergeTree((requests, bytes_in, bytes_out))
+                PARTITION BY %s
+                ORDER BY (period, dim, dim_key, user_id)
+                """.formatted(table, partition);
+    }
+
+    /**
+     * 视图不存在时以当前时刻为界创建，再把界之前的存量写入目标表。
+     * 创建后才到达、且时间早于界的日志（工作节点长时间积压后补发）不会计入汇总。
+     * 存量先整体写入中转表，写入前清空，重做也只是重写一遍；中转表各分区 MOVE 到目标表后即从中转表消失，
+     * 重启后只移剩下的分区。目标表同时由其他视图写入，不能按时间范围清理，所以不直接往目标表回填。
+     * 没有回填记录的已有视图由旧版本创建，创建时已同步回填完毕。
+     * @param legacySelects 不再写入的旧表，整表回填
+     */
+    private void ensureView(String view, String target, String select, List<String> legacySelects) {
+        Backfill backfill = lastBackfill(view);
+        if (client.tableExists(view)) {
+            if (backfill == null || backfill.stage() == DONE) {
+                return;
+            }
+            log.info("物化视图 {} 的回填未完成（阶段 {}，界 {}），继续回填", view, backfill.stage(), backfill.cutoff());
+        } else {
+            // 先记下界再建视图；建视图前退出的话重启后换一个新的界
+            backfill = new Backfill(CUTOFF_FORMAT.format(Instant.now()), VIEW_CREATED);
+            mark(view, backfill.cutoff(), VIEW_CREATED);
+            client.execute("CREATE MATERIALIZED VIEW IF NOT EXISTS " + view + " TO " + target +
+                    " AS " + select + " AND ts >= " + cutoffExpr(backfill.cutoff()));
+        }
+        long start = System.currentTimeMillis();
+        String staging = stagingTable(view);
+        if (backfill.stage() < STAGED) {
+            client.execute("CREATE TABLE IF NOT EXISTS " + staging + " AS " + target);
+            client.execute("TRUNCATE TABLE " + staging);
+            client.execute("INSERT INTO " + staging + " " + select + " AND ts < " + cutoffExpr(backfill.cutoff()));
+            for (String legacySelect : legacySelects) {
+                client.execute("INSERT INTO " + staging + " " + legacySelect);
+            }
+            mark(view, backfill.cutoff(), STAGED);
+        }
+        for (String partition : activePartitions(staging)) {
+            client.execute("ALTER TABLE " + staging + " MOVE PARTITION ID '" + partition + "' TO TABLE " + target);
+        }
+        mark(view, backfill.cutoff(), DONE);
+        client.execute("DROP TABLE IF EXISTS " + staging);
+        log.info("物化视图 {} 回填历史数据完成，界 {}，耗时 {} ms", view, backfill.cutoff(), System.currentTimeMillis() - start);
+    }
+
+    private Backfill lastBackfill(String view) {
+        List<Map<String, Object>> rows = client.query("SELECT toString(cutoff) AS cutoff, stage FROM " + BACKFILL_TABLE +
+                " FINAL WHERE view = ? ORDER BY cutoff DESC LIMIT 1", view);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> row = rows.get(0);
+        return new Backfill(String.valueOf(row.get("cutoff")), ((Number) row.get("stage")).intValue());
+    }
+
+    private void mark(String view, String cutoff, int stage) {
+        client.execute("INSERT INTO " + BACKFILL_TABLE + " (view, cutoff, stage) VALUES (?, " + cutoffExpr(cutoff) + ", ?)",
+                view, stage);
+    }
+
+    private List<String> activePartitions(String table) {
+        int dot = table.indexOf('.');
+        return client.query("SELECT DISTINCT partition_id FROM system.parts WHERE database = ? AND table = ? AND active",
+                        table.substring(0, dot), table.substring(dot + 1)).stream()
+                .map(r -> String.valueOf(r.get("partition_id")))
+                .toList();
+    }
+
+    private static String cutoffExpr(String cutoff) {
+        return "toDateTime64('" + cutoff + "', 3, 'UTC')";
+    }
+
+    static String stagingTable(String view) {
+        return view + "_backfill";
+    }
+
+    static String viewName(String target, Source source) {
+        return target + "_from_" + source.suffix + "_mv";
+    }
+
+    private static String minuteSelect(Source source) {
+        return "SELECT toStartOfMinute(ts) AS minute, user_id, inbound_id, " +
+                source.requests + ", bytes_in, bytes_out " +
+                "FROM " + source.table + " WHERE " + source.filter;
+    }
+
+    private static String periodSelect(Source source, String periodExpr) {
+        return "SELECT " + periodExpr + " AS period, d.1 AS dim, d.2 AS dim_key, user_id, username, " +
+                source.requests + ", bytes_in, bytes_out " +
+                "FROM " + source.table + " ARRAY JOIN [" +
+                dim(DIM_APP, source.app) + ", " +
+                dim(DIM_HOST, "original_target_host") + ", " +
+                dim(DIM_SRC_GEO, source.srcGeo) + ", " +
+                dim(DIM_DST_GEO, source.dstGeo) + ", " +
+                dim(DIM_ROUTE, ROUTE_EXPR) + "] AS d " +
+                "WHERE " + source.filter;
+    }
+
+    private static String dim(String name, String expr) {
+        return "('" + name + "', CAST(" + expr + " AS String))";
+    }
+
+    /**
+     * 物化视图的数据源：明细表排除已计入分钟聚合的抽样行；分钟聚合表没有地理位置列和预先算好的 app 列。
+     * requests 直接给出 select 项，同名列上再起同名别名会被当成循环别名
+     */
+    private record Backfill(String cutoff, int stage) {
+    }
+
+    enum Source {
+        LOG("log_v2", RAW_TABLE, "sampled = 0", "toUInt64(1) AS requests", "app", SRC_GEO_EXPR, DST_GEO_EXPR),
+        LEGACY_LOG("log", LEGACY_RAW_TABLE, "sampled = 0", "toUInt64(1) AS requests", APP_KEY_EXPR, SRC_GEO_EXPR, DST_GEO_EXPR),
+        ROLLUP("rollup", ROLLUP_TABLE, "1 = 1", "requests", APP_KEY_EXPR, "'/'", "'/'");
+
+        final String suffix;
+        final String table;
+        final String filter;
+        final String requests;
+        final String app;
+        final String srcGeo;
+        final String dstGeo;
+
+        Source(String suffix, String table, String filter, String requests, String app, String srcGeo, String dstGeo) {
+            this.suffix = suffix;
+            this.table = table;
+            this.filter = filter;
+            this.requests = requests;
+            this.app = app;
+            this.srcGeo = srcGeo;
+            this.dstGeo = dstGeo;
+        }
+    }
+}
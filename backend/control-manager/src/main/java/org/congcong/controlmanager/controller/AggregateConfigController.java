@@ -5,11 +5,16 @@ import lombok.extern.slf4j.Slf4j;
 import org.congcong.common.dto.AggregateConfigResponse;
 import org.congcong.controlmanager.service.AggregateConfigCacheService;
 import org.congcong.controlmanager.service.AggregateConfigService;
+import org.congcong.controlmanager.service.ruleset.RuleSetArtifactService;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+
 /**
  * 聚合配置控制器
  * 实现配置分发机制，支持HTTP 304缓存机制
@@ -22,23 +27,26 @@ public class AggregateConfigController {
 
 
     private final AggregateConfigCacheService aggregateConfigCacheService;
+    private final RuleSetArtifactService ruleSetArtifactService;
 
     /**
      * 获取聚合配置
      * 支持HTTP 304缓存机制
      * 
      * @param ifNoneMatch 客户端提供的ETag值，用于缓存验证
+     * @param ruleSetArtifacts 客户端是否支持按摘要下载规则集产物，旧版 worker 不携带该请求头，仍下发规则项
      * @return 聚合配置响应或304状态码
      */
     @GetMapping("/aggregate")
     public ResponseEntity<AggregateConfigResponse> getAggregateConfig(
-            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = AggregateConfigResponse.RULE_SET_ARTIFACTS_HEADER, defaultValue = "false") boolean ruleSetArtifacts) {
         
         try {
             log.debug("获取聚合配置请求，If-None-Match: {}", ifNoneMatch);
             
             // 获取当前配置哈希值
-            AggregateConfigResponse aggregateConfig = aggregateConfigCacheService.getAggregateConfig();
+            AggregateConfigResponse aggregateConfig = aggregateConfigCacheService.getAggregateConfig(ruleSetArtifacts);
 
 
             String currentConfigHash = aggregateConfig.getConfigHash();
@@ -67,4 +75,26 @@ public class AggregateConfigController {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * 按摘要下载规则集编译产物
+     * 产物内容由摘要唯一确定，允许客户端永久缓存
+     *
+     * @param digest 聚合配置中规则集的 artifactDigest
+     * 该接口与聚合配置一样不经管理员认证，只查询内存中已编译的产物，不会因请求触发数据库查询或编译
+     *
+     * @return 产物字节，摘要未知时返回404
+     */
+    @GetMapping("/rule-sets/{digest}")
+    public ResponseEntity<byte[]> getRuleSetArtifact(@PathVariable String digest) {
+        if (!digest.matches("[0-9a-f]{64}")) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ruleSetArtifactService.find(digest)
+                .map(bytes -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                        .body(bytes))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+}
@@ -3,14 +3,21 @@ package org.congcong.controlmanager.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.congcong.common.dto.AccessLog;
+import org.congcong.common.dto.AccessLogRollup;
 import org.congcong.common.dto.AuthLog;
 import org.congcong.controlmanager.dto.*;
+import org.congcong.common.util.LogWireFormat;
+import org.congcong.controlmanager.service.AccessLogBatchDecoder;
 import org.congcong.controlmanager.service.LogService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.HashMap;
@@ -25,6 +32,7 @@ import java.util.Map;
 public class LogController {
 
     private final LogService logService;
+    private final AccessLogBatchDecoder accessLogBatchDecoder;
 
     /**
      * 接收访问日志批量
@@ -37,6 +45,59 @@ public class LogController {
         return ResponseEntity.status(HttpStatus.ACCEPTED).body(resp);
     }
 
+    /**
+     * 接收 Smile 编码（通常 gzip 压缩）的访问日志批量，新版工作节点默认使用；边解压边解码，整批解码成功后一次落库
+     */
+    @PostMapping(value = "/access", consumes = LogWireFormat.SMILE_CONTENT_TYPE)
+    public ResponseEntity<Map<String, Object>> ingestAccessLogsSmile(
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            InputStream body) {
+        int saved;
+        try {
+            saved = accessLogBatchDecoder.decode(body, contentEncoding, logService::saveAccessLogs);
+        } catch (AccessLogBatchDecoder.UnsupportedEncodingException e) {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, e.getMessage());
+        } catch (IOException e) {
+            log.warn("Invalid smile access log batch: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid access log batch");
+        }
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("saved", saved);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(resp);
+    }
+
+    /**
+     * 接收工作节点边缘聚合的访问日志分钟汇总
+     */
+    @PostMapping("/access/rollup")
+    public ResponseEntity<Map<String, Object>> ingestAccessLogRollups(@RequestBody List<AccessLogRollup> rollups) {
+        int saved = logService.saveAccessLogRollups(rollups);
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("saved", saved);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(resp);
+    }
+
+    /**
+     * 接收 Smile 编码的访问日志分钟汇总
+     */
+    @PostMapping(value = "/access/rollup", consumes = LogWireFormat.SMILE_CONTENT_TYPE)
+    public ResponseEntity<Map<String, Object>> ingestAccessLogRollupsSmile(
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            InputStream body) {
+        int saved;
+        try {
+            saved = accessLogBatchDecoder.decode(body, contentEncoding, AccessLogRollup.class, logService::saveAccessLogRollups);
+        } catch (AccessLogBatchDecoder.UnsupportedEncodingException e) {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, e.getMessage());
+        } catch (IOException e) {
+            log.warn("Invalid smile access log rollup batch: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid access log rollup batch");
+        }
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("saved", saved);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(resp);
+    }
+
 //    /**
 //     * 接收认证日志批量
 //     */
@@ -52,7 +113,7 @@ public class LogController {
      * 分页检索访问日志
      */
     @GetMapping("/access")
-    public ResponseEntity<PageResponse<AccessLogListItem>> queryAccessLogs(
+    public ResponseEntity<AccessLogPageResponse> queryAccessLogs(
             @RequestParam(value = "from", required = false) String from,
             @RequestParam(value = "to", required = false) String to,
             @RequestParam(value = "userId", required = false) Long userId,
@@ -74,12 +135,13 @@ public class LogController {
             @RequestParam(value = "q", required = false) String q,
             @RequestParam(value = "page", required = false) Integer page,
             @RequestParam(value = "pageSize", required = false) Integer pageSize,
-            @RequestParam(value = "sort", required = false) String sort
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "cursor", required = false) String cursor
     ) {
         AccessLogQueryRequest req = new AccessLogQueryRequest(from, to, userId, username, proxyName, inboundId, clientIp, status,
                 protocol, routePolicyId, routePolicyName, srcGeoCountry, srcGeoCity, dstGeoCountry, dstGeoCity, host, originalTargetHost, rewriteTargetHost, q,
-                page, pageSize, sort);
-        PageResponse<AccessLogListItem> resp = logService.queryAccessLogs(req);
+                page, pageSize, sort, cursor);
+        AccessLogPageResponse resp = logService.queryAccessLogs(req);
         return ResponseEntity.ok(resp);
     }
 
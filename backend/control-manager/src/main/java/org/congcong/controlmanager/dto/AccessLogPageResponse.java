@@ -0,0 +1,22 @@
+package org.congcong.controlmanager.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+
+/**
+ * 访问日志分页结果
+ * nextCursor：按时间排序且本页已满时返回，请求下一页时作为 cursor 参数带上，服务端从上一页末尾直接往后读；
+ * total：同一筛选条件下短时间内复用上次的计数，翻页时不重复计数
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class AccessLogPageResponse extends PageResponse<AccessLogListItem> {
+    private String nextCursor;
+
+    public AccessLogPageResponse(List<AccessLogListItem> items, long total, int page, int pageSize, String nextCursor) {
+        super(items, total, page, pageSize);
+        this.nextCursor = nextCursor;
+    }
+}
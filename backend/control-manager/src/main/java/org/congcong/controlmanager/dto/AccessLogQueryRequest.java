@@ -30,4 +30,5 @@ public class AccessLogQueryRequest {
     private Integer page = 1;
     private Integer pageSize = 20;
     private String sort; // 如 ts,desc
+    private String cursor; // 上一页返回的 nextCursor，仅按时间排序时生效
 }
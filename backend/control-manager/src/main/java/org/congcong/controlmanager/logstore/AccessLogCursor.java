@@ -0,0 +1,35 @@
+package org.congcong.controlmanager.logstore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 访问日志列表的翻页游标：上一页最后一行的 (ts, request_id)，与明细表排序键一致，下一页直接从该位置往后读。
+ * 对外是不透明的 base64url 字符串，格式变化时旧游标解析失败，退回按页码翻页。
+ */
+record AccessLogCursor(long tsMillis, String requestId) {
+
+    String encode() {
+        String raw = tsMillis + ":" + requestId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return 无法解析时返回 null
+     */
+    static AccessLogCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            if (sep <= 0) {
+                return null;
+            }
+            return new AccessLogCursor(Long.parseLong(raw.substring(0, sep)), raw.substring(sep + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
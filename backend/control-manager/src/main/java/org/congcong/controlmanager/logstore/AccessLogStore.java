@@ -1,6 +1,7 @@
 package org.congcong.controlmanager.logstore;
 
 import org.congcong.common.dto.AccessLog;
+import org.congcong.common.dto.AccessLogRollup;
 import org.congcong.controlmanager.dto.*;
 
 import java.util.List;
@@ -8,7 +9,14 @@ import java.util.Optional;
 
 public interface AccessLogStore {
     int ingest(List<AccessLog> logs);
-    PageResponse<AccessLogListItem> queryAccessLogs(AccessLogQueryRequest req);
+    /**
+     * 写入工作节点上报的访问日志分钟聚合。
+     */
+    int ingestRollups(List<AccessLogRollup> rollups);
+    /**
+     * 分页检索访问日志，带 cursor 时从游标位置往后读，不再按页码跳过
+     */
+    AccessLogPageResponse queryAccessLogs(AccessLogQueryRequest req);
     Optional<AccessLogDetail> getAccessLogDetail(String id);
     List<TopItem> aggregateDailyTopRange(String from, String to, String dimension, String metric, int limit, Long userId);
     List<TimeSeriesPoint> getGlobalTrafficTrend(java.time.LocalDateTime from, java.time.LocalDateTime to);
@@ -16,23 +16,31 @@ final class AccessLogTimeZone {
     }
 
     static LocalDateTime toDisplayDateTime(Object value) {
+        Instant instant = toInstant(value);
+        return instant == null ? null : LocalDateTime.ofInstant(instant, DISPLAY_ZONE);
+    }
+
+    /**
+     * 驱动返回的 ts 列转为时间点，LocalDateTime 按存储时区（UTC）解释
+     */
+    static Instant toInstant(Object value) {
         if (value == null) {
             return null;
         }
         if (value instanceof Timestamp timestamp) {
-            return LocalDateTime.ofInstant(timestamp.toInstant(), DISPLAY_ZONE);
+            return timestamp.toInstant();
         }
         if (value instanceof OffsetDateTime offsetDateTime) {
-            return LocalDateTime.ofInstant(offsetDateTime.toInstant(), DISPLAY_ZONE);
+            return offsetDateTime.toInstant();
         }
         if (value instanceof Instant instant) {
-            return LocalDateTime.ofInstant(instant, DISPLAY_ZONE);
+            return instant;
         }
         if (value instanceof LocalDateTime localDateTime) {
-            return LocalDateTime.ofInstant(localDateTime.atZone(STORAGE_ZONE).toInstant(), DISPLAY_ZONE);
+            return localDateTime.atZone(STORAGE_ZONE).toInstant();
         }
         if (value instanceof Date date) {
-            return LocalDateTime.ofInstant(date.toInstant(), DISPLAY_ZONE);
+            return date.toInstant();
         }
         return null;
     }
@@ -0,0 +1,48 @@
+package org.congcong.controlmanager.logstore;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 访问日志列表总数缓存
+ * 以筛选条件（WHERE 子句及参数）为键缓存 count 结果，翻页、换排序时直接复用，筛选条件变化才重新计数；
+ * 新日志持续写入，结果只保留 {@link #TTL_MS}，总数因此是近似值。
+ */
+final class AccessLogTotalCache {
+
+    static final long TTL_MS = 30_000;
+    private static final int MAX_ENTRIES = 256;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    AccessLogTotalCache() {
+        this(System::currentTimeMillis);
+    }
+
+    AccessLogTotalCache(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    long get(String where, List<Object> params, LongSupplier loader) {
+        String key = where + "|" + params;
+        long now = clock.getAsLong();
+        Entry cached = entries.get(key);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.total();
+        }
+        long total = loader.getAsLong();
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.values().removeIf(e -> e.expiresAt() <= now);
+            if (entries.size() >= MAX_ENTRIES) {
+                entries.clear();
+            }
+        }
+        entries.put(key, new Entry(total, now + TTL_MS));
+        return total;
+    }
+
+    private record Entry(long total, long expiresAt) {
+    }
+}
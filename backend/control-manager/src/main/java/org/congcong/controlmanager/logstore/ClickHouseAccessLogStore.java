@@ -2,48 +2,75 @@ package org.congcong.controlmanager.logstore;
 
 import lombok.RequiredArgsConstructor;
 import org.congcong.common.dto.AccessLog;
+import org.congcong.common.dto.AccessLogRollup;
+import org.congcong.controlmanager.clickhouse.AccessLogTables;
 import org.congcong.controlmanager.clickhouse.ClickHouseAccessLogWriter;
 import org.congcong.controlmanager.clickhouse.ClickHouseJdbcClient;
 import org.congcong.controlmanager.dto.*;
+import org.congcong.controlmanager.logstore.RollupRangePlanner.Level;
+import org.congcong.controlmanager.logstore.RollupRangePlanner.Segment;
 import org.springframework.stereotype.Component;
 
 import java.sql.Array;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Function;
 
 @Component
 @RequiredArgsConstructor
 public class ClickHouseAccessLogStore implements AccessLogStore {
     private final ClickHouseAccessLogWriter writer;
+    // 未指定起始时间时的下限
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    // 迁移期间隔多久重新确认旧表是否还有未搬迁的分区
+    private static final long LEGACY_CHECK_INTERVAL_MS = 60_000;
+
     private final ClickHouseJdbcClient client;
+    private final AccessLogTotalCache totals = new AccessLogTotalCache();
+    private volatile boolean legacyUnmigrated = true;
+    private volatile long legacyCheckedAt;
 
     @Override
     public int ingest(List<AccessLog> logs) {
         return writer.ingest(logs);
     }
 
+    @Override
+    public int ingestRollups(List<AccessLogRollup> rollups) {
+        return writer.writeRollups(rollups);
+    }
+
     @Override
     public List<TimeSeriesPoint> getGlobalTrafficTrend(LocalDateTime from, LocalDateTime to) {
-        String sql = "SELECT toStartOfMinute(ts) AS minute_time, sum(bytes_in) AS byte_in, sum(bytes_out) AS byte_out " +
-                "FROM default.access_log WHERE ts >= ? AND ts <= ? GROUP BY minute_time ORDER BY minute_time";
-        List<Map<String,Object>> rows = client.query(sql, toTimestamp(from), toTimestamp(to));
-        List<TimeSeriesPoint> list = new ArrayList<>();
-        for (Map<String,Object> r : rows) {
-            list.add(new TimeSeriesPoint(toLocalDateTime(r.get("minute_time")), toLong(r.get("byte_in")), toLong(r.get("byte_out"))));
-        }
-        return list;
+        return trafficTrend(null, from, to);
     }
 
     @Override
     public List<TimeSeriesPoint> getUserTrafficTrend(Long userId, LocalDateTime from, LocalDateTime to) {
-        String sql = "SELECT toStartOfMinute(ts) AS minute_time, sum(bytes_in) AS byte_in, sum(bytes_out) AS byte_out " +
-                "FROM default.access_log WHERE user_id = ? AND ts >= ? AND ts <= ? GROUP BY minute_time ORDER BY minute_time";
-        List<Map<String,Object>> rows = client.query(sql, userId, toTimestamp(from), toTimestamp(to));
+        return trafficTrend(userId, from, to);
+    }
+
+    /**
+     * 整分钟部分读分钟汇总表，区间两端不足一分钟的部分读明细
+     */
+    private List<TimeSeriesPoint> trafficTrend(Long userId, LocalDateTime from, LocalDateTime to) {
+        List<Segment> segments = RollupRangePlanner.plan(from, inclusiveEnd(to), Level.MINUTE);
         List<TimeSeriesPoint> list = new ArrayList<>();
+        if (segments.isEmpty()) return list;
+        List<Object> params = new ArrayList<>();
+        String union = unionSegments(segments, level -> level == Level.RAW
+                        ? "toStartOfMinute(ts) AS minute_time, bytes_in, bytes_out"
+                        : "minute AS minute_time, bytes_in, bytes_out",
+                null, userId == null ? null : "user_id = ?", userId, params);
+        String sql = "SELECT minute_time, sum(bytes_in) AS byte_in, sum(bytes_out) AS byte_out " +
+                "FROM (" + union + ") GROUP BY minute_time ORDER BY minute_time";
+        List<Map<String,Object>> rows = client.query(sql, params.toArray());
         for (Map<String,Object> r : rows) {
             list.add(new TimeSeriesPoint(toLocalDateTime(r.get("minute_time")), toLong(r.get("byte_in")), toLong(r.get("byte_out"))));
         }
@@ -62,11 +89,14 @@ public class ClickHouseAccessLogStore implements AccessLogStore {
 
     @Override
     public long sumBytes(LocalDateTime from, LocalDateTime to) {
-        StringBuilder sb = new StringBuilder("SELECT sum(bytes_in + bytes_out) AS total_bytes FROM default.access_log WHERE 1=1");
+        LocalDateTime fromTs = from == null ? EARLIEST : from;
+        LocalDateTime toExclusive = to == null ? endOfToday() : inclusiveEnd(to);
+        List<Segment> segments = RollupRangePlanner.plan(fromTs, toExclusive, Level.MONTH, Level.DAY, Level.MINUTE);
+        if (segments.isEmpty()) return 0L;
         List<Object> params = new ArrayList<>();
-        if (from != null) { sb.append(" AND ts >= ?"); params.add(toTimestamp(from)); }
-        if (to != null) { sb.append(" AND ts <= ?"); params.add(toTimestamp(to)); }
-        List<Map<String,Object>> rows = client.query(sb.toString(), params.toArray());
+        String union = unionSegments(segments, level -> "bytes_in + bytes_out AS b",
+                AccessLogTables.DIM_APP, null, null, params);
+        List<Map<String,Object>> rows = client.query("SELECT sum(b) AS total_bytes FROM (" + union + ")", params.toArray());
         if (rows.isEmpty()) return 0L;
         Long v = toLong(rows.get(0).get("total_bytes"));
         return v == null ? 0L : v;
@@ -77,9 +107,15 @@ public class ClickHouseAccessLogStore implements AccessLogStore {
         if (inboundId == null) {
             return InboundTrafficDTO.of(null, 0L, 0L, null);
         }
-        String sql = "SELECT sum(bytes_in) AS bytes_in, sum(bytes_out) AS bytes_out " +
-                "FROM default.access_log WHERE inbound_id = ? AND ts >= ? AND ts < ?";
-        List<Map<String, Object>> rows = client.query(sql, inboundId, toTimestamp(from), toTimestamp(toExclusive));
+        List<Segment> segments = RollupRangePlanner.plan(from, toExclusive, Level.MINUTE);
+        if (segments.isEmpty()) {
+            return InboundTrafficDTO.of(inboundId, 0L, 0L, null);
+        }
+        List<Object> params = new ArrayList<>();
+        String union = unionSegments(segments, level -> "bytes_in, bytes_out",
+                null, "inbound_id = ?", inboundId, params);
+        String sql = "SELECT sum(bytes_in) AS bytes_in, sum(bytes_out) AS bytes_out FROM (" + union + ")";
+        List<Map<String, Object>> rows = client.query(sql, params.toArray());
         if (rows.isEmpty()) {
             return InboundTrafficDTO.of(inboundId, 0L, 0L, null);
         }
@@ -88,20 +124,43 @@ public class ClickHouseAccessLogStore implements AccessLogStore {
     }
 
     @Override
-    public PageResponse<AccessLogListItem> queryAccessLogs(AccessLogQueryRequest req) {
+    public AccessLogPageResponse queryAccessLogs(AccessLogQueryRequest req) {
+        StringBuilder where = new StringBuilder(" WHERE 1=1 ");
+        List<Object> whereParams = new ArrayList<>();
+        buildWhere(req, where, whereParams);
+        int page = req.getPage() == null ? 1 : Math.max(req.getPage(), 1);
+        int size = req.getPageSize() == null ? 20 : Math.min(Math.max(req.getPageSize(), 1), 100);
+
+        // 按时间排序时用 (ts, request_id) 定位，带游标则从上一页末尾往后读，不再 OFFSET 跳过前面的行
+        Boolean keysetDesc = keysetDirection(req.getSort());
+        AccessLogCursor cursor = keysetDesc == null ? null : AccessLogCursor.decode(req.getCursor());
         StringBuilder sb = new StringBuilder();
-        List<Object> params = new ArrayList<>();
+        List<Object> params = new ArrayList<>(whereParams);
         sb.append("SELECT ");
         sb.append("ts, request_id, user_id, username, proxy_name, inbound_id, client_ip, status, bytes_in, bytes_out, request_duration_ms, original_target_host, rewrite_target_host, src_geo_country, dst_geo_country ,route_policy_name,route_policy_id ");
-        sb.append("FROM default.access_log WHERE 1=1 ");
-        buildWhere(req, sb, params);
-        String orderBy = parseOrder(req.getSort());
-        sb.append(" ORDER BY ").append(orderBy).append(" ");
-        int page = req.getPage() == null ? 1 : Math.max(req.getPage(), 1);
-        int size = req.getPageSize() == null ? 20 : Math.min(Math.max(req.getPageSize(), 1), 100);
-        sb.append(" LIMIT ? OFFSET ?");
-        params.add(size);
-        params.add((page - 1) * size);
+        sb.append("FROM ").append(rawSource()).append(where);
+        if (cursor != null) {
+            String cmp = keysetDesc ? "<" : ">";
+            sb.append(" AND (ts ").append(cmp).append(" fromUnixTimestamp64Milli(?, 'UTC')")
+                    .append(" OR (ts = fromUnixTimestamp64Milli(?, 'UTC') AND request_id ").append(cmp).append(" ?))");
+            params.add(cursor.tsMillis());
+            params.add(cursor.tsMillis());
+            params.add(cursor.requestId());
+        }
+        if (keysetDesc != null) {
+            String dir = keysetDesc ? "DESC" : "ASC";
+            sb.append(" ORDER BY ts ").append(dir).append(", request_id ").append(dir);
+        } else {
+            sb.append(" ORDER BY ").append(parseOrder(req.getSort())).append(" ");
+        }
+        if (cursor != null) {
+            sb.append(" LIMIT ?");
+            params.add(size);
+        } else {
+            sb.append(" LIMIT ? OFFSET ?");
+            params.add(size);
+            params.add((page - 1) * size);
+        }
         List<Map<String,Object>> rows = client.query(sb.toString(), params.toArray());
         List<AccessLogListItem> items = new ArrayList<>(rows.size());
         for (Map<String,Object> r : rows) {
@@ -125,18 +184,40 @@ public class ClickHouseAccessLogStore implements AccessLogStore {
                     toLong(r.get("route_policy_id"))
             ));
         }
-        StringBuilder countSql = new StringBuilder("SELECT count(*) AS cnt FROM default.access_log WHERE 1=1 ");
-        List<Object> countParams = new ArrayList<>();
-        buildWhere(req, countSql, countParams);
-        List<Map<String,Object>> cntRows = client.query(countSql.toString(), countParams.toArray());
-        long total = cntRows.isEmpty() ? 0L : toLong(cntRows.get(0).get("cnt"));
-        return new PageResponse<>(items, total, page, size);
+        String nextCursor = null;
+        if (keysetDesc != null && rows.size() == size) {
+            Map<String,Object> last = rows.get(rows.size() - 1);
+            Instant lastTs = AccessLogTimeZone.toInstant(last.get("ts"));
+            if (lastTs != null) {
+                nextCursor = new AccessLogCursor(lastTs.toEpochMilli(), toStr(last.get("request_id"))).encode();
+            }
+        }
+        long total = totals.get(where.toString(), whereParams, () -> {
+            List<Map<String,Object>> cntRows = client.query(
+                    "SELECT count(*) AS cnt FROM " + rawSource() + where, whereParams.toArray());
+            return cntRows.isEmpty() ? 0L : toLong(cntRows.get(0).get("cnt"));
+        });
+        return new AccessLogPageResponse(items, total, page, size, nextCursor);
+    }
+
+    /**
+     * @return 按时间排序时返回是否倒序，其他排序返回 null
+     */
+    private Boolean keysetDirection(String sort) {
+        if (sort == null || sort.isBlank()) return true;
+        String[] parts = sort.split(",");
+        if (!"ts".equals(parts[0].trim())) return null;
+        return parts.length < 2 || !"asc".equalsIgnoreCase(parts[1].trim());
     }
 
     @Override
     public Optional<AccessLogDetail> getAccessLogDetail(String id) {
-        String sql = "SELECT ts, request_id, user_id, username, proxy_name, inbound_id, client_ip, client_port, src_geo_country, src_geo_city, original_target_host, original_target_ip, original_target_port, rewrite_target_host, rewrite_target_port, dst_geo_country, dst_geo_city, inbound_protocol_type, outbound_protocol_type, route_policy_name, route_policy_id, bytes_in, bytes_out, status, error_code, error_msg, dns_answer_ips, request_duration_ms, dns_duration_ms, connect_duration_ms, connect_target_duration_ms FROM default.access_log WHERE  request_id = ? LIMIT 1";
-        List<Map<String,Object>> rows = client.query(sql, id);
+        String sql = "SELECT ts, request_id, user_id, username, proxy_name, inbound_id, client_ip, client_port, src_geo_country, src_geo_city, original_target_host, original_target_ip, original_target_port, rewrite_target_host, rewrite_target_port, dst_geo_country, dst_geo_city, inbound_protocol_type, outbound_protocol_type, route_policy_name, route_policy_id, bytes_in, bytes_out, status, error_code, error_msg, dns_answer_ips, request_duration_ms, dns_duration_ms, connect_duration_ms, connect_target_duration_ms FROM %s WHERE request_id = ? LIMIT 1";
+        List<Map<String,Object>> rows = client.query(sql.formatted(AccessLogTables.RAW_TABLE), id);
+        // 迁移到新表期间，尚未搬过来的旧分区从旧表查
+        if (rows.isEmpty() && legacyPending()) {
+            rows = client.query(sql.formatted(AccessLogTables.LEGACY_RAW_TABLE), id);
+        }
         if (rows.isEmpty()) return Optional.empty();
         Map<String,Object> r = rows.get(0);
         AccessLogDetail d = new AccessLogDetail(
@@ -180,68 +261,156 @@ public class ClickHouseAccessLogStore implements AccessLogStore {
     public List<TopItem> aggregateDailyTopRange(String from, String to, String dimension, String metric, int limit, Long userId) {
         LocalDateTime fromTs = parseDate(from);
         LocalDateTime toTs = parseDate(to);
+        LocalDateTime toExclusive;
         if (fromTs == null && toTs == null) {
-            LocalDateTime now = LocalDateTime.now();
-            LocalDateTime firstOfMonth = LocalDateTime.of(now.getYear(), now.getMonth(), 1, 0, 0, 0);
-            LocalDateTime lastOfMonth = firstOfMonth.plusMonths(1).minusDays(1).withHour(23).withMinute(59).withSecond(59);
-            fromTs = firstOfMonth;
-            toTs = lastOfMonth;
+            LocalDateTime now = LocalDateTime.now(AccessLogTimeZone.DISPLAY_ZONE);
+            fromTs = LocalDateTime.of(now.getYear(), now.getMonth(), 1, 0, 0, 0);
+            toExclusive = fromTs.plusMonths(1);
+        } else {
+            if (fromTs == null) fromTs = EARLIEST;
+            toExclusive = toTs == null ? endOfToday() : inclusiveEnd(toTs);
         }
         String met = metric == null ? "requests" : metric;
         String dim = dimension == null ? "apps" : dimension;
-        StringBuilder sb = new StringBuilder();
-        List<Object> params = new ArrayList<>();
-        sb.append("SELECT ");
-        String appKeyExpr = "multiIf(" +
-                "IPv4StringToNumOrNull(coalesce(original_target_host, '')) IS NOT NULL, original_target_host, " +
-                "IPv6StringToNumOrNull(coalesce(original_target_host, '')) IS NOT NULL, original_target_host, " +
-                "cutToFirstSignificantSubdomain(lower(coalesce(original_target_host, ''))))";
+        String userLabel = AccessLogTables.USER_LABEL_EXPR;
+        String rawKey;
+        String rollupKey;
+        String rollupDim;
         switch (dim) {
             case "users":
-                sb.append("multiIf(length(username)>0, username, toString(user_id)) AS k, ");
+                rawKey = userLabel;
+                rollupKey = userLabel;
+                rollupDim = AccessLogTables.DIM_APP;
                 break;
             case "apps":
-                sb.append(appKeyExpr).append(" AS k, ");
+                rawKey = "app";
+                rollupKey = "dim_key";
+                rollupDim = AccessLogTables.DIM_APP;
                 break;
             case "user_apps":
                 if (userId != null) {
-                    sb.append(appKeyExpr).append(" AS k, ");
+                    rawKey = "app";
+                    rollupKey = "dim_key";
                 } else {
-                    sb.append("concat(multiIf(length(username)>0, username, toString(user_id)), '@', ").append(appKeyExpr).append(") AS k, ");
+                    rawKey = "concat(" + userLabel + ", '@', app)";
+                    rollupKey = "concat(" + userLabel + ", '@', dim_key)";
                 }
+                rollupDim = AccessLogTables.DIM_APP;
                 break;
             case "src_geo":
-                sb.append("concat(coalesce(src_geo_country,''), '/', coalesce(src_geo_city,'')) AS k, ");
+                rawKey = AccessLogTables.SRC_GEO_EXPR;
+                rollupKey = "dim_key";
+                rollupDim = AccessLogTables.DIM_SRC_GEO;
                 break;
             case "dst_geo":
-                sb.append("concat(coalesce(dst_geo_country,''), '/', coalesce(dst_geo_city,'')) AS k, ");
+                rawKey = AccessLogTables.DST_GEO_EXPR;
+                rollupKey = "dim_key";
+                rollupDim = AccessLogTables.DIM_DST_GEO;
                 break;
             case "route_policies": // 按路由规则聚合（ID:名称）
-                sb.append("concat(toString(route_policy_id), ':', coalesce(route_policy_name, '')) AS k, ");
+                rawKey = AccessLogTables.ROUTE_EXPR;
+                rollupKey = "dim_key";
+                rollupDim = AccessLogTables.DIM_ROUTE;
                 break;
             default:
-                sb.append("original_target_host AS k, ");
+                rawKey = "original_target_host";
+                rollupKey = "dim_key";
+                rollupDim = AccessLogTables.DIM_HOST;
                 break;
         }
-        if ("bytes".equals(met)) {
-            sb.append("sum(bytes_in + bytes_out) AS v ");
-        } else {
-            sb.append("count() AS v ");
-        }
-        sb.append("FROM default.access_log WHERE 1=1 ");
-        if (fromTs != null) { sb.append(" AND ts >= ?"); params.add(toTimestamp(fromTs)); }
-        if (toTs != null) { sb.append(" AND ts <= ?"); params.add(toTimestamp(toTs)); }
-        if (userId != null) { sb.append(" AND user_id = ?"); params.add(userId); }
-        sb.append(" GROUP BY k ORDER BY v DESC LIMIT ?");
-        params.add(limit <= 0 ? 10 : Math.min(limit, 100));
-        List<Map<String,Object>> rows = client.query(sb.toString(), params.toArray());
+        String value = "bytes".equals(met) ? "bytes_in + bytes_out" : "requests";
         List<TopItem> items = new ArrayList<>();
+        // 整月、整天读汇总表，边角读明细
+        List<Segment> segments = RollupRangePlanner.plan(fromTs, toExclusive, Level.MONTH, Level.DAY);
+        if (segments.isEmpty()) return items;
+        List<Object> params = new ArrayList<>();
+        String union = unionSegments(segments,
+                level -> (level == Level.RAW ? rawKey : rollupKey) + " AS k, " + value + " AS v",
+                rollupDim, userId == null ? null : "user_id = ?", userId, params);
+        String sql = "SELECT k, sum(v) AS v FROM (" + union + ") GROUP BY k ORDER BY v DESC LIMIT ?";
+        params.add(limit <= 0 ? 10 : Math.min(limit, 100));
+        List<Map<String,Object>> rows = client.query(sql, params.toArray());
         for (Map<String,Object> r : rows) {
             items.add(new TopItem(toStr(r.get("k")), toLong(r.get("v"))));
         }
         return items;
     }
 
+    /**
+     * 把各分段拼成 UNION ALL，每段按粒度选数据源和时间列
+     * @param columns 各粒度的 select 列表，所有分段输出的列名须一致
+     * @param dim 按天 / 按月汇总表取哪个维度的行，同一行日志在每个维度下各有一份
+     * @param filter 附加条件，汇总表和明细中都需存在对应列
+     */
+    private String unionSegments(List<Segment> segments, Function<Level, String> columns, String dim,
+                                 String filter, Object filterParam, List<Object> params) {
+        StringJoiner union = new StringJoiner(" UNION ALL ");
+        for (Segment segment : segments) {
+            String table;
+            String timeColumn;
+            switch (segment.level()) {
+                case MONTH -> { table = AccessLogTables.MONTHLY_TABLE; timeColumn = "period"; }
+                case DAY -> { table = AccessLogTables.DAILY_TABLE; timeColumn = "period"; }
+                case MINUTE -> { table = AccessLogTables.MINUTE_TABLE; timeColumn = "minute"; }
+                default -> {
+                    table = legacyPending() ? AccessLogTables.TRAFFIC_WITH_LEGACY_SOURCE : AccessLogTables.TRAFFIC_SOURCE;
+                    timeColumn = "ts";
+                }
+            }
+            StringBuilder sb = new StringBuilder("SELECT ").append(columns.apply(segment.level()))
+                    .append(" FROM ").append(table)
+                    .append(" WHERE ").append(timeColumn).append(" >= ? AND ").append(timeColumn).append(" < ?");
+            params.add(toTimestamp(segment.from()));
+            params.add(toTimestamp(segment.toExclusive()));
+            if (segment.level() == Level.MONTH || segment.level() == Level.DAY) {
+                sb.append(" AND dim = ?");
+                params.add(dim);
+            }
+            if (filter != null) {
+                sb.append(" AND ").append(filter);
+                params.add(filterParam);
+            }
+            union.add(sb);
+        }
+        return union.toString();
+    }
+
+    private String rawSource() {
+        return legacyPending() ? AccessLogTables.RAW_WITH_LEGACY_SOURCE : AccessLogTables.RAW_TABLE;
+    }
+
+    /**
+     * 旧版明细表是否还有未开始搬迁的分区，有的话明细查询需要合并旧表。
+     * 旧表不再写入，确认搬完后不再检查
+     */
+    private boolean legacyPending() {
+        if (!legacyUnmigrated) return false;
+        long now = System.currentTimeMillis();
+        if (now - legacyCheckedAt < LEGACY_CHECK_INTERVAL_MS) return true;
+        boolean pending = false;
+        if (client.tableExists(AccessLogTables.LEGACY_RAW_TABLE) && client.tableExists(AccessLogTables.LEGACY_MIGRATION_TABLE)) {
+            List<Map<String,Object>> rows = client.query("SELECT count() AS c FROM system.parts " +
+                    "WHERE database = 'default' AND table = 'access_log' AND active AND partition_id NOT IN " +
+                    "(SELECT partition_id FROM " + AccessLogTables.LEGACY_MIGRATION_TABLE + ")");
+            pending = !rows.isEmpty() && toLong(rows.get(0).get("c")) > 0;
+        }
+        legacyUnmigrated = pending;
+        legacyCheckedAt = now;
+        return pending;
+    }
+
+    /**
+     * 查询接口的结束时间是闭区间：整秒（如 23:59:59）视为包含这一秒，否则只多包含 1 毫秒，
+     * 这样按天、按月的查询能对齐到汇总表
+     */
+    private LocalDateTime inclusiveEnd(LocalDateTime to) {
+        return to.getNano() == 0 ? to.plusSeconds(1) : to.plusNanos(1_000_000);
+    }
+
+    private LocalDateTime endOfToday() {
+        return LocalDate.now(AccessLogTimeZone.DISPLAY_ZONE).plusDays(1).atStartOfDay();
+    }
+
     private void buildWhere(AccessLogQueryRequest req, StringBuilder sb, List<Object> params) {
         if (req.getFrom() != null && !req.getFrom().isBlank()) { sb.append(" AND ts >= ?"); params.add(toTimestamp(parseDate(req.getFrom()))); }
         if (req.getTo() != null && !req.getTo().isBlank()) { sb.append(" AND ts <= ?"); params.add(toTimestamp(parseDate(req.getTo()))); }
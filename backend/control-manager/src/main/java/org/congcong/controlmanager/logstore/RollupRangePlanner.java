@@ -0,0 +1,77 @@
+package org.congcong.controlmanager.logstore;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把查询区间拆成可由汇总表回答的整段和需要扫描明细的边角
+ * 按给定粒度从粗到细拆分：能对齐整月的部分走按月表，剩余边角中能对齐整天的部分走按天表，依此类推，最后剩下的走明细。
+ * 时间均为展示时区（Asia/Shanghai）的本地时间，与汇总表的切分口径一致。
+ */
+final class RollupRangePlanner {
+
+    enum Level { MONTH, DAY, MINUTE, RAW }
+
+    /**
+     * [from, toExclusive) 中由 level 对应数据源回答的一段
+     */
+    record Segment(Level level, LocalDateTime from, LocalDateTime toExclusive) {
+    }
+
+    private RollupRangePlanner() {
+    }
+
+    /**
+     * @param levels 可用的汇总粒度，从粗到细
+     * @return 按时间先后排列、首尾相接的分段；区间为空时返回空列表
+     */
+    static List<Segment> plan(LocalDateTime from, LocalDateTime toExclusive, Level... levels) {
+        List<Segment> segments = new ArrayList<>();
+        split(from, toExclusive, levels, 0, segments);
+        return segments;
+    }
+
+    private static void split(LocalDateTime from, LocalDateTime to, Level[] levels, int idx, List<Segment> out) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (idx >= levels.length || levels[idx] == Level.RAW) {
+            out.add(new Segment(Level.RAW, from, to));
+            return;
+        }
+        Level level = levels[idx];
+        LocalDateTime start = ceil(from, level);
+        LocalDateTime end = floor(to, level);
+        if (!start.isBefore(end)) {
+            split(from, to, levels, idx + 1, out);
+            return;
+        }
+        split(from, start, levels, idx + 1, out);
+        out.add(new Segment(level, start, end));
+        split(end, to, levels, idx + 1, out);
+    }
+
+    static LocalDateTime floor(LocalDateTime t, Level level) {
+        return switch (level) {
+            case MONTH -> t.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
+            case DAY -> t.truncatedTo(ChronoUnit.DAYS);
+            case MINUTE -> t.truncatedTo(ChronoUnit.MINUTES);
+            case RAW -> t;
+        };
+    }
+
+    static LocalDateTime ceil(LocalDateTime t, Level level) {
+        LocalDateTime f = floor(t, level);
+        if (f.equals(t)) {
+            return t;
+        }
+        return switch (level) {
+            case MONTH -> f.plusMonths(1);
+            case DAY -> f.plusDays(1);
+            case MINUTE -> f.plusMinutes(1);
+            case RAW -> t;
+        };
+    }
+}
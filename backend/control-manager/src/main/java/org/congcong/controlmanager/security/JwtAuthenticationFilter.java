@@ -34,6 +34,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             "/api/disk/push",
             "/api/worker/poll",
             "/api/logs/access",
+            "/api/logs/access/rollup",
             "/api/logs/auth"
     );
 
@@ -151,6 +152,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return true;
         }
 
+        if (path.startsWith("/api/config/rule-sets/")) {
+            return true;
+        }
+
         return STATIC_RESOURCE_SUFFIXES.stream().anyMatch(path::endsWith);
     }
 }
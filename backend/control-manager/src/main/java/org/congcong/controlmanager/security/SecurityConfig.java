@@ -30,6 +30,7 @@ public class SecurityConfig {
                     .requestMatchers(HttpMethod.POST, "/admin/setup").permitAll()
                     .requestMatchers("/api/config/aggregate").permitAll()
                     .requestMatchers("/api/config/hash").permitAll()
+                    .requestMatchers(HttpMethod.GET, "/api/config/rule-sets/*").permitAll()
                     .requestMatchers("/api/logs/**").permitAll()
                     .requestMatchers(HttpMethod.POST, "/api/worker/poll").permitAll()
                     .requestMatchers(HttpMethod.POST, "/api/disk/push").permitAll()
@@ -0,0 +1,87 @@
+package org.congcong.controlmanager.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.congcong.common.dto.AccessLog;
+import org.congcong.common.util.LogWireFormat;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 工作节点上报的 Smile 访问日志（及分钟聚合）批量解码
+ * 请求体边解压边按数组元素逐条解码，整个请求解码完成后一次交给落库：落库按整批占用容量、要么全收要么全拒，
+ * 避免前面的分块已经写入、后面的分块被拒后工作节点重试整批造成重复。单个请求最多 {@link #MAX_RECORDS} 条。
+ * 复用 Spring 的 ObjectMapper 配置（模块、时间格式），只替换底层编码。
+ */
+@Component
+public class AccessLogBatchDecoder {
+
+    static final int MAX_RECORDS = 50_000;
+
+    private final ObjectMapper smileMapper;
+    private final SmileFactory smileFactory;
+
+    public AccessLogBatchDecoder(ObjectMapper objectMapper) {
+        this.smileMapper = objectMapper.copyWith(new SmileFactory());
+        this.smileFactory = (SmileFactory) smileMapper.getFactory();
+    }
+
+    /**
+     * @param contentEncoding 请求的 Content-Encoding，只支持 gzip 或不压缩
+     * @param sink            落库回调，整个请求只调用一次，返回保存条数
+     * @return 保存总条数
+     * @throws UnsupportedEncodingException 不支持的压缩方式
+     */
+    public int decode(InputStream body, String contentEncoding, ToIntFunction<List<AccessLog>> sink) throws IOException {
+        return decode(body, contentEncoding, AccessLog.class, sink);
+    }
+
+    /**
+     * 按元素类型解码任意 Smile 数组批量
+     */
+    public <T> int decode(InputStream body, String contentEncoding, Class<T> type, ToIntFunction<List<T>> sink) throws IOException {
+        ObjectReader reader = smileMapper.readerFor(type);
+        InputStream in = wrap(body, contentEncoding);
+        List<T> batch = new ArrayList<>();
+        try (JsonParser parser = smileFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("access log batch must be an array");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                if (batch.size() >= MAX_RECORDS) {
+                    throw new IOException("access log batch exceeds " + MAX_RECORDS + " records");
+                }
+                batch.add(reader.readValue(parser));
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new IOException("unexpected token in access log batch: " + parser.currentToken());
+            }
+        }
+        return batch.isEmpty() ? 0 : sink.applyAsInt(batch);
+    }
+
+    private static InputStream wrap(InputStream body, String contentEncoding) throws IOException {
+        if (contentEncoding == null || contentEncoding.isBlank() || "identity".equalsIgnoreCase(contentEncoding.trim())) {
+            return body;
+        }
+        if (LogWireFormat.GZIP_ENCODING.equalsIgnoreCase(contentEncoding.trim())) {
+            return new GZIPInputStream(body, 8192);
+        }
+        throw new UnsupportedEncodingException(contentEncoding);
+    }
+
+    public static class UnsupportedEncodingException extends IOException {
+        public UnsupportedEncodingException(String encoding) {
+            super("unsupported content encoding: " + encoding);
+        }
+    }
+}
@@ -11,9 +11,12 @@ public class AggregateConfigCacheService {
 
     private final AggregateConfigService aggregateConfigService;
 
-    @Cacheable(value = "aggregateConfig", key = "'config'")
-    public AggregateConfigResponse getAggregateConfig() {
-        return aggregateConfigService.getAggregateConfig();
+    /**
+     * @param ruleSetArtifacts 请求方是否支持规则集产物，两种形式的配置分开缓存
+     */
+    @Cacheable(value = "aggregateConfig", key = "#ruleSetArtifacts ? 'config' : 'config-items'")
+    public AggregateConfigResponse getAggregateConfig(boolean ruleSetArtifacts) {
+        return aggregateConfigService.getAggregateConfig(ruleSetArtifacts);
     }
 
 }
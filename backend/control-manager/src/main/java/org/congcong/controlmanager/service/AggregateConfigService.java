@@ -3,6 +3,7 @@ package org.congcong.controlmanager.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.congcong.common.dto.*;
+import org.congcong.controlmanager.service.ruleset.RuleSetArtifactService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,15 +27,17 @@ public class AggregateConfigService {
     private final RouteService routeService;
     private final UserService userService;
     private final RuleSetService ruleSetService;
+    private final RuleSetArtifactService ruleSetArtifactService;
 
 
     /**
      * 获取聚合配置
      * 将所有启用的入站、路由、限流、用户配置聚合为一个响应
      * 
+     * @param ruleSetArtifacts 请求方是否支持规则集产物，不支持时规则集照旧携带规则项
      * @return 聚合配置响应
      */
-    public AggregateConfigResponse getAggregateConfig() {
+    public AggregateConfigResponse getAggregateConfig(boolean ruleSetArtifacts) {
         // 获取所有启用的配置
         List<InboundConfigDTO> inbounds = getEnabledInboundConfigs();
         List<RouteDTO> routes = getEnabledRoutes();
@@ -42,8 +45,15 @@ public class AggregateConfigService {
         List<UserDtoWithCredential> users = getEnabledUsers();
         List<RuleSetDTO> ruleSets = getPublishedRuleSets();
         
-        // 计算配置哈希值
-        String configHash = calculateConfigHash(inbounds, routes, rateLimits, users, ruleSets);
+        // 计算配置哈希值，两种形式的配置内容不同，ETag 也须不同
+        String configHash = calculateConfigHash(inbounds, routes, rateLimits, users, ruleSets, ruleSetArtifacts);
+        for (RuleSetDTO ruleSet : ruleSets) {
+            if (ruleSetArtifacts) {
+                ruleSet.setItems(null);
+            } else {
+                ruleSet.setArtifactDigest(null);
+            }
+        }
         // todo
         return AggregateConfigResponse.of(inbounds, routes, rateLimits, users, ruleSets, configHash);
     }
@@ -53,7 +63,7 @@ public class AggregateConfigService {
      * 
      * @return 配置内容的哈希值
      */
-    public String getCurrentConfigHash() {
+    public String getCurrentConfigHash(boolean ruleSetArtifacts) {
         // 获取所有启用的配置
         List<InboundConfigDTO> inbounds = getEnabledInboundConfigs();
         List<RouteDTO> routes = getEnabledRoutes();
@@ -61,7 +71,7 @@ public class AggregateConfigService {
         List<UserDtoWithCredential> users = getEnabledUsers();
         List<RuleSetDTO> ruleSets = getPublishedRuleSets();
         
-        return calculateConfigHash(inbounds, routes, rateLimits, users, ruleSets);
+        return calculateConfigHash(inbounds, routes, rateLimits, users, ruleSets, ruleSetArtifacts);
     }
 
 
@@ -94,8 +104,17 @@ public class AggregateConfigService {
         return userService.findUserDTOWithCredentialByStatus(1);
     }
 
+    /**
+     * 获取所有已发布的规则集，带规则项和产物摘要
+     * 规则集变化时聚合配置缓存失效，这里是发布后唯一编译产物的地方，产物下载接口只查已编译的结果
+     */
     private List<RuleSetDTO> getPublishedRuleSets() {
-        return ruleSetService.getPublishedRuleSetsWithItems();
+        List<RuleSetDTO> ruleSets = ruleSetService.getPublishedRuleSetsWithItems();
+        for (RuleSetDTO ruleSet : ruleSets) {
+            ruleSet.setArtifactDigest(ruleSetArtifactService.digestOf(ruleSet));
+        }
+        ruleSetArtifactService.retain(ruleSets);
+        return ruleSets;
     }
 
     /**
@@ -105,7 +124,8 @@ public class AggregateConfigService {
                                      List<RouteDTO> routes,
                                      List<RateLimitDTO> rateLimits,
                                      List<UserDtoWithCredential> users,
-                                     List<RuleSetDTO> ruleSets) {
+                                     List<RuleSetDTO> ruleSets,
+                                     boolean ruleSetArtifacts) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             
@@ -172,6 +192,7 @@ public class AggregateConfigService {
                         .append(user.getUpdatedAt());
             });
 
+            configContent.append("ruleSetArtifacts:").append(ruleSetArtifacts);
             ruleSets.forEach(ruleSet -> {
                 configContent.append("ruleSet:")
                         .append(ruleSet.getId())
@@ -184,7 +205,7 @@ public class AggregateConfigService {
                         .append(ruleSet.getEnabled())
                         .append(ruleSet.getPublished())
                         .append(ruleSet.getVersionNo())
-                        .append(ruleSet.getItems())
+                        .append(ruleSet.getArtifactDigest())
                         .append(ruleSet.getUpdatedAt());
             });
             
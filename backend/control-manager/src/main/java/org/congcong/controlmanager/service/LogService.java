@@ -2,6 +2,7 @@ package org.congcong.controlmanager.service;
 
 import lombok.RequiredArgsConstructor;
 import org.congcong.common.dto.AccessLog;
+import org.congcong.common.dto.AccessLogRollup;
 import org.congcong.controlmanager.dto.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -24,10 +25,18 @@ public class LogService {
         return accessLogStoreFactory.current().ingest(logs);
     }
 
+    /**
+     * 保存访问日志分钟聚合
+     */
+    public int saveAccessLogRollups(List<AccessLogRollup> rollups) {
+        if (rollups == null || rollups.isEmpty()) return 0;
+        return accessLogStoreFactory.current().ingestRollups(rollups);
+    }
+
     /**
      * 分页检索访问日志
      */
-    public PageResponse<AccessLogListItem> queryAccessLogs(AccessLogQueryRequest req) {
+    public AccessLogPageResponse queryAccessLogs(AccessLogQueryRequest req) {
         return accessLogStoreFactory.current().queryAccessLogs(req);
     }
 
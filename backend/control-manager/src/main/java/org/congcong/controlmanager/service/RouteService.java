@@ -257,6 +257,18 @@ public class RouteService {
         } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid VLESS uuid: " + uuid, e);
         }
+        Object muxConcurrency = outboundProxyConfig.get("muxConcurrency");
+        if (muxConcurrency != null) {
+            int value;
+            try {
+                value = Integer.parseInt(String.valueOf(muxConcurrency).trim());
+            } catch (NumberFormatException e) {
+                value = 0;
+            }
+            if (value < 1 || value > 1024) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "VLESS REALITY muxConcurrency must be between 1 and 1024");
+            }
+        }
     }
 
     private String requireConfigText(Map<String, Object> config, String key, String message) {
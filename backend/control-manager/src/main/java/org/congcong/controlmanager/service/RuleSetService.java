@@ -7,6 +7,7 @@ import org.congcong.common.dto.RuleSetSummaryDTO;
 import org.congcong.common.enums.RuleSetCategory;
 import org.congcong.common.enums.RuleSetMatchTarget;
 import org.congcong.common.enums.RuleSetSourceType;
+import org.congcong.common.util.geo.IpCidrSet;
 import org.congcong.controlmanager.dto.PageResponse;
 import org.congcong.controlmanager.dto.ruleset.RuleSetBatchSyncRequest;
 import org.congcong.controlmanager.dto.ruleset.CreateRuleSetRequest;
@@ -438,6 +439,15 @@ public class RuleSetService {
             if (item.getValue() == null || item.getValue().isBlank()) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "规则项 value 不能为空");
             }
+            int expectedVersion = switch (item.getType()) {
+                case IP_CIDR -> 4;
+                case IP_CIDR6 -> 6;
+                default -> 0;
+            };
+            if (expectedVersion != 0 && IpCidrSet.ipVersion(item.getValue()) != expectedVersion) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "规则项 " + item.getValue() + " 不是有效的 IPv" + expectedVersion + " 网段");
+            }
         }
     }
 
@@ -2,9 +2,9 @@ package org.congcong.controlmanager.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.congcong.controlmanager.clickhouse.AccessLogTables;
 import org.congcong.controlmanager.clickhouse.ClickHouseJdbcClient;
 import org.congcong.controlmanager.dto.UserTrafficStatsDTO;
-import org.congcong.controlmanager.repository.agg.MinuteTrafficStatsRepository;
 import org.springframework.stereotype.Service;
 
 import java.sql.Timestamp;
@@ -24,6 +24,8 @@ import java.util.Map;
 @Service
 public class UserTrafficStatsService {
 
+    private static final ZoneId DISPLAY_ZONE = ZoneId.of("Asia/Shanghai");
+
     private final ClickHouseJdbcClient client;
 
     public UserTrafficStatsService(ClickHouseJdbcClient client) {
@@ -33,27 +35,29 @@ public class UserTrafficStatsService {
     /** 获取用户当日流量统计，按总流量倒序 */
     public List<UserTrafficStatsDTO> getDailyUserTrafficStats(LocalDate date) {
         if (date == null) {
-            date = LocalDate.now();
+            date = LocalDate.now(DISPLAY_ZONE);
         }
-        LocalDateTime start = date.atStartOfDay();
-        LocalDateTime end = date.plusDays(1).atStartOfDay();
         String period = date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-        String sql = "SELECT user_id, any(username) AS username, sum(bytes_in) AS byte_in, sum(bytes_out) AS byte_out " +
-        "FROM default.access_log WHERE ts >= ? AND ts < ? GROUP BY user_id ORDER BY (byte_in + byte_out) DESC";
-        return mapRows(client.query(sql, toTs(start), toTs(end)), period);
+        return mapRows(client.query(periodSql(AccessLogTables.DAILY_TABLE), toTs(date.atStartOfDay()), toTs(date.plusDays(1).atStartOfDay())), period);
     }
 
     /** 获取用户本月流量统计，按总流量倒序 */
     public List<UserTrafficStatsDTO> getMonthlyUserTrafficStats(YearMonth yearMonth) {
         if (yearMonth == null) {
-            yearMonth = YearMonth.now();
+            yearMonth = YearMonth.now(DISPLAY_ZONE);
         }
-        LocalDateTime start = yearMonth.atDay(1).atStartOfDay();
-        LocalDateTime end = yearMonth.plusMonths(1).atDay(1).atStartOfDay();
         String period = yearMonth.format(DateTimeFormatter.ofPattern("yyyy-MM"));
-        String sql = "SELECT user_id, any(username) AS username, sum(bytes_in) AS byte_in, sum(bytes_out) AS byte_out " +
-        "FROM default.access_log WHERE ts >= ? AND ts < ? GROUP BY user_id ORDER BY (byte_in + byte_out) DESC";
-        return mapRows(client.query(sql, toTs(start), toTs(end)), period);
+        return mapRows(client.query(periodSql(AccessLogTables.MONTHLY_TABLE), toTs(yearMonth.atDay(1).atStartOfDay()),
+                toTs(yearMonth.plusMonths(1).atDay(1).atStartOfDay())), period);
+    }
+
+    /**
+     * 按天 / 按月汇总表中每行日志在各维度下各有一份，取应用维度的行按用户合计
+     */
+    private String periodSql(String table) {
+        return "SELECT user_id, any(username) AS username, sum(bytes_in) AS byte_in, sum(bytes_out) AS byte_out " +
+                "FROM " + table + " WHERE period >= ? AND period < ? AND dim = '" + AccessLogTables.DIM_APP + "' " +
+                "GROUP BY user_id ORDER BY (byte_in + byte_out) DESC";
     }
 
     private List<UserTrafficStatsDTO> mapRows(List<Map<String, Object>> rows, String period) {
@@ -68,8 +72,11 @@ public class UserTrafficStatsService {
         return list;
     }
 
+    /**
+     * 汇总表按展示时区切分日期
+     */
     private Timestamp toTs(LocalDateTime t) {
-        return Timestamp.from(t.atZone(ZoneId.systemDefault()).toInstant());
+        return Timestamp.from(t.atZone(DISPLAY_ZONE).toInstant());
     }
 
     private Long toLong(Object o) {
@@ -0,0 +1,122 @@
+package org.congcong.controlmanager.service.ruleset;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.congcong.common.dto.RuleSetDTO;
+import org.congcong.common.util.geo.RuleSetArtifact;
+import org.congcong.controlmanager.service.RuleSetService;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 规则集编译产物服务
+ * 每个已发布规则集的每个版本只编译一次，产物按摘要缓存在内存中供 worker 下载；
+ * 只在启动时和生成聚合配置（规则集发布、修改后缓存失效）时编译，按摘要查找不访问数据库。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RuleSetArtifactService {
+
+    private final RuleSetService ruleSetService;
+
+    /**
+     * 规则集 ID -> 当前版本的产物
+     */
+    private final Map<Long, Artifact> byRuleSet = new ConcurrentHashMap<>();
+    /**
+     * 摘要 -> 产物字节
+     */
+    private final Map<String, byte[]> byDigest = new ConcurrentHashMap<>();
+
+    /**
+     * 返回规则集当前版本的产物摘要，版本未变化时直接复用上次的编译结果
+     * 与 {@link #retain(Collection)} 互斥：并发生成聚合配置时，两张表必须一起更新，
+     * 否则旧一代配置的 retain 可能删掉新一代刚下发的摘要。
+     * 旧一代配置晚到时只补充产物字节，不会把规则集的当前版本回退。
+     *
+     * @param ruleSet 带规则项的规则集
+     */
+    public synchronized String digestOf(RuleSetDTO ruleSet) {
+        Artifact cached = byRuleSet.get(ruleSet.getId());
+        if (cached != null && cached.matches(ruleSet)) {
+            return cached.digest();
+        }
+        long start = System.nanoTime();
+        byte[] bytes = RuleSetArtifact.compile(ruleSet.getRuleKey(), ruleSet.getItems()).toBytes();
+        String digest = RuleSetArtifact.digest(bytes);
+        byDigest.put(digest, bytes);
+        if (cached == null || !cached.newerThan(ruleSet)) {
+            byRuleSet.put(ruleSet.getId(), new Artifact(ruleSet.getVersionNo(), ruleSet.getUpdatedAt(), digest));
+        }
+        log.info("规则集 {} 版本 {} 编译完成，{} 条规则项，产物 {} 字节，耗时 {} ms",
+                ruleSet.getRuleKey(), ruleSet.getVersionNo(),
+                ruleSet.getItems() == null ? 0 : ruleSet.getItems().size(), bytes.length,
+                (System.nanoTime() - start) / 1_000_000);
+        return digest;
+    }
+
+    /**
+     * 启动时按当前已发布的规则集编译一次，控制面重启后 worker 仍可按重启前下发的摘要下载
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            List<RuleSetDTO> ruleSets = ruleSetService.getPublishedRuleSetsWithItems();
+            ruleSets.forEach(this::digestOf);
+            log.info("已预编译规则集产物，数量: {}", ruleSets.size());
+        } catch (RuntimeException e) {
+            log.warn("启动时预编译规则集产物失败，生成聚合配置时再编译: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按摘要查找已编译的产物；该接口不经认证，未知摘要直接返回空，不触发数据库查询或编译
+     */
+    public Optional<byte[]> find(String digest) {
+        return Optional.ofNullable(byDigest.get(digest));
+    }
+
+    /**
+     * 丢弃不再下发的规则集及其产物
+     *
+     * @param current 当前下发的规则集，需已调用过 {@link #digestOf(RuleSetDTO)}
+     */
+    public synchronized void retain(Collection<RuleSetDTO> current) {
+        Set<Long> ids = current.stream().map(RuleSetDTO::getId).collect(Collectors.toSet());
+        byRuleSet.keySet().retainAll(ids);
+        // 同时保留各规则集当前版本的摘要，并发的旧一代配置不会删掉新一代已下发的产物
+        Set<String> digests = current.stream().map(RuleSetDTO::getArtifactDigest).collect(Collectors.toCollection(HashSet::new));
+        byRuleSet.values().forEach(artifact -> digests.add(artifact.digest()));
+        byDigest.keySet().retainAll(digests);
+    }
+
+    private record Artifact(Long versionNo, LocalDateTime updatedAt, String digest) {
+
+        boolean matches(RuleSetDTO ruleSet) {
+            return Objects.equals(versionNo, ruleSet.getVersionNo()) && Objects.equals(updatedAt, ruleSet.getUpdatedAt());
+        }
+
+        /**
+         * 缓存的版本是否比给定规则集更新，先比较版本号，版本号相同再比较更新时间
+         */
+        boolean newerThan(RuleSetDTO ruleSet) {
+            if (versionNo != null && ruleSet.getVersionNo() != null && !versionNo.equals(ruleSet.getVersionNo())) {
+                return versionNo > ruleSet.getVersionNo();
+            }
+            return updatedAt != null && ruleSet.getUpdatedAt() != null && updatedAt.isAfter(ruleSet.getUpdatedAt());
+        }
+    }
+}
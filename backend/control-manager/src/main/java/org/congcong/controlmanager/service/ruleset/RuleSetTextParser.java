@@ -2,6 +2,7 @@ package org.congcong.controlmanager.service.ruleset;
 
 import org.congcong.common.dto.RuleSetItemDTO;
 import org.congcong.common.enums.RuleSetItemType;
+import org.congcong.common.util.geo.IpCidrSet;
 import org.congcong.controlmanager.dto.ruleset.RuleSetSourceFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
@@ -97,6 +98,8 @@ public class RuleSetTextParser {
                 case "DOMAIN-SUFFIX" -> List.of(buildItem(RuleSetItemType.DOMAIN_SUFFIX, value));
                 case "DOMAIN" -> List.of(buildItem(RuleSetItemType.DOMAIN, value));
                 case "DOMAIN-KEYWORD" -> List.of(buildItem(RuleSetItemType.DOMAIN_KEYWORD, value));
+                // 第三段（如 no-resolve）不影响匹配方式：域名目标只在已知解析结果时才按 IP 规则匹配
+                case "IP-CIDR", "IP-CIDR6" -> parseCidr(value);
                 default -> List.of();
             };
         }
@@ -121,9 +124,23 @@ public class RuleSetTextParser {
             return parseClashClassicalLine(line);
         }
 
+        if (IpCidrSet.ipVersion(line) != 0) {
+            return parseCidr(line);
+        }
         return List.of(buildItem(RuleSetItemType.DOMAIN_SUFFIX, line));
     }
 
+    /**
+     * 按地址族决定 IP_CIDR 或 IP_CIDR6，无效网段跳过
+     */
+    private List<RuleSetItemDTO> parseCidr(String value) {
+        return switch (IpCidrSet.ipVersion(value)) {
+            case 4 -> List.of(buildItem(RuleSetItemType.IP_CIDR, value));
+            case 6 -> List.of(buildItem(RuleSetItemType.IP_CIDR6, value));
+            default -> List.of();
+        };
+    }
+
     private RuleSetItemDTO buildItem(RuleSetItemType type, String value) {
         String normalized = value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
         if (normalized.isBlank()) {
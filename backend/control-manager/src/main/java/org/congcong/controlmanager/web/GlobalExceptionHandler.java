@@ -1,5 +1,6 @@
 package org.congcong.controlmanager.web;
 
+import org.congcong.controlmanager.clickhouse.AccessLogQueueFullException;
 import org.slf4j.MDC;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -48,6 +49,14 @@ public class GlobalExceptionHandler {
         return body(HttpStatus.FORBIDDEN, "FORBIDDEN", "access denied");
     }
 
+    /**
+     * 访问日志写入积压，工作节点收到 503 后保留这批日志退避重试
+     */
+    @ExceptionHandler(AccessLogQueueFullException.class)
+    public ResponseEntity<Map<String,Object>> handleAccessLogQueueFull(AccessLogQueueFullException ex) {
+        return body(HttpStatus.SERVICE_UNAVAILABLE, "BUSY", ex.getMessage());
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<Map<String,Object>> handleResponseStatus(ResponseStatusException ex) {
         org.springframework.http.HttpStatusCode sc = ex.getStatusCode();
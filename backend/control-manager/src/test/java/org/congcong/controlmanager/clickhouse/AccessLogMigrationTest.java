@@ -0,0 +1,94 @@
+package org.congcong.controlmanager.clickhouse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccessLogMigrationTest {
+
+    private static final String STAGING = "default.access_log_v2_staging";
+
+    private FakeClickHouseJdbcClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = new FakeClickHouseJdbcClient() {
+            @Override
+            List<Map<String, Object>> queryOther(String sql, Object... params) {
+                // 模拟 FINAL：同一分区保留最后写入的一条
+                Map<Object, Map<String, Object>> last = new LinkedHashMap<>();
+                for (Object[] r : progress.get(AccessLogTables.LEGACY_MIGRATION_TABLE)) {
+                    last.put(r[0], Map.of("partition_id", r[0], "rows", r[1], "stage", r[2]));
+                }
+                return new ArrayList<>(last.values());
+            }
+        };
+        client.progress.put(AccessLogTables.LEGACY_MIGRATION_TABLE, new ArrayList<>());
+        client.partitions.put(AccessLogTables.LEGACY_RAW_TABLE, new LinkedHashMap<>(Map.of("202609", 5L, "202610", 7L)));
+    }
+
+    @Test
+    void movesEachPartitionThroughStagingAndRecordsProgress() {
+        assertThat(new AccessLogMigration(client).migrate()).isEqualTo(2);
+
+        assertThat(client.rows(AccessLogTables.RAW_TABLE)).isEqualTo(12);
+        assertThat(client.tables).doesNotContain(STAGING);
+        assertThat(stages("202610")).containsExactly(AccessLogMigration.STAGED, AccessLogMigration.DONE);
+        assertThat(stages("202609")).containsExactly(AccessLogMigration.STAGED, AccessLogMigration.DONE);
+        // 从最近的月份往前搬
+        assertThat(moves()).containsExactly("202610", "202609");
+
+        assertThat(new AccessLogMigration(client).migrate()).isZero();
+    }
+
+    @Test
+    void partitionMovedBeforeCrashIsOnlyMarkedDoneOnRestart() {
+        AtomicInteger progressWrites = new AtomicInteger();
+        // 第二次写进度即 202610 的完成记录，此前分区已经移到新表
+        client.failOnce(sql -> sql.startsWith("INSERT INTO " + AccessLogTables.LEGACY_MIGRATION_TABLE)
+                && progressWrites.incrementAndGet() == 2);
+        assertThatThrownBy(() -> new AccessLogMigration(client).migrate()).isInstanceOf(RuntimeException.class);
+        assertThat(client.rows(AccessLogTables.RAW_TABLE)).isEqualTo(7);
+
+        new AccessLogMigration(client).migrate();
+
+        assertThat(client.rows(AccessLogTables.RAW_TABLE)).isEqualTo(12);
+        assertThat(moves()).containsExactly("202610", "202609");
+        assertThat(stages("202610")).last().isEqualTo(AccessLogMigration.DONE);
+    }
+
+    @Test
+    void stagedPartitionIsMovedFirstWithoutCopyingAgain() {
+        client.failOnce(sql -> sql.startsWith("ALTER TABLE " + STAGING + " MOVE PARTITION"));
+        assertThatThrownBy(() -> new AccessLogMigration(client).migrate()).isInstanceOf(RuntimeException.class);
+        assertThat(client.rows(AccessLogTables.RAW_TABLE)).isZero();
+
+        new AccessLogMigration(client).migrate();
+
+        assertThat(client.rows(AccessLogTables.RAW_TABLE)).isEqualTo(12);
+        assertThat(client.statements).filteredOn(sql -> sql.startsWith("INSERT INTO " + STAGING)).hasSize(2);
+        assertThat(moves()).containsExactly("202610", "202609");
+    }
+
+    private List<Integer> stages(String partition) {
+        return client.progress.get(AccessLogTables.LEGACY_MIGRATION_TABLE).stream()
+                .filter(r -> r[0].equals(partition))
+                .map(r -> ((Number) r[2]).intValue())
+                .toList();
+    }
+
+    private List<String> moves() {
+        return client.statements.stream()
+                .filter(sql -> sql.startsWith("ALTER TABLE " + STAGING + " MOVE PARTITION ID"))
+                .map(sql -> sql.split("'")[1])
+                .toList();
+    }
+}
@@ -0,0 +1,75 @@
+package org.congcong.controlmanager.clickhouse;
+
+import org.congcong.common.dto.AccessLog;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccessLogRowBinaryTest {
+
+    @Test
+    void encodesColumnsInTableOrder() throws IOException {
+        AccessLog l = new AccessLog();
+        l.setTs(Instant.parse("2026-05-13T06:19:52.650Z"));
+        l.setRequestId("req-1");
+        l.setUserId(7L);
+        l.setClientPort(70000);
+        l.setStatus(502);
+        l.setErrorMsg("timeout");
+        l.setDnsAnswerIps(List.of("1.1.1.1", "8.8.8.8"));
+        l.setRequestDurationMs(-1L);
+        l.setConnectTargetDurationMs(12L);
+        l.setSampled(true);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AccessLogRowBinary.write(out, l);
+        ByteBuffer buf = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertThat(buf.getLong()).isEqualTo(l.getTs().toEpochMilli());
+        assertThat(readString(buf)).isEqualTo("req-1");
+        assertThat(buf.getLong()).isEqualTo(7L);
+        assertThat(readString(buf)).isEmpty();              // username
+        assertThat(readString(buf)).isEmpty();              // proxy_name
+        assertThat(buf.getLong()).isZero();                 // inbound_id
+        assertThat(readString(buf)).isEmpty();              // client_ip
+        assertThat(Short.toUnsignedInt(buf.getShort())).isEqualTo(0xFFFF); // client_port 截断
+        for (int i = 0; i < 3; i++) readString(buf);        // src geo, original_target_host
+        readString(buf);                                    // original_target_ip
+        buf.getShort();                                     // original_target_port
+        readString(buf);                                    // rewrite_target_host
+        buf.getShort();                                     // rewrite_target_port
+        for (int i = 0; i < 5; i++) readString(buf);        // dst geo, protocols, route_policy_name
+        buf.getLong();                                      // route_policy_id
+        buf.getLong();                                      // bytes_in
+        buf.getLong();                                      // bytes_out
+        assertThat(buf.getInt()).isEqualTo(502);
+        assertThat(readString(buf)).isEmpty();              // error_code
+        assertThat(buf.get()).isZero();                     // error_msg 非空标记
+        assertThat(readString(buf)).isEqualTo("timeout");
+        assertThat(buf.get()).isEqualTo((byte) 2);
+        assertThat(readString(buf)).isEqualTo("1.1.1.1");
+        assertThat(readString(buf)).isEqualTo("8.8.8.8");
+        assertThat(buf.getInt()).isZero();                  // request_duration_ms 负数按 0
+        buf.getInt();
+        buf.getInt();
+        assertThat(buf.getInt()).isEqualTo(12);
+        assertThat(buf.get()).isEqualTo((byte) 1);          // sampled
+        assertThat(buf.hasRemaining()).isFalse();
+        assertThat(AccessLogRowBinary.COLUMNS).hasSize(32);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.get(); // 测试数据都短于 128 字节，varint 只有一个字节
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
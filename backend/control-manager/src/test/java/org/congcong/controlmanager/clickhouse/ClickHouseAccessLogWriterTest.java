@@ -0,0 +1,175 @@
+package org.congcong.controlmanager.clickhouse;
+
+import com.clickhouse.client.api.ServerException;
+import org.congcong.common.dto.AccessLog;
+import org.congcong.common.dto.AccessLogRollup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClickHouseAccessLogWriterTest {
+
+    @TempDir
+    Path deadLetterDir;
+
+    private ClickHouseAccessLogWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void flushesPartialBatchOnTimerWithoutFurtherIngest() throws Exception {
+        List<List<AccessLog>> written = new CopyOnWriteArrayList<>();
+        CountDownLatch flushed = new CountDownLatch(1);
+        writer = new ClickHouseAccessLogWriter(batch -> {
+            written.add(new ArrayList<>(batch));
+            flushed.countDown();
+        }, batch -> { }, 3000, 100, 10_000, 100, deadLetterDir);
+        writer.start();
+
+        assertThat(writer.ingest(logs(5))).isEqualTo(5);
+
+        assertThat(flushed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(written).hasSize(1);
+        assertThat(written.get(0)).extracting(AccessLog::getRequestId)
+                .containsExactly("req-0", "req-1", "req-2", "req-3", "req-4");
+        // 写入返回后才释放容量
+        long deadline = System.currentTimeMillis() + 2000;
+        while (writer.pending() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(writer.pending()).isZero();
+    }
+
+    @Test
+    void rejectsWholeBatchWhenBacklogIsFullAndRetriesFailedInserts() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch delivered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        writer = new ClickHouseAccessLogWriter(batch -> {
+            // 第一次失败，之后等待放行，模拟 ClickHouse 不可用期间积压
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("clickhouse down");
+            }
+            release.await();
+            delivered.countDown();
+        }, batch -> { }, 10, 10, 20, 50, deadLetterDir);
+        writer.start();
+
+        assertThat(writer.ingest(logs(15))).isEqualTo(15);
+        assertThatThrownBy(() -> writer.ingest(logs(10)))
+                .isInstanceOf(AccessLogQueueFullException.class);
+        assertThat(writer.pending()).isEqualTo(15);
+
+        release.countDown();
+        assertThat(delivered.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(attempts.get()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void keepsRetryingTransientFailuresWithoutDeadLetteringOrReleasingCapacity() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        writer = new ClickHouseAccessLogWriter(batch -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("clickhouse down");
+        }, batch -> { }, 10, 10, 20, 50, deadLetterDir);
+        writer.start();
+
+        assertThat(writer.ingest(logs(15))).isEqualTo(15);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (attempts.get() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(attempts.get()).isGreaterThanOrEqualTo(3);
+        // 许可一直占用，接口返回 503，由工作节点保留数据
+        assertThat(writer.pending()).isEqualTo(15);
+        assertThatThrownBy(() -> writer.ingest(logs(10)))
+                .isInstanceOf(AccessLogQueueFullException.class);
+        assertThat(deadLetterLines()).isEmpty();
+    }
+
+    @Test
+    void movesBatchRejectedForBadDataToDeadLetterWithoutRetrying() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        writer = new ClickHouseAccessLogWriter(batch -> {
+            attempts.incrementAndGet();
+            throw new ServerException(53, "Type mismatch");
+        }, batch -> { }, 10, 10, 20, 50, deadLetterDir);
+        writer.start();
+
+        writer.ingest(logs(3));
+
+        awaitDrained();
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(deadLetterLines()).hasSize(3);
+        assertThat(ClickHouseAccessLogWriter.isPermanent(new RuntimeException(new ServerException(53, "x")))).isTrue();
+        assertThat(ClickHouseAccessLogWriter.isPermanent(new ServerException(241, "Memory limit exceeded"))).isFalse();
+    }
+
+    @Test
+    void writesRollupsOnFlusherThreadInsteadOfCaller() throws Exception {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        CountDownLatch flushed = new CountDownLatch(1);
+        writer = new ClickHouseAccessLogWriter(batch -> { }, batch -> {
+            threads.add(Thread.currentThread().getName());
+            flushed.countDown();
+        }, 10, 50, 20, 50, deadLetterDir);
+        writer.start();
+
+        AccessLogRollup rollup = new AccessLogRollup();
+        rollup.setRequests(3L);
+        assertThat(writer.writeRollups(List.of(rollup, rollup))).isEqualTo(2);
+
+        assertThat(flushed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(threads).containsExactly("clickhouse-access-log-rollup-flusher");
+        assertThatThrownBy(() -> writer.writeRollups(Collections.nCopies(21, rollup)))
+                .isInstanceOf(AccessLogQueueFullException.class);
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writer.pending() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(writer.pending()).isZero();
+    }
+
+    private List<String> deadLetterLines() throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (Stream<Path> files = Files.list(deadLetterDir)) {
+            for (Path file : files.toList()) {
+                lines.addAll(Files.readAllLines(file));
+            }
+        }
+        return lines;
+    }
+
+    private static List<AccessLog> logs(int count) {
+        List<AccessLog> logs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            AccessLog accessLog = new AccessLog();
+            accessLog.setRequestId("req-" + i);
+            logs.add(accessLog);
+        }
+        return logs;
+    }
+}
@@ -0,0 +1,138 @@
+package org.congcong.controlmanager.clickhouse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 只模拟建表、分区搬移和进度记录的 ClickHouse，用于验证初始化和迁移步骤的顺序与重入
+ */
+class FakeClickHouseJdbcClient extends ClickHouseJdbcClient {
+
+    private static final Pattern CREATE = Pattern.compile("CREATE (?:TABLE|MATERIALIZED VIEW) IF NOT EXISTS (\\S+)");
+    private static final Pattern DROP = Pattern.compile("DROP (?:TABLE|VIEW) IF EXISTS (\\S+)");
+    private static final Pattern TRUNCATE = Pattern.compile("TRUNCATE TABLE (\\S+)");
+    private static final Pattern INSERT = Pattern.compile("INSERT INTO (\\S+)");
+    private static final Pattern MOVE = Pattern.compile("ALTER TABLE (\\S+) MOVE PARTITION ID '([^']+)' TO TABLE (\\S+)");
+    private static final Pattern COPY_PARTITION = Pattern.compile("FROM (\\S+) WHERE _partition_id = \\?");
+    private static final Pattern COUNT = Pattern.compile("SELECT count\\(\\) AS c FROM (\\S+)$");
+    private static final Pattern CUTOFF = Pattern.compile("toDateTime64\\('([^']+)'");
+
+    final List<String> statements = new CopyOnWriteArrayList<>();
+    final Set<String> tables = new LinkedHashSet<>();
+    /**
+     * 表 -> 分区 ID -> 行数
+     */
+    final Map<String, Map<String, Long>> partitions = new HashMap<>();
+    /**
+     * 进度表 -> 记录的行，按写入顺序；测试先放入空列表登记进度表
+     */
+    final Map<String, List<Object[]>> progress = new HashMap<>();
+    /**
+     * 写入时新产生的分区（回填或搬迁的数据），按目标表给出
+     */
+    final Map<String, String> insertPartition = new HashMap<>();
+
+    private Predicate<String> failOn = sql -> false;
+
+    FakeClickHouseJdbcClient() {
+        super(null);
+    }
+
+    /**
+     * 下一条满足条件的语句执行失败，模拟进程在这一步之前退出
+     */
+    void failOnce(Predicate<String> condition) {
+        failOn = sql -> {
+            if (condition.test(sql)) {
+                failOn = s -> false;
+                return true;
+            }
+            return false;
+        };
+    }
+
+    @Override
+    public synchronized int execute(String sql, Object... params) {
+        if (failOn.test(sql)) {
+            throw new RuntimeException("simulated crash before: " + sql);
+        }
+        statements.add(sql);
+        Matcher m;
+        if ((m = CREATE.matcher(sql)).lookingAt()) {
+            tables.add(m.group(1));
+        } else if ((m = DROP.matcher(sql)).lookingAt()) {
+            tables.remove(m.group(1));
+            partitions.remove(m.group(1));
+        } else if ((m = TRUNCATE.matcher(sql)).lookingAt()) {
+            partitions.remove(m.group(1));
+        } else if ((m = MOVE.matcher(sql)).lookingAt()) {
+            Long rows = partitions.getOrDefault(m.group(1), Map.of()).get(m.group(2));
+            partitions.get(m.group(1)).remove(m.group(2));
+            partitions.computeIfAbsent(m.group(3), k -> new LinkedHashMap<>()).merge(m.group(2), rows, Long::sum);
+        } else if ((m = INSERT.matcher(sql)).lookingAt()) {
+            String table = m.group(1);
+            if (progress.containsKey(table)) {
+                List<Object> row = new ArrayList<>(List.of(params));
+                Matcher cutoff = CUTOFF.matcher(sql);
+                if (cutoff.find()) {
+                    row.add(1, cutoff.group(1));
+                }
+                progress.computeIfAbsent(table, k -> new ArrayList<>()).add(row.toArray());
+            } else if ((m = COPY_PARTITION.matcher(sql)).find()) {
+                Long rows = partitions.getOrDefault(m.group(1), Map.of()).get(String.valueOf(params[0]));
+                if (rows != null) {
+                    partitions.computeIfAbsent(table, k -> new LinkedHashMap<>()).merge(String.valueOf(params[0]), rows, Long::sum);
+                }
+            } else if (insertPartition.containsKey(table)) {
+                partitions.computeIfAbsent(table, k -> new LinkedHashMap<>()).merge(insertPartition.get(table), 1L, Long::sum);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public synchronized List<Map<String, Object>> query(String sql, Object... params) {
+        if (sql.startsWith("SELECT count() AS c FROM system.tables")) {
+            return List.of(Map.of("c", tables.contains(params[0] + "." + params[1]) ? 1L : 0L));
+        }
+        if (sql.startsWith("SELECT DISTINCT partition_id FROM system.parts")) {
+            String table = params.length == 2 ? params[0] + "." + params[1] : sqlTable(sql);
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (String p : new TreeSet<>(partitions.getOrDefault(table, Map.of()).keySet()).descendingSet()) {
+                rows.add(Map.of("partition_id", p));
+            }
+            return rows;
+        }
+        Matcher count = COUNT.matcher(sql);
+        if (count.find()) {
+            return List.of(Map.of("c", rows(count.group(1))));
+        }
+        return queryOther(sql, params);
+    }
+
+    /**
+     * 其他查询由具体测试按需处理
+     */
+    List<Map<String, Object>> queryOther(String sql, Object... params) {
+        return List.of();
+    }
+
+    private static String sqlTable(String sql) {
+        Matcher m = Pattern.compile("database = '([^']+)' AND table = '([^']+)'").matcher(sql);
+        return m.find() ? m.group(1) + "." + m.group(2) : "";
+    }
+
+    long rows(String table) {
+        return partitions.getOrDefault(table, Map.of()).values().stream().mapToLong(Long::longValue).sum();
+    }
+}
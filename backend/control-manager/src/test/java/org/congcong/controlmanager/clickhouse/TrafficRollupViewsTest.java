@@ -0,0 +1,112 @@
+package org.congcong.controlmanager.clickhouse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.congcong.controlmanager.clickhouse.AccessLogTables.MINUTE_TABLE;
+
+class TrafficRollupViewsTest {
+
+    private static final String LOG_VIEW = TrafficRollupViews.viewName(MINUTE_TABLE, TrafficRollupViews.Source.LOG);
+    private static final String STAGING = TrafficRollupViews.stagingTable(LOG_VIEW);
+
+    private FakeClickHouseJdbcClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = new FakeClickHouseJdbcClient() {
+            @Override
+            List<Map<String, Object>> queryOther(String sql, Object... params) {
+                // 模拟 FINAL 后取界最大的一条
+                return progress.get(TrafficRollupViews.BACKFILL_TABLE).stream()
+                        .filter(r -> r[0].equals(params[0]))
+                        .max(Comparator.<Object[], String>comparing(r -> (String) r[1])
+                                .thenComparing(r -> ((Number) r[2]).intValue()))
+                        .map(r -> Map.<String, Object>of("cutoff", r[1], "stage", r[2]))
+                        .map(List::of)
+                        .orElse(List.of());
+            }
+        };
+        client.progress.put(TrafficRollupViews.BACKFILL_TABLE, new ArrayList<>());
+        client.insertPartition.put(STAGING, "202610");
+    }
+
+    @Test
+    void createsViewThenBackfillsThroughStagingAndRecordsEachStage() {
+        new TrafficRollupViews(client).ensure();
+
+        assertThat(client.tables).contains(LOG_VIEW).doesNotContain(STAGING);
+        assertThat(client.rows(MINUTE_TABLE)).isEqualTo(1);
+        assertThat(stages(LOG_VIEW)).containsExactly(
+                TrafficRollupViews.VIEW_CREATED, TrafficRollupViews.STAGED, TrafficRollupViews.DONE);
+        List<String> steps = stepsOf(LOG_VIEW);
+        assertThat(steps).containsSubsequence(
+                "INSERT INTO " + TrafficRollupViews.BACKFILL_TABLE,
+                "CREATE MATERIALIZED VIEW IF NOT EXISTS " + LOG_VIEW,
+                "TRUNCATE TABLE " + STAGING,
+                "INSERT INTO " + STAGING,
+                "INSERT INTO " + TrafficRollupViews.BACKFILL_TABLE,
+                "ALTER TABLE " + STAGING + " MOVE PARTITION ID '202610' TO TABLE " + MINUTE_TABLE,
+                "INSERT INTO " + TrafficRollupViews.BACKFILL_TABLE,
+                "DROP TABLE IF EXISTS " + STAGING);
+
+        // 再次启动时视图和回填都已完成，什么也不做
+        int executed = client.statements.size();
+        new TrafficRollupViews(client).ensure();
+        assertThat(client.statements.subList(executed, client.statements.size()))
+                .noneMatch(sql -> sql.contains(LOG_VIEW));
+    }
+
+    @Test
+    void resumesBackfillInterruptedBeforeMoveWithoutInsertingAgain() {
+        client.failOnce(sql -> sql.startsWith("ALTER TABLE " + STAGING + " MOVE PARTITION"));
+        assertThatThrownBy(() -> new TrafficRollupViews(client).ensure()).isInstanceOf(RuntimeException.class);
+        assertThat(client.rows(STAGING)).isEqualTo(1);
+
+        int executed = client.statements.size();
+        new TrafficRollupViews(client).ensure();
+
+        List<String> resumed = client.statements.subList(executed, client.statements.size());
+        assertThat(resumed).noneMatch(sql -> sql.startsWith("CREATE MATERIALIZED VIEW IF NOT EXISTS " + LOG_VIEW));
+        assertThat(resumed).noneMatch(sql -> sql.startsWith("INSERT INTO " + STAGING));
+        assertThat(client.rows(MINUTE_TABLE)).isEqualTo(1);
+        assertThat(stages(LOG_VIEW)).last().isEqualTo(TrafficRollupViews.DONE);
+    }
+
+    @Test
+    void restagesWithSameCutoffWhenInterruptedWhileStaging() {
+        client.failOnce(sql -> sql.startsWith("INSERT INTO " + STAGING));
+        assertThatThrownBy(() -> new TrafficRollupViews(client).ensure()).isInstanceOf(RuntimeException.class);
+
+        new TrafficRollupViews(client).ensure();
+
+        assertThat(client.statements).filteredOn(sql -> sql.startsWith("CREATE MATERIALIZED VIEW IF NOT EXISTS " + LOG_VIEW))
+                .hasSize(1);
+        assertThat(client.progress.get(TrafficRollupViews.BACKFILL_TABLE).stream()
+                .filter(r -> r[0].equals(LOG_VIEW)).map(r -> r[1]).distinct()).hasSize(1);
+        assertThat(client.rows(MINUTE_TABLE)).isEqualTo(1);
+    }
+
+    private List<Integer> stages(String view) {
+        return client.progress.get(TrafficRollupViews.BACKFILL_TABLE).stream()
+                .filter(r -> r[0].equals(view))
+                .map(r -> ((Number) r[2]).intValue())
+                .toList();
+    }
+
+    private List<String> stepsOf(String view) {
+        return client.statements.stream()
+                .filter(sql -> sql.contains(view) && !sql.startsWith("INSERT INTO " + TrafficRollupViews.BACKFILL_TABLE)
+                        || sql.startsWith("INSERT INTO " + TrafficRollupViews.BACKFILL_TABLE))
+                .map(sql -> sql.startsWith("INSERT INTO ") ? "INSERT INTO " + sql.split(" ")[2] : sql)
+                .map(sql -> sql.startsWith("CREATE MATERIALIZED VIEW") ? "CREATE MATERIALIZED VIEW IF NOT EXISTS " + LOG_VIEW : sql)
+                .toList();
+    }
+}
@@ -0,0 +1,17 @@
+package org.congcong.controlmanager.logstore;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccessLogCursorTest {
+
+    @Test
+    void cursorRoundTripsAndRejectsGarbage() {
+        AccessLogCursor cursor = new AccessLogCursor(1_778_653_192_650L, "req:1");
+
+        assertThat(AccessLogCursor.decode(cursor.encode())).isEqualTo(cursor);
+        assertThat(AccessLogCursor.decode("not-a-cursor")).isNull();
+        assertThat(AccessLogCursor.decode(null)).isNull();
+    }
+}
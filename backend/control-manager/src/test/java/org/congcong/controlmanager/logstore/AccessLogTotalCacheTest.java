@@ -0,0 +1,34 @@
+package org.congcong.controlmanager.logstore;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccessLogTotalCacheTest {
+
+    @Test
+    void reusesCountForSameFilterUntilExpired() {
+        AtomicLong now = new AtomicLong(1_000);
+        AccessLogTotalCache cache = new AccessLogTotalCache(now::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get(" WHERE user_id = ?", List.of(7L), () -> 100 + loads.incrementAndGet())).isEqualTo(101);
+        assertThat(cache.get(" WHERE user_id = ?", List.of(7L), () -> 100 + loads.incrementAndGet())).isEqualTo(101);
+
+        now.addAndGet(AccessLogTotalCache.TTL_MS);
+        assertThat(cache.get(" WHERE user_id = ?", List.of(7L), () -> 100 + loads.incrementAndGet())).isEqualTo(102);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void recountsWhenFilterChanges() {
+        AccessLogTotalCache cache = new AccessLogTotalCache(() -> 0L);
+
+        assertThat(cache.get(" WHERE user_id = ?", List.of(7L), () -> 5)).isEqualTo(5);
+        assertThat(cache.get(" WHERE user_id = ?", List.of(8L), () -> 9)).isEqualTo(9);
+    }
+}
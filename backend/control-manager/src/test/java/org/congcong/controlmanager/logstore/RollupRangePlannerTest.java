@@ -0,0 +1,42 @@
+package org.congcong.controlmanager.logstore;
+
+import org.congcong.controlmanager.logstore.RollupRangePlanner.Level;
+import org.congcong.controlmanager.logstore.RollupRangePlanner.Segment;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollupRangePlannerTest {
+
+    @Test
+    void splitsRangeIntoMonthsDaysAndRawEdges() {
+        LocalDateTime from = LocalDateTime.of(2026, 3, 30, 10, 15, 30);
+        LocalDateTime to = LocalDateTime.of(2026, 6, 2, 8, 0);
+
+        List<Segment> segments = RollupRangePlanner.plan(from, to, Level.MONTH, Level.DAY);
+
+        assertThat(segments).containsExactly(
+                new Segment(Level.RAW, from, LocalDateTime.of(2026, 3, 31, 0, 0)),
+                new Segment(Level.DAY, LocalDateTime.of(2026, 3, 31, 0, 0), LocalDateTime.of(2026, 4, 1, 0, 0)),
+                new Segment(Level.MONTH, LocalDateTime.of(2026, 4, 1, 0, 0), LocalDateTime.of(2026, 6, 1, 0, 0)),
+                new Segment(Level.DAY, LocalDateTime.of(2026, 6, 1, 0, 0), LocalDateTime.of(2026, 6, 2, 0, 0)),
+                new Segment(Level.RAW, LocalDateTime.of(2026, 6, 2, 0, 0), to));
+    }
+
+    @Test
+    void fallsBackToFinerLevelsWhenRangeIsShort() {
+        LocalDateTime from = LocalDateTime.of(2026, 5, 13, 14, 19, 52);
+        LocalDateTime to = LocalDateTime.of(2026, 5, 13, 14, 25, 10);
+
+        assertThat(RollupRangePlanner.plan(from, to, Level.MONTH, Level.DAY, Level.MINUTE)).containsExactly(
+                new Segment(Level.RAW, from, LocalDateTime.of(2026, 5, 13, 14, 20)),
+                new Segment(Level.MINUTE, LocalDateTime.of(2026, 5, 13, 14, 20), LocalDateTime.of(2026, 5, 13, 14, 25)),
+                new Segment(Level.RAW, LocalDateTime.of(2026, 5, 13, 14, 25), to));
+        assertThat(RollupRangePlanner.plan(to, from, Level.MINUTE)).isEmpty();
+        assertThat(RollupRangePlanner.plan(from, from.plusSeconds(5), Level.MINUTE))
+                .containsExactly(new Segment(Level.RAW, from, from.plusSeconds(5)));
+    }
+}
@@ -44,4 +44,20 @@ class JwtAuthenticationFilterTest {
         assertEquals(200, response.getStatus());
         assertNotNull(chain.getRequest());
     }
+
+    @Test
+    void ruleSetArtifactEndpointBypassesAdminJwtAuthentication() throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(
+                mock(JwtService.class),
+                mock(AdminUserRepository.class),
+                mock(AdminTokenBlacklistRepository.class));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/config/rule-sets/" + "0".repeat(64));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(200, response.getStatus());
+        assertNotNull(chain.getRequest());
+    }
 }
@@ -0,0 +1,85 @@
+package org.congcong.controlmanager.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.congcong.common.dto.AccessLog;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccessLogBatchDecoderTest {
+
+    private final AccessLogBatchDecoder decoder = new AccessLogBatchDecoder(Jackson2ObjectMapperBuilder.json().build());
+
+    @Test
+    void decodesWholeGzippedSmileBatchBeforeSavingItOnce() throws IOException {
+        int total = 2505;
+        Instant ts = Instant.parse("2026-05-13T06:19:52.650Z");
+        byte[] body = gzippedSmile(total, ts);
+        List<Integer> chunkSizes = new ArrayList<>();
+        List<AccessLog> received = new ArrayList<>();
+
+        int saved = decoder.decode(new ByteArrayInputStream(body), "gzip", logs -> {
+            chunkSizes.add(logs.size());
+            received.addAll(logs);
+            return logs.size();
+        });
+
+        assertThat(saved).isEqualTo(total);
+        assertThat(chunkSizes).containsExactly(total);
+        assertThat(received.get(0).getTs()).isEqualTo(ts);
+        assertThat(received.get(total - 1).getRequestId()).isEqualTo("req-" + (total - 1));
+        assertThat(received.get(7).getDnsAnswerIps()).containsExactly("1.1.1.1");
+    }
+
+    @Test
+    void truncatedBatchSavesNothing() throws IOException {
+        byte[] body = gzippedSmile(1500, Instant.now());
+        byte[] truncated = Arrays.copyOf(body, body.length / 2);
+        List<AccessLog> received = new ArrayList<>();
+
+        assertThatThrownBy(() -> decoder.decode(new ByteArrayInputStream(truncated), "gzip", logs -> {
+            received.addAll(logs);
+            return logs.size();
+        })).isInstanceOf(IOException.class);
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void rejectsUnsupportedContentEncoding() {
+        assertThatThrownBy(() -> decoder.decode(new ByteArrayInputStream(new byte[0]), "br", logs -> 0))
+                .isInstanceOf(AccessLogBatchDecoder.UnsupportedEncodingException.class);
+    }
+
+    /**
+     * 与工作节点相同的编码方式：jsr310 默认时间戳 + Smile 数组 + gzip
+     */
+    private static byte[] gzippedSmile(int count, Instant ts) throws IOException {
+        ObjectMapper workerMapper = new ObjectMapper(new SmileFactory()).findAndRegisterModules();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = workerMapper.getFactory().createGenerator(new GZIPOutputStream(out))) {
+            generator.writeStartArray();
+            for (int i = 0; i < count; i++) {
+                AccessLog accessLog = new AccessLog();
+                accessLog.setTs(ts);
+                accessLog.setRequestId("req-" + i);
+                accessLog.setDnsAnswerIps(List.of("1.1.1.1"));
+                workerMapper.writeValue(generator, accessLog);
+            }
+            generator.writeEndArray();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,78 @@
+package org.congcong.controlmanager.service.ruleset;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import org.congcong.common.dto.RuleSetDTO;
+import org.congcong.common.dto.RuleSetItemDTO;
+import org.congcong.common.enums.RuleSetItemType;
+import org.congcong.common.util.geo.RuleSetArtifact;
+import org.congcong.controlmanager.service.RuleSetService;
+import org.junit.jupiter.api.Test;
+
+class RuleSetArtifactServiceTest {
+
+    private final RuleSetService ruleSetService = mock(RuleSetService.class);
+    private final RuleSetArtifactService service = new RuleSetArtifactService(ruleSetService);
+
+    @Test
+    void warmUpCompilesPublishedRuleSetsOnce() {
+        RuleSetDTO ruleSet = ruleSet();
+        when(ruleSetService.getPublishedRuleSetsWithItems()).thenReturn(List.of(ruleSet));
+
+        service.warmUp();
+        String digest = service.digestOf(ruleSet);
+
+        byte[] bytes = service.find(digest).orElseThrow();
+        assertArrayEquals(RuleSetArtifact.compile("ai", ruleSet.getItems()).toBytes(), bytes);
+        assertEquals(digest, RuleSetArtifact.digest(bytes));
+        verify(ruleSetService, times(1)).getPublishedRuleSetsWithItems();
+    }
+
+    @Test
+    void unknownDigestDoesNotQueryRuleSets() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(service.find("0".repeat(64)).isEmpty());
+        }
+
+        verify(ruleSetService, times(0)).getPublishedRuleSetsWithItems();
+    }
+
+    @Test
+    void staleGenerationDoesNotEvictNewerArtifact() {
+        RuleSetDTO older = ruleSet(1L, "openai.com");
+        RuleSetDTO newer = ruleSet(2L, "anthropic.com");
+
+        // 新一代配置先完成
+        newer.setArtifactDigest(service.digestOf(newer));
+        service.retain(List.of(newer));
+        // 并发的旧一代配置随后完成
+        older.setArtifactDigest(service.digestOf(older));
+        service.retain(List.of(older));
+
+        assertTrue(service.find(newer.getArtifactDigest()).isPresent());
+        assertEquals(newer.getArtifactDigest(), service.digestOf(newer));
+    }
+
+    private static RuleSetDTO ruleSet() {
+        return ruleSet(1L, "openai.com");
+    }
+
+    private static RuleSetDTO ruleSet(Long versionNo, String domain) {
+        RuleSetItemDTO item = new RuleSetItemDTO();
+        item.setType(RuleSetItemType.DOMAIN_SUFFIX);
+        item.setValue(domain);
+        RuleSetDTO ruleSet = new RuleSetDTO();
+        ruleSet.setId(1L);
+        ruleSet.setRuleKey("ai");
+        ruleSet.setVersionNo(versionNo);
+        ruleSet.setItems(List.of(item));
+        return ruleSet;
+    }
+}
@@ -36,6 +36,26 @@ class RuleSetTextParserTest {
         ), items);
     }
 
+    @Test
+    @DisplayName("解析 clash classical 中的 IP-CIDR 规则")
+    void testParseClashClassicalIpCidr() {
+        String content = """
+                payload:
+                  - IP-CIDR,10.0.0.0/8,no-resolve
+                  - IP-CIDR6,2001:DB8::/32
+                  - IP-CIDR,not-an-ip/8
+                  - IP-CIDR,2001:db8:1::/48
+                """;
+
+        List<RuleSetItemDTO> items = parser.parse(content, RuleSetSourceFormat.CLASH_CLASSICAL);
+
+        assertEquals(List.of(
+                item(RuleSetItemType.IP_CIDR, "10.0.0.0/8"),
+                item(RuleSetItemType.IP_CIDR6, "2001:db8:1::/48"),
+                item(RuleSetItemType.IP_CIDR6, "2001:db8::/32")
+        ), items);
+    }
+
     @Test
     @DisplayName("解析 clash classical 规则")
     void testParseClashClassical() {
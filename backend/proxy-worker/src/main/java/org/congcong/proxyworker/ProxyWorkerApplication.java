@@ -5,15 +5,23 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
 import org.congcong.common.dto.*;
+import org.congcong.common.util.geo.GeoIPUtil;
 import org.congcong.proxyworker.audit.AccessLogUtil;
 import org.congcong.proxyworker.config.InboundConfig;
+import org.congcong.proxyworker.config.ProxyWorkerConfig;
+import org.congcong.proxyworker.config.RateLimitConfig;
 import org.congcong.proxyworker.config.RouteConfig;
 import org.congcong.proxyworker.config.UserConfig;
+import org.congcong.proxyworker.ratelimit.RateLimitRegistry;
+import org.congcong.proxyworker.router.CompiledRouteRegistry;
+import org.congcong.proxyworker.rules.RuleSetArtifactStore;
 import org.congcong.proxyworker.rules.RuleSetRegistry;
 import org.congcong.proxyworker.server.ProxyContext;
+import org.congcong.proxyworker.server.SpliceRelay;
 import org.congcong.proxyworker.service.AggregateConfigService;
 import org.congcong.proxyworker.service.WorkerControlService;
 
+import java.nio.file.Path;
 import java.util.*;
 
 /**
@@ -31,7 +39,11 @@ public class ProxyWorkerApplication {
         WorkerControlService workerControlService = WorkerControlService.forAggregateConfigService(configService);
         
         // 设置配置变更监听器
-        configService.setConfigChangeListener(new ConfigChangeListener());
+        RuleSetArtifactStore artifactStore = new RuleSetArtifactStore(
+                Path.of(ProxyWorkerConfig.getInstance().getRuleSetArtifactDir()), configService::fetchRuleSetArtifact);
+        configService.setConfigChangeListener(new ConfigChangeListener(artifactStore));
+        // 提前加载 GeoIP 库并构建国家区间索引，避免首个 GEO 选路在 event loop 上等待
+        GeoIPUtil.getInstance();
         // 日志服务启动
         AccessLogUtil.start();
         workerControlService.start();
@@ -59,6 +71,12 @@ public class ProxyWorkerApplication {
      * 配置变更监听器实现
      */
     private static class ConfigChangeListener implements AggregateConfigService.ConfigChangeListener {
+        private final RuleSetArtifactStore artifactStore;
+
+        private ConfigChangeListener(RuleSetArtifactStore artifactStore) {
+            this.artifactStore = artifactStore;
+        }
+
         @Override
         public void onConfigChanged(AggregateConfigResponse newConfig) {
             log.info("收到配置变更通知:");
@@ -156,10 +174,35 @@ public class ProxyWorkerApplication {
                     inboundConfigs.add(inboundConfig);
                 }
             }
-            RuleSetRegistry.refresh(newConfig.getRuleSets());
+            // 限流规则
+            List<RateLimitConfig> rateLimitConfigs = new ArrayList<>();
+            if (newConfig.getRateLimits() != null) {
+                for (RateLimitDTO rateLimit : newConfig.getRateLimits()) {
+                    if (rateLimit != null) {
+                        rateLimitConfigs.add(mapper.convertValue(rateLimit, RateLimitConfig.class));
+                    }
+                }
+            }
+            // 规则集产物取不到时抛出异常，本次配置整体不生效，下次轮询重试
+            RuleSetRegistry.refresh(newConfig.getRuleSets(), artifactStore::load);
+            RateLimitRegistry.refresh(rateLimitConfigs);
+            SpliceRelay.onRateLimitsRefreshed();
+            retainArtifacts(newConfig.getRuleSets());
+            CompiledRouteRegistry.refresh(inboundConfigs);
             log.info("已构建入站配置数量: {}", inboundConfigs.size());
             // 刷新代理服务
             PROXY_CONTEXT.refresh(inboundConfigs);
         }
+
+        private void retainArtifacts(List<RuleSetDTO> ruleSets) {
+            if (ruleSets == null) {
+                return;
+            }
+            artifactStore.retain(ruleSets.stream()
+                    .filter(Objects::nonNull)
+                    .map(RuleSetDTO::getArtifactDigest)
+                    .filter(Objects::nonNull)
+                    .toList());
+        }
     }
 }
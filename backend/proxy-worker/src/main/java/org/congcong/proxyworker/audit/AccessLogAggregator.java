@@ -0,0 +1,206 @@
+package org.congcong.proxyworker.audit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.congcong.common.dto.AccessLog;
+import org.congcong.common.dto.AccessLogRollup;
+import org.congcong.proxyworker.config.ProxyWorkerConfig;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 访问日志边缘聚合
+ * <ul>
+ *     <li>只处理入站协议在 {@code log.aggregate.protocols} 中的访问日志，其余照常按明细上报</li>
+ *     <li>按 (分钟, 用户, 入站, 路由, 目标主机, 状态) 累加请求数、上下行字节和耗时，分钟结束后由后台线程整体上报</li>
+ *     <li>被聚合的日志按 {@code log.aggregate.sampleRate} 抽样保留明细，带 sampled 标记，管理端统计流量时不重复计算</li>
+ *     <li>单个窗口的维度组合数超过 {@code log.aggregate.maxKeys} 时，新组合退回明细上报，避免扫描类流量撑爆内存</li>
+ * </ul>
+ */
+@Slf4j
+public class AccessLogAggregator {
+
+    static final long WINDOW_MS = TimeUnit.MINUTES.toMillis(1);
+    // 分钟结束后再等一会儿，让跨分钟边界完成的请求落进对应窗口
+    static final long GRACE_MS = 5_000;
+    private static final long TICK_MS = 5_000;
+
+    private final Set<String> protocols;
+    private final double sampleRate;
+    private final int maxKeys;
+    private final Consumer<AccessLogRollup> sink;
+
+    private final ConcurrentHashMap<RollupKey, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+
+    public AccessLogAggregator(Set<String> protocols, double sampleRate, int maxKeys, Consumer<AccessLogRollup> sink) {
+        this.protocols = protocols;
+        this.sampleRate = sampleRate;
+        this.maxKeys = maxKeys;
+        this.sink = sink;
+    }
+
+    public static AccessLogAggregator fromConfig(ProxyWorkerConfig config, Consumer<AccessLogRollup> sink) {
+        return new AccessLogAggregator(config.getLogAggregateProtocols(), config.getLogAggregateSampleRate(),
+                config.getLogAggregateMaxKeys(), sink);
+    }
+
+    public boolean isEnabled() {
+        return !protocols.isEmpty();
+    }
+
+    /**
+     * 记录一条访问日志
+     * @return 是否仍需按明细上报（未开启聚合的入站、抽样命中或维度组合超限）
+     */
+    public boolean offer(AccessLog accessLog) {
+        String protocol = accessLog.getInboundProtocolType();
+        if (protocol == null || !protocols.contains(protocol)) {
+            return true;
+        }
+        RollupKey key = RollupKey.of(accessLog);
+        if (buckets.size() >= maxKeys && !buckets.containsKey(key)) {
+            overflow.incrementAndGet();
+            return true;
+        }
+        boolean sampled = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        // compute 与 drain 中的 remove 在同一个 key 上互斥，不会丢失累加
+        buckets.compute(key, (k, bucket) -> {
+            Bucket b = bucket == null ? new Bucket(accessLog) : bucket;
+            b.add(accessLog, sampled);
+            return b;
+        });
+        if (sampled) {
+            accessLog.setSampled(true);
+        }
+        return sampled;
+    }
+
+    /**
+     * 上报分钟起点早于 cutoffMillis 对应窗口的聚合
+     * @return 上报的聚合条数
+     */
+    int drain(long cutoffMillis) {
+        int drained = 0;
+        for (RollupKey key : buckets.keySet()) {
+            if (key.minute() + WINDOW_MS > cutoffMillis) {
+                continue;
+            }
+            Bucket bucket = buckets.remove(key);
+            if (bucket != null) {
+                sink.accept(bucket.toRollup(key));
+                drained++;
+            }
+        }
+        long dropped = overflow.getAndSet(0);
+        if (dropped > 0) {
+            log.warn("访问日志聚合维度组合超过上限 {}，{} 条日志改为明细上报", maxKeys, dropped);
+        }
+        return drained;
+    }
+
+    public synchronized void start() {
+        if (!isEnabled() || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "access-log-aggregator");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                drain(System.currentTimeMillis() - GRACE_MS);
+            } catch (RuntimeException e) {
+                log.warn("访问日志聚合上报失败: {}", e.toString());
+            }
+        }, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+        log.info("访问日志边缘聚合已开启 - 协议: {}, 明细抽样比例: {}", protocols, sampleRate);
+    }
+
+    /**
+     * 停止时把未结束的窗口一并上报
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        drain(Long.MAX_VALUE - WINDOW_MS);
+    }
+
+    record RollupKey(long minute, Long userId, Long inboundId, Long routePolicyId, String host, Integer status) {
+        static RollupKey of(AccessLog accessLog) {
+            long ts = accessLog.getTs() == null ? System.currentTimeMillis() : accessLog.getTs().toEpochMilli();
+            return new RollupKey(ts - Math.floorMod(ts, WINDOW_MS), accessLog.getUserId(), accessLog.getInboundId(),
+                    accessLog.getRoutePolicyId(), accessLog.getOriginalTargetHost(), accessLog.getStatus());
+        }
+    }
+
+    /**
+     * 只在 ConcurrentHashMap.compute 内修改，从 map 移除后只读
+     */
+    private static final class Bucket {
+        final String username;
+        final String proxyName;
+        final String inboundProtocolType;
+        final String outboundProtocolType;
+        final String routePolicyName;
+        long requests;
+        long bytesIn;
+        long bytesOut;
+        long requestDurationMs;
+        long sampled;
+
+        Bucket(AccessLog first) {
+            this.username = first.getUsername();
+            this.proxyName = first.getProxyName();
+            this.inboundProtocolType = first.getInboundProtocolType();
+            this.outboundProtocolType = first.getOutboundProtocolType();
+            this.routePolicyName = first.getRoutePolicyName();
+        }
+
+        void add(AccessLog accessLog, boolean sampledRow) {
+            requests++;
+            bytesIn += nullToZero(accessLog.getBytesIn());
+            bytesOut += nullToZero(accessLog.getBytesOut());
+            requestDurationMs += nullToZero(accessLog.getRequestDurationMs());
+            if (sampledRow) {
+                sampled++;
+            }
+        }
+
+        AccessLogRollup toRollup(RollupKey key) {
+            AccessLogRollup rollup = new AccessLogRollup();
+            rollup.setTs(Instant.ofEpochMilli(key.minute()));
+            rollup.setUserId(key.userId());
+            rollup.setInboundId(key.inboundId());
+            rollup.setRoutePolicyId(key.routePolicyId());
+            rollup.setOriginalTargetHost(key.host());
+            rollup.setStatus(key.status());
+            rollup.setUsername(username);
+            rollup.setProxyName(proxyName);
+            rollup.setInboundProtocolType(inboundProtocolType);
+            rollup.setOutboundProtocolType(outboundProtocolType);
+            rollup.setRoutePolicyName(routePolicyName);
+            rollup.setRequests(requests);
+            rollup.setBytesIn(bytesIn);
+            rollup.setBytesOut(bytesOut);
+            rollup.setRequestDurationMs(requestDurationMs);
+            rollup.setSampled(sampled);
+            return rollup;
+        }
+
+        private static long nullToZero(Long v) {
+            return v == null ? 0L : v;
+        }
+    }
+}
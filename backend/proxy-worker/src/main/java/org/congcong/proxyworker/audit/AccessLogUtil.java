@@ -8,6 +8,7 @@ import org.congcong.common.dto.AccessLog;
 import org.congcong.common.enums.ProtocolType;
 import org.congcong.common.enums.RoutePolicy;
 import org.congcong.proxyworker.audit.impl.AsyncHttpLogPublisher;
+import org.congcong.proxyworker.config.ProxyWorkerConfig;
 import org.congcong.proxyworker.server.netty.ChannelAttributes;
 import org.congcong.proxyworker.server.tunnel.DnsProxyContext;
 
@@ -17,7 +18,9 @@ import java.util.concurrent.atomic.AtomicLong;
 
 public class AccessLogUtil {
 
-    private static final LogPublisher logPublisher = new AsyncHttpLogPublisher(1000, 100, 50);
+    private static final LogPublisher logPublisher = new AsyncHttpLogPublisher(8192, 100, 50);
+    private static final AccessLogAggregator aggregator =
+            AccessLogAggregator.fromConfig(ProxyWorkerConfig.getInstance(), logPublisher::publishRollup);
     
     // 高性能ID生成器
     private static final AtomicLong REQUEST_ID_COUNTER = new AtomicLong(0);
@@ -43,7 +46,7 @@ public class AccessLogUtil {
         AccessLog accessLog = createAccessLog(proxyContext, timeContext);
         accessLog.setStatus(200); // 成功状态码
         
-        logPublisher.publishAccess(accessLog);
+        publish(accessLog);
     }
 
     public static void logFailure(Channel channel, int status, String errorCode, String errorMsg) {
@@ -67,7 +70,7 @@ public class AccessLogUtil {
         accessLog.setErrorCode(errorCode);
         accessLog.setErrorMsg(errorMsg);
         
-        logPublisher.publishAccess(accessLog);
+        publish(accessLog);
     }
 
     public static void logDns(ProxyContext proxyContext,
@@ -90,7 +93,16 @@ public class AccessLogUtil {
             accessLog.setErrorMsg("DNS response code: " + code);
         }
 
-        logPublisher.publishAccess(accessLog);
+        publish(accessLog);
+    }
+
+    /**
+     * 开启边缘聚合的入站先计入分钟聚合，只有抽样命中的才按明细上报；管理端不支持聚合时全部按明细上报
+     */
+    private static void publish(AccessLog accessLog) {
+        if (!logPublisher.acceptsRollups() || aggregator.offer(accessLog)) {
+            logPublisher.publishAccess(accessLog);
+        }
     }
 
     /**
@@ -161,9 +173,12 @@ public class AccessLogUtil {
         // 触发类加载就可以初始化日志服务
         // logPublisher 已经在静态初始化时创建，这里可以执行额外的启动逻辑
         // 例如：验证配置、预热连接池等
+        aggregator.start();
     }
 
     public static void stop() {
+        // 先把未结束的聚合窗口交给发布器，再关闭发布器落盘
+        aggregator.stop();
         logPublisher.shutdown();
     }
 }
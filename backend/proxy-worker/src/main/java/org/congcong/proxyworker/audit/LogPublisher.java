@@ -2,6 +2,7 @@ package org.congcong.proxyworker.audit;
 
 import org.congcong.common.dto.AuthLog;
 import org.congcong.common.dto.AccessLog;
+import org.congcong.common.dto.AccessLogRollup;
 
 /**
  * 日志发布接口
@@ -18,6 +19,18 @@ public interface LogPublisher {
      */
     void publishAccess(AccessLog log);
 
+    /**
+     * 发布访问日志分钟聚合（异步入队）。
+     */
+    void publishRollup(AccessLogRollup rollup);
+
+    /**
+     * 管理端是否接收分钟聚合，不接收时访问日志应全部按明细发布。
+     */
+    default boolean acceptsRollups() {
+        return true;
+    }
+
     /**
      * 关闭发布器，释放资源。
      */
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.congcong.proxyworker.audit.LogPublisher;
 import org.congcong.common.dto.AccessLog;
+import org.congcong.common.dto.AccessLogRollup;
 import org.congcong.common.dto.AuthLog;
 import org.congcong.proxyworker.config.ProxyWorkerConfig;
 import org.slf4j.Logger;
@@ -14,144 +15,475 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * 异步HTTP日志发布器
- * - 将日志对象入队，后台线程定期批量发送到管理端
- * - 简化实现：两条队列分别处理认证日志与访问日志
+ * - 事件循环线程只做非阻塞入队，从不序列化或访问磁盘；交接队列满时放入同样容量的无锁溢出队列，由写线程随后落盘
+ *   （此时记录顺序可能与产生顺序不同），两者都满时丢弃并计数
+ * - 认证日志、访问日志、访问日志分钟聚合各自独立排队和上报
+ * - 每类日志一个写线程把日志序列化为 Smile 后追加到 {@link LogSpool}（默认磁盘分段缓冲），一个发送线程按顺序批量读取并上报
+ * - 上报默认使用 gzip 压缩的 Smile 数组（见 {@link LogBatchEncoder}），管理端返回 415 时退回 JSON，之后每 10 分钟重新尝试一次
+ * - 上报失败（网络错误、5xx、408/429）按指数退避重试同一批，成功后才确认；
+ *   其余 4xx 时把这一批转入隔离缓冲后再确认，不阻塞后续日志，隔离缓冲每 10 分钟重发一次，鉴权或代理的临时错误恢复后仍能送达
+ * - 分钟聚合上报返回 404/405 说明管理端还没有聚合接口，此时 {@link #acceptsRollups()} 返回 false，访问日志改为全部按明细上报；
+ *   已聚合的批次进入隔离缓冲，管理端升级后隔离缓冲送达即恢复聚合
+ * - 停止时未送达的日志留在磁盘缓冲中，下次启动后继续补发
  */
 public class AsyncHttpLogPublisher implements LogPublisher {
     private static final Logger log = LoggerFactory.getLogger(AsyncHttpLogPublisher.class);
 
-    // 队列与批量参数
-    private final BlockingQueue<AuthLog> authQueue;
-    private final BlockingQueue<AccessLog> accessQueue;
+    static final long INITIAL_BACKOFF_MS = 500;
+    private static final long DROP_REPORT_INTERVAL_MS = 10_000;
+    private static final int WRITE_CHUNK = 512;
+    private static final long FORMAT_REPROBE_MS = TimeUnit.MINUTES.toMillis(10);
+    static final long QUARANTINE_RETRY_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private final LogStream<AuthLog> authStream;
+    private final LogStream<AccessLog> accessStream;
+    private final LogStream<AccessLogRollup> rollupStream;
     private final int batchSize;
     private final long flushIntervalMs;
+    private final long maxBackoffMs;
+    private final LogBatchEncoder.Format preferredFormat;
 
     // 发送依赖
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
-    private final ProxyWorkerConfig config;
+    private final LogBatchEncoder encoder = new LogBatchEncoder();
 
-    // 调度线程
-    private final ScheduledExecutorService scheduler;
+    // 每类日志一个写线程、一个发送线程
+    private final ExecutorService workers;
+    // FileChannel 被中断会直接关闭，工作线程通过标志位退出而不是中断
+    private volatile boolean running = true;
+    private volatile boolean rollupsAccepted = true;
+    private final CountDownLatch stopSignal = new CountDownLatch(1);
 
     public AsyncHttpLogPublisher(int queueCapacity, int batchSize, long flushIntervalMs) {
-        this.authQueue = new ArrayBlockingQueue<>(queueCapacity);
-        this.accessQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this(queueCapacity, batchSize, flushIntervalMs, ProxyWorkerConfig.getInstance());
+    }
+
+    private AsyncHttpLogPublisher(int queueCapacity, int batchSize, long flushIntervalMs, ProxyWorkerConfig config) {
+        this(queueCapacity, batchSize, flushIntervalMs, config.getLogPublishMaxBackoffMs(),
+                LogBatchEncoder.Format.of(config.getLogPublishFormat()),
+                config.getAuthLogUrl(), config.getAccessLogUrl(), config.getAccessLogRollupUrl(),
+                name -> openSpool(config, name));
+    }
+
+    /**
+     * @param spools 按名称打开缓冲：auth、access、rollup 以及对应的隔离缓冲 auth-quarantine 等
+     */
+    AsyncHttpLogPublisher(int queueCapacity, int batchSize, long flushIntervalMs, long maxBackoffMs,
+                          LogBatchEncoder.Format preferredFormat,
+                          String authUrl, String accessUrl, String rollupUrl,
+                          Function<String, LogSpool> spools) {
         this.batchSize = Math.max(1, batchSize);
-        this.flushIntervalMs = Math.max(200, flushIntervalMs);
+        this.flushIntervalMs = Math.max(20, flushIntervalMs);
+        this.maxBackoffMs = Math.max(INITIAL_BACKOFF_MS, maxBackoffMs);
+        this.preferredFormat = preferredFormat;
+        this.authStream = new LogStream<>("auth", authUrl, queueCapacity, spools, preferredFormat);
+        this.accessStream = new LogStream<>("access", accessUrl, queueCapacity, spools, preferredFormat);
+        this.rollupStream = new LogStream<>("rollup", rollupUrl, queueCapacity, spools, preferredFormat);
 
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofMillis(5000))
                 .build();
-        this.objectMapper = new ObjectMapper();
+        this.objectMapper = new ObjectMapper(encoder.recordFactory());
         this.objectMapper.registerModule(new JavaTimeModule());
-        this.config = ProxyWorkerConfig.getInstance();
 
-        this.scheduler = Executors.newScheduledThreadPool(2);
-        this.scheduler.execute(() -> processQueue(authQueue, config.getAuthLogUrl(), "auth"));
-        this.scheduler.execute(() -> processQueue(accessQueue, config.getAccessLogUrl(), "access"));
-        log.info("AsyncHttpLogPublisher started with batch dispatch: batchSize={}, flushIntervalMs={}", batchSize, this.flushIntervalMs);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(6, r -> {
+            Thread t = new Thread(r, "log-publisher-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (LogStream<?> stream : streams()) {
+            workers.execute(() -> writeLoop(stream));
+            workers.execute(() -> sendLoop(stream));
+        }
+        log.info("AsyncHttpLogPublisher started with spooled dispatch: batchSize={}, flushIntervalMs={}, maxBackoffMs={}, format={}",
+                this.batchSize, this.flushIntervalMs, this.maxBackoffMs, preferredFormat);
+    }
+
+    /**
+     * 打开磁盘缓冲，关闭或目录不可用时退化为同样容量上限的内存缓冲
+     */
+    private static LogSpool openSpool(ProxyWorkerConfig config, String name) {
+        if (config.isLogSpoolEnabled()) {
+            Path dir = Path.of(config.getLogSpoolDir(), name);
+            try {
+                return new DiskLogSpool(dir, config.getLogSpoolSegmentBytes(), config.getLogSpoolMaxBytes());
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to open log spool {}, falling back to in-memory buffer: {}", dir, e.toString());
+            }
+        }
+        return new MemoryLogSpool(config.getLogSpoolMaxBytes());
     }
 
     @Override
     public void publishAuth(AuthLog logItem) {
         if (logItem == null) return;
-        boolean offered = authQueue.offer(logItem);
-        if (!offered) {
-            // 队列满时丢弃并记录；可升级为本地回退文件
-            log.warn("Auth log queue full, dropping log");
-        }
+        offer(authStream, logItem);
     }
 
     @Override
     public void publishAccess(AccessLog logItem) {
         if (logItem == null) return;
-        boolean offered = accessQueue.offer(logItem);
-        if (!offered) {
-            log.warn("Access log queue full, dropping log");
+        offer(accessStream, logItem);
+    }
+
+    @Override
+    public void publishRollup(AccessLogRollup rollup) {
+        if (rollup == null) return;
+        offer(rollupStream, rollup);
+    }
+
+    @Override
+    public boolean acceptsRollups() {
+        return rollupsAccepted;
+    }
+
+    /**
+     * 调用方多为事件循环线程，这里不序列化、不访问磁盘；交接队列满说明写线程暂时跟不上，
+     * 先放入溢出队列由写线程随后落盘，溢出队列也满时丢弃并计数
+     */
+    private <T> void offer(LogStream<T> stream, T item) {
+        if (stream.queue.offer(item)) {
+            return;
+        }
+        if (stream.overflowSize.incrementAndGet() <= stream.overflowCapacity) {
+            stream.overflow.add(item);
+            stream.overflowed.incrementAndGet();
+        } else {
+            stream.overflowSize.decrementAndGet();
+            stream.queueFullDrops.incrementAndGet();
         }
     }
 
-    // 单线程消费者：达到批量阈值或等待窗口到期即发送，避免固定调度导致堆积
-    private <T> void processQueue(BlockingQueue<T> queue, String url, String queueName) {
-        List<T> buffer = new ArrayList<>(batchSize);
-        long lastFlushTime = System.nanoTime();
-        final long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+    private List<LogStream<?>> streams() {
+        return List.of(authStream, accessStream, rollupStream);
+    }
 
+    /**
+     * 交接队列 -> 缓冲；写磁盘只发生在这个线程，不占用事件循环
+     */
+    private <T> void writeLoop(LogStream<T> stream) {
+        List<T> chunk = new ArrayList<>(WRITE_CHUNK);
         try {
-            while (!Thread.currentThread().isInterrupted()) {
-                // 等待下一条日志或超时，避免空转
-                T item = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+            while (running) {
+                T item = stream.queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
                 if (item != null) {
-                    buffer.add(item);
-                    queue.drainTo(buffer, batchSize - buffer.size());
+                    chunk.add(item);
+                    stream.queue.drainTo(chunk, WRITE_CHUNK - 1);
                 }
+                stream.drainOverflow(chunk, WRITE_CHUNK);
+                spool(stream, chunk);
+                chunk.clear();
+                stream.reportDrops();
+            }
+            // 停止时把交接队列和溢出队列里剩余的日志落盘，下次启动补发
+            stream.queue.drainTo(chunk);
+            stream.drainOverflow(chunk, Integer.MAX_VALUE);
+            spool(stream, chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-                boolean hitBatchSize = buffer.size() >= batchSize;
-                boolean hitMaxWait = !buffer.isEmpty() && (System.nanoTime() - lastFlushTime >= maxWaitNanos);
-                if (hitBatchSize || hitMaxWait) {
-                    sendBatch(new ArrayList<>(buffer), url);
-                    buffer.clear();
-                    lastFlushTime = System.nanoTime();
+    private <T> void spool(LogStream<T> stream, List<T> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        for (T item : items) {
+            try {
+                if (!stream.spool.append(objectMapper.writeValueAsBytes(item))) {
+                    stream.spoolFullDrops.incrementAndGet();
+                }
+            } catch (IOException | RuntimeException e) {
+                stream.spoolErrorDrops.incrementAndGet();
+                log.warn("Failed to spool {} log: {}", stream.name, e.toString());
+            }
+        }
+        stream.available.release();
+    }
+
+    /**
+     * 缓冲 -> 管理端；凑满一批或距上次发送超过 flushIntervalMs 即发送，失败时指数退避重试同一批
+     */
+    private void sendLoop(LogStream<?> stream) {
+        long backoffMs = 0;
+        long lastSendNanos = System.nanoTime();
+        final long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        try {
+            while (running) {
+                boolean retry;
+                int batchCount = 0;
+                try {
+                    retryQuarantine(stream);
+                    List<byte[]> batch = stream.spool.peek(batchSize);
+                    long waitedNanos = System.nanoTime() - lastSendNanos;
+                    if (batch.isEmpty() || (batch.size() < batchSize && waitedNanos < maxWaitNanos)) {
+                        long waitNanos = batch.isEmpty() ? maxWaitNanos : maxWaitNanos - waitedNanos;
+                        stream.available.tryAcquire(waitNanos, TimeUnit.NANOSECONDS);
+                        stream.available.drainPermits();
+                        continue;
+                    }
+                    batchCount = batch.size();
+                    SendResult result = sendBatch(batch, stream);
+                    if (result == SendResult.DOWNGRADED) {
+                        continue;
+                    }
+                    retry = result == SendResult.RETRY;
+                    lastSendNanos = System.nanoTime();
+                    if (result == SendResult.REJECTED) {
+                        quarantine(stream, batch);
+                    }
+                    if (!retry) {
+                        stream.spool.ack();
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to read or encode {} logs: {}", stream.name, e.toString());
+                    retry = true;
+                }
+                if (!retry) {
+                    if (backoffMs > 0) {
+                        log.info("Log delivery to {} recovered", stream.url);
+                        backoffMs = 0;
+                    }
+                    continue;
+                }
+                backoffMs = backoffMs == 0 ? INITIAL_BACKOFF_MS : Math.min(backoffMs * 2, maxBackoffMs);
+                long delayMs = backoffMs + ThreadLocalRandom.current().nextLong(backoffMs / 5 + 1);
+                log.warn("Retrying {} {} logs in {} ms ({} bytes spooled)", batchCount, stream.name,
+                        delayMs, stream.spool.sizeBytes());
+                if (stopSignal.await(delayMs, TimeUnit.MILLISECONDS)) {
+                    break;
                 }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            log.info("Log worker for {} interrupted", queueName);
-        } catch (Exception e) {
-            log.warn("Unexpected error in log worker {}: {}", queueName, e.toString());
-        } finally {
-            if (!buffer.isEmpty()) {
-                sendBatch(buffer, url);
+            log.info("Log sender for {} interrupted", stream.name);
+        }
+    }
+
+    /**
+     * 被拒绝的一批转入隔离缓冲，隔离缓冲也写不下时才丢弃
+     */
+    private void quarantine(LogStream<?> stream, List<byte[]> batch) throws IOException {
+        int dropped = 0;
+        for (byte[] record : batch) {
+            if (!stream.quarantine.append(record)) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            stream.spoolFullDrops.addAndGet(dropped);
+        }
+        stream.quarantinedAtMillis = System.currentTimeMillis();
+        log.error("Quarantined {} {} logs rejected by {} ({} dropped, quarantine holds {} bytes)",
+                batch.size() - dropped, stream.name, stream.url, dropped, stream.quarantine.sizeBytes());
+    }
+
+    /**
+     * 距上次尝试满 {@link #QUARANTINE_RETRY_MS} 后重发隔离缓冲，成功一批就继续下一批，否则等下一个周期
+     */
+    private void retryQuarantine(LogStream<?> stream) throws IOException, InterruptedException {
+        if (stream.quarantine.sizeBytes() == 0
+                || System.currentTimeMillis() - stream.quarantinedAtMillis < QUARANTINE_RETRY_MS) {
+            return;
+        }
+        stream.quarantinedAtMillis = System.currentTimeMillis();
+        int delivered = 0;
+        while (running) {
+            List<byte[]> batch = stream.quarantine.peek(batchSize);
+            if (batch.isEmpty() || sendBatch(batch, stream) != SendResult.DELIVERED) {
+                break;
             }
+            stream.quarantine.ack();
+            delivered += batch.size();
+        }
+        if (delivered > 0) {
+            log.info("Delivered {} quarantined {} logs to {}", delivered, stream.name, stream.url);
         }
     }
 
-    private <T> void sendBatch(List<T> batch, String url) {
+    private enum SendResult {
+        DELIVERED, REJECTED, RETRY,
+        /**
+         * 管理端不支持当前编码，已切换编码，立即重发同一批
+         */
+        DOWNGRADED
+    }
+
+    private SendResult sendBatch(List<byte[]> batch, LogStream<?> stream) throws InterruptedException, IOException {
+        LogBatchEncoder.Format format = stream.currentFormat(preferredFormat);
+        byte[] body = encoder.encode(batch, format);
         try {
-            String body = objectMapper.writeValueAsString(batch);
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
+            HttpRequest.Builder builder = HttpRequest.newBuilder()
+                    .uri(URI.create(stream.url))
                     .timeout(Duration.ofMillis(5000))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(body))
-                    .build();
-            HttpResponse<String> resp = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
-                log.debug("Sent {} logs to {}", batch.size(), url);
-            } else {
-                log.warn("Failed to send logs: status={}, url={}, bodyLen={}", resp.statusCode(), url, body.length());
+                    .header("Content-Type", format.contentType)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+            if (format.contentEncoding != null) {
+                builder.header("Content-Encoding", format.contentEncoding);
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.warn("Error sending logs (interrupted): {}", e.toString());
-        } catch (IOException e) {
-            log.warn("Error sending logs: {}", e.toString());
+            HttpResponse<Void> resp = httpClient.send(builder.build(), HttpResponse.BodyHandlers.discarding());
+            int status = resp.statusCode();
+            if (status >= 200 && status < 300) {
+                log.debug("Sent {} logs to {} as {} ({} bytes)", batch.size(), stream.url, format, body.length);
+                if (stream == rollupStream && !rollupsAccepted) {
+                    log.info("{} accepts access log rollups again, resuming aggregation", stream.url);
+                    rollupsAccepted = true;
+                }
+                return SendResult.DELIVERED;
+            }
+            if ((status == 404 || status == 405) && stream == rollupStream) {
+                if (rollupsAccepted) {
+                    log.warn("{} does not accept access log rollups (status={}), sending raw access logs instead",
+                            stream.url, status);
+                    rollupsAccepted = false;
+                }
+                return SendResult.REJECTED;
+            }
+            if (status == 415 && format != LogBatchEncoder.Format.JSON) {
+                log.info("{} does not accept {}, falling back to JSON", stream.url, format);
+                stream.downgrade();
+                return SendResult.DOWNGRADED;
+            }
+            if (status >= 400 && status < 500 && status != 408 && status != 429) {
+                log.warn("{} logs rejected by {}: status={}, bodyLen={}", batch.size(), stream.url, status, body.length);
+                return SendResult.REJECTED;
+            }
+            log.warn("Failed to send logs: status={}, url={}, bodyLen={}", status, stream.url, body.length);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Error sending logs to {}: {}", stream.url, e.toString());
         }
+        return SendResult.RETRY;
     }
 
     @Override
     public void shutdown() {
-        scheduler.shutdown();
+        running = false;
+        stopSignal.countDown();
+        workers.shutdown();
         try {
-            if (!scheduler.awaitTermination(3, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
+            // 发送线程可能阻塞在一次 HTTP 请求上，超时后中断它，未确认的这一批下次启动重发
+            if (!workers.awaitTermination(3, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+                workers.awaitTermination(1, TimeUnit.SECONDS);
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            scheduler.shutdownNow();
+            workers.shutdownNow();
+        }
+        for (LogStream<?> stream : streams()) {
+            try {
+                stream.spool.close();
+                stream.quarantine.close();
+            } catch (IOException e) {
+                log.warn("Failed to close {} log spool: {}", stream.name, e.toString());
+            }
         }
         log.info("AsyncHttpLogPublisher stopped");
     }
+
+    private static final class LogStream<T> {
+        final String name;
+        final String url;
+        final BlockingQueue<T> queue;
+        // 交接队列满时的溢出，调用线程只做无锁入队，由写线程取出落盘
+        final Queue<T> overflow = new ConcurrentLinkedQueue<>();
+        final AtomicInteger overflowSize = new AtomicInteger();
+        final int overflowCapacity;
+        final LogSpool spool;
+        // 被管理端以 4xx 拒绝的批次，只在发送线程中访问
+        final LogSpool quarantine;
+        // 写线程每次落盘后释放，发送线程据此提前结束等待
+        final Semaphore available = new Semaphore(0);
+        final AtomicLong overflowed = new AtomicLong();
+        final AtomicLong queueFullDrops = new AtomicLong();
+        final AtomicLong spoolFullDrops = new AtomicLong();
+        final AtomicLong spoolErrorDrops = new AtomicLong();
+        private long lastDropReportMillis;
+        // 只在发送线程中读写
+        private LogBatchEncoder.Format format;
+        private long downgradedAtMillis;
+        private long quarantinedAtMillis;
+
+        LogStream(String name, String url, int queueCapacity, Function<String, LogSpool> spools, LogBatchEncoder.Format format) {
+            this.name = name;
+            this.url = url;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.overflowCapacity = queueCapacity;
+            this.spool = spools.apply(name);
+            this.quarantine = spools.apply(name + "-quarantine");
+            this.format = format;
+        }
+
+        /**
+         * 从溢出队列取出最多 max 条，只在写线程中调用
+         */
+        void drainOverflow(List<T> chunk, int max) {
+            T item;
+            while (chunk.size() < max && (item = overflow.poll()) != null) {
+                overflowSize.decrementAndGet();
+                chunk.add(item);
+            }
+        }
+
+        /**
+         * 退回 JSON 一段时间后重新尝试首选编码，管理端升级后无需重启工作节点
+         */
+        LogBatchEncoder.Format currentFormat(LogBatchEncoder.Format preferred) {
+            if (format != preferred && System.currentTimeMillis() - downgradedAtMillis >= FORMAT_REPROBE_MS) {
+                format = preferred;
+            }
+            return format;
+        }
+
+        void downgrade() {
+            format = LogBatchEncoder.Format.JSON;
+            downgradedAtMillis = System.currentTimeMillis();
+        }
+
+        /**
+         * 丢弃汇总日志，最多每 10 秒一条，避免突发流量下刷屏
+         */
+        void reportDrops() {
+            long now = System.currentTimeMillis();
+            if (now - lastDropReportMillis < DROP_REPORT_INTERVAL_MS) {
+                return;
+            }
+            long spills = overflowed.getAndSet(0);
+            long queueFull = queueFullDrops.getAndSet(0);
+            long spoolFull = spoolFullDrops.getAndSet(0);
+            long spoolError = spoolErrorDrops.getAndSet(0);
+            if (queueFull + spoolFull + spoolError > 0) {
+                log.warn("Dropped {} logs: queueFull={}, spoolFull={}, spoolError={} ({} bytes spooled)",
+                        name, queueFull, spoolFull, spoolError, spool.sizeBytes());
+            }
+            if (spills > 0) {
+                log.info("Handoff queue for {} logs was full, {} logs went through the overflow queue", name, spills);
+            }
+            if (spills + queueFull + spoolFull + spoolError > 0) {
+                lastDropReportMillis = now;
+            }
+        }
+    }
 }
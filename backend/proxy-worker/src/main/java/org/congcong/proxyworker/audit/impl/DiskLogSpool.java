@@ -0,0 +1,329 @@
+package org.congcong.proxyworker.audit.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 磁盘分段缓冲
+ * <ul>
+ *     <li>记录按 [长度 4B][CRC32 4B][内容] 顺序追加到 {@code <序号>.seg}，段文件写满 segmentBytes 后切换新段</li>
+ *     <li>读位置（段序号 + 偏移）在每次确认后原子替换写入 {@code cursor} 文件，读位置之前的整段直接删除</li>
+ *     <li>所有段的总大小超过 maxBytes 时拒绝追加</li>
+ *     <li>启动时截断最后一段末尾未写完整的记录；段中间校验失败的记录连同该段剩余部分一起跳过</li>
+ * </ul>
+ * 追加只写入页缓存，切段和关闭时才 fsync，进程崩溃不丢数据，掉电可能丢失最后一段的尾部。
+ * 确认在送达之后写入，崩溃时最后一批可能重复上报（至少一次），管理端可按 requestId 去重。
+ * 追加只由写线程调用，读取和确认只由发送线程调用；读文件、删段和写读位置文件都不持锁，追加不会等在发送线程的磁盘操作后面。
+ */
+public class DiskLogSpool implements LogSpool {
+    private static final Logger log = LoggerFactory.getLogger(DiskLogSpool.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CURSOR_FILE = "cursor";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final long maxBytes;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private FileChannel writer;
+    private long totalBytes;
+
+    // 已确认的读位置
+    private long cursorSegment;
+    private long cursorOffset;
+    // 最近一次 peek 的结束位置，确认后成为新的读位置
+    private long peekSegment;
+    private long peekOffset;
+
+    public DiskLogSpool(Path dir, long segmentBytes, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        recover();
+    }
+
+    @Override
+    public synchronized boolean append(byte[] record) throws IOException {
+        int recordBytes = HEADER_BYTES + record.length;
+        if (totalBytes + recordBytes > maxBytes) {
+            return false;
+        }
+        Segment tail = segments.getLast();
+        if (tail.size > 0 && tail.size + recordBytes > segmentBytes) {
+            tail = rotate();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        ByteBuffer buf = ByteBuffer.allocate(recordBytes);
+        buf.putInt(record.length).putInt((int) crc.getValue()).put(record).flip();
+        while (buf.hasRemaining()) {
+            writer.write(buf);
+        }
+        tail.size += recordBytes;
+        totalBytes += recordBytes;
+        return true;
+    }
+
+    /**
+     * 只在持锁时取读位置和各段大小的快照，读文件不持锁，追加不必等待读取；
+     * 段只会在末尾追加，快照大小之内的内容不会再变化，段文件只由同一发送线程的 {@link #ack()} 删除
+     */
+    @Override
+    public List<byte[]> peek(int maxRecords) throws IOException {
+        long segment;
+        long offset;
+        List<SegmentView> views = new ArrayList<>();
+        synchronized (this) {
+            segment = cursorSegment;
+            offset = cursorOffset;
+            for (Segment s : segments) {
+                if (s.id >= segment) {
+                    views.add(new SegmentView(s.id, s.path, s.size));
+                }
+            }
+        }
+        List<byte[]> batch = new ArrayList<>();
+        for (SegmentView s : views) {
+            if (s.id() > segment) {
+                segment = s.id();
+                offset = 0;
+            }
+            if (offset >= s.size()) {
+                continue;
+            }
+            try (FileChannel reader = FileChannel.open(s.path(), StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                while (batch.size() < maxRecords && offset + HEADER_BYTES <= s.size()) {
+                    header.clear();
+                    readFully(reader, header, offset);
+                    int length = header.getInt(0);
+                    int expectedCrc = header.getInt(4);
+                    if (length < 0 || offset + HEADER_BYTES + length > s.size()) {
+                        log.warn("日志缓冲段 {} 在偏移 {} 处记录长度异常，跳过该段剩余部分", s.path().getFileName(), offset);
+                        offset = s.size();
+                        break;
+                    }
+                    byte[] record = new byte[length];
+                    readFully(reader, ByteBuffer.wrap(record), offset + HEADER_BYTES);
+                    CRC32 crc = new CRC32();
+                    crc.update(record);
+                    if ((int) crc.getValue() != expectedCrc) {
+                        log.warn("日志缓冲段 {} 在偏移 {} 处校验失败，跳过该段剩余部分", s.path().getFileName(), offset);
+                        offset = s.size();
+                        break;
+                    }
+                    batch.add(record);
+                    offset += HEADER_BYTES + length;
+                }
+            }
+            if (batch.size() >= maxRecords) {
+                break;
+            }
+        }
+        synchronized (this) {
+            peekSegment = segment;
+            peekOffset = offset;
+        }
+        return batch;
+    }
+
+    /**
+     * 持锁时只移动读位置、摘下已送达的段，删文件和写读位置文件在锁外进行
+     */
+    @Override
+    public void ack() throws IOException {
+        List<Path> delivered = new ArrayList<>();
+        long segment;
+        long offset;
+        synchronized (this) {
+            if (peekSegment == cursorSegment && peekOffset == cursorOffset) {
+                return;
+            }
+            cursorSegment = peekSegment;
+            cursorOffset = peekOffset;
+            // 读位置之前的段已全部送达；仍在写入的最后一段保留
+            while (segments.size() > 1 && segments.getFirst().id < cursorSegment) {
+                Segment head = segments.removeFirst();
+                totalBytes -= head.size;
+                delivered.add(head.path);
+            }
+            segment = cursorSegment;
+            offset = cursorOffset;
+        }
+        for (Path path : delivered) {
+            Files.deleteIfExists(path);
+        }
+        writeCursor(segment, offset);
+    }
+
+    @Override
+    public synchronized long sizeBytes() {
+        return totalBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null && writer.isOpen()) {
+            writer.force(false);
+            writer.close();
+        }
+    }
+
+    private Segment rotate() throws IOException {
+        writer.force(false);
+        writer.close();
+        long id = segments.getLast().id + 1;
+        Segment next = new Segment(id, segmentPath(id), 0);
+        segments.addLast(next);
+        writer = FileChannel.open(next.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return next;
+    }
+
+    private void recover() throws IOException {
+        List<Segment> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String name = path.getFileName().toString();
+                if (!name.endsWith(SEGMENT_SUFFIX)) {
+                    continue;
+                }
+                try {
+                    long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    found.add(new Segment(id, path, Files.size(path)));
+                } catch (NumberFormatException e) {
+                    log.warn("忽略无法识别的日志缓冲文件 {}", path);
+                }
+            }
+        }
+        found.sort((a, b) -> Long.compare(a.id, b.id));
+        readCursor();
+
+        for (Segment segment : found) {
+            if (segment.id < cursorSegment) {
+                Files.deleteIfExists(segment.path);
+            } else {
+                segments.addLast(segment);
+                totalBytes += segment.size;
+            }
+        }
+        if (segments.isEmpty()) {
+            long id = Math.max(1, cursorSegment);
+            segments.addLast(new Segment(id, segmentPath(id), 0));
+        }
+        if (segments.getFirst().id > cursorSegment) {
+            // 读位置所在的段已不存在，从现存最早的段开头读
+            cursorSegment = segments.getFirst().id;
+            cursorOffset = 0;
+        }
+        truncateTornTail(segments.getLast());
+        peekSegment = cursorSegment;
+        peekOffset = cursorOffset;
+        writer = FileChannel.open(segments.getLast().path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (totalBytes > 0) {
+            log.info("日志缓冲 {} 恢复 {} 个段，共 {} 字节待处理", dir, segments.size(), totalBytes);
+        }
+    }
+
+    /**
+     * 进程在写记录的中途退出时，最后一段末尾会留下不完整的记录，截断到最后一条完整记录
+     */
+    private void truncateTornTail(Segment tail) throws IOException {
+        if (tail.size == 0) {
+            return;
+        }
+        long valid = 0;
+        try (FileChannel channel = FileChannel.open(tail.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (valid + HEADER_BYTES <= tail.size) {
+                header.clear();
+                readFully(channel, header, valid);
+                int length = header.getInt(0);
+                if (length < 0 || valid + HEADER_BYTES + length > tail.size) {
+                    break;
+                }
+                valid += HEADER_BYTES + length;
+            }
+            if (valid < tail.size) {
+                log.warn("日志缓冲段 {} 末尾有 {} 字节不完整记录，已截断", tail.path.getFileName(), tail.size - valid);
+                channel.truncate(valid);
+                totalBytes -= tail.size - valid;
+                tail.size = valid;
+            }
+        }
+        if (tail.id == cursorSegment && cursorOffset > tail.size) {
+            cursorOffset = tail.size;
+        }
+    }
+
+    private void readCursor() {
+        Path path = dir.resolve(CURSOR_FILE);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            String[] parts = Files.readString(path, StandardCharsets.US_ASCII).trim().split(" ");
+            cursorSegment = Long.parseLong(parts[0]);
+            cursorOffset = Long.parseLong(parts[1]);
+        } catch (IOException | RuntimeException e) {
+            log.warn("日志缓冲读位置文件 {} 无法解析，从最早的段开始补发: {}", path, e.toString());
+            cursorSegment = 0;
+            cursorOffset = 0;
+        }
+    }
+
+    private void writeCursor(long segment, long offset) throws IOException {
+        Path tmp = dir.resolve(CURSOR_FILE + ".tmp");
+        Files.writeString(tmp, segment + " " + offset, StandardCharsets.US_ASCII);
+        Files.move(tmp, dir.resolve(CURSOR_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path segmentPath(long id) {
+        return dir.resolve(String.format("%019d%s", id, SEGMENT_SUFFIX));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int read = channel.read(buf, position + buf.position());
+            if (read < 0) {
+                throw new EOFException("unexpected end of log spool segment");
+            }
+        }
+    }
+
+    /**
+     * peek 时段的快照
+     */
+    private record SegmentView(long id, Path path, long size) {
+    }
+
+    private static final class Segment {
+        final long id;
+        final Path path;
+        long size;
+
+        Segment(long id, Path path, long size) {
+            this.id = id;
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
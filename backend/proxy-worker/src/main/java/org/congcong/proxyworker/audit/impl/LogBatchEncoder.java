@@ -0,0 +1,84 @@
+package org.congcong.proxyworker.audit.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.congcong.common.util.LogWireFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 把缓冲中的单条日志拼成一批上报的请求体
+ * 缓冲里的记录是单独的 Smile 文档（旧版本缓冲中可能残留 JSON 记录，按首字节区分），
+ * 发送时按 token 流式复制到一个数组里，不绑定成对象：
+ * <ul>
+ *     <li>{@link Format#SMILE_GZIP}：同一批内字段名和短字符串值（主机名、用户名等）用回引只写一次，再整体 gzip</li>
+ *     <li>{@link Format#JSON}：与旧版管理端兼容的 JSON 数组</li>
+ * </ul>
+ */
+final class LogBatchEncoder {
+
+    enum Format {
+        SMILE_GZIP(LogWireFormat.SMILE_CONTENT_TYPE, LogWireFormat.GZIP_ENCODING),
+        JSON(LogWireFormat.JSON_CONTENT_TYPE, null);
+
+        final String contentType;
+        final String contentEncoding;
+
+        Format(String contentType, String contentEncoding) {
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+        }
+
+        static Format of(String name) {
+            return "json".equalsIgnoreCase(name) ? JSON : SMILE_GZIP;
+        }
+    }
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final SmileFactory recordFactory = new SmileFactory();
+    private final SmileFactory batchFactory = SmileFactory.builder()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+            .build();
+
+    /**
+     * 单条记录使用的 Smile 工厂，供写线程的 ObjectMapper 使用
+     */
+    SmileFactory recordFactory() {
+        return recordFactory;
+    }
+
+    byte[] encode(List<byte[]> records, Format format) throws IOException {
+        int estimated = records.stream().mapToInt(r -> r.length).sum();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(format == Format.JSON ? estimated * 2 + 2 : estimated / 2 + 64);
+        OutputStream target = format == Format.SMILE_GZIP ? new GZIPOutputStream(out, 8192) : out;
+        // 关闭 generator 时一并关闭 gzip 流，写出尾部
+        try (JsonGenerator generator = format == Format.SMILE_GZIP
+                ? batchFactory.createGenerator(target)
+                : jsonFactory.createGenerator(target)) {
+            generator.writeStartArray();
+            for (byte[] record : records) {
+                try (JsonParser parser = parserOf(record)) {
+                    if (parser.nextToken() != null) {
+                        generator.copyCurrentStructure(parser);
+                    }
+                }
+            }
+            generator.writeEndArray();
+        }
+        return out.toByteArray();
+    }
+
+    private JsonParser parserOf(byte[] record) throws IOException {
+        if (record.length > 0 && record[0] == '{') {
+            return jsonFactory.createParser(record);
+        }
+        return recordFactory.createParser(record);
+    }
+}
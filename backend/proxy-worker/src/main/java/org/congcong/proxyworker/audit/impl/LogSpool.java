@@ -0,0 +1,33 @@
+package org.congcong.proxyworker.audit.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 日志上报缓冲
+ * 写线程追加已序列化的日志，发送线程按顺序读取一批，送达后确认，未确认的记录下次仍会读到；追加与读取、确认在不同线程上并发调用，实现需保证线程安全。
+ */
+public interface LogSpool extends Closeable {
+
+    /**
+     * 追加一条记录
+     * @return 超出容量上限时返回 false，记录未写入
+     */
+    boolean append(byte[] record) throws IOException;
+
+    /**
+     * 从读位置开始读取最多 maxRecords 条记录，不移动读位置
+     */
+    List<byte[]> peek(int maxRecords) throws IOException;
+
+    /**
+     * 确认最近一次 {@link #peek(int)} 读到的记录已送达，读位置前移
+     */
+    void ack() throws IOException;
+
+    /**
+     * 当前占用的字节数（包含已确认但尚未回收的部分）
+     */
+    long sizeBytes();
+}
@@ -0,0 +1,60 @@
+package org.congcong.proxyworker.audit.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 内存缓冲，磁盘缓冲关闭或目录不可用时使用，进程退出后未送达的日志丢失
+ */
+public class MemoryLogSpool implements LogSpool {
+
+    private final long maxBytes;
+    private final Deque<byte[]> records = new ArrayDeque<>();
+    private long sizeBytes;
+    private int peeked;
+
+    public MemoryLogSpool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized boolean append(byte[] record) {
+        if (sizeBytes + record.length > maxBytes) {
+            return false;
+        }
+        records.addLast(record);
+        sizeBytes += record.length;
+        return true;
+    }
+
+    @Override
+    public synchronized List<byte[]> peek(int maxRecords) {
+        List<byte[]> batch = new ArrayList<>(Math.min(maxRecords, records.size()));
+        Iterator<byte[]> it = records.iterator();
+        while (it.hasNext() && batch.size() < maxRecords) {
+            batch.add(it.next());
+        }
+        peeked = batch.size();
+        return batch;
+    }
+
+    @Override
+    public synchronized void ack() {
+        for (int i = 0; i < peeked; i++) {
+            sizeBytes -= records.removeFirst().length;
+        }
+        peeked = 0;
+    }
+
+    @Override
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -8,7 +8,11 @@ import java.io.InputStream;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 代理工作节点配置类
@@ -30,6 +34,38 @@ public class ProxyWorkerConfig {
     private final String tlsCertFile;
     private final String tlsKeyFile;
     private final String tlsKeyPassword;
+    // Netty 线程配置：所有入站共享
+    private final int nettyIoThreads;
+    private final int nettyAcceptorThreads;
+    private final boolean nettyReusePortEnabled;
+    private final boolean nettySpliceEnabled;
+    // DNS 服务器应答缓存
+    private final boolean dnsCacheEnabled;
+    private final long dnsCacheMaxEntries;
+    private final long dnsCacheStaleSeconds;
+    // GEO 路由条件对域名目标的异步解析
+    private final boolean routeGeoResolveDomainEnabled;
+    private final long routeGeoCacheMaxEntries;
+    // 直连出站
+    private final int outboundDirectConnectTimeoutMs;
+    private final long outboundDirectAttemptDelayMs;
+    // 上游代理出站的预热连接池
+    private final boolean outboundPoolEnabled;
+    private final int outboundPoolMaxIdle;
+    private final long outboundPoolIdleTimeoutMs;
+    // 规则集产物的本地缓存
+    private final String ruleSetArtifactDir;
+    // 日志上报的本地磁盘缓冲
+    private final boolean logSpoolEnabled;
+    private final String logSpoolDir;
+    private final long logSpoolMaxBytes;
+    private final long logSpoolSegmentBytes;
+    private final long logPublishMaxBackoffMs;
+    private final String logPublishFormat;
+    // 访问日志边缘聚合
+    private final Set<String> logAggregateProtocols;
+    private final double logAggregateSampleRate;
+    private final int logAggregateMaxKeys;
     
     private static ProxyWorkerConfig instance;
     
@@ -53,6 +89,31 @@ public class ProxyWorkerConfig {
         this.tlsKeyPassword = props.getProperty("tls.keyPassword", "");
         this.workerId = props.getProperty("worker.id", "default");
         this.workerControlPollIntervalMs = Long.parseLong(props.getProperty("worker.control.pollIntervalMs", "2000"));
+        int ioThreads = Integer.parseInt(props.getProperty("netty.ioThreads", "0"));
+        this.nettyIoThreads = ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors();
+        this.nettyAcceptorThreads = Math.max(0, Integer.parseInt(props.getProperty("netty.acceptorThreads", "1")));
+        this.nettyReusePortEnabled = Boolean.parseBoolean(props.getProperty("netty.reusePort.enabled", "false"));
+        this.nettySpliceEnabled = Boolean.parseBoolean(props.getProperty("netty.splice.enabled", "false"));
+        this.dnsCacheEnabled = Boolean.parseBoolean(props.getProperty("dns.cache.enabled", "true"));
+        this.dnsCacheMaxEntries = Math.max(1, Long.parseLong(props.getProperty("dns.cache.maxEntries", "10000")));
+        this.dnsCacheStaleSeconds = Math.max(0, Long.parseLong(props.getProperty("dns.cache.staleSeconds", "86400")));
+        this.routeGeoResolveDomainEnabled = Boolean.parseBoolean(props.getProperty("route.geo.resolveDomain.enabled", "false"));
+        this.routeGeoCacheMaxEntries = Math.max(1, Long.parseLong(props.getProperty("route.geo.cache.maxEntries", "10000")));
+        this.outboundDirectConnectTimeoutMs = Math.max(100, Integer.parseInt(props.getProperty("outbound.direct.connectTimeoutMs", "10000")));
+        this.outboundDirectAttemptDelayMs = Math.max(10, Long.parseLong(props.getProperty("outbound.direct.attemptDelayMs", "250")));
+        this.outboundPoolEnabled = Boolean.parseBoolean(props.getProperty("outbound.pool.enabled", "false"));
+        this.outboundPoolMaxIdle = Math.max(1, Integer.parseInt(props.getProperty("outbound.pool.maxIdle", "4")));
+        this.outboundPoolIdleTimeoutMs = Math.max(500, Long.parseLong(props.getProperty("outbound.pool.idleTimeoutMs", "30000")));
+        this.ruleSetArtifactDir = props.getProperty("ruleset.artifact.dir", "data/rule-sets");
+        this.logSpoolEnabled = Boolean.parseBoolean(props.getProperty("log.spool.enabled", "true"));
+        this.logSpoolDir = props.getProperty("log.spool.dir", "data/log-spool");
+        this.logSpoolMaxBytes = Math.max(1_048_576, Long.parseLong(props.getProperty("log.spool.maxBytes", "268435456")));
+        this.logSpoolSegmentBytes = Math.max(65_536, Long.parseLong(props.getProperty("log.spool.segmentBytes", "8388608")));
+        this.logPublishMaxBackoffMs = Math.max(1000, Long.parseLong(props.getProperty("log.publish.maxBackoffMs", "30000")));
+        this.logPublishFormat = props.getProperty("log.publish.format", "smile");
+        this.logAggregateProtocols = parseUpperCaseSet(props.getProperty("log.aggregate.protocols", ""));
+        this.logAggregateSampleRate = Math.min(1.0, Math.max(0.0, Double.parseDouble(props.getProperty("log.aggregate.sampleRate", "0.01"))));
+        this.logAggregateMaxKeys = Math.max(100, Integer.parseInt(props.getProperty("log.aggregate.maxKeys", "50000")));
         
         log.info("代理工作节点配置加载完成 - 控制端地址: {}", controlBaseUrl);
     }
@@ -114,6 +175,30 @@ public class ProxyWorkerConfig {
         overrideProperty(props, "tls.keyPassword", "TLS_KEY_PASSWORD");
         overrideProperty(props, "worker.id", "WORKER_ID");
         overrideProperty(props, "worker.control.pollIntervalMs", "WORKER_CONTROL_POLL_INTERVAL_MS");
+        overrideProperty(props, "netty.ioThreads", "NETTY_IO_THREADS");
+        overrideProperty(props, "netty.acceptorThreads", "NETTY_ACCEPTOR_THREADS");
+        overrideProperty(props, "netty.reusePort.enabled", "NETTY_REUSE_PORT_ENABLED");
+        overrideProperty(props, "netty.splice.enabled", "NETTY_SPLICE_ENABLED");
+        overrideProperty(props, "dns.cache.enabled", "DNS_CACHE_ENABLED");
+        overrideProperty(props, "dns.cache.maxEntries", "DNS_CACHE_MAX_ENTRIES");
+        overrideProperty(props, "dns.cache.staleSeconds", "DNS_CACHE_STALE_SECONDS");
+        overrideProperty(props, "route.geo.resolveDomain.enabled", "ROUTE_GEO_RESOLVE_DOMAIN_ENABLED");
+        overrideProperty(props, "route.geo.cache.maxEntries", "ROUTE_GEO_CACHE_MAX_ENTRIES");
+        overrideProperty(props, "outbound.direct.connectTimeoutMs", "OUTBOUND_DIRECT_CONNECT_TIMEOUT_MS");
+        overrideProperty(props, "outbound.direct.attemptDelayMs", "OUTBOUND_DIRECT_ATTEMPT_DELAY_MS");
+        overrideProperty(props, "outbound.pool.enabled", "OUTBOUND_POOL_ENABLED");
+        overrideProperty(props, "outbound.pool.maxIdle", "OUTBOUND_POOL_MAX_IDLE");
+        overrideProperty(props, "outbound.pool.idleTimeoutMs", "OUTBOUND_POOL_IDLE_TIMEOUT_MS");
+        overrideProperty(props, "ruleset.artifact.dir", "RULESET_ARTIFACT_DIR");
+        overrideProperty(props, "log.spool.enabled", "LOG_SPOOL_ENABLED");
+        overrideProperty(props, "log.spool.dir", "LOG_SPOOL_DIR");
+        overrideProperty(props, "log.spool.maxBytes", "LOG_SPOOL_MAX_BYTES");
+        overrideProperty(props, "log.spool.segmentBytes", "LOG_SPOOL_SEGMENT_BYTES");
+        overrideProperty(props, "log.publish.maxBackoffMs", "LOG_PUBLISH_MAX_BACKOFF_MS");
+        overrideProperty(props, "log.publish.format", "LOG_PUBLISH_FORMAT");
+        overrideProperty(props, "log.aggregate.protocols", "LOG_AGGREGATE_PROTOCOLS");
+        overrideProperty(props, "log.aggregate.sampleRate", "LOG_AGGREGATE_SAMPLE_RATE");
+        overrideProperty(props, "log.aggregate.maxKeys", "LOG_AGGREGATE_MAX_KEYS");
     }
 
     private void overrideProperty(Properties props, String propertyName, String envName) {
@@ -145,6 +230,17 @@ public class ProxyWorkerConfig {
         return trimmed.isEmpty() ? null : trimmed;
     }
 
+    private static Set<String> parseUpperCaseSet(String value) {
+        if (value == null || value.isBlank()) {
+            return Set.of();
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(s -> s.toUpperCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
     private static String trimTrailingSlash(String value) {
         String result = value.trim();
         while (result.endsWith("/")) {
@@ -179,6 +275,13 @@ public class ProxyWorkerConfig {
         return controlBaseUrl + "/api/config/aggregate";
     }
 
+    /**
+     * 按摘要下载规则集产物的端点（管理端提供）
+     */
+    public String getRuleSetArtifactUrl(String digest) {
+        return controlBaseUrl + "/api/config/rule-sets/" + digest;
+    }
+
     /**
      * 日志发送端点（管理端提供）
      */
@@ -186,6 +289,13 @@ public class ProxyWorkerConfig {
         return controlBaseUrl + "/api/logs/access";
     }
 
+    /**
+     * 访问日志分钟聚合上报端点
+     */
+    public String getAccessLogRollupUrl() {
+        return controlBaseUrl + "/api/logs/access/rollup";
+    }
+
     public String getAuthLogUrl() {
         return controlBaseUrl + "/api/logs/auth";
     }
@@ -202,6 +312,168 @@ public class ProxyWorkerConfig {
         return workerControlPollIntervalMs;
     }
 
+    /**
+     * 共享 IO 线程数，未配置或小于等于 0 时取 CPU 核数
+     */
+    public int getNettyIoThreads() {
+        return nettyIoThreads;
+    }
+
+    /**
+     * 独立 acceptor 线程数，0 表示 accept 直接在 IO 线程上执行
+     */
+    public int getNettyAcceptorThreads() {
+        return nettyAcceptorThreads;
+    }
+
+    /**
+     * 是否以 SO_REUSEPORT 为每个 IO 线程绑定一个监听 socket（仅 epoll 生效）
+     */
+    public boolean isNettyReusePortEnabled() {
+        return nettyReusePortEnabled;
+    }
+
+    /**
+     * 是否对直连明文隧道启用 splice 零拷贝中继（仅 epoll 生效，入站和直连出站会改为 level-triggered）
+     */
+    public boolean isNettySpliceEnabled() {
+        return nettySpliceEnabled;
+    }
+
+    /**
+     * DNS 服务器入站是否缓存上游应答
+     */
+    public boolean isDnsCacheEnabled() {
+        return dnsCacheEnabled;
+    }
+
+    public long getDnsCacheMaxEntries() {
+        return dnsCacheMaxEntries;
+    }
+
+    /**
+     * 应答过期后仍可返回旧应答（同时后台刷新）的时长，0 表示不返回过期应答
+     */
+    public long getDnsCacheStaleSeconds() {
+        return dnsCacheStaleSeconds;
+    }
+
+    /**
+     * GEO 路由条件遇到没有 IP 的域名目标时，是否先异步解析域名再按解析出的 IP 判断地理位置
+     */
+    public boolean isRouteGeoResolveDomainEnabled() {
+        return routeGeoResolveDomainEnabled;
+    }
+
+    public long getRouteGeoCacheMaxEntries() {
+        return routeGeoCacheMaxEntries;
+    }
+
+    /**
+     * 直连出站单个地址的连接超时（毫秒）
+     */
+    public int getOutboundDirectConnectTimeoutMs() {
+        return outboundDirectConnectTimeoutMs;
+    }
+
+    /**
+     * 直连目标有多个地址时，两次连接尝试之间的间隔（毫秒），上一个尝试失败时不等待
+     */
+    public long getOutboundDirectAttemptDelayMs() {
+        return outboundDirectAttemptDelayMs;
+    }
+
+    /**
+     * SOCKS5、HTTP CONNECT、Shadowsocks、VLESS+REALITY 出站是否按近期需求预先建立到上游的连接
+     */
+    public boolean isOutboundPoolEnabled() {
+        return outboundPoolEnabled;
+    }
+
+    /**
+     * 每个 IO 线程上、每个上游最多保持的预热连接数
+     */
+    public int getOutboundPoolMaxIdle() {
+        return outboundPoolMaxIdle;
+    }
+
+    /**
+     * 预热连接的最长空闲时间（毫秒），应小于上游的空闲/保活超时
+     */
+    public long getOutboundPoolIdleTimeoutMs() {
+        return outboundPoolIdleTimeoutMs;
+    }
+
+    /**
+     * 日志上报前是否先写入本地磁盘缓冲，关闭或目录不可用时退化为内存缓冲（进程退出即丢失）
+     */
+    public boolean isLogSpoolEnabled() {
+        return logSpoolEnabled;
+    }
+
+    /**
+     * 规则集产物缓存目录，文件名为产物摘要，重启后已有的产物不再下载
+     */
+    public String getRuleSetArtifactDir() {
+        return ruleSetArtifactDir;
+    }
+
+    /**
+     * 磁盘缓冲目录，访问日志与认证日志各用一个子目录
+     */
+    public String getLogSpoolDir() {
+        return logSpoolDir;
+    }
+
+    /**
+     * 每类日志磁盘缓冲的总大小上限，写满后新日志被丢弃并计数
+     */
+    public long getLogSpoolMaxBytes() {
+        return logSpoolMaxBytes;
+    }
+
+    /**
+     * 单个缓冲段文件的大小，写满后切换新段，整段都已送达后删除
+     */
+    public long getLogSpoolSegmentBytes() {
+        return logSpoolSegmentBytes;
+    }
+
+    /**
+     * 上报失败后指数退避重试的最长间隔
+     */
+    public long getLogPublishMaxBackoffMs() {
+        return logPublishMaxBackoffMs;
+    }
+
+    /**
+     * 日志上报编码：smile（gzip 压缩的 Smile，管理端不支持时自动退回 JSON）或 json
+     */
+    public String getLogPublishFormat() {
+        return logPublishFormat;
+    }
+
+    /**
+     * 开启边缘聚合的入站协议类型（ProtocolType 取值，大写），为空表示不聚合
+     */
+    public Set<String> getLogAggregateProtocols() {
+        return logAggregateProtocols;
+    }
+
+    /**
+     * 已聚合的访问日志中仍按此比例抽样上报明细
+     */
+    public double getLogAggregateSampleRate() {
+        return logAggregateSampleRate;
+    }
+
+    /**
+     * 单个分钟窗口内最多聚合的维度组合数，超出后新组合按明细上报
+     */
+    public int getLogAggregateMaxKeys() {
+        return logAggregateMaxKeys;
+    }
+
     /**
      * 外部 TLS 证书配置（可选）。
      * 返回值可能为 null 或空字符串，调用方需自行判空验证。
@@ -10,7 +10,8 @@ public class RoutesQueryService {
 
     public List<RouteConfig> getRoutes(Long userId, InboundConfig inboundConfig) {
         Map<Long, List<RouteConfig>> routesMap = inboundConfig.getRoutesMap();
-        List<RouteConfig> routeConfigs = routesMap.get(userId);
+        // 不可变 Map 不支持按 null 查找，未识别用户直接走默认路由
+        List<RouteConfig> routeConfigs = userId == null ? null : routesMap.get(userId);
         if (routeConfigs == null) {
             // dns 服务需要一个
             // todo不太优雅，但是dns服务不通会有问题
@@ -59,6 +59,8 @@ public class HttpClientManager {
             HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
                     .uri(URI.create(url))
                     .timeout(Duration.ofMillis(10000))
+                    // 声明支持规则集产物，管理端只下发摘要
+                    .header(AggregateConfigResponse.RULE_SET_ARTIFACTS_HEADER, "true")
                     .GET();
             
             // 如果有缓存的ETag，添加If-None-Match头
@@ -122,6 +124,24 @@ public class HttpClientManager {
         }
     }
     
+    /**
+     * 下载规则集产物
+     *
+     * @return 产物字节，管理端没有该摘要对应的产物时抛出异常
+     */
+    public byte[] fetchRuleSetArtifact(String digest) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(config.getRuleSetArtifactUrl(digest)))
+                .timeout(Duration.ofMillis(30000))
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("下载规则集产物 " + digest + " 失败，状态码: " + response.statusCode());
+        }
+        return response.body();
+    }
+
     /**
      * 获取当前缓存的配置
      */
@@ -136,6 +156,13 @@ public class HttpClientManager {
         return cachedConfig != null;
     }
     
+    /**
+     * 丢弃 ETag，下次请求重新获取完整配置，缓存的配置保留
+     */
+    public void invalidateETag() {
+        this.lastETag = null;
+    }
+
     /**
      * 清除缓存
      */
@@ -0,0 +1,49 @@
+package org.congcong.proxyworker.outbound.direct;
+
+import io.netty.channel.EventLoop;
+import io.netty.util.NetUtil;
+import io.netty.util.concurrent.Future;
+import org.congcong.proxyworker.server.EventLoopDnsResolvers;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.List;
+
+/**
+ * 直连出站的目标地址解析
+ * 使用 {@link EventLoopDnsResolvers} 中 event loop 上的 Netty 解析器异步查询，不在 IO 线程上阻塞于 JDK 的 InetAddress 解析；
+ * AAAA 与 A 同时发出、分别通知，连接方不必等两个地址族都有结果（RFC 8305 第 3 节）。
+ */
+public class DirectAddressResolver {
+
+    private static class Holder {
+        private static final DirectAddressResolver INSTANCE = new DirectAddressResolver();
+    }
+
+    public static DirectAddressResolver getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 两个地址族各自的解析结果，均在 eventLoop 上通知；没有该族记录时以 UnknownHostException 失败
+     */
+    public record Answers(Future<List<InetAddress>> ipv6, Future<List<InetAddress>> ipv4) {
+    }
+
+    DirectAddressResolver() {
+    }
+
+    /**
+     * 同时查询目标主机的 AAAA 和 A 记录，IP 字面量直接返回，不发起 DNS 查询
+     */
+    public Answers resolve(EventLoop eventLoop, String host) {
+        InetAddress literal = NetUtil.createInetAddressFromIpAddressString(host);
+        if (literal != null) {
+            Future<List<InetAddress>> hit = eventLoop.newSucceededFuture(List.of(literal));
+            Future<List<InetAddress>> none = eventLoop.newSucceededFuture(List.of());
+            return literal instanceof Inet6Address ? new Answers(hit, none) : new Answers(none, hit);
+        }
+        return new Answers(EventLoopDnsResolvers.ipv6(eventLoop).resolveAll(host),
+                EventLoopDnsResolvers.ipv4(eventLoop).resolveAll(host));
+    }
+}
@@ -2,42 +2,52 @@ package org.congcong.proxyworker.outbound.direct;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.util.concurrent.Promise;
+import org.congcong.proxyworker.config.ProxyWorkerConfig;
 import org.congcong.proxyworker.outbound.AbstractOutboundConnector;
+import org.congcong.proxyworker.server.SpliceRelay;
 import org.congcong.proxyworker.server.tunnel.ProxyTunnelRequest;
 
+/**
+ * 直连出站：目标域名经 {@link DirectAddressResolver} 同时查询 AAAA 和 A，再按 {@link HappyEyeballsConnect} 对多个地址错峰并行连接，
+ * 先到的地址族先连
+ */
 public class DirectOutboundConnector extends AbstractOutboundConnector {
 
+    /**
+     * 出站 channel 不需要额外的 handler，胜出的连接交给 relay 后由 relay 装配 pipeline；开启 splice 时只装上字节计数
+     */
+    private static final ChannelInitializer<Channel> NOOP_INITIALIZER = new ChannelInitializer<>() {
+        @Override
+        protected void initChannel(Channel ch) {
+            if (SpliceRelay.isEnabled()) {
+                SpliceRelay.installCounter(ch);
+            }
+        }
+    };
+
     @Override
     public ChannelFuture connect(Channel inboundChannel, ProxyTunnelRequest request, Promise<Channel> relayPromise) {
+        ProxyWorkerConfig config = ProxyWorkerConfig.getInstance();
+        EventLoop eventLoop = inboundChannel.eventLoop();
         Bootstrap b = new Bootstrap();
-        b.group(inboundChannel.eventLoop())
-                .channel(getSocketChannel())
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10000)
+        Class<? extends SocketChannel> channelClass = getSocketChannel();
+        b.group(eventLoop)
+                .channel(channelClass)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getOutboundDirectConnectTimeoutMs())
                 .option(ChannelOption.SO_KEEPALIVE, true)
-                .handler(new DirectClientHandler(relayPromise));
-
-        return b.connect(request.getFinalTargetHost(), request.getFinalTargetPort());
-    }
-
-
-    private static class DirectClientHandler extends ChannelInboundHandlerAdapter {
-
-        private final Promise<Channel> promise;
-
-        public DirectClientHandler(Promise<Channel> promise) {
-            this.promise = promise;
+                .handler(NOOP_INITIALIZER);
+        if (channelClass == EpollSocketChannel.class && SpliceRelay.isEnabled()) {
+            // 与入站保持一致，splice 要求两端都是 level-triggered
+            b.option(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED);
         }
 
-        @Override
-        public void channelActive(ChannelHandlerContext ctx) {
-            promise.setSuccess(ctx.channel());
-            ctx.pipeline().remove(this);
-        }
-
-        @Override
-        public void exceptionCaught(ChannelHandlerContext ctx, Throwable throwable) {
-            promise.setFailure(throwable);
-        }
+        DirectAddressResolver.Answers answers = DirectAddressResolver.getInstance().resolve(eventLoop, request.getFinalTargetHost());
+        return HappyEyeballsConnect.start(b, eventLoop, answers.ipv6(), answers.ipv4(), request.getFinalTargetPort(),
+                config.getOutboundDirectAttemptDelayMs(), relayPromise);
     }
 }
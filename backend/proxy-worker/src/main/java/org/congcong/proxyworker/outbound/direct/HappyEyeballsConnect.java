@@ -0,0 +1,263 @@
+package org.congcong.proxyworker.outbound.direct;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.DefaultChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RFC 8305（Happy Eyeballs v2）连接竞速
+ * <ul>
+ *     <li>AAAA 与 A 的结果分别到达：AAAA 先到立即开始连接；A 先到时最多再等 AAAA {@link #RESOLUTION_DELAY_MILLIS}（第 3 节）</li>
+ *     <li>待连接地址按地址族交替排列，优先 IPv6；开始连接后才到达的地址族并入剩余地址继续交替</li>
+ *     <li>第一个地址立即发起连接，之后每隔 attemptDelay、或上一个尝试失败时立即发起下一个，已发起的尝试不会取消</li>
+ *     <li>最先建立的连接胜出，其余尝试全部关闭；两个地址族都有结果且全部失败时以最后一个失败原因结束</li>
+ * </ul>
+ * 所有状态只在入站所在的 event loop 上读写。
+ */
+final class HappyEyeballsConnect {
+
+    /**
+     * A 记录先到时等待 AAAA 的时长，RFC 8305 建议值
+     */
+    static final long RESOLUTION_DELAY_MILLIS = 50;
+
+    private final Bootstrap bootstrap;
+    private final EventLoop eventLoop;
+    private final long attemptDelayMillis;
+    private final Promise<Channel> relayPromise;
+    private final ChannelFuture firstRegistration;
+    private final RaceFuture result;
+    private final List<Channel> attempts = new ArrayList<>();
+    private final AddressQueue addresses;
+    private int answered;
+    private int inflight;
+    private Throwable lastCause;
+    private ScheduledFuture<?> resolutionTimer;
+    private ScheduledFuture<?> attemptTimer;
+
+    private HappyEyeballsConnect(Bootstrap bootstrap, EventLoop eventLoop, int port, long attemptDelayMillis,
+                                 Promise<Channel> relayPromise) {
+        this.bootstrap = bootstrap;
+        this.eventLoop = eventLoop;
+        this.attemptDelayMillis = attemptDelayMillis;
+        this.relayPromise = relayPromise;
+        this.addresses = new AddressQueue(port);
+        // 先注册第一个连接的 channel，解析期间返回的 future 就有可用的 channel()
+        this.firstRegistration = bootstrap.register();
+        this.result = new RaceFuture(firstRegistration.channel(), eventLoop);
+    }
+
+    /**
+     * @param bootstrap 已配置好 group、channel 类型、选项和 handler
+     * @param ipv6      目标主机的 IPv6 地址，须在 bootstrap 的 event loop 上通知，失败视为没有该族地址
+     * @param ipv4      目标主机的 IPv4 地址，同上
+     * @return 胜出的连接建立后成功，此时 {@link ChannelFuture#channel()} 为胜出的 channel
+     */
+    static ChannelFuture start(Bootstrap bootstrap, EventLoop eventLoop, Future<List<InetAddress>> ipv6,
+                               Future<List<InetAddress>> ipv4, int port, long attemptDelayMillis,
+                               Promise<Channel> relayPromise) {
+        HappyEyeballsConnect race = new HappyEyeballsConnect(bootstrap, eventLoop, port, attemptDelayMillis, relayPromise);
+        race.firstRegistration.addListener(r -> {
+            if (!r.isSuccess()) {
+                race.fail(r.cause());
+                return;
+            }
+            ipv6.addListener(f -> race.onAnswer(true, f));
+            ipv4.addListener(f -> race.onAnswer(false, f));
+        });
+        return race.result;
+    }
+
+    private void onAnswer(boolean ipv6, Future<?> answer) {
+        if (result.isDone()) {
+            return;
+        }
+        answered++;
+        if (answer.isSuccess()) {
+            @SuppressWarnings("unchecked")
+            List<InetAddress> resolved = (List<InetAddress>) answer.getNow();
+            addresses.add(resolved);
+        } else {
+            lastCause = answer.cause();
+        }
+        boolean bothAnswered = answered == 2;
+        if (attempts.isEmpty()) {
+            if (addresses.isEmpty()) {
+                if (bothAnswered) {
+                    fail(lastCause != null ? lastCause : new UnknownHostException("没有可用的地址"));
+                }
+            } else if (ipv6 || bothAnswered) {
+                startNext();
+            } else if (resolutionTimer == null) {
+                resolutionTimer = eventLoop.schedule(this::startNext, RESOLUTION_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        // 已在连接中：新到的地址排进队列，没有进行中的尝试时立即发起
+        if (!addresses.isEmpty()) {
+            if (inflight == 0) {
+                startNext();
+            } else if (attemptTimer == null) {
+                attemptTimer = eventLoop.schedule(this::startNext, attemptDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        } else if (inflight == 0 && bothAnswered) {
+            fail(lastCause);
+        }
+    }
+
+    private void startNext() {
+        cancelTimers();
+        if (result.isDone() || addresses.isEmpty()) {
+            return;
+        }
+        InetSocketAddress address = addresses.poll();
+        ChannelFuture registration = attempts.isEmpty() ? firstRegistration : bootstrap.register();
+        inflight++;
+        Channel channel = registration.channel();
+        attempts.add(channel);
+        registration.addListener(r -> {
+            if (!r.isSuccess()) {
+                onAttemptFailed(channel, r.cause());
+                return;
+            }
+            if (result.isDone()) {
+                channel.close();
+                return;
+            }
+            channel.connect(address).addListener(c -> {
+                if (c.isSuccess()) {
+                    onConnected(channel);
+                } else {
+                    onAttemptFailed(channel, c.cause());
+                }
+            });
+        });
+        if (!addresses.isEmpty()) {
+            attemptTimer = eventLoop.schedule(this::startNext, attemptDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void onConnected(Channel winner) {
+        if (result.isDone()) {
+            winner.close();
+            return;
+        }
+        cancelTimers();
+        for (Channel attempt : attempts) {
+            if (attempt != winner) {
+                attempt.close();
+            }
+        }
+        result.winner = winner;
+        // 先完成连接 future（记录真实目标 IP、连接耗时），再交给 relay
+        result.setSuccess();
+        relayPromise.trySuccess(winner);
+    }
+
+    private void onAttemptFailed(Channel channel, Throwable cause) {
+        inflight--;
+        channel.close();
+        lastCause = cause;
+        if (result.isDone()) {
+            return;
+        }
+        if (!addresses.isEmpty()) {
+            startNext();
+        } else if (inflight == 0 && answered == 2) {
+            fail(cause);
+        }
+        // 否则等另一个地址族的结果
+    }
+
+    private void fail(Throwable cause) {
+        cancelTimers();
+        for (Channel attempt : attempts) {
+            attempt.close();
+        }
+        firstRegistration.channel().close();
+        result.tryFailure(cause);
+    }
+
+    private void cancelTimers() {
+        if (resolutionTimer != null) {
+            resolutionTimer.cancel(false);
+            resolutionTimer = null;
+        }
+        if (attemptTimer != null) {
+            attemptTimer.cancel(false);
+            attemptTimer = null;
+        }
+    }
+
+    /**
+     * 待连接的地址：两个地址族交替取出，优先 IPv6，同一地址族内保持解析顺序
+     */
+    static final class AddressQueue {
+
+        private final int port;
+        private final Deque<InetAddress> ipv6 = new ArrayDeque<>();
+        private final Deque<InetAddress> ipv4 = new ArrayDeque<>();
+        private boolean lastWasIpv6;
+
+        AddressQueue(int port) {
+            this.port = port;
+        }
+
+        void add(List<InetAddress> resolved) {
+            for (InetAddress address : resolved) {
+                (address instanceof Inet6Address ? ipv6 : ipv4).add(address);
+            }
+        }
+
+        boolean isEmpty() {
+            return ipv6.isEmpty() && ipv4.isEmpty();
+        }
+
+        InetSocketAddress poll() {
+            Deque<InetAddress> from;
+            if (ipv6.isEmpty()) {
+                from = ipv4;
+            } else if (ipv4.isEmpty()) {
+                from = ipv6;
+            } else {
+                from = lastWasIpv6 ? ipv4 : ipv6;
+            }
+            lastWasIpv6 = from == ipv6;
+            return new InetSocketAddress(from.poll(), port);
+        }
+    }
+
+    /**
+     * 竞速结果，胜出前 channel() 返回第一个尝试的 channel，失败时该 channel 已关闭
+     */
+    private static final class RaceFuture extends DefaultChannelPromise {
+
+        private volatile Channel winner;
+
+        RaceFuture(Channel first, EventExecutor executor) {
+            super(first, executor);
+        }
+
+        @Override
+        public Channel channel() {
+            Channel w = winner;
+            return w != null ? w : super.channel();
+        }
+    }
+}
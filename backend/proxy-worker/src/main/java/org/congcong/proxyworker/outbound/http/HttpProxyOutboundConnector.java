@@ -9,6 +9,7 @@ import io.netty.util.concurrent.Promise;
 import lombok.extern.slf4j.Slf4j;
 import org.congcong.proxyworker.config.RouteConfig;
 import org.congcong.proxyworker.outbound.AbstractOutboundConnector;
+import org.congcong.proxyworker.outbound.pool.WarmConnectionPool;
 import org.congcong.proxyworker.server.tunnel.ProxyTunnelRequest;
 
 import java.util.Base64;
@@ -21,24 +22,46 @@ public class HttpProxyOutboundConnector extends AbstractOutboundConnector {
 
     @Override
     public ChannelFuture connect(Channel inboundChannel, ProxyTunnelRequest request, Promise<Channel> relayPromise) {
-        Bootstrap b = new Bootstrap();
-        b.group(inboundChannel.eventLoop())
-                .channel(getSocketChannel())
+        EventLoop eventLoop = inboundChannel.eventLoop();
+        String host = request.getFinalTargetHost();
+        int port = request.getFinalTargetPort();
+        Class<? extends SocketChannel> channelClass = getSocketChannel();
+
+        // 预热连接只建立了 TCP 连接，CONNECT 请求在取出后发送
+        Channel warm = WarmConnectionPool.getInstance().acquire(
+                eventLoop,
+                "HTTPS_CONNECT|" + host + ":" + port,
+                warmHandler -> bootstrap(eventLoop, channelClass, warmHandler).connect(host, port),
+                pipeline -> addClientHandlers(pipeline, request, relayPromise));
+        if (warm != null) {
+            warm.pipeline().fireChannelActive();
+            return warm.newSucceededFuture();
+        }
+
+        // 连接上游 HTTP 代理（使用路由配置中的最终地址）
+        return bootstrap(eventLoop, channelClass, new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                addClientHandlers(ch.pipeline(), request, relayPromise);
+            }
+        }).connect(host, port);
+    }
+
+    private static Bootstrap bootstrap(EventLoop eventLoop, Class<? extends SocketChannel> channelClass, ChannelHandler handler) {
+        return new Bootstrap()
+                .group(eventLoop)
+                .channel(channelClass)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10000)
                 .option(ChannelOption.SO_KEEPALIVE, true)
-                .handler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel ch) {
-                        ch.pipeline().addLast(
-                                new HttpClientCodec(),
-                                new HttpObjectAggregator(1024 * 8),
-                                new HttpProxyClientHandler(request, relayPromise)
-                        );
-                    }
-                });
+                .handler(handler);
+    }
 
-        // 连接上游 HTTP 代理（使用路由配置中的最终地址）
-        return b.connect(request.getFinalTargetHost(), request.getFinalTargetPort());
+    private static void addClientHandlers(ChannelPipeline pipeline, ProxyTunnelRequest request, Promise<Channel> relayPromise) {
+        pipeline.addLast(
+                new HttpClientCodec(),
+                new HttpObjectAggregator(1024 * 8),
+                new HttpProxyClientHandler(request, relayPromise)
+        );
     }
 
     private static class HttpProxyClientHandler extends SimpleChannelInboundHandler<Object> {
@@ -118,10 +141,16 @@ public class HttpProxyOutboundConnector extends AbstractOutboundConnector {
             }
         }
 
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            promise.tryFailure(new IllegalStateException("http connect proxy closed before established"));
+            super.channelInactive(ctx);
+        }
+
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
             ctx.close();
-            promise.setFailure(cause);
+            promise.tryFailure(cause);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package org.congcong.proxyworker.outbound.pool;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 预热连接 pipeline 最末端的占位 handler
+ * <ul>
+ *     <li>协议前置步骤完成后就绪：TCP 连接建立或 SOCKS5 认证完成时传到这里的 channelActive，
+ *     或 REALITY 握手完成的 HANDSHAKE_COMPLETE 事件</li>
+ *     <li>空闲期间收到的消息（如 TLS 1.3 的 NewSessionTicket）先暂存，取出时在本 handler 移除后按顺序交给后面的 handler</li>
+ *     <li>空闲期间连接被对端关闭或出错时从池中移除，取出前由 {@link #isReusable()} 再确认一次</li>
+ * </ul>
+ */
+final class WarmChannelHandler extends ChannelInboundHandlerAdapter {
+
+    /**
+     * 空闲期间最多暂存的消息数，超过说明对端行为异常，直接关闭
+     */
+    private static final int MAX_BUFFERED_MESSAGES = 16;
+
+    /**
+     * Linux TCP_INFO 中 tcpi_state 的 TCP_ESTABLISHED
+     */
+    private static final int TCP_ESTABLISHED = 1;
+
+    private final Promise<Channel> ready;
+    private final Consumer<WarmChannelHandler> onInactive;
+    private final List<Object> buffered = new ArrayList<>();
+    private ChannelHandlerContext ctx;
+    private ScheduledFuture<?> expiry;
+
+    WarmChannelHandler(Promise<Channel> ready, Consumer<WarmChannelHandler> onInactive) {
+        this.ready = ready;
+        this.onInactive = onInactive;
+    }
+
+    Channel channel() {
+        return ctx.channel();
+    }
+
+    /**
+     * 连接仍可交给连接器使用：channel 打开且未半关闭；epoll 连接再查内核 TCP 状态，
+     * 对端的 FIN/RST 已到达但 event loop 尚未读到 EOF 时状态已不是 ESTABLISHED
+     */
+    boolean isReusable() {
+        return isReusable(channel());
+    }
+
+    static boolean isReusable(Channel channel) {
+        if (!channel.isActive()) {
+            return false;
+        }
+        if (channel instanceof DuplexChannel duplex && (duplex.isInputShutdown() || duplex.isOutputShutdown())) {
+            return false;
+        }
+        if (channel instanceof EpollSocketChannel epoll) {
+            try {
+                return epoll.tcpInfo().state() == TCP_ESTABLISHED;
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void startIdle(ScheduledFuture<?> expiry) {
+        this.expiry = expiry;
+    }
+
+    void cancelExpiry() {
+        if (expiry != null) {
+            expiry.cancel(false);
+            expiry = null;
+        }
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        ready.trySuccess(ctx.channel());
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if ("HANDSHAKE_COMPLETE".equals(evt)) {
+            ready.trySuccess(ctx.channel());
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (buffered.size() >= MAX_BUFFERED_MESSAGES) {
+            ReferenceCountUtil.release(msg);
+            ctx.close();
+            return;
+        }
+        buffered.add(msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        releaseBuffered();
+        cancelExpiry();
+        ready.tryFailure(new ClosedChannelException());
+        onInactive.accept(this);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        ready.tryFailure(cause);
+        ctx.close();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        cancelExpiry();
+        if (buffered.isEmpty()) {
+            return;
+        }
+        for (Object msg : buffered) {
+            ctx.fireChannelRead(msg);
+        }
+        buffered.clear();
+        ctx.fireChannelReadComplete();
+    }
+
+    private void releaseBuffered() {
+        buffered.forEach(ReferenceCountUtil::release);
+        buffered.clear();
+    }
+}
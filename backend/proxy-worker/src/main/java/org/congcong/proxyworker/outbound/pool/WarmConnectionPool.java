@@ -0,0 +1,305 @@
+package org.congcong.proxyworker.outbound.pool;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.congcong.proxyworker.config.ProxyWorkerConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * 上游代理出站（SOCKS5、HTTP CONNECT、Shadowsocks、VLESS+REALITY）的预热连接池
+ * <ul>
+ *     <li>连接按 event loop、上游（地址 + 认证信息）分开管理，代理连接只取入站所在 event loop 上的预热连接</li>
+ *     <li>预热只做与目标无关的部分：TCP 连接，SOCKS5 方法协商与认证，REALITY 握手；取出后由连接器补上请求目标的步骤</li>
+ *     <li>池大小随近期需求变化：需求速率按指数衰减统计，预计一条连接在空闲期内用不上时不预热，
+ *     否则保持约“需求速率 × 预热耗时”条，不超过 maxIdle</li>
+ *     <li>空闲超过 idleTimeout 的连接关闭后按当前需求补充；空闲期间被对端关闭的连接直接移除，
+ *     取出前再检查一次连接状态，对端已发出 FIN/RST 但 event loop 尚未处理的连接不交出</li>
+ * </ul>
+ * 每个 event loop 上的状态只在该 event loop 上读写。
+ */
+@Slf4j
+public class WarmConnectionPool {
+
+    private static class Holder {
+        private static final WarmConnectionPool INSTANCE = new WarmConnectionPool();
+    }
+
+    public static WarmConnectionPool getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 需求速率的衰减时间常数（秒）
+     */
+    private static final double DEMAND_DECAY_SECONDS = 10;
+    /**
+     * 一条预热连接在空闲期内预计被取用的次数低于该值时不预热
+     */
+    private static final double MIN_EXPECTED_USES = 0.5;
+    /**
+     * 预热（连接 + 协议前置步骤）的超时
+     */
+    private static final long WARMUP_TIMEOUT_MILLIS = 10_000;
+    /**
+     * 需求速率衰减到该值以下且没有连接时移除该上游的统计
+     */
+    private static final double MIN_TRACKED_RATE = 0.001;
+
+    /**
+     * 发起一条预热连接
+     */
+    @FunctionalInterface
+    public interface Warmer {
+        /**
+         * @param warmHandler 须添加在 pipeline 最末端，协议前置步骤完成后由它判定就绪
+         */
+        ChannelFuture connect(ChannelHandler warmHandler);
+    }
+
+    /**
+     * event loop -> 上游 -> 预热连接，内层只在对应 event loop 上访问
+     */
+    private final Map<EventLoop, Map<String, Bucket>> buckets = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final int maxIdle;
+    private final long idleTimeoutMillis;
+
+    WarmConnectionPool() {
+        this(ProxyWorkerConfig.getInstance().isOutboundPoolEnabled(),
+                ProxyWorkerConfig.getInstance().getOutboundPoolMaxIdle(),
+                ProxyWorkerConfig.getInstance().getOutboundPoolIdleTimeoutMs());
+    }
+
+    WarmConnectionPool(boolean enabled, int maxIdle, long idleTimeoutMillis) {
+        this.enabled = enabled;
+        this.maxIdle = maxIdle;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * 取一条 key 对应上游的预热连接，并记录一次需求，必须在 eventLoop 上调用
+     * @param key       上游标识，预热步骤不同（地址、认证信息、协议）的上游须使用不同的 key，
+     *                  认证信息用 {@link #credentialsDigest(String, String)} 表示
+     * @param warmer    需要补充预热连接时用它发起连接
+     * @param installer 取到连接时在交出之前添加连接器自己的 handler，空闲期间暂存的消息随后交给它们
+     * @return 预热连接，池中没有可用连接或未启用时返回 null，由调用方按原方式新建连接
+     */
+    public Channel acquire(EventLoop eventLoop, String key, Warmer warmer, Consumer<ChannelPipeline> installer) {
+        if (!enabled) {
+            return null;
+        }
+        Map<String, Bucket> loopBuckets = buckets.computeIfAbsent(eventLoop, k -> new HashMap<>());
+        Bucket bucket = loopBuckets.computeIfAbsent(key, k -> new Bucket(eventLoop, k, loopBuckets));
+        long now = System.nanoTime();
+        bucket.warmer = warmer;
+        bucket.recordDemand(now);
+        WarmChannelHandler warm = bucket.poll();
+        bucket.refill(now);
+        if (warm == null) {
+            return null;
+        }
+        Channel channel = warm.channel();
+        installer.accept(channel.pipeline());
+        channel.pipeline().remove(warm);
+        return channel;
+    }
+
+    /**
+     * 认证信息在 key 中的表示：用户名与密码的 SHA-256，避免明文密码出现在 key、日志与堆转储中
+     */
+    public static String credentialsDigest(String username, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(username).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(password).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 当前空闲的预热连接数，必须在 eventLoop 上调用
+     */
+    int idleCount(EventLoop eventLoop, String key) {
+        Map<String, Bucket> loopBuckets = buckets.get(eventLoop);
+        Bucket bucket = loopBuckets == null ? null : loopBuckets.get(key);
+        return bucket == null ? 0 : bucket.idle.size();
+    }
+
+    /**
+     * 一个 event loop 上同一上游的预热连接
+     */
+    private final class Bucket {
+
+        private final EventLoop eventLoop;
+        private final String key;
+        private final Map<String, Bucket> siblings;
+        private final ArrayDeque<WarmChannelHandler> idle = new ArrayDeque<>();
+        private Warmer warmer;
+        private int pending;
+        /**
+         * 按指数衰减统计的需求速率（次/秒），截至 lastDemandNanos
+         */
+        private double demandRate;
+        private long lastDemandNanos;
+        /**
+         * 预热耗时的滑动平均（秒），尚无样本时为 0
+         */
+        private double warmupSeconds;
+        private long backoffUntilNanos;
+        private boolean backoff;
+
+        Bucket(EventLoop eventLoop, String key, Map<String, Bucket> siblings) {
+            this.eventLoop = eventLoop;
+            this.key = key;
+            this.siblings = siblings;
+        }
+
+        void recordDemand(long now) {
+            demandRate = currentRate(now) + 1 / DEMAND_DECAY_SECONDS;
+            lastDemandNanos = now;
+        }
+
+        private double currentRate(long now) {
+            if (demandRate == 0) {
+                return 0;
+            }
+            return demandRate * Math.exp(-(now - lastDemandNanos) / 1e9 / DEMAND_DECAY_SECONDS);
+        }
+
+        /**
+         * 按当前需求应保持的预热连接数
+         */
+        private int target(long now) {
+            double rate = currentRate(now);
+            if (rate * idleTimeoutMillis / 1000.0 < MIN_EXPECTED_USES) {
+                return 0;
+            }
+            // 预热期间到来的请求数，至少保持一条
+            double warmup = warmupSeconds > 0 ? warmupSeconds : 1;
+            return (int) Math.min(maxIdle, Math.max(1, Math.ceil(rate * warmup)));
+        }
+
+        /**
+         * 取最近预热好的连接，越新的连接被对端空闲超时关闭的可能越小
+         */
+        WarmChannelHandler poll() {
+            WarmChannelHandler warm;
+            while ((warm = idle.pollLast()) != null) {
+                warm.cancelExpiry();
+                if (warm.isReusable()) {
+                    return warm;
+                }
+                log.debug("预热连接 {} 已被对端关闭，丢弃", warm.channel().remoteAddress());
+                warm.channel().close();
+            }
+            return null;
+        }
+
+        void refill(long now) {
+            int target = target(now);
+            if (!backoff || now - backoffUntilNanos >= 0) {
+                backoff = false;
+                while (idle.size() + pending < target) {
+                    warmOne();
+                }
+            }
+            // 需求下降后多出的连接从最旧的开始关闭
+            while (idle.size() > target) {
+                WarmChannelHandler oldest = idle.pollFirst();
+                oldest.cancelExpiry();
+                oldest.channel().close();
+            }
+            removeIfUnused(now);
+        }
+
+        private void warmOne() {
+            long start = System.nanoTime();
+            Promise<Channel> ready = eventLoop.newPromise();
+            WarmChannelHandler warm = new WarmChannelHandler(ready, this::onInactive);
+            ChannelFuture connect;
+            try {
+                connect = warmer.connect(warm);
+            } catch (RuntimeException e) {
+                log.debug("预热连接发起失败: {}", e.getMessage());
+                startBackoff(start);
+                return;
+            }
+            pending++;
+            connect.addListener(f -> {
+                if (!f.isSuccess()) {
+                    ready.tryFailure(f.cause());
+                }
+            });
+            ScheduledFuture<?> timeout = eventLoop.schedule(
+                    () -> ready.tryFailure(new TimeoutException("预热超时")),
+                    WARMUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            ready.addListener(f -> {
+                timeout.cancel(false);
+                pending--;
+                long now = System.nanoTime();
+                if (!f.isSuccess()) {
+                    connect.channel().close();
+                    log.debug("预热连接 {} 失败: {}", connect.channel().remoteAddress(), f.cause().getMessage());
+                    // 上游不可用时暂停预热，下次取用时再试
+                    startBackoff(now);
+                    removeIfUnused(now);
+                    return;
+                }
+                double seconds = (now - start) / 1e9;
+                warmupSeconds = warmupSeconds > 0 ? warmupSeconds * 0.8 + seconds * 0.2 : seconds;
+                if (idle.size() >= target(now)) {
+                    connect.channel().close();
+                    removeIfUnused(now);
+                    return;
+                }
+                warm.startIdle(eventLoop.schedule(() -> expire(warm), idleTimeoutMillis, TimeUnit.MILLISECONDS));
+                idle.addLast(warm);
+            });
+        }
+
+        private void expire(WarmChannelHandler warm) {
+            if (idle.remove(warm)) {
+                warm.channel().close();
+                refill(System.nanoTime());
+            }
+        }
+
+        private void onInactive(WarmChannelHandler warm) {
+            if (idle.remove(warm)) {
+                log.debug("预热连接 {} 空闲期间被对端关闭", warm.channel().remoteAddress());
+                removeIfUnused(System.nanoTime());
+            }
+        }
+
+        private void startBackoff(long now) {
+            backoff = true;
+            backoffUntilNanos = now + TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        }
+
+        private void removeIfUnused(long now) {
+            if (idle.isEmpty() && pending == 0 && currentRate(now) < MIN_TRACKED_RATE) {
+                siblings.remove(key, this);
+            }
+        }
+    }
+}
@@ -3,13 +3,17 @@ package org.congcong.proxyworker.outbound.reality;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.util.concurrent.Promise;
 import org.congcong.proxyworker.outbound.AbstractOutboundConnector;
+import org.congcong.proxyworker.outbound.pool.WarmConnectionPool;
 import org.congcong.proxyworker.outbound.reality.config.RealityClientConfig;
 import org.congcong.proxyworker.outbound.reality.config.VlessRealityOutboundConfig;
+import org.congcong.proxyworker.outbound.reality.mux.MuxSessionPool;
 import org.congcong.proxyworker.outbound.reality.session.RealityHandshakeHandler;
 import org.congcong.proxyworker.outbound.reality.session.VlessRealityOutboundHandler;
 import org.congcong.proxyworker.outbound.reality.tls.RealityClientHelloFactory;
@@ -20,6 +24,8 @@ import org.congcong.proxyworker.outbound.reality.trace.ConnectionTrace;
 import org.congcong.proxyworker.outbound.reality.vless.VlessRequest;
 import org.congcong.proxyworker.server.tunnel.ProxyTunnelRequest;
 
+import java.util.function.BiFunction;
+
 public class VlessRealityOutboundConnector extends AbstractOutboundConnector {
 
     @Override
@@ -31,37 +37,72 @@ public class VlessRealityOutboundConnector extends AbstractOutboundConnector {
             return inboundChannel.newFailedFuture(e);
         }
 
+        if (outboundConfig.muxEnabled()) {
+            return MuxSessionPool.getInstance().openStream(
+                    inboundChannel.eventLoop(),
+                    getSocketChannel(),
+                    outboundConfig,
+                    request.getTargetHost(),
+                    request.getTargetPort(),
+                    relayPromise);
+        }
+
         RealityClientConfig realityConfig = outboundConfig.toRealityClientConfig();
         VlessRequest vlessRequest = new VlessRequest(
                 outboundConfig.uuid(),
                 request.getTargetHost(),
                 request.getTargetPort(),
                 outboundConfig.flow());
-        ConnectionTrace trace = new ConnectionTrace();
+        EventLoop eventLoop = inboundChannel.eventLoop();
+        Class<? extends SocketChannel> channelClass = getSocketChannel();
 
-        Bootstrap bootstrap = new Bootstrap()
-                .group(inboundChannel.eventLoop())
-                .channel(getSocketChannel())
+        // 预热连接已完成 REALITY 握手，VLESS 请求头在取出后发送
+        Channel warm = WarmConnectionPool.getInstance().acquire(
+                eventLoop,
+                "VLESS_REALITY|" + outboundConfig.handshakeKey(),
+                warmHandler -> bootstrap(eventLoop, channelClass, outboundConfig, realityConfig,
+                        (engine, trace) -> warmHandler).connect(outboundConfig.host(), outboundConfig.port()),
+                pipeline -> {
+                    RealityHandshakeHandler handshake = pipeline.get(RealityHandshakeHandler.class);
+                    pipeline.addLast(new VlessRealityOutboundHandler(
+                            vlessRequest,
+                            handshake.trace(),
+                            handshake.engine(),
+                            handshake.engine(),
+                            relayPromise));
+                });
+        if (warm != null) {
+            warm.pipeline().fireUserEventTriggered("HANDSHAKE_COMPLETE");
+            return warm.newSucceededFuture();
+        }
+
+        return bootstrap(eventLoop, channelClass, outboundConfig, realityConfig,
+                (engine, trace) -> new VlessRealityOutboundHandler(vlessRequest, trace, engine, engine, relayPromise))
+                .connect(outboundConfig.host(), outboundConfig.port());
+    }
+
+    private static Bootstrap bootstrap(EventLoop eventLoop,
+                                       Class<? extends SocketChannel> channelClass,
+                                       VlessRealityOutboundConfig outboundConfig,
+                                       RealityClientConfig realityConfig,
+                                       BiFunction<RealityHandshakeEngine, ConnectionTrace, ChannelHandler> next) {
+        return new Bootstrap()
+                .group(eventLoop)
+                .channel(channelClass)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, outboundConfig.connectTimeoutMillis())
                 .option(ChannelOption.SO_KEEPALIVE, true)
                 .handler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel ch) {
+                        ConnectionTrace trace = new ConnectionTrace();
                         RealityHandshakeEngine handshakeEngine = new RealityHandshakeEngine(
                                 realityConfig,
                                 new RealityClientHelloFactory());
                         ch.pipeline().addLast(new TlsRecordEncoder());
                         ch.pipeline().addLast(new TlsRecordDecoder());
                         ch.pipeline().addLast(new RealityHandshakeHandler(handshakeEngine, trace));
-                        ch.pipeline().addLast(new VlessRealityOutboundHandler(
-                                vlessRequest,
-                                trace,
-                                handshakeEngine,
-                                handshakeEngine,
-                                relayPromise));
+                        ch.pipeline().addLast(next.apply(handshakeEngine, trace));
                     }
                 });
-
-        return bootstrap.connect(outboundConfig.host(), outboundConfig.port());
     }
 }
@@ -8,6 +8,9 @@ import org.congcong.proxyworker.outbound.reality.vless.VlessFlow;
 
 public final class VlessRealityOutboundConfig {
     private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int DEFAULT_MUX_CONCURRENCY = 8;
+    private static final int MAX_MUX_CONCURRENCY = 1024;
+    private static final int DEFAULT_MUX_IDLE_TIMEOUT_MILLIS = 30000;
     private static final Pattern SHORT_ID_HEX = Pattern.compile("^[0-9a-fA-F]{0,16}$");
 
     private final String host;
@@ -18,6 +21,9 @@ public final class VlessRealityOutboundConfig {
     private final UUID uuid;
     private final VlessFlow flow;
     private final int connectTimeoutMillis;
+    private final boolean muxEnabled;
+    private final int muxConcurrency;
+    private final int muxIdleTimeoutMillis;
 
     private VlessRealityOutboundConfig(
             String host,
@@ -27,7 +33,10 @@ public final class VlessRealityOutboundConfig {
             String shortId,
             UUID uuid,
             VlessFlow flow,
-            int connectTimeoutMillis) {
+            int connectTimeoutMillis,
+            boolean muxEnabled,
+            int muxConcurrency,
+            int muxIdleTimeoutMillis) {
         this.host = host;
         this.port = port;
         this.serverName = serverName;
@@ -36,6 +45,9 @@ public final class VlessRealityOutboundConfig {
         this.uuid = uuid;
         this.flow = flow;
         this.connectTimeoutMillis = connectTimeoutMillis;
+        this.muxEnabled = muxEnabled;
+        this.muxConcurrency = muxConcurrency;
+        this.muxIdleTimeoutMillis = muxIdleTimeoutMillis;
     }
 
     public static VlessRealityOutboundConfig from(RouteConfig route) {
@@ -64,6 +76,15 @@ public final class VlessRealityOutboundConfig {
         if (connectTimeoutMillis < 1) {
             throw new IllegalArgumentException("VLESS REALITY connectTimeoutMillis must be positive");
         }
+        boolean muxEnabled = booleanOrDefault(config.get("mux"), false);
+        int muxConcurrency = intOrDefault(config.get("muxConcurrency"), DEFAULT_MUX_CONCURRENCY);
+        if (muxConcurrency < 1 || muxConcurrency > MAX_MUX_CONCURRENCY) {
+            throw new IllegalArgumentException("VLESS REALITY muxConcurrency must be between 1 and " + MAX_MUX_CONCURRENCY);
+        }
+        int muxIdleTimeoutMillis = intOrDefault(config.get("muxIdleTimeoutMillis"), DEFAULT_MUX_IDLE_TIMEOUT_MILLIS);
+        if (muxIdleTimeoutMillis < 1) {
+            throw new IllegalArgumentException("VLESS REALITY muxIdleTimeoutMillis must be positive");
+        }
 
         return new VlessRealityOutboundConfig(
                 host,
@@ -73,7 +94,10 @@ public final class VlessRealityOutboundConfig {
                 shortId,
                 uuid,
                 flow,
-                connectTimeoutMillis);
+                connectTimeoutMillis,
+                muxEnabled,
+                muxConcurrency,
+                muxIdleTimeoutMillis);
     }
 
     public RealityClientConfig toRealityClientConfig() {
@@ -120,6 +144,42 @@ public final class VlessRealityOutboundConfig {
         return connectTimeoutMillis;
     }
 
+    /**
+     * 是否通过 Mux.Cool 在少量长连接的 REALITY 会话上承载多个代理连接
+     */
+    public boolean muxEnabled() {
+        return muxEnabled;
+    }
+
+    /**
+     * 单个 mux 会话同时承载的子连接上限
+     */
+    public int muxConcurrency() {
+        return muxConcurrency;
+    }
+
+    /**
+     * mux 会话没有子连接后保留的时长，超时后关闭
+     */
+    public int muxIdleTimeoutMillis() {
+        return muxIdleTimeoutMillis;
+    }
+
+    /**
+     * 可以共用 mux 会话的出站配置具有相同的键
+     */
+    public String muxSessionKey() {
+        return host + ":" + port + "|" + serverName + "|" + publicKey + "|" + shortId + "|" + uuid
+                + "|" + connectTimeoutMillis + "|" + muxConcurrency + "|" + muxIdleTimeoutMillis;
+    }
+
+    /**
+     * REALITY 握手参数相同的出站配置具有相同的键，可以共用预热好的连接
+     */
+    public String handshakeKey() {
+        return host + ":" + port + "|" + serverName + "|" + publicKey + "|" + shortId + "|" + connectTimeoutMillis;
+    }
+
     private static UUID parseUuid(String value) {
         try {
             return UUID.fromString(value);
@@ -141,6 +201,17 @@ public final class VlessRealityOutboundConfig {
         return text == null || text.isEmpty() ? defaultValue : text;
     }
 
+    private static boolean booleanOrDefault(Object value, boolean defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        String text = String.valueOf(value).trim();
+        return text.isEmpty() ? defaultValue : Boolean.parseBoolean(text);
+    }
+
     private static int intOrDefault(Object value, int defaultValue) {
         if (value == null) {
             return defaultValue;
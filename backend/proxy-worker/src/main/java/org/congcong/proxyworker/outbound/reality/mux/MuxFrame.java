@@ -0,0 +1,21 @@
+package org.congcong.proxyworker.outbound.reality.mux;
+
+/**
+ * 一个 Mux.Cool 帧，只保留客户端处理需要的字段
+ *
+ * @param data 没有数据时为空数组
+ */
+record MuxFrame(int sessionId, int status, int option, byte[] data) {
+
+    static final int STATUS_NEW = 0x01;
+    static final int STATUS_KEEP = 0x02;
+    static final int STATUS_END = 0x03;
+    static final int STATUS_KEEP_ALIVE = 0x04;
+
+    static final int OPTION_DATA = 0x01;
+    static final int OPTION_ERROR = 0x02;
+
+    boolean hasError() {
+        return (option & OPTION_ERROR) != 0;
+    }
+}
@@ -0,0 +1,145 @@
+package org.congcong.proxyworker.outbound.reality.mux;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.NetUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mux.Cool 帧编解码
+ * <pre>
+ * 2 字节元数据长度 | 元数据：2 字节子连接 ID、1 字节状态、1 字节选项、New 帧附带网络类型/端口/地址
+ * | 选项带数据时：2 字节数据长度 + 数据
+ * </pre>
+ * 解码端按字节流累积，一个 TLS 记录里可能有多个帧，一个帧也可能跨多个记录。
+ */
+final class MuxFrameCodec {
+
+    /**
+     * 单帧数据上限，与 Xray 一致
+     */
+    static final int MAX_DATA_LENGTH = 8192;
+
+    private static final int NETWORK_TCP = 0x01;
+    private static final int ADDRESS_IPV4 = 0x01;
+    private static final int ADDRESS_DOMAIN = 0x02;
+    private static final int ADDRESS_IPV6 = 0x03;
+
+    private final ByteBuf cumulation = Unpooled.buffer();
+
+    /**
+     * 打开 TCP 子连接，不携带数据
+     */
+    static byte[] encodeNew(int sessionId, String host, int port) {
+        ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+        writeShort(metadata, sessionId);
+        metadata.write(MuxFrame.STATUS_NEW);
+        metadata.write(0);
+        metadata.write(NETWORK_TCP);
+        writeShort(metadata, port);
+        byte[] ip = NetUtil.createByteArrayFromIpAddressString(host);
+        if (ip != null) {
+            metadata.write(ip.length == 4 ? ADDRESS_IPV4 : ADDRESS_IPV6);
+            metadata.write(ip, 0, ip.length);
+        } else {
+            byte[] domain = host.getBytes(StandardCharsets.US_ASCII);
+            if (domain.length > 255) {
+                throw new IllegalArgumentException("Mux domain is too long: " + host);
+            }
+            metadata.write(ADDRESS_DOMAIN);
+            metadata.write(domain.length);
+            metadata.write(domain, 0, domain.length);
+        }
+        return frame(metadata.toByteArray(), null, 0, 0);
+    }
+
+    /**
+     * 子连接数据，length 不超过 {@link #MAX_DATA_LENGTH}
+     */
+    static byte[] encodeKeep(int sessionId, byte[] data, int offset, int length) {
+        return frame(metadata(sessionId, MuxFrame.STATUS_KEEP, MuxFrame.OPTION_DATA), data, offset, length);
+    }
+
+    static byte[] encodeEnd(int sessionId) {
+        return frame(metadata(sessionId, MuxFrame.STATUS_END, 0), null, 0, 0);
+    }
+
+    /**
+     * 追加收到的字节并取出所有完整的帧
+     */
+    List<MuxFrame> decode(byte[] input) {
+        cumulation.writeBytes(input);
+        List<MuxFrame> frames = new ArrayList<>();
+        while (true) {
+            MuxFrame frame = decodeOne();
+            if (frame == null) {
+                break;
+            }
+            frames.add(frame);
+        }
+        cumulation.discardReadBytes();
+        return frames;
+    }
+
+    void release() {
+        cumulation.release();
+    }
+
+    private MuxFrame decodeOne() {
+        int start = cumulation.readerIndex();
+        if (cumulation.readableBytes() < 2) {
+            return null;
+        }
+        int metadataLength = cumulation.getUnsignedShort(start);
+        if (metadataLength < 4) {
+            throw new IllegalArgumentException("Invalid mux metadata length: " + metadataLength);
+        }
+        int dataHeader = start + 2 + metadataLength;
+        if (cumulation.writerIndex() < dataHeader) {
+            return null;
+        }
+        int sessionId = cumulation.getUnsignedShort(start + 2);
+        int status = cumulation.getUnsignedByte(start + 4);
+        int option = cumulation.getUnsignedByte(start + 5);
+        byte[] data = new byte[0];
+        int end = dataHeader;
+        if ((option & MuxFrame.OPTION_DATA) != 0) {
+            if (cumulation.writerIndex() < dataHeader + 2) {
+                return null;
+            }
+            int dataLength = cumulation.getUnsignedShort(dataHeader);
+            end = dataHeader + 2 + dataLength;
+            if (cumulation.writerIndex() < end) {
+                return null;
+            }
+            data = new byte[dataLength];
+            cumulation.getBytes(dataHeader + 2, data);
+        }
+        cumulation.readerIndex(end);
+        return new MuxFrame(sessionId, status, option, data);
+    }
+
+    private static byte[] metadata(int sessionId, int status, int option) {
+        return new byte[] {(byte) (sessionId >>> 8), (byte) sessionId, (byte) status, (byte) option};
+    }
+
+    private static byte[] frame(byte[] metadata, byte[] data, int offset, int length) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + metadata.length + (data == null ? 0 : 2 + length));
+        writeShort(out, metadata.length);
+        out.write(metadata, 0, metadata.length);
+        if (data != null) {
+            writeShort(out, length);
+            out.write(data, offset, length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write((value >>> 8) & 0xff);
+        out.write(value & 0xff);
+    }
+}
@@ -0,0 +1,242 @@
+package org.congcong.proxyworker.outbound.reality.mux;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.congcong.proxyworker.outbound.reality.tls.TlsApplicationDataWriter;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一条 VLESS+REALITY 连接上的 Mux.Cool 会话
+ * <ul>
+ *     <li>REALITY 握手完成、VLESS Mux 请求头发出后就绪，之后每个代理连接占用一个子连接 ID</li>
+ *     <li>同时打开的子连接不超过 concurrency；子连接 ID 用尽后不再接受新子连接，已有子连接结束后关闭</li>
+ *     <li>没有子连接的时间超过 idleTimeout 后关闭并从 {@link MuxSessionPool} 移除</li>
+ * </ul>
+ * 所有方法都在会话连接所在的 event loop 上调用。
+ */
+@Slf4j
+final class MuxSession {
+
+    private static final int MAX_STREAM_ID = 0xFFFF;
+
+    private final int concurrency;
+    private final long idleTimeoutMillis;
+    private final Promise<Void> ready;
+    private final Map<Integer, MuxStreamChannel> streams = new HashMap<>();
+    private Channel channel;
+    private Runnable onClosed;
+    private TlsApplicationDataWriter tlsWriter;
+    private int nextStreamId = 1;
+    private int stalledStreams;
+    private ScheduledFuture<?> idleTimer;
+    private boolean closed;
+
+    MuxSession(EventLoop eventLoop, int concurrency, long idleTimeoutMillis) {
+        this.concurrency = concurrency;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.ready = eventLoop.newPromise();
+    }
+
+    /**
+     * 绑定会话连接，须在打开子连接之前调用
+     * @param onClosed 会话关闭后调用一次，用于从会话池移除
+     */
+    void attach(Channel channel, Runnable onClosed) {
+        this.channel = channel;
+        this.onClosed = onClosed;
+    }
+
+    Channel channel() {
+        return channel;
+    }
+
+    Future<Void> readyFuture() {
+        return ready;
+    }
+
+    /**
+     * 还能否承载新的子连接（握手尚未完成的会话也算）
+     */
+    boolean hasCapacity() {
+        return !closed && streams.size() < concurrency && nextStreamId <= MAX_STREAM_ID
+                && !(ready.isDone() && !ready.isSuccess());
+    }
+
+    int streamCount() {
+        return streams.size();
+    }
+
+    /**
+     * 在本会话上打开一个到 host:port 的子连接
+     * @return 子连接打开后成功，channel() 为子连接；会话握手失败或已关闭时失败
+     */
+    ChannelFuture openStream(String host, int port, Promise<Channel> relayPromise) {
+        MuxStreamChannel stream = new MuxStreamChannel(this, nextStreamId++);
+        streams.put(stream.streamId(), stream);
+        cancelIdleTimer();
+        ChannelPromise result = new DefaultChannelPromise(stream, channel.eventLoop());
+        channel.eventLoop().register(stream).addListener(r -> {
+            if (!r.isSuccess()) {
+                streams.remove(stream.streamId());
+                result.tryFailure(r.cause());
+                return;
+            }
+            ready.addListener(f -> {
+                if (!f.isSuccess()) {
+                    stream.onSessionClosed();
+                    result.tryFailure(f.cause());
+                    return;
+                }
+                if (!stream.isOpen()) {
+                    result.tryFailure(new ClosedChannelException());
+                    return;
+                }
+                channel.writeAndFlush(tlsWriter.encryptApplicationData(MuxFrameCodec.encodeNew(stream.streamId(), host, port)));
+                result.setSuccess();
+                relayPromise.trySuccess(stream);
+            });
+        });
+        return result;
+    }
+
+    /**
+     * 握手完成、Mux 请求头已写出
+     */
+    void onReady(TlsApplicationDataWriter writer) {
+        this.tlsWriter = writer;
+        ready.trySuccess(null);
+    }
+
+    void onFrames(List<MuxFrame> frames) {
+        for (MuxFrame frame : frames) {
+            MuxStreamChannel stream = streams.get(frame.sessionId());
+            switch (frame.status()) {
+                case MuxFrame.STATUS_KEEP -> {
+                    if (stream != null) {
+                        if (frame.data().length > 0) {
+                            stream.onData(frame.data());
+                        }
+                    } else if (frame.sessionId() != 0) {
+                        // 本地已经关闭的子连接，告知对端结束
+                        writeFrame(MuxFrameCodec.encodeEnd(frame.sessionId()));
+                    }
+                }
+                case MuxFrame.STATUS_END -> {
+                    if (stream != null) {
+                        if (frame.hasError()) {
+                            log.debug("mux 子连接 {} 被服务端以错误结束", frame.sessionId());
+                        }
+                        stream.onRemoteEnd();
+                    }
+                }
+                case MuxFrame.STATUS_NEW -> writeFrame(MuxFrameCodec.encodeEnd(frame.sessionId()));
+                default -> {
+                    // KeepAlive 等不需要处理
+                }
+            }
+        }
+        channel.flush();
+    }
+
+    void writeData(int streamId, ByteBuf data) {
+        byte[] bytes = new byte[Math.min(data.readableBytes(), MuxFrameCodec.MAX_DATA_LENGTH)];
+        while (data.isReadable()) {
+            int length = Math.min(data.readableBytes(), MuxFrameCodec.MAX_DATA_LENGTH);
+            data.readBytes(bytes, 0, length);
+            writeFrame(MuxFrameCodec.encodeKeep(streamId, bytes, 0, length));
+        }
+    }
+
+    boolean isWritable() {
+        return channel.isWritable();
+    }
+
+    void flush() {
+        channel.flush();
+    }
+
+    /**
+     * 会话连接重新可写，继续发送各子连接积压的数据
+     */
+    void onWritable() {
+        for (MuxStreamChannel stream : new ArrayList<>(streams.values())) {
+            stream.flush();
+        }
+    }
+
+    /**
+     * 子连接暂存的下行数据过多时暂停整个会话的读取，全部恢复后继续
+     */
+    void onStreamStalled(boolean stalled) {
+        stalledStreams += stalled ? 1 : -1;
+        channel.config().setAutoRead(stalledStreams == 0);
+    }
+
+    void onStreamClosed(MuxStreamChannel stream, boolean sendEnd) {
+        if (streams.remove(stream.streamId(), stream) && sendEnd && !closed && ready.isSuccess()) {
+            writeFrame(MuxFrameCodec.encodeEnd(stream.streamId()));
+            channel.flush();
+        }
+        if (streams.isEmpty() && !closed) {
+            if (nextStreamId > MAX_STREAM_ID) {
+                channel.close();
+            } else {
+                scheduleIdleTimer();
+            }
+        }
+    }
+
+    /**
+     * 会话连接关闭或握手失败
+     */
+    void onClosed(Throwable cause) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        cancelIdleTimer();
+        ready.tryFailure(cause);
+        for (MuxStreamChannel stream : new ArrayList<>(streams.values())) {
+            stream.onSessionClosed();
+        }
+        streams.clear();
+        if (onClosed != null) {
+            onClosed.run();
+        }
+    }
+
+    private void writeFrame(byte[] frame) {
+        channel.write(tlsWriter.encryptApplicationData(frame), channel.voidPromise());
+    }
+
+    private void scheduleIdleTimer() {
+        cancelIdleTimer();
+        idleTimer = channel.eventLoop().schedule(() -> {
+            if (streams.isEmpty()) {
+                log.debug("mux 会话 {} 空闲超时，关闭", channel.remoteAddress());
+                channel.close();
+            }
+        }, idleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelIdleTimer() {
+        if (idleTimer != null) {
+            idleTimer.cancel(false);
+            idleTimer = null;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.congcong.proxyworker.outbound.reality.mux;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.ReferenceCountUtil;
+import org.congcong.proxyworker.outbound.reality.session.RealityHandshakeHandler;
+import org.congcong.proxyworker.outbound.reality.session.RealityPostHandshakeClassifier;
+import org.congcong.proxyworker.outbound.reality.tls.Tls13Plaintext;
+import org.congcong.proxyworker.outbound.reality.tls.TlsApplicationDataReader;
+import org.congcong.proxyworker.outbound.reality.tls.TlsApplicationDataWriter;
+import org.congcong.proxyworker.outbound.reality.tls.TlsRecord;
+import org.congcong.proxyworker.outbound.reality.tls.TlsRecordType;
+import org.congcong.proxyworker.outbound.reality.vless.VlessCodec;
+import org.congcong.proxyworker.outbound.reality.vless.VlessRequest;
+import org.congcong.proxyworker.outbound.reality.vless.VlessResponseHeader;
+import org.congcong.proxyworker.outbound.reality.vless.VlessResponseHeaderDecoder;
+
+import java.util.UUID;
+
+/**
+ * mux 会话连接 pipeline 的末端：握手完成后发出 VLESS Mux 请求头，之后把解密出的应用数据按 Mux.Cool 帧分发给 {@link MuxSession}
+ */
+final class MuxSessionHandler extends ChannelDuplexHandler {
+
+    private final MuxSession session;
+    private final UUID uuid;
+    private final TlsApplicationDataWriter tlsWriter;
+    private final TlsApplicationDataReader tlsReader;
+    private final VlessResponseHeaderDecoder responseHeaderDecoder = new VlessResponseHeaderDecoder();
+    private final RealityPostHandshakeClassifier postHandshakeClassifier = new RealityPostHandshakeClassifier();
+    private final MuxFrameCodec frameCodec = new MuxFrameCodec();
+    private boolean responseHeaderComplete;
+
+    MuxSessionHandler(MuxSession session, UUID uuid, TlsApplicationDataWriter tlsWriter, TlsApplicationDataReader tlsReader) {
+        this.session = session;
+        this.uuid = uuid;
+        this.tlsWriter = tlsWriter;
+        this.tlsReader = tlsReader;
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if ("HANDSHAKE_COMPLETE".equals(evt)) {
+            // 会话长期存在，握手处理器会逐条记录 trace，握手后不再需要
+            ctx.pipeline().remove(RealityHandshakeHandler.class);
+            ctx.writeAndFlush(tlsWriter.encryptApplicationData(new VlessCodec().encode(VlessRequest.mux(uuid))))
+                    .addListener(future -> {
+                        if (future.isSuccess()) {
+                            session.onReady(tlsWriter);
+                        } else {
+                            session.onClosed(future.cause());
+                        }
+                    });
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof TlsRecord record)) {
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        if (record.type() != TlsRecordType.APPLICATION_DATA) {
+            return;
+        }
+        Tls13Plaintext plaintext = tlsReader.decryptApplicationPlaintext(record);
+        if (plaintext.contentType() != TlsRecordType.APPLICATION_DATA) {
+            return;
+        }
+        byte[] payload = plaintext.payload();
+        if (!responseHeaderComplete) {
+            if (postHandshakeClassifier.classify(payload) == RealityPostHandshakeClassifier.Result.CAMOUFLAGE) {
+                return;
+            }
+            VlessResponseHeader response = responseHeaderDecoder.decode(payload);
+            if (!response.complete()) {
+                return;
+            }
+            responseHeaderComplete = true;
+            payload = response.payload();
+        }
+        if (payload.length > 0) {
+            session.onFrames(frameCodec.decode(payload));
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            session.onWritable();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        session.onClosed(cause);
+        ctx.close();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        session.onClosed(new IllegalStateException("VLESS REALITY mux session closed"));
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        frameCodec.release();
+    }
+}
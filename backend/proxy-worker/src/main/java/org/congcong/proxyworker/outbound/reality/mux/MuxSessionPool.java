@@ -0,0 +1,111 @@
+package org.congcong.proxyworker.outbound.reality.mux;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.Promise;
+import lombok.extern.slf4j.Slf4j;
+import org.congcong.proxyworker.outbound.reality.config.RealityClientConfig;
+import org.congcong.proxyworker.outbound.reality.config.VlessRealityOutboundConfig;
+import org.congcong.proxyworker.outbound.reality.session.RealityHandshakeHandler;
+import org.congcong.proxyworker.outbound.reality.tls.RealityClientHelloFactory;
+import org.congcong.proxyworker.outbound.reality.tls.RealityHandshakeEngine;
+import org.congcong.proxyworker.outbound.reality.tls.TlsRecordDecoder;
+import org.congcong.proxyworker.outbound.reality.tls.TlsRecordEncoder;
+import org.congcong.proxyworker.outbound.reality.trace.ConnectionTrace;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * VLESS+REALITY 出站的 Mux.Cool 会话池
+ * 会话按 event loop 分开管理，代理连接只使用入站所在 event loop 上的会话，子连接与会话之间的读写都不跨线程；
+ * 同一出站配置优先复用已有会话，都已满时新建。
+ */
+@Slf4j
+public class MuxSessionPool {
+
+    private static class Holder {
+        private static final MuxSessionPool INSTANCE = new MuxSessionPool();
+    }
+
+    public static MuxSessionPool getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * event loop -> 出站配置 -> 会话，内层只在对应 event loop 上访问
+     */
+    private final Map<EventLoop, Map<String, List<MuxSession>>> sessions = new ConcurrentHashMap<>();
+
+    MuxSessionPool() {
+    }
+
+    /**
+     * 在 eventLoop 上为 host:port 打开一个子连接，必须在 eventLoop 上调用
+     * @return 子连接打开后成功，channel() 为子连接
+     */
+    public ChannelFuture openStream(EventLoop eventLoop,
+                                    Class<? extends SocketChannel> channelClass,
+                                    VlessRealityOutboundConfig config,
+                                    String host,
+                                    int port,
+                                    Promise<Channel> relayPromise) {
+        List<MuxSession> candidates = sessions.computeIfAbsent(eventLoop, k -> new HashMap<>())
+                .computeIfAbsent(config.muxSessionKey(), k -> new ArrayList<>());
+        MuxSession session = null;
+        for (MuxSession candidate : candidates) {
+            // 优先用子连接多的会话，让空闲会话尽快超时关闭
+            if (candidate.hasCapacity() && (session == null || candidate.streamCount() > session.streamCount())) {
+                session = candidate;
+            }
+        }
+        if (session == null) {
+            session = newSession(eventLoop, channelClass, config, candidates);
+        }
+        return session.openStream(host, port, relayPromise);
+    }
+
+    private MuxSession newSession(EventLoop eventLoop,
+                                  Class<? extends SocketChannel> channelClass,
+                                  VlessRealityOutboundConfig config,
+                                  List<MuxSession> candidates) {
+        RealityClientConfig realityConfig = config.toRealityClientConfig();
+        ConnectionTrace trace = new ConnectionTrace();
+        MuxSession session = new MuxSession(eventLoop, config.muxConcurrency(), config.muxIdleTimeoutMillis());
+        Bootstrap bootstrap = new Bootstrap()
+                .group(eventLoop)
+                .channel(channelClass)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.connectTimeoutMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        RealityHandshakeEngine handshakeEngine = new RealityHandshakeEngine(
+                                realityConfig,
+                                new RealityClientHelloFactory());
+                        ch.pipeline().addLast(new TlsRecordEncoder());
+                        ch.pipeline().addLast(new TlsRecordDecoder());
+                        ch.pipeline().addLast(new RealityHandshakeHandler(handshakeEngine, trace));
+                        ch.pipeline().addLast(new MuxSessionHandler(session, config.uuid(), handshakeEngine, handshakeEngine));
+                    }
+                });
+        candidates.add(session);
+        ChannelFuture connect = bootstrap.connect(config.host(), config.port());
+        session.attach(connect.channel(), () -> candidates.remove(session));
+        connect.addListener(f -> {
+            if (!f.isSuccess()) {
+                log.debug("mux 会话连接 {}:{} 失败: {}", config.host(), config.port(), f.cause().getMessage());
+                session.onClosed(f.cause());
+            }
+        });
+        return session;
+    }
+}
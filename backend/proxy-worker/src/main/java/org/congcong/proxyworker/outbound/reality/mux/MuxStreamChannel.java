@@ -0,0 +1,227 @@
+package org.congcong.proxyworker.outbound.reality.mux;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.EventLoop;
+import io.netty.util.ReferenceCountUtil;
+
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+
+/**
+ * mux 会话上的一个子连接，对中继表现为普通的 {@link io.netty.channel.Channel}
+ * <ul>
+ *     <li>与所属会话注册在同一个 event loop 上，读写都不跨线程</li>
+ *     <li>写出的数据切成 Keep 帧经会话发送；会话连接不可写时暂停，数据留在本 channel 的出站缓冲里，
+ *     缓冲超过水位后本 channel 变为不可写，中继据此暂停读取入站</li>
+ *     <li>收到的数据在 autoRead 关闭时暂存，暂存过多时暂停整个会话的读取（Mux.Cool 没有子连接级的流控）</li>
+ *     <li>本地关闭时发送 End 帧，对端 End 帧到达后把暂存数据交付完再关闭</li>
+ * </ul>
+ */
+final class MuxStreamChannel extends AbstractChannel {
+
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+    /**
+     * 暂存的下行数据超过该值时暂停会话读取
+     */
+    private static final int MAX_PENDING_INBOUND_BYTES = 1024 * 1024;
+
+    private final MuxSession session;
+    private final int streamId;
+    private final ChannelConfig config = new DefaultChannelConfig(this);
+    private final ArrayDeque<ByteBuf> pendingInbound = new ArrayDeque<>();
+    private int pendingInboundBytes;
+    private boolean readPending;
+    private boolean delivering;
+    private boolean remoteEnded;
+    private boolean stalled;
+    private volatile boolean open = true;
+
+    MuxStreamChannel(MuxSession session, int streamId) {
+        super(session.channel());
+        this.session = session;
+        this.streamId = streamId;
+    }
+
+    int streamId() {
+        return streamId;
+    }
+
+    /**
+     * 会话收到本子连接的数据
+     */
+    void onData(byte[] data) {
+        if (!open) {
+            return;
+        }
+        pendingInbound.add(Unpooled.wrappedBuffer(data));
+        pendingInboundBytes += data.length;
+        deliver();
+        if (!stalled && pendingInboundBytes > MAX_PENDING_INBOUND_BYTES) {
+            stalled = true;
+            session.onStreamStalled(true);
+        }
+    }
+
+    /**
+     * 对端结束了本子连接
+     */
+    void onRemoteEnd() {
+        remoteEnded = true;
+        if (pendingInbound.isEmpty()) {
+            close();
+        }
+    }
+
+    /**
+     * 会话已经关闭，不再发送 End 帧
+     */
+    void onSessionClosed() {
+        remoteEnded = true;
+        pendingInbound.forEach(ReferenceCountUtil::release);
+        pendingInbound.clear();
+        pendingInboundBytes = 0;
+        close();
+    }
+
+    private void deliver() {
+        if (delivering) {
+            return;
+        }
+        delivering = true;
+        try {
+            boolean delivered = false;
+            while (readPending && !pendingInbound.isEmpty()) {
+                ByteBuf data = pendingInbound.poll();
+                pendingInboundBytes -= data.readableBytes();
+                delivered = true;
+                if (!config.isAutoRead()) {
+                    readPending = false;
+                }
+                pipeline().fireChannelRead(data);
+            }
+            if (delivered) {
+                pipeline().fireChannelReadComplete();
+            }
+        } finally {
+            delivering = false;
+        }
+        if (stalled && pendingInboundBytes <= MAX_PENDING_INBOUND_BYTES / 2) {
+            stalled = false;
+            session.onStreamStalled(false);
+        }
+        if (remoteEnded && pendingInbound.isEmpty() && open) {
+            close();
+        }
+    }
+
+    @Override
+    protected AbstractUnsafe newUnsafe() {
+        return new AbstractUnsafe() {
+            @Override
+            public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+                promise.setFailure(new UnsupportedOperationException("mux stream is opened by its session"));
+            }
+        };
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop == session.channel().eventLoop();
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return parent().localAddress();
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return parent().remoteAddress();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) {
+        throw new UnsupportedOperationException("mux stream cannot be bound");
+    }
+
+    @Override
+    protected void doDisconnect() {
+        doClose();
+    }
+
+    @Override
+    protected void doClose() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        pendingInbound.forEach(ReferenceCountUtil::release);
+        pendingInbound.clear();
+        pendingInboundBytes = 0;
+        if (stalled) {
+            stalled = false;
+            session.onStreamStalled(false);
+        }
+        session.onStreamClosed(this, !remoteEnded);
+    }
+
+    @Override
+    protected void doBeginRead() {
+        readPending = true;
+        deliver();
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) {
+        boolean written = false;
+        while (true) {
+            Object msg = in.current();
+            if (msg == null) {
+                break;
+            }
+            if (!(msg instanceof ByteBuf data)) {
+                in.remove(new UnsupportedOperationException("unsupported message type: " + msg.getClass().getSimpleName()));
+                continue;
+            }
+            if (!session.isWritable()) {
+                // 会话连接可写后由 MuxSession 重新 flush
+                break;
+            }
+            if (data.isReadable()) {
+                session.writeData(streamId, data);
+                written = true;
+            }
+            in.remove();
+        }
+        if (written) {
+            session.flush();
+        }
+    }
+
+    @Override
+    public ChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isActive() {
+        return open;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+}
@@ -20,6 +20,14 @@ public final class RealityHandshakeHandler extends SimpleChannelInboundHandler<T
         this.trace = trace;
     }
 
+    public RealityHandshakeEngine engine() {
+        return handshakeEngine;
+    }
+
+    public ConnectionTrace trace() {
+        return trace;
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
         trace.event("tls.client_hello", "sending");
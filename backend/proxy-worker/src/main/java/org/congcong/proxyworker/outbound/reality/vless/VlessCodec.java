@@ -12,10 +12,12 @@ public final class VlessCodec {
             out.write(0x00);
             out.write(uuidBytes(request));
             out.write(addonBytes(request.flow()));
-            out.write(0x01);
-            out.write((request.port() >>> 8) & 0xff);
-            out.write(request.port() & 0xff);
-            writeAddress(out, request.host());
+            out.write(request.command().code());
+            if (request.command() != VlessCommand.MUX) {
+                out.write((request.port() >>> 8) & 0xff);
+                out.write(request.port() & 0xff);
+                writeAddress(out, request.host());
+            }
             return out.toByteArray();
         } catch (Exception e) {
             throw new IllegalStateException("Unable to encode VLESS request", e);
@@ -0,0 +1,19 @@
+package org.congcong.proxyworker.outbound.reality.vless;
+
+public enum VlessCommand {
+    TCP(0x01),
+    /**
+     * Mux.Cool：请求头不带目标地址，连接上承载多路子连接
+     */
+    MUX(0x03);
+
+    private final int code;
+
+    VlessCommand(int code) {
+        this.code = code;
+    }
+
+    public int code() {
+        return code;
+    }
+}
@@ -8,16 +8,29 @@ public final class VlessRequest {
     private final String host;
     private final int port;
     private final VlessFlow flow;
+    private final VlessCommand command;
 
     public VlessRequest(UUID uuid, String host, int port) {
         this(uuid, host, port, VlessFlow.NONE);
     }
 
     public VlessRequest(UUID uuid, String host, int port, VlessFlow flow) {
+        this(uuid, host, port, flow, VlessCommand.TCP);
+    }
+
+    private VlessRequest(UUID uuid, String host, int port, VlessFlow flow, VlessCommand command) {
         this.uuid = uuid;
         this.host = host;
         this.port = port;
         this.flow = flow == null ? VlessFlow.NONE : flow;
+        this.command = command;
+    }
+
+    /**
+     * Mux.Cool 会话请求，Xray 服务端要求子连接含 TCP 时不带 flow
+     */
+    public static VlessRequest mux(UUID uuid) {
+        return new VlessRequest(uuid, null, 0, VlessFlow.NONE, VlessCommand.MUX);
     }
 
     public UUID uuid() {
@@ -35,4 +48,8 @@ public final class VlessRequest {
     public VlessFlow flow() {
         return flow;
     }
+
+    public VlessCommand command() {
+        return command;
+    }
 }
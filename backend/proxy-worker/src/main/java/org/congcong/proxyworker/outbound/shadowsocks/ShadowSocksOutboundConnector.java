@@ -9,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.congcong.common.enums.ProxyEncAlgo;
 import org.congcong.proxyworker.config.RouteConfig;
 import org.congcong.proxyworker.outbound.AbstractOutboundConnector;
+import org.congcong.proxyworker.outbound.pool.WarmConnectionPool;
 import org.congcong.proxyworker.protocol.shadowsock.EncryptedSocksHandler;
 import org.congcong.proxyworker.protocol.shadowsock.DecryptedSocksHandler;
 import org.congcong.proxyworker.protocol.shadowsock.ShadowSocks2022ClientChunkEncoder;
@@ -35,48 +36,72 @@ public class ShadowSocksOutboundConnector extends AbstractOutboundConnector {
         // 目标ss服务器port
         Integer outboundProxyPort = routeConfig.getOutboundProxyPort();
 
-        Bootstrap b = new Bootstrap();
-        b.group(inboundChannel.eventLoop())
-                .channel(getSocketChannel())
+        EventLoop eventLoop = inboundChannel.eventLoop();
+        Class<? extends SocketChannel> channelClass = getSocketChannel();
+
+        // 预热连接只建立了 TCP 连接，盐和地址头在取出后随请求发送
+        Channel warm = WarmConnectionPool.getInstance().acquire(
+                eventLoop,
+                "SHADOW_SOCKS|" + outboundProxyHost + ":" + outboundProxyPort,
+                warmHandler -> bootstrap(eventLoop, channelClass, warmHandler).connect(outboundProxyHost, outboundProxyPort),
+                pipeline -> addClientHandlers(pipeline, request, relayPromise, outboundProxyEncAlgo, outboundProxyPassword));
+        if (warm != null) {
+            warm.pipeline().fireChannelActive();
+            return warm.newSucceededFuture();
+        }
+
+        return bootstrap(eventLoop, channelClass, new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel socketChannel) throws Exception {
+                addClientHandlers(socketChannel.pipeline(), request, relayPromise, outboundProxyEncAlgo, outboundProxyPassword);
+            }
+        }).connect(outboundProxyHost, outboundProxyPort);
+    }
+
+    private static Bootstrap bootstrap(EventLoop eventLoop, Class<? extends SocketChannel> channelClass, ChannelHandler handler) {
+        return new Bootstrap()
+                .group(eventLoop)
+                .channel(channelClass)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10000)
                 .option(ChannelOption.SO_KEEPALIVE, true)
-                .handler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel socketChannel) throws Exception {
-                        if (ShadowSocks2022Support.isEnabled(outboundProxyEncAlgo)) {
-                            ShadowSocks2022ClientSession session = new ShadowSocks2022ClientSession();
-                            var requestCryptoProcessor = CryptoProcessorFactory.createProcessor(outboundProxyEncAlgo, outboundProxyPassword);
-                            var responseCryptoProcessor = CryptoProcessorFactory.createProcessor(outboundProxyEncAlgo, outboundProxyPassword);
-                            socketChannel.pipeline().addLast(
-                                    new ShadowSocks2022ClientResponseDecoder(
-                                            responseCryptoProcessor,
-                                            session
-                                    ),
-                                    new ShadowSocks2022ClientHandshakeHandler(
-                                            request,
-                                            relayPromise,
-                                            requestCryptoProcessor,
-                                            session,
-                                            outboundProxyPassword
-                                    ),
-                                    new ShadowSocks2022ClientChunkEncoder(
-                                            requestCryptoProcessor
-                                    )
-                            );
-                            return;
-                        }
-                        socketChannel.pipeline().addLast(
-                                // 加密出站数据
-                                new EncryptedSocksHandler(CryptoProcessorFactory.createProcessor(outboundProxyEncAlgo, outboundProxyPassword)),
-                                // 解密入站数据
-                                new DecryptedSocksHandler(CryptoProcessorFactory.createProcessor(outboundProxyEncAlgo, outboundProxyPassword)),
-                                // ShadowSocks客户端处理器
-                                new ShadowSocksClientHandler(request, relayPromise)
-                        );
-                    }
-                });
-
-        return b.connect(outboundProxyHost, outboundProxyPort);
+                .handler(handler);
+    }
+
+    private static void addClientHandlers(ChannelPipeline pipeline,
+                                          ProxyTunnelRequest request,
+                                          Promise<Channel> relayPromise,
+                                          ProxyEncAlgo outboundProxyEncAlgo,
+                                          String outboundProxyPassword) {
+        if (ShadowSocks2022Support.isEnabled(outboundProxyEncAlgo)) {
+            ShadowSocks2022ClientSession session = new ShadowSocks2022ClientSession();
+            var requestCryptoProcessor = CryptoProcessorFactory.createProcessor(outboundProxyEncAlgo, outboundProxyPassword);
+            var responseCryptoProcessor = CryptoProcessorFactory.createProcessor(outboundProxyEncAlgo, outboundProxyPassword);
+            pipeline.addLast(
+                    new ShadowSocks2022ClientResponseDecoder(
+                            responseCryptoProcessor,
+                            session
+                    ),
+                    new ShadowSocks2022ClientHandshakeHandler(
+                            request,
+                            relayPromise,
+                            requestCryptoProcessor,
+                            session,
+                            outboundProxyPassword
+                    ),
+                    new ShadowSocks2022ClientChunkEncoder(
+                            requestCryptoProcessor
+                    )
+            );
+            return;
+        }
+        pipeline.addLast(
+                // 加密出站数据
+                new EncryptedSocksHandler(CryptoProcessorFactory.createProcessor(outboundProxyEncAlgo, outboundProxyPassword)),
+                // 解密入站数据
+                new DecryptedSocksHandler(CryptoProcessorFactory.createProcessor(outboundProxyEncAlgo, outboundProxyPassword)),
+                // ShadowSocks客户端处理器
+                new ShadowSocksClientHandler(request, relayPromise)
+        );
     }
 
     private static class ShadowSocksClientHandler extends SimpleChannelInboundHandler<ByteBuf> {
@@ -10,6 +10,7 @@ import io.netty.util.concurrent.Promise;
 import lombok.extern.slf4j.Slf4j;
 import org.congcong.proxyworker.config.RouteConfig;
 import org.congcong.proxyworker.outbound.AbstractOutboundConnector;
+import org.congcong.proxyworker.outbound.pool.WarmConnectionPool;
 import org.congcong.proxyworker.server.tunnel.ProxyTunnelRequest;
 
 @Slf4j
@@ -19,9 +20,36 @@ public class Socks5OutboundConnector extends AbstractOutboundConnector {
 
     @Override
     public ChannelFuture connect(Channel inboundChannel, ProxyTunnelRequest request, Promise<Channel> relayPromise) {
-        Bootstrap b = new Bootstrap();
-        b.group(inboundChannel.eventLoop())
-                .channel(getSocketChannel())
+        EventLoop eventLoop = inboundChannel.eventLoop();
+        RouteConfig routeConfig = request.getRouteConfig();
+        String username = routeConfig.getOutboundProxyUsername();
+        String password = routeConfig.getOutboundProxyPassword();
+        String host = request.getFinalTargetHost();
+        int port = request.getFinalTargetPort();
+        Class<? extends SocketChannel> channelClass = getSocketChannel();
+
+        // 预热连接已完成方法协商与认证，只需发送 CONNECT
+        Channel warm = WarmConnectionPool.getInstance().acquire(
+                eventLoop,
+                "SOCKS5|" + host + ":" + port + "|" + WarmConnectionPool.credentialsDigest(username, password),
+                warmHandler -> bootstrap(eventLoop, channelClass, username, password, warmHandler).connect(host, port),
+                pipeline -> pipeline.addLast(new Socks5ConnectHandler(request, relayPromise)));
+        if (warm != null) {
+            warm.pipeline().fireChannelActive();
+            return warm.newSucceededFuture();
+        }
+        return bootstrap(eventLoop, channelClass, username, password, new Socks5ConnectHandler(request, relayPromise))
+                .connect(host, port);
+    }
+
+    private static Bootstrap bootstrap(EventLoop eventLoop,
+                                       Class<? extends SocketChannel> channelClass,
+                                       String username,
+                                       String password,
+                                       ChannelHandler next) {
+        return new Bootstrap()
+                .group(eventLoop)
+                .channel(channelClass)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10000)
                 .option(ChannelOption.SO_KEEPALIVE, true)
                 .handler(new ChannelInitializer<SocketChannel>() {
@@ -30,34 +58,26 @@ public class Socks5OutboundConnector extends AbstractOutboundConnector {
                         socketChannel.pipeline().addLast(
                                 Socks5ClientEncoder.DEFAULT,//编码
                                 new Socks5InitialResponseDecoder(),//解码
-                                new Socks5ClientHandler(request, relayPromise)//socks 客户端
+                                new Socks5AuthHandler(username, password),//方法协商与认证
+                                next//CONNECT 或预热连接池
                         );
                     }
                 });
-
-        return b.connect(request.getFinalTargetHost(), request.getFinalTargetPort());
     }
 
-    private static class Socks5ClientHandler extends SimpleChannelInboundHandler<Object> {
-
-        private final ProxyTunnelRequest proxyTunnelRequest;
-
-        private final Promise<Channel> promise;
+    /**
+     * 方法协商与用户名密码认证，完成后移除自己并把 channelActive 传给后面的 handler
+     */
+    private static class Socks5AuthHandler extends SimpleChannelInboundHandler<Object> {
 
         private final boolean needAuth;
         private final String username;
         private final String password;
 
-        public Socks5ClientHandler(ProxyTunnelRequest proxyTunnelRequest, Promise<Channel> promise) {
-            this.proxyTunnelRequest = proxyTunnelRequest;
-            this.promise = promise;
-
-            RouteConfig routeConfig = proxyTunnelRequest.getRouteConfig();
-            String outboundProxyUsername = routeConfig.getOutboundProxyUsername();
-            String outboundProxyPassword = routeConfig.getOutboundProxyPassword();
-            needAuth = outboundProxyUsername != null && outboundProxyPassword != null;
-            this.username = outboundProxyUsername;
-            this.password = outboundProxyPassword;
+        Socks5AuthHandler(String username, String password) {
+            this.needAuth = username != null && password != null;
+            this.username = username;
+            this.password = password;
         }
 
         @Override
@@ -71,6 +91,63 @@ public class Socks5OutboundConnector extends AbstractOutboundConnector {
             }
         }
 
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
+            // 处理握手响应
+            if (msg instanceof DefaultSocks5InitialResponse) {
+                Socks5InitialResponse response = (Socks5InitialResponse) msg;
+                Socks5AuthMethod selected = response.authMethod();
+                if (selected == Socks5AuthMethod.NO_AUTH) {
+                    // 无认证，直接进入 CONNECT
+                    ctx.pipeline().addFirst(new Socks5CommandResponseDecoder());
+                    ctx.pipeline().remove(Socks5InitialResponseDecoder.class);
+                    authenticated(ctx);
+                } else if (selected == Socks5AuthMethod.PASSWORD) {
+                    // 发送用户名密码认证请求
+                    ctx.pipeline().addFirst(new Socks5PasswordAuthResponseDecoder());
+                    ctx.pipeline().remove(Socks5InitialResponseDecoder.class);
+                    ctx.writeAndFlush(new DefaultSocks5PasswordAuthRequest(username, password));
+                } else {
+                    ctx.fireExceptionCaught(new RuntimeException("unsupported auth method: " + selected));
+                }
+            } else if (msg instanceof Socks5PasswordAuthResponse authResp) {
+                if (authResp.status() == Socks5PasswordAuthStatus.SUCCESS) {
+                    // 认证通过，继续 CONNECT
+                    ctx.pipeline().addFirst(new Socks5CommandResponseDecoder());
+                    ctx.pipeline().remove(Socks5PasswordAuthResponseDecoder.class);
+                    authenticated(ctx);
+                } else {
+                    log.warn("password auth failed: {}", authResp.status());
+                    ctx.fireExceptionCaught(new RuntimeException("password auth failed"));
+                }
+            }
+        }
+
+        private void authenticated(ChannelHandlerContext ctx) {
+            ctx.pipeline().remove(this);
+            ctx.fireChannelActive();
+        }
+    }
+
+    /**
+     * 收到 channelActive 时发送 CONNECT，成功后清理 SOCKS5 编解码器
+     */
+    private static class Socks5ConnectHandler extends SimpleChannelInboundHandler<Object> {
+
+        private final ProxyTunnelRequest proxyTunnelRequest;
+
+        private final Promise<Channel> promise;
+
+        Socks5ConnectHandler(ProxyTunnelRequest proxyTunnelRequest, Promise<Channel> promise) {
+            this.proxyTunnelRequest = proxyTunnelRequest;
+            this.promise = promise;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws ProxyConnectException {
+            sendConnectRequest(ctx);
+        }
+
         private void sendConnectRequest(ChannelHandlerContext ctx) throws ProxyConnectException {
             // 构建连接请求（目标地址和端口）
             // 注意：CONNECT 的目标应为原始目的主机/端口，而不是上游代理地址
@@ -99,36 +176,7 @@ public class Socks5OutboundConnector extends AbstractOutboundConnector {
 
         @Override
         protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
-            // 处理握手响应
-            if (msg instanceof DefaultSocks5InitialResponse) {
-                Socks5InitialResponse response = (Socks5InitialResponse) msg;
-                Socks5AuthMethod selected = response.authMethod();
-                if (selected == Socks5AuthMethod.NO_AUTH) {
-                    // 无认证，直接发送连接请求
-                    ctx.pipeline().addFirst(new Socks5CommandResponseDecoder());
-                    ctx.pipeline().remove(Socks5InitialResponseDecoder.class);
-                    sendConnectRequest(ctx);
-                } else if (selected == Socks5AuthMethod.PASSWORD) {
-                    // 发送用户名密码认证请求
-                    ctx.pipeline().addFirst(new Socks5PasswordAuthResponseDecoder());
-                    ctx.pipeline().remove(Socks5InitialResponseDecoder.class);
-                    ctx.writeAndFlush(new DefaultSocks5PasswordAuthRequest(username, password));
-                } else {
-                    ctx.close();
-                    promise.setFailure(new RuntimeException("unsupported auth method: " + selected));
-                }
-            } else if (msg instanceof Socks5PasswordAuthResponse authResp) {
-                if (authResp.status() == Socks5PasswordAuthStatus.SUCCESS) {
-                    // 认证通过，继续 CONNECT
-                    ctx.pipeline().addFirst(new Socks5CommandResponseDecoder());
-                    ctx.pipeline().remove(Socks5PasswordAuthResponseDecoder.class);
-                    sendConnectRequest(ctx);
-                } else {
-                    log.warn("password auth failed: {}", authResp.status());
-                    ctx.close();
-                    promise.setFailure(new RuntimeException("password auth failed"));
-                }
-            } else if (msg instanceof Socks5CommandResponse response) {
+            if (msg instanceof Socks5CommandResponse response) {
                 if (response.status() == Socks5CommandStatus.SUCCESS) {
                     log.debug("socks5 connect success");
                     ctx.channel().pipeline().remove(Socks5ClientEncoder.class);
@@ -143,10 +191,16 @@ public class Socks5OutboundConnector extends AbstractOutboundConnector {
             }
         }
 
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            promise.tryFailure(new ProxyConnectException("socks5 upstream closed before connect"));
+            super.channelInactive(ctx);
+        }
+
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
             ctx.close();
-            promise.setFailure(new RuntimeException(cause.getMessage()));
+            promise.tryFailure(new RuntimeException(cause.getMessage()));
         }
     }
 
@@ -16,6 +16,14 @@ public interface ProtocolStrategy {
         return true;
     }
 
+    /**
+     * 路由确定后、发起出站连接前调用，返回 true 表示已直接答复客户端，不再连接上游
+     *  - DNS 命中应答缓存时直接答复，省去出站连接器的探测与建连
+     */
+    default boolean completeWithoutConnect(ChannelHandlerContext inboundChannelContext, ProxyTunnelRequest request) {
+        return false;
+    }
+
     void onConnectSuccess(ChannelHandlerContext inboundChannelContext, Channel outboundChannel, ProxyTunnelRequest request);
 
     /**
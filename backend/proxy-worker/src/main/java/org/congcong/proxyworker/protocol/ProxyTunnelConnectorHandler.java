@@ -11,7 +11,10 @@ import org.congcong.proxyworker.context.ProxyContextResolver;
 import org.congcong.proxyworker.outbound.OutboundConnector;
 import org.congcong.proxyworker.outbound.OutboundConnectorFactory;
 import org.congcong.proxyworker.outbound.block.BlockOutboundConnector;
+import org.congcong.proxyworker.ratelimit.RateLimitRegistry;
 import org.congcong.proxyworker.server.RelayHandler;
+import org.congcong.proxyworker.server.SpliceRelay;
+import org.congcong.proxyworker.server.TrafficShapingHandler;
 import org.congcong.proxyworker.server.netty.ChannelAttributes;
 import org.congcong.proxyworker.server.tunnel.ProxyTunnelRequest;
 
@@ -45,6 +48,17 @@ public class ProxyTunnelConnectorHandler extends SimpleChannelInboundHandler<Pro
         proxyContext.setOriginalTargetHost(proxyTunnelRequest.getTargetHost());
         proxyContext.setOriginalTargetPort(proxyTunnelRequest.getTargetPort());
 
+        // 协议可以不连上游直接答复（如 DNS 应答缓存命中），此时不创建出站连接
+        if (ProtocolStrategyRegistry.get(proxyTunnelRequest).completeWithoutConnect(channelHandlerContext, proxyTunnelRequest)) {
+            proxyTimeContext.setConnectTargetEndTime(System.currentTimeMillis());
+            proxyTunnelRequest.setStatus(ProxyTunnelRequest.Status.finish);
+            RequestAppendHandler appendHandler = channelHandlerContext.pipeline().get(RequestAppendHandler.class);
+            if (appendHandler != null) {
+                appendHandler.onConnectComplete(channelHandlerContext);
+            }
+            return;
+        }
+
         // 用统一的 promise 承载成功/失败，交由 getRelayPromise 处理中继与协议响应
         Promise<Channel> relayPromise = getRelayPromise(channelHandlerContext, proxyTunnelRequest);
 
@@ -118,7 +132,7 @@ public class ProxyTunnelConnectorHandler extends SimpleChannelInboundHandler<Pro
                 if (future.isSuccess()) {
                     // 连接成功设置中继服务器
                     if (strategy.needRelay()) {
-                        setRelay(ctx.channel(), outboundChannel);
+                        setRelay(ctx.channel(), outboundChannel, proxyTunnelRequest);
                         log.debug("设置中继服务器成功");
                     }
                     // 写回成功
@@ -136,8 +150,14 @@ public class ProxyTunnelConnectorHandler extends SimpleChannelInboundHandler<Pro
                                 }
                             } else {
                                 proxyTunnelRequest.setInitialPayload(null); // 已被下游消费
+                                if (strategy.needRelay()) {
+                                    SpliceRelay.tryStart(ctx.channel(), outboundChannel, proxyTunnelRequest);
+                                }
                             }
                         });
+                    } else if (strategy.needRelay()) {
+                        // 放到 RequestAppendHandler 回放完暂存数据之后再尝试切换
+                        ctx.executor().execute(() -> SpliceRelay.tryStart(ctx.channel(), outboundChannel, proxyTunnelRequest));
                     }
                 }
                 // 连接失败
@@ -156,8 +176,12 @@ public class ProxyTunnelConnectorHandler extends SimpleChannelInboundHandler<Pro
         return promise;
     }
 
-    protected void setRelay(Channel inboundChannel, Channel outboundChannel) {
+    protected void setRelay(Channel inboundChannel, Channel outboundChannel, ProxyTunnelRequest proxyTunnelRequest) {
+        // 限流整形放在中继之前，上行在入站通道计费，下行在出站通道计费
+        Long userId = proxyTunnelRequest.getUser() != null ? proxyTunnelRequest.getUser().getId() : null;
+        inboundChannel.pipeline().addLast(new TrafficShapingHandler(outboundChannel, userId, RateLimitRegistry.Direction.UPLINK));
         inboundChannel.pipeline().addLast(new RelayHandler(outboundChannel, true));
+        outboundChannel.pipeline().addLast(new TrafficShapingHandler(inboundChannel, userId, RateLimitRegistry.Direction.DOWNLINK));
         outboundChannel.pipeline().addLast(new RelayHandler(inboundChannel, false));
     }
 
@@ -12,6 +12,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.congcong.proxyworker.audit.AccessLogUtil;
 import org.congcong.common.dto.ProxyContext;
 import org.congcong.common.dto.ProxyTimeContext;
+import org.congcong.proxyworker.config.ProxyWorkerConfig;
+import org.congcong.proxyworker.config.RouteConfig;
 import org.congcong.proxyworker.context.ProxyContextResolver;
 import org.congcong.proxyworker.protocol.ProtocolStrategy;
 import org.congcong.proxyworker.server.tunnel.DnsProxyContext;
@@ -32,18 +34,41 @@ public abstract class AbstractDnsProxyProtocolStrategy implements ProtocolStrate
 
     private final AttributeKey<Cache<Integer, Pending>> pendingKey;
     private final AttributeKey<AtomicInteger> nextIdKey;
+    /**
+     * 未开启应答缓存时为 null
+     */
+    private final DnsAnswerCache answerCache;
 
+    /**
+     * @param cacheKey    应答需要写入缓存时的键
+     * @param refreshOnly 后台刷新过期缓存的请求，客户端已经用旧应答答复过，响应只写入缓存
+     */
     protected record Pending(int inboundId,
                              DnsProxyContext ctx,
                              ProxyContext proxyContext,
                              ProxyTimeContext timeContext,
                              String qName,
-                             DnsRecordType qType) {
+                             DnsRecordType qType,
+                             DnsAnswerCache.Key cacheKey,
+                             boolean refreshOnly) {
     }
 
     protected AbstractDnsProxyProtocolStrategy(String keyPrefix) {
+        this(keyPrefix, newAnswerCache());
+    }
+
+    protected AbstractDnsProxyProtocolStrategy(String keyPrefix, DnsAnswerCache answerCache) {
         this.pendingKey = AttributeKey.valueOf(keyPrefix + "PendingCache");
         this.nextIdKey = AttributeKey.valueOf(keyPrefix + "NextId");
+        this.answerCache = answerCache;
+    }
+
+    private static DnsAnswerCache newAnswerCache() {
+        ProxyWorkerConfig config = ProxyWorkerConfig.getInstance();
+        if (!config.isDnsCacheEnabled()) {
+            return null;
+        }
+        return new DnsAnswerCache(config.getDnsCacheMaxEntries(), config.getDnsCacheStaleSeconds());
     }
 
     @Override
@@ -51,6 +76,30 @@ public abstract class AbstractDnsProxyProtocolStrategy implements ProtocolStrate
         return false;
     }
 
+    /**
+     * 连接上游之前先查应答缓存：新鲜条目直接答复，不再连接上游；
+     * 过期但仍在 stale 窗口内的条目先答复，由本节点第一个发现过期的请求继续连接上游在后台刷新，其余直接结束
+     */
+    @Override
+    public boolean completeWithoutConnect(ChannelHandlerContext inboundCtx, ProxyTunnelRequest request) {
+        DnsAnswerCache.Key cacheKey = cacheKey(request);
+        if (cacheKey == null) {
+            return false;
+        }
+        DnsProxyContext dnsCtx = (DnsProxyContext) request.getProtocolAttachment();
+        long now = System.currentTimeMillis();
+        DnsAnswerCache.Entry cached = answerCache.lookup(cacheKey, now);
+        if (cached == null) {
+            return false;
+        }
+        answerFromCache(inboundCtx.channel(), request, dnsCtx, cached, now);
+        if (!cached.isStale(now) || !cached.tryStartRefresh(now)) {
+            return true;
+        }
+        dnsCtx.setRefreshOnly(true);
+        return false;
+    }
+
     @Override
     public void onConnectSuccess(ChannelHandlerContext inboundCtx,
                                  Channel outbound,
@@ -61,6 +110,10 @@ public abstract class AbstractDnsProxyProtocolStrategy implements ProtocolStrate
             return;
         }
 
+        // 应答缓存已在连接前查过（见 completeWithoutConnect），走到这里说明未命中或需要后台刷新过期条目
+        DnsAnswerCache.Key cacheKey = cacheKey(request);
+        boolean refreshOnly = dnsCtx.isRefreshOnly();
+
         // 第一次请求初始化暂存请求的缓存，并且注册一个响应处理器，处理返回的内容
         // 由于netty dns 服务器单线程特性，不需要担心此处的线程安全问题
         Cache<Integer, Pending> pending = outbound.attr(pendingKey).get();
@@ -87,7 +140,9 @@ public abstract class AbstractDnsProxyProtocolStrategy implements ProtocolStrate
                 proxyContext,
                 timeContext,
                 dnsCtx.getQName(),
-                dnsCtx.getQType()
+                dnsCtx.getQType(),
+                cacheKey,
+                refreshOnly
         ));
 
         sendQuery(outbound, outboundId, dnsCtx);
@@ -100,6 +155,22 @@ public abstract class AbstractDnsProxyProtocolStrategy implements ProtocolStrate
                                  Throwable cause) {
         if (request.getProtocolAttachment() instanceof DnsProxyContext dnsCtx) {
             Channel inbound = inboundCtx.channel();
+            if (dnsCtx.isRefreshOnly()) {
+                log.debug("{} refresh of cached {} failed: {}", getClass().getSimpleName(), dnsCtx.getQName(), cause.getMessage());
+                return;
+            }
+            // 上游不可用时优先返回 stale 窗口内的旧应答
+            DnsAnswerCache.Key cacheKey = cacheKey(request);
+            if (cacheKey != null) {
+                long now = System.currentTimeMillis();
+                DnsAnswerCache.Entry cached = answerCache.lookup(cacheKey, now);
+                if (cached != null) {
+                    answerFromCache(inbound, request, dnsCtx, cached, now);
+                    log.warn("{} upstream connect failed, answered {} from cache: {}",
+                            getClass().getSimpleName(), dnsCtx.getQName(), cause.getMessage());
+                    return;
+                }
+            }
             InetSocketAddress client = dnsCtx.getClient();
             DefaultDnsQuestion q = new DefaultDnsQuestion(dnsCtx.getQName(), dnsCtx.getQType());
             DatagramDnsResponse resp = new DatagramDnsResponse(
@@ -155,6 +226,14 @@ public abstract class AbstractDnsProxyProtocolStrategy implements ProtocolStrate
             return;
         }
 
+        if (entry.cacheKey() != null) {
+            answerCache.store(entry.cacheKey(), resp, System.currentTimeMillis());
+        }
+        if (entry.refreshOnly()) {
+            log.debug("{}: refreshed cached answer name={} type={}", logPrefix, entry.qName(), entry.qType());
+            return;
+        }
+
         DnsProxyContext dnsCtx = entry.ctx();
         DatagramDnsResponse clientResp = new DatagramDnsResponse(
                 (InetSocketAddress) inbound.localAddress(),
@@ -180,6 +259,35 @@ public abstract class AbstractDnsProxyProtocolStrategy implements ProtocolStrate
         inbound.writeAndFlush(clientResp);
     }
 
+    private DnsAnswerCache.Key cacheKey(ProxyTunnelRequest request) {
+        RouteConfig route = request.getRouteConfig();
+        if (answerCache == null || route == null || !(request.getProtocolAttachment() instanceof DnsProxyContext dnsCtx)) {
+            return null;
+        }
+        String upstream = route.getOutboundProxyHost() + ":" + route.getOutboundProxyPort();
+        return DnsAnswerCache.Key.of(route.getOutboundProxyType(), upstream, dnsCtx.getQName(), dnsCtx.getQType());
+    }
+
+    private void answerFromCache(Channel inbound,
+                                 ProxyTunnelRequest request,
+                                 DnsProxyContext dnsCtx,
+                                 DnsAnswerCache.Entry cached,
+                                 long nowMillis) {
+        DatagramDnsResponse resp = cached.toResponse(
+                (InetSocketAddress) inbound.localAddress(),
+                dnsCtx.getClient(),
+                dnsCtx.getId(),
+                new DefaultDnsQuestion(dnsCtx.getQName(), dnsCtx.getQType()),
+                nowMillis);
+        ProxyContext proxyContext = ProxyContextResolver.resolveProxyContext(inbound, request);
+        if (proxyContext != null) {
+            proxyContext.setBytesOut(DnsMessageUtil.estimateMessageSize(resp));
+        }
+        AccessLogUtil.logDns(proxyContext, ProxyContextResolver.resolveProxyTimeContext(inbound, request),
+                dnsCtx, resp.code(), DnsMessageUtil.extractAnswerIps(resp));
+        inbound.writeAndFlush(resp);
+    }
+
     protected void copySection(DnsMessage from, DatagramDnsResponse to, DnsSection section) {
         int count = from.count(section);
         for (int i = 0; i < count; i++) {
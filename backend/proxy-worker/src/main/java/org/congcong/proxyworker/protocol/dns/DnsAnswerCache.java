@@ -0,0 +1,219 @@
+package org.congcong.proxyworker.protocol.dns;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.dns.*;
+import org.congcong.common.enums.ProtocolType;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上游 DNS 应答缓存
+ * 以 上游/qname/qtype/qclass 为键，按应答中的 TTL 过期；NXDOMAIN / NODATA 按 RFC 2308 取 SOA 的 TTL 与 MINIMUM 较小值做否定缓存。
+ * 命中时按已缓存时长递减每条记录的 TTL 并替换事务 ID；过期后的 staleSeconds 内仍可返回旧应答（TTL 固定为 30 秒，RFC 8767），
+ * 同时由调用方发起一次后台刷新。
+ * 缓存内容是拷贝出来的字节数组，不持有任何引用计数对象，可以在多个 event loop 之间共享。
+ */
+public class DnsAnswerCache {
+
+    /**
+     * 返回过期应答时使用的 TTL
+     */
+    static final int STALE_TTL_SECONDS = 30;
+    private static final long MAX_TTL_SECONDS = 86_400;
+    private static final long MAX_NEGATIVE_TTL_SECONDS = 10_800;
+    /**
+     * 同一条目的后台刷新在该时长内只发起一次，与上游请求的 pending 超时一致
+     */
+    private static final long REFRESH_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final Cache<Key, Entry> entries;
+    private final long staleMillis;
+
+    public DnsAnswerCache(long maxEntries, long staleSeconds) {
+        this.entries = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(MAX_TTL_SECONDS + Math.max(0, staleSeconds), TimeUnit.SECONDS)
+                .build();
+        this.staleMillis = TimeUnit.SECONDS.toMillis(Math.max(0, staleSeconds));
+    }
+
+    public record Key(ProtocolType upstreamType, String upstream, String qName, int qType, int qClass) {
+
+        public static Key of(ProtocolType upstreamType, String upstream, String qName, DnsRecordType qType) {
+            return new Key(upstreamType, upstream, qName.toLowerCase(Locale.ROOT), qType.intValue(), DnsRecord.CLASS_IN);
+        }
+    }
+
+    /**
+     * @return 未命中或已超出 stale 窗口时返回 null
+     */
+    public Entry lookup(Key key, long nowMillis) {
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        if (nowMillis >= entry.expiresAtMillis + staleMillis) {
+            entries.asMap().remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * 缓存上游应答，不可缓存的应答（SERVFAIL、截断、TTL 为 0、无 SOA 的否定应答等）直接忽略
+     * @return 是否已缓存
+     */
+    public boolean store(Key key, DnsResponse resp, long nowMillis) {
+        long ttlSeconds = cacheableTtl(resp);
+        if (ttlSeconds <= 0) {
+            return false;
+        }
+        List<CachedRecord> records = new ArrayList<>();
+        for (DnsSection section : new DnsSection[]{DnsSection.ANSWER, DnsSection.AUTHORITY, DnsSection.ADDITIONAL}) {
+            int count = resp.count(section);
+            for (int i = 0; i < count; i++) {
+                DnsRecord record = resp.recordAt(section, i);
+                if (record.type() == DnsRecordType.OPT) {
+                    // EDNS 伪记录的 TTL 字段是标志位，且只对单次交互有意义
+                    continue;
+                }
+                CachedRecord cached = CachedRecord.of(section, record);
+                if (cached != null) {
+                    records.add(cached);
+                }
+            }
+        }
+        entries.put(key, new Entry(resp.code(), records, nowMillis, nowMillis + TimeUnit.SECONDS.toMillis(ttlSeconds)));
+        return true;
+    }
+
+    public long size() {
+        return entries.size();
+    }
+
+    static long cacheableTtl(DnsResponse resp) {
+        if (resp.isTruncated()) {
+            return 0;
+        }
+        DnsResponseCode code = resp.code();
+        if (code == DnsResponseCode.NOERROR && resp.count(DnsSection.ANSWER) > 0) {
+            long ttl = Long.MAX_VALUE;
+            int count = resp.count(DnsSection.ANSWER);
+            for (int i = 0; i < count; i++) {
+                DnsRecord record = resp.recordAt(DnsSection.ANSWER, i);
+                ttl = Math.min(ttl, record.timeToLive());
+            }
+            return Math.min(ttl, MAX_TTL_SECONDS);
+        }
+        if (code == DnsResponseCode.NXDOMAIN || code == DnsResponseCode.NOERROR) {
+            return Math.min(negativeTtl(resp), MAX_NEGATIVE_TTL_SECONDS);
+        }
+        return 0;
+    }
+
+    /**
+     * RFC 2308 第 5 节：否定应答的 TTL 取 authority 中 SOA 记录的 TTL 与其 MINIMUM 字段的较小值，没有 SOA 时不缓存
+     */
+    private static long negativeTtl(DnsResponse resp) {
+        int count = resp.count(DnsSection.AUTHORITY);
+        for (int i = 0; i < count; i++) {
+            DnsRecord record = resp.recordAt(DnsSection.AUTHORITY, i);
+            if (record.type() == DnsRecordType.SOA && record instanceof DnsRawRecord raw) {
+                ByteBuf content = raw.content();
+                // SOA 的 RDATA 以 SERIAL REFRESH RETRY EXPIRE MINIMUM 五个 32 位整数结尾，MNAME/RNAME 可能被压缩，不解析
+                if (content.readableBytes() < 20) {
+                    return 0;
+                }
+                long minimum = content.getUnsignedInt(content.writerIndex() - 4);
+                return Math.min(record.timeToLive(), minimum);
+            }
+        }
+        return 0;
+    }
+
+    public static final class Entry {
+        private final DnsResponseCode code;
+        private final List<CachedRecord> records;
+        private final long storedAtMillis;
+        private final long expiresAtMillis;
+        private volatile long refreshStartedAtMillis;
+
+        private Entry(DnsResponseCode code, List<CachedRecord> records, long storedAtMillis, long expiresAtMillis) {
+            this.code = code;
+            this.records = records;
+            this.storedAtMillis = storedAtMillis;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public DnsResponseCode code() {
+            return code;
+        }
+
+        public boolean isStale(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+
+        /**
+         * 过期条目的后台刷新去重，返回 true 的调用方负责发出刷新请求
+         */
+        public synchronized boolean tryStartRefresh(long nowMillis) {
+            if (nowMillis - refreshStartedAtMillis < REFRESH_RETRY_MILLIS) {
+                return false;
+            }
+            refreshStartedAtMillis = nowMillis;
+            return true;
+        }
+
+        /**
+         * 按缓存时长改写 TTL，生成发给客户端的应答
+         */
+        public DatagramDnsResponse toResponse(InetSocketAddress sender,
+                                              InetSocketAddress recipient,
+                                              int id,
+                                              DnsQuestion question,
+                                              long nowMillis) {
+            DatagramDnsResponse resp = new DatagramDnsResponse(sender, recipient, id);
+            resp.setRecursionDesired(true);
+            resp.setRecursionAvailable(true);
+            resp.addRecord(DnsSection.QUESTION, question);
+            boolean stale = isStale(nowMillis);
+            long ageSeconds = TimeUnit.MILLISECONDS.toSeconds(nowMillis - storedAtMillis);
+            for (CachedRecord record : records) {
+                long ttl = stale ? STALE_TTL_SECONDS : Math.max(0, record.ttl - ageSeconds);
+                resp.addRecord(record.section, record.toRecord(ttl));
+            }
+            resp.setCode(code);
+            return resp;
+        }
+    }
+
+    private record CachedRecord(DnsSection section, String name, DnsRecordType type, int dnsClass, long ttl,
+                                byte[] rdata, String ptrName) {
+
+        static CachedRecord of(DnsSection section, DnsRecord record) {
+            if (record instanceof DnsPtrRecord ptr) {
+                return new CachedRecord(section, ptr.name(), ptr.type(), ptr.dnsClass(), ptr.timeToLive(), null, ptr.hostname());
+            }
+            if (record instanceof DnsRawRecord raw) {
+                return new CachedRecord(section, raw.name(), raw.type(), raw.dnsClass(), raw.timeToLive(),
+                        ByteBufUtil.getBytes(raw.content()), null);
+            }
+            return null;
+        }
+
+        DnsRecord toRecord(long ttl) {
+            if (ptrName != null) {
+                return new DefaultDnsPtrRecord(name, dnsClass, ttl, ptrName);
+            }
+            return new DefaultDnsRawRecord(name, type, dnsClass, ttl, Unpooled.wrappedBuffer(rdata));
+        }
+    }
+}
@@ -19,6 +19,10 @@ public class DnsForwardProtocolStrategy extends AbstractDnsProxyProtocolStrategy
         super("dnsForward");
     }
 
+    DnsForwardProtocolStrategy(DnsAnswerCache answerCache) {
+        super("dnsForward", answerCache);
+    }
+
     @Override
     protected void sendQuery(Channel outbound, int outboundId, DnsProxyContext dnsCtx) {
         InetSocketAddress upstream = (InetSocketAddress) outbound.remoteAddress();
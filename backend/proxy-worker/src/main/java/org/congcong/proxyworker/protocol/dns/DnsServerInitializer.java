@@ -1,7 +1,6 @@
 package org.congcong.proxyworker.protocol.dns;
 
 import io.netty.channel.Channel;
-import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.dns.DatagramDnsQueryDecoder;
 import io.netty.handler.codec.dns.DatagramDnsResponseEncoder;
 import org.congcong.common.dto.ProxyContext;
@@ -11,6 +10,8 @@ import org.congcong.proxyworker.server.netty.AbstractChannelInitializer;
 import org.congcong.proxyworker.server.netty.ChannelAttributes;
 import org.congcong.proxyworker.util.ProxyContextFillUtil;
 
+import java.util.function.Supplier;
+
 public class DnsServerInitializer extends AbstractChannelInitializer {
 
 
@@ -18,6 +19,10 @@ public class DnsServerInitializer extends AbstractChannelInitializer {
         super(inboundConfig);
     }
 
+    public DnsServerInitializer(Supplier<InboundConfig> inboundConfigSupplier) {
+        super(inboundConfigSupplier);
+    }
+
     @Override
     protected void init(Channel ch) {
         ch.pipeline().addLast(new DatagramDnsQueryDecoder());
@@ -25,11 +30,13 @@ public class DnsServerInitializer extends AbstractChannelInitializer {
         ch.pipeline().addLast(new DatagramDnsResponseEncoder());
     }
 
-    protected void processSSL(SocketChannel socketChannel) {
+    @Override
+    protected void processSSL(Channel socketChannel, InboundConfig inboundConfig) {
         // no-op for UDP DNS
     }
 
-    protected void pipeLineContextInit(Channel socketChannel) {
+    @Override
+    protected void pipeLineContextInit(Channel socketChannel, InboundConfig inboundConfig) {
         ChannelAttributes.setInboundConfig(socketChannel, inboundConfig);
     }
 }
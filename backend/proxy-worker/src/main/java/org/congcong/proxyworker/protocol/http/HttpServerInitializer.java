@@ -6,12 +6,18 @@ import io.netty.handler.codec.http.HttpRequestDecoder;
 import org.congcong.proxyworker.config.InboundConfig;
 import org.congcong.proxyworker.server.netty.AbstractChannelInitializer;
 
+import java.util.function.Supplier;
+
 public class HttpServerInitializer extends AbstractChannelInitializer {
 
     public HttpServerInitializer(InboundConfig inbound) {
         super(inbound);
     }
 
+    public HttpServerInitializer(Supplier<InboundConfig> inboundConfigSupplier) {
+        super(inboundConfigSupplier);
+    }
+
     @Override
     protected void init(Channel socketChannel) {
         socketChannel.pipeline().addLast(
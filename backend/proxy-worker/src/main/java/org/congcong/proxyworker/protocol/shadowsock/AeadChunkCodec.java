@@ -0,0 +1,141 @@
+package org.congcong.proxyworker.protocol.shadowsock;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.congcong.proxyworker.util.encryption.algorithm.AeadNonce;
+import org.congcong.proxyworker.util.encryption.algorithm.CryptoProcessor;
+
+/**
+ * Shadowsocks AEAD 数据流的分块加解密：[加密的 2 字节长度 + tag][加密的负载 + tag]
+ * 每个连接的每个方向一个实例，持有同一个 {@link CryptoProcessor} 与原地递增的 nonce，直接在 ByteBuf 之间加解密。
+ */
+final class AeadChunkCodec {
+
+    /**
+     * 一些客户端无法处理较大长度的chunk，在这里对负载进行逻辑上的分片
+     * v2rayN无法处理长度超过65536的数据块，会报 unexpected eof
+     */
+    static final int MAX_CHUNK_PAYLOAD = 50000;
+    private static final int LENGTH_SIZE = 2;
+
+    private final CryptoProcessor processor;
+    private final AeadNonce nonce;
+    /**
+     * 长度字段的明文暂存区，每个块复用
+     */
+    private final ByteBuf lengthBuf = Unpooled.buffer(LENGTH_SIZE, LENGTH_SIZE);
+    /**
+     * 已解出长度但负载尚未到齐的块长度，-1 表示下一个待读的是长度块
+     */
+    private int pendingLength = -1;
+
+    AeadChunkCodec(CryptoProcessor processor) {
+        this(processor, 0);
+    }
+
+    AeadChunkCodec(CryptoProcessor processor, long initialCounter) {
+        this.processor = processor;
+        this.nonce = new AeadNonce(processor.getNonceSize(), initialCounter);
+    }
+
+    CryptoProcessor processor() {
+        return processor;
+    }
+
+    int tagSize() {
+        return processor.getTagSize();
+    }
+
+    /**
+     * 明文加密分块后的总长度，用于一次性分配输出缓冲区
+     */
+    int encryptedSize(int plaintextLength) {
+        int chunks = (plaintextLength + MAX_CHUNK_PAYLOAD - 1) / MAX_CHUNK_PAYLOAD;
+        return plaintextLength + chunks * (LENGTH_SIZE + 2 * tagSize());
+    }
+
+    byte[] encrypt(byte[] plaintext) throws Exception {
+        byte[] ciphertext = processor.encrypt(plaintext, nonce.current());
+        nonce.increment();
+        return ciphertext;
+    }
+
+    byte[] decrypt(byte[] ciphertext) throws Exception {
+        byte[] plaintext = processor.decrypt(ciphertext, nonce.current());
+        nonce.increment();
+        return plaintext;
+    }
+
+    /**
+     * 加密单个 AEAD 块（不带长度前缀）
+     */
+    void encrypt(ByteBuf plaintext, int length, ByteBuf out) throws Exception {
+        processor.encrypt(plaintext, length, out, nonce);
+    }
+
+    /**
+     * 解密单个 AEAD 块，cipherLength 包含 tag
+     */
+    void decrypt(ByteBuf in, int cipherLength, ByteBuf out) throws Exception {
+        processor.decrypt(in, cipherLength, out, nonce);
+    }
+
+    void encryptChunk(ByteBuf plaintext, int length, ByteBuf out) throws Exception {
+        lengthBuf.clear().writeShort(length);
+        processor.encrypt(lengthBuf, LENGTH_SIZE, out, nonce);
+        processor.encrypt(plaintext, length, out, nonce);
+    }
+
+    void encryptChunks(ByteBuf plaintext, ByteBuf out) throws Exception {
+        while (plaintext.isReadable()) {
+            encryptChunk(plaintext, Math.min(plaintext.readableBytes(), MAX_CHUNK_PAYLOAD), out);
+        }
+    }
+
+    /**
+     * 解密一个完整的块，负载直接解密到新分配的池化缓冲区
+     * @return 数据不足一个完整块时返回 null，已解出的长度保留到下次调用
+     */
+    ByteBuf tryDecryptChunk(ByteBufAllocator alloc, ByteBuf in) throws Exception {
+        if (pendingLength < 0) {
+            pendingLength = tryDecryptLength(in);
+            if (pendingLength < 0) {
+                return null;
+            }
+        }
+        int cipherLength = pendingLength + tagSize();
+        if (in.readableBytes() < cipherLength) {
+            return null;
+        }
+        ByteBuf payload = alloc.ioBuffer(pendingLength);
+        try {
+            processor.decrypt(in, cipherLength, payload, nonce);
+        } catch (Exception e) {
+            payload.release();
+            throw e;
+        }
+        pendingLength = -1;
+        return payload;
+    }
+
+    /**
+     * 负载长度已由首部给出时（2022 响应首部），下一次 {@link #tryDecryptChunk} 直接读取负载
+     */
+    void expectPayload(int length) {
+        pendingLength = length;
+    }
+
+    /**
+     * @return 解密出的负载长度，in 中数据不足一个长度块时返回 -1 且不消费数据
+     */
+    private int tryDecryptLength(ByteBuf in) throws Exception {
+        int cipherLength = LENGTH_SIZE + tagSize();
+        if (in.readableBytes() < cipherLength) {
+            return -1;
+        }
+        lengthBuf.clear();
+        processor.decrypt(in, cipherLength, lengthBuf, nonce);
+        return lengthBuf.getUnsignedShort(0);
+    }
+}
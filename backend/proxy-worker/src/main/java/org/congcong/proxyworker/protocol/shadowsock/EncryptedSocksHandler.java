@@ -4,14 +4,11 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import lombok.extern.slf4j.Slf4j;
-import org.congcong.proxyworker.util.ByteBufSplitter;
 import org.congcong.proxyworker.util.encryption.algorithm.CryptoProcessor;
 import org.congcong.proxyworker.util.encryption.algorithm.HKDF;
-import org.congcong.proxyworker.util.encryption.algorithm.NonceUtil;
 
 
 import java.security.SecureRandom;
-import java.util.List;
 
 /**
  * 加密出站数据
@@ -22,14 +19,21 @@ public class EncryptedSocksHandler extends MessageToByteEncoder<ByteBuf> {
     private static final SecureRandom SECURE_RANDOM = new SecureRandom();
 
     private boolean firstPacket = true;
-    private long encryptCounter = 0;
 
     private final CryptoProcessor cryptoProcessor;
+    private final AeadChunkCodec codec;
 
     public EncryptedSocksHandler(CryptoProcessor cryptoProcessor) {
         this.cryptoProcessor = cryptoProcessor;
+        this.codec = new AeadChunkCodec(cryptoProcessor);
     }
 
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) {
+        // 按加密后的长度一次分配到位，避免写入过程中扩容拷贝
+        int size = codec.encryptedSize(msg.readableBytes()) + (firstPacket ? cryptoProcessor.getSaltSize() : 0);
+        return preferDirect ? ctx.alloc().ioBuffer(size) : ctx.alloc().heapBuffer(size);
+    }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) throws Exception {
@@ -47,26 +51,7 @@ public class EncryptedSocksHandler extends MessageToByteEncoder<ByteBuf> {
             cryptoProcessor.refreshKey(subkey);
             firstPacket = false;
         }
-        List<ByteBuf> chunks = ByteBufSplitter.splitByteBuf(msg);
-        for (ByteBuf chunk : chunks) {
-            writeChunk(chunk, out);
-        }
-    }
-
-    private void writeChunk(ByteBuf msg, ByteBuf out) throws Exception {
-        int payloadLength = msg.readableBytes();
-        //log.info("send {} bytes", payloadLength);
-        // 加密长度字段
-        byte[] lengthBytes = new byte[2];
-        lengthBytes[0] = (byte)(payloadLength >>> 8);
-        lengthBytes[1] = (byte)payloadLength;
-        byte[] encryptedLength = cryptoProcessor.encrypt(lengthBytes, NonceUtil.generateNonce(encryptCounter ++));
-        out.writeBytes(encryptedLength);
-        // 加密数据
-        byte[] payload = new byte[payloadLength];
-        msg.readBytes(payload);
-        byte[] encryptedPayload = cryptoProcessor.encrypt(payload, NonceUtil.generateNonce(encryptCounter ++));
-        out.writeBytes(encryptedPayload);
+        codec.encryptChunks(msg, out);
     }
 
 
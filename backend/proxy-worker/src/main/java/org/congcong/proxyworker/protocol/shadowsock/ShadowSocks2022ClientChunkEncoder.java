@@ -7,11 +7,19 @@ import org.congcong.proxyworker.util.encryption.algorithm.CryptoProcessor;
 
 public class ShadowSocks2022ClientChunkEncoder extends MessageToByteEncoder<ByteBuf> {
 
-    private final CryptoProcessor cryptoProcessor;
-    private final ShadowSocks2022Support.Counter encryptCounter = new ShadowSocks2022Support.Counter(2);
+    /**
+     * 握手阶段的固定首部和可变首部已经用掉了 nonce 0 和 1
+     */
+    private final AeadChunkCodec codec;
 
     public ShadowSocks2022ClientChunkEncoder(CryptoProcessor cryptoProcessor) {
-        this.cryptoProcessor = cryptoProcessor;
+        this.codec = new AeadChunkCodec(cryptoProcessor, 2);
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) {
+        int size = codec.encryptedSize(msg.readableBytes());
+        return preferDirect ? ctx.alloc().ioBuffer(size) : ctx.alloc().heapBuffer(size);
     }
 
     @Override
@@ -19,6 +27,6 @@ public class ShadowSocks2022ClientChunkEncoder extends MessageToByteEncoder<Byte
         if (!msg.isReadable()) {
             return;
         }
-        ShadowSocks2022Support.writeEncryptedChunks(msg, out, cryptoProcessor, encryptCounter);
+        codec.encryptChunks(msg, out);
     }
 }
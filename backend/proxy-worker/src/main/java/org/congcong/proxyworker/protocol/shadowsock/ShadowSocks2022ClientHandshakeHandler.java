@@ -7,7 +7,6 @@ import io.netty.util.concurrent.Promise;
 import lombok.extern.slf4j.Slf4j;
 import org.congcong.proxyworker.server.tunnel.ProxyTunnelRequest;
 import org.congcong.proxyworker.util.encryption.algorithm.CryptoProcessor;
-import org.congcong.proxyworker.util.encryption.algorithm.NonceUtil;
 import org.congcong.proxyworker.util.encryption.algorithm.ShadowSocks2022Key;
 
 import java.util.List;
@@ -61,9 +60,9 @@ public class ShadowSocks2022ClientHandshakeHandler extends ChannelInboundHandler
                 byte[] variableHeaderBytes = new byte[variableHeader.readableBytes()];
                 variableHeader.readBytes(variableHeaderBytes);
 
-                ShadowSocks2022Support.Counter counter = new ShadowSocks2022Support.Counter(0);
-                requestBuf.writeBytes(requestCryptoProcessor.encrypt(fixedHeaderBytes, NonceUtil.generateNonce(counter.next())));
-                requestBuf.writeBytes(requestCryptoProcessor.encrypt(variableHeaderBytes, NonceUtil.generateNonce(counter.next())));
+                AeadChunkCodec codec = new AeadChunkCodec(requestCryptoProcessor);
+                requestBuf.writeBytes(codec.encrypt(fixedHeaderBytes));
+                requestBuf.writeBytes(codec.encrypt(variableHeaderBytes));
             } finally {
                 variableHeader.release();
                 fixedHeader.release();
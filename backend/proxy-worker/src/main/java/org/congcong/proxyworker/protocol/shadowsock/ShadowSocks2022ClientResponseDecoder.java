@@ -12,15 +12,15 @@ public class ShadowSocks2022ClientResponseDecoder extends ByteToMessageDecoder {
 
     private final CryptoProcessor cryptoProcessor;
     private final ShadowSocks2022ClientSession session;
-    private final ShadowSocks2022Support.Counter decryptCounter = new ShadowSocks2022Support.Counter(0);
+    private final AeadChunkCodec codec;
 
     private boolean saltParsed;
     private boolean fixedHeaderParsed;
-    private int expectedLength = -1;
 
     public ShadowSocks2022ClientResponseDecoder(CryptoProcessor cryptoProcessor, ShadowSocks2022ClientSession session) {
         this.cryptoProcessor = cryptoProcessor;
         this.session = session;
+        this.codec = new AeadChunkCodec(cryptoProcessor);
     }
 
     @Override
@@ -55,36 +55,20 @@ public class ShadowSocks2022ClientResponseDecoder extends ByteToMessageDecoder {
 
         byte[] encryptedHeader = new byte[cipherHeaderLength];
         in.readBytes(encryptedHeader);
-        byte[] header = ShadowSocks2022Support.decrypt(cryptoProcessor, encryptedHeader, decryptCounter);
+        byte[] header = codec.decrypt(encryptedHeader);
         validateResponseFixedHeader(header);
-        expectedLength = ((header[header.length - 2] & 0xFF) << 8) | (header[header.length - 1] & 0xFF);
+        // 首部的长度字段描述紧随其后的首块负载
+        codec.expectPayload(((header[header.length - 2] & 0xFF) << 8) | (header[header.length - 1] & 0xFF));
         fixedHeaderParsed = true;
         return tryDecodePayload(ctx, in, out);
     }
 
     private boolean tryDecodePayload(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        if (expectedLength < 0) {
-            int lengthCipherSize = 2 + cryptoProcessor.getTagSize();
-            if (in.readableBytes() < lengthCipherSize) {
-                return false;
-            }
-            byte[] encryptedLength = new byte[lengthCipherSize];
-            in.readBytes(encryptedLength);
-            byte[] lengthBytes = ShadowSocks2022Support.decrypt(cryptoProcessor, encryptedLength, decryptCounter);
-            expectedLength = ((lengthBytes[0] & 0xFF) << 8) | (lengthBytes[1] & 0xFF);
-        }
-
-        if (in.readableBytes() < expectedLength + cryptoProcessor.getTagSize()) {
+        ByteBuf payload = codec.tryDecryptChunk(ctx.alloc(), in);
+        if (payload == null) {
             return false;
         }
-
-        byte[] encryptedPayload = new byte[expectedLength + cryptoProcessor.getTagSize()];
-        in.readBytes(encryptedPayload);
-        byte[] payload = ShadowSocks2022Support.decrypt(cryptoProcessor, encryptedPayload, decryptCounter);
-        ByteBuf payloadBuf = ctx.alloc().buffer(payload.length);
-        payloadBuf.writeBytes(payload);
-        out.add(payloadBuf);
-        expectedLength = -1;
+        out.add(payload);
         return true;
     }
 
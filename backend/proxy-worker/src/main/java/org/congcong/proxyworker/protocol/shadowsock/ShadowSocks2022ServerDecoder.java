@@ -20,7 +20,7 @@ public class ShadowSocks2022ServerDecoder extends ByteToMessageDecoder {
 
     private final CryptoProcessor cryptoProcessor;
     private final List<byte[]> keyChain;
-    private final ShadowSocks2022Support.Counter decryptCounter = new ShadowSocks2022Support.Counter(0);
+    private final AeadChunkCodec codec;
 
     private byte[] requestSalt;
     private boolean saltParsed;
@@ -29,10 +29,10 @@ public class ShadowSocks2022ServerDecoder extends ByteToMessageDecoder {
     private boolean fixedHeaderParsed;
     private boolean requestDispatched;
     private int variableHeaderLength = -1;
-    private int expectedLength = -1;
 
     public ShadowSocks2022ServerDecoder(CryptoProcessor cryptoProcessor, String encodedPassword) {
         this.cryptoProcessor = cryptoProcessor;
+        this.codec = new AeadChunkCodec(cryptoProcessor);
         this.keyChain = ShadowSocks2022Key.decodeKeyChain(encodedPassword, cryptoProcessor.getKeySize());
     }
 
@@ -80,7 +80,7 @@ public class ShadowSocks2022ServerDecoder extends ByteToMessageDecoder {
             }
             byte[] encryptedHeader = new byte[fixedHeaderCipherLength];
             in.readBytes(encryptedHeader);
-            byte[] header = ShadowSocks2022Support.decrypt(cryptoProcessor, encryptedHeader, decryptCounter);
+            byte[] header = codec.decrypt(encryptedHeader);
             validateRequestFixedHeader(header);
             variableHeaderLength = ((header[9] & 0xFF) << 8) | (header[10] & 0xFF);
             fixedHeaderParsed = true;
@@ -90,13 +90,9 @@ public class ShadowSocks2022ServerDecoder extends ByteToMessageDecoder {
             return false;
         }
 
-        byte[] encryptedVariableHeader = new byte[variableHeaderLength + cryptoProcessor.getTagSize()];
-        in.readBytes(encryptedVariableHeader);
-        byte[] variableHeader = ShadowSocks2022Support.decrypt(cryptoProcessor, encryptedVariableHeader, decryptCounter);
-
-        ByteBuf headerBuf = ctx.alloc().buffer(variableHeader.length);
-        headerBuf.writeBytes(variableHeader);
+        ByteBuf headerBuf = ctx.alloc().ioBuffer(variableHeaderLength);
         try {
+            codec.decrypt(in, variableHeaderLength + cryptoProcessor.getTagSize(), headerBuf);
             ShadowSocksAddressCodec.ParsedAddress parsedAddress = ShadowSocksAddressCodec.readAddress(headerBuf);
             int paddingLength = headerBuf.readUnsignedShort();
             if (headerBuf.readableBytes() < paddingLength) {
@@ -104,11 +100,8 @@ public class ShadowSocks2022ServerDecoder extends ByteToMessageDecoder {
             }
             headerBuf.skipBytes(paddingLength);
 
-            ByteBuf initialPayload = null;
-            if (headerBuf.isReadable()) {
-                initialPayload = ctx.alloc().buffer(headerBuf.readableBytes());
-                initialPayload.writeBytes(headerBuf);
-            }
+            // 首部之后的首包数据直接切片复用，不再拷贝
+            ByteBuf initialPayload = headerBuf.isReadable() ? headerBuf.readRetainedSlice(headerBuf.readableBytes()) : null;
 
             ProxyTunnelRequest tunnelRequest = buildTunnelRequest(ctx, parsedAddress.host(), parsedAddress.port(), initialPayload);
             requestDispatched = true;
@@ -146,28 +139,11 @@ public class ShadowSocks2022ServerDecoder extends ByteToMessageDecoder {
     }
 
     private boolean tryDecodePayload(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        if (expectedLength < 0) {
-            int lengthCipherSize = 2 + cryptoProcessor.getTagSize();
-            if (in.readableBytes() < lengthCipherSize) {
-                return false;
-            }
-            byte[] encryptedLength = new byte[lengthCipherSize];
-            in.readBytes(encryptedLength);
-            byte[] lengthBytes = ShadowSocks2022Support.decrypt(cryptoProcessor, encryptedLength, decryptCounter);
-            expectedLength = ((lengthBytes[0] & 0xFF) << 8) | (lengthBytes[1] & 0xFF);
-        }
-
-        if (in.readableBytes() < expectedLength + cryptoProcessor.getTagSize()) {
+        ByteBuf payload = codec.tryDecryptChunk(ctx.alloc(), in);
+        if (payload == null) {
             return false;
         }
-
-        byte[] encryptedPayload = new byte[expectedLength + cryptoProcessor.getTagSize()];
-        in.readBytes(encryptedPayload);
-        byte[] payload = ShadowSocks2022Support.decrypt(cryptoProcessor, encryptedPayload, decryptCounter);
-        ByteBuf payloadBuf = ctx.alloc().buffer(payload.length);
-        payloadBuf.writeBytes(payload);
-        out.add(payloadBuf);
-        expectedLength = -1;
+        out.add(payload);
         return true;
     }
 
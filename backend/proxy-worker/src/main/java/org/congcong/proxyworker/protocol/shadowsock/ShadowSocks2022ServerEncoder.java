@@ -4,21 +4,32 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import org.congcong.proxyworker.server.netty.ChannelAttributes;
-import org.congcong.proxyworker.util.ByteBufSplitter;
 import org.congcong.proxyworker.util.encryption.algorithm.CryptoProcessor;
-import org.congcong.proxyworker.util.encryption.algorithm.NonceUtil;
-
-import java.util.List;
 
 public class ShadowSocks2022ServerEncoder extends MessageToByteEncoder<ByteBuf> {
 
+    /**
+     * 服务端首部：类型(1) + 时间戳(8) + 请求 salt + 首块长度(2)
+     */
+    private static final int RESPONSE_HEADER_FIXED_SIZE = 1 + 8 + 2;
+
     private final CryptoProcessor cryptoProcessor;
-    private final ShadowSocks2022Support.Counter encryptCounter = new ShadowSocks2022Support.Counter(0);
+    private final AeadChunkCodec codec;
 
     private boolean firstPacket = true;
 
     public ShadowSocks2022ServerEncoder(CryptoProcessor cryptoProcessor) {
         this.cryptoProcessor = cryptoProcessor;
+        this.codec = new AeadChunkCodec(cryptoProcessor);
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) {
+        int size = codec.encryptedSize(msg.readableBytes());
+        if (firstPacket) {
+            size += cryptoProcessor.getSaltSize() + RESPONSE_HEADER_FIXED_SIZE + cryptoProcessor.getSaltSize();
+        }
+        return preferDirect ? ctx.alloc().ioBuffer(size) : ctx.alloc().heapBuffer(size);
     }
 
     @Override
@@ -27,19 +38,17 @@ public class ShadowSocks2022ServerEncoder extends MessageToByteEncoder<ByteBuf>
             return;
         }
 
-        List<ByteBuf> chunks = ByteBufSplitter.splitByteBuf(msg);
         if (firstPacket) {
-            writeFirstPacket(ctx, chunks, out);
+            writeFirstPacket(ctx, msg, out);
             firstPacket = false;
-            return;
-        }
-
-        for (ByteBuf chunk : chunks) {
-            ShadowSocks2022Support.writeEncryptedChunk(chunk, out, cryptoProcessor, encryptCounter);
         }
+        codec.encryptChunks(msg, out);
     }
 
-    private void writeFirstPacket(ChannelHandlerContext ctx, List<ByteBuf> chunks, ByteBuf out) throws Exception {
+    /**
+     * 写入响应 salt 和首部，首部的长度字段描述首块负载，因此首块不带单独的长度块
+     */
+    private void writeFirstPacket(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) throws Exception {
         byte[] requestSalt = ChannelAttributes.getShadowSocks2022RequestSalt(ctx.channel());
         if (requestSalt == null) {
             throw new IllegalStateException("Missing Shadowsocks 2022 request salt");
@@ -49,29 +58,18 @@ public class ShadowSocks2022ServerEncoder extends MessageToByteEncoder<ByteBuf>
         ShadowSocks2022Support.initSessionSubkey(cryptoProcessor, responseSalt);
         out.writeBytes(responseSalt);
 
-        ByteBuf firstPayloadChunk = chunks.get(0);
-        int firstPayloadLength = firstPayloadChunk.readableBytes();
+        int firstPayloadLength = Math.min(msg.readableBytes(), AeadChunkCodec.MAX_CHUNK_PAYLOAD);
 
-        ByteBuf header = ctx.alloc().buffer(1 + 8 + requestSalt.length + 2);
+        ByteBuf header = ctx.alloc().heapBuffer(RESPONSE_HEADER_FIXED_SIZE + requestSalt.length);
         try {
             header.writeByte(ShadowSocks2022Support.SERVER_STREAM_TYPE);
             ShadowSocks2022Support.writeU64BE(header, ShadowSocks2022Support.currentUnixTimeSeconds());
             header.writeBytes(requestSalt);
             header.writeShort(firstPayloadLength);
-
-            byte[] headerPlaintext = new byte[header.readableBytes()];
-            header.readBytes(headerPlaintext);
-            out.writeBytes(cryptoProcessor.encrypt(headerPlaintext, NonceUtil.generateNonce(encryptCounter.next())));
-
-            byte[] payload = new byte[firstPayloadLength];
-            firstPayloadChunk.readBytes(payload);
-            out.writeBytes(cryptoProcessor.encrypt(payload, NonceUtil.generateNonce(encryptCounter.next())));
+            codec.encrypt(header, header.readableBytes(), out);
         } finally {
             header.release();
         }
-
-        for (int i = 1; i < chunks.size(); i++) {
-            ShadowSocks2022Support.writeEncryptedChunk(chunks.get(i), out, cryptoProcessor, encryptCounter);
-        }
+        codec.encrypt(msg, firstPayloadLength, out);
     }
 }
@@ -3,19 +3,15 @@ package org.congcong.proxyworker.protocol.shadowsock;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandlerContext;
 import org.bouncycastle.crypto.engines.AESEngine;
 import org.bouncycastle.crypto.params.KeyParameter;
 import org.congcong.common.enums.ProxyEncAlgo;
-import org.congcong.proxyworker.util.ByteBufSplitter;
 import org.congcong.proxyworker.util.encryption.algorithm.CryptoProcessor;
 import org.congcong.proxyworker.util.encryption.algorithm.HKDF;
-import org.congcong.proxyworker.util.encryption.algorithm.NonceUtil;
 
 import java.security.SecureRandom;
 import java.time.Instant;
 import java.util.HexFormat;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public final class ShadowSocks2022Support {
@@ -105,44 +101,4 @@ public final class ShadowSocks2022Support {
         aesEngine.processBlock(ciphertext, 0, plaintext, 0);
         return plaintext;
     }
-
-    static void writeEncryptedChunk(ByteBuf plaintext, ByteBuf out, CryptoProcessor processor, Counter counter) throws Exception {
-        int payloadLength = plaintext.readableBytes();
-        byte[] lengthBytes = new byte[] {
-                (byte) (payloadLength >>> 8),
-                (byte) payloadLength
-        };
-        out.writeBytes(processor.encrypt(lengthBytes, NonceUtil.generateNonce(counter.next())));
-
-        byte[] payload = new byte[payloadLength];
-        plaintext.readBytes(payload);
-        out.writeBytes(processor.encrypt(payload, NonceUtil.generateNonce(counter.next())));
-    }
-
-    static void writeEncryptedChunks(ByteBuf plaintext, ByteBuf out, CryptoProcessor processor, Counter counter) throws Exception {
-        List<ByteBuf> chunks = ByteBufSplitter.splitByteBuf(plaintext);
-        for (ByteBuf chunk : chunks) {
-            writeEncryptedChunk(chunk, out, processor, counter);
-        }
-    }
-
-    static byte[] decrypt(CryptoProcessor processor, byte[] ciphertext, Counter counter) throws Exception {
-        return processor.decrypt(ciphertext, NonceUtil.generateNonce(counter.next()));
-    }
-
-    static ByteBuf encryptedBuffer(ChannelHandlerContext ctx, int estimatedSize) {
-        return ctx.alloc().buffer(Math.max(estimatedSize, 256));
-    }
-
-    static final class Counter {
-        private long value;
-
-        Counter(long initialValue) {
-            this.value = initialValue;
-        }
-
-        long next() {
-            return value++;
-        }
-    }
 }
@@ -13,6 +13,7 @@ import org.congcong.proxyworker.server.netty.ChannelAttributes;
 import org.congcong.proxyworker.util.encryption.CryptoProcessorFactory;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 @Slf4j
 public class ShadowSocksInitializer extends AbstractChannelInitializer {
@@ -21,8 +22,13 @@ public class ShadowSocksInitializer extends AbstractChannelInitializer {
         super(inboundConfig);
     }
 
+    public ShadowSocksInitializer(Supplier<InboundConfig> inboundConfigSupplier) {
+        super(inboundConfigSupplier);
+    }
+
     @Override
     protected void init(Channel socketChannel) {
+        InboundConfig inboundConfig = ChannelAttributes.getInboundConfig(socketChannel);
         UserConfig userConfig = FindUser.find(null, inboundConfig);
         ProxyEncAlgo ssMethod = inboundConfig.getSsMethod();
         String credential = userConfig.getCredential();
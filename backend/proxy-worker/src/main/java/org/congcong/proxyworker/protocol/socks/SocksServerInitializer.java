@@ -7,11 +7,17 @@ import io.netty.handler.codec.socksx.v5.Socks5ServerEncoder;
 import org.congcong.proxyworker.config.InboundConfig;
 import org.congcong.proxyworker.server.netty.AbstractChannelInitializer;
 
+import java.util.function.Supplier;
+
 public class SocksServerInitializer extends AbstractChannelInitializer {
     public SocksServerInitializer(InboundConfig inboundConfig) {
         super(inboundConfig);
     }
 
+    public SocksServerInitializer(Supplier<InboundConfig> inboundConfigSupplier) {
+        super(inboundConfigSupplier);
+    }
+
     @Override
     protected void init(Channel socketChannel) {
         socketChannel.pipeline().addLast(
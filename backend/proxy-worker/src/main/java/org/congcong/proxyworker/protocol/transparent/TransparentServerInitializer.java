@@ -7,6 +7,7 @@ import org.congcong.proxyworker.server.netty.AbstractChannelInitializer;
 import org.congcong.proxyworker.server.netty.ChannelAttributes;
 
 import java.net.InetSocketAddress;
+import java.util.function.Supplier;
 
 public class TransparentServerInitializer extends AbstractChannelInitializer {
 
@@ -14,6 +15,10 @@ public class TransparentServerInitializer extends AbstractChannelInitializer {
         super(inboundConfig);
     }
 
+    public TransparentServerInitializer(Supplier<InboundConfig> inboundConfigSupplier) {
+        super(inboundConfigSupplier);
+    }
+
     @Override
     protected void init(Channel socketChannel) {
         socketChannel.pipeline().addFirst(TransparentChecker.getInstance());
@@ -22,12 +27,12 @@ public class TransparentServerInitializer extends AbstractChannelInitializer {
     }
 
 
-    protected void processSSL(Channel socketChannel) {
+    protected void processSSL(Channel socketChannel, InboundConfig inboundConfig) {
         // 啥都不做
     }
 
-    protected void pipeLineContextInit(Channel socketChannel) {
-        super.pipeLineContextInit(socketChannel);
+    protected void pipeLineContextInit(Channel socketChannel, InboundConfig inboundConfig) {
+        super.pipeLineContextInit(socketChannel, inboundConfig);
         // 父类已经初始化过一部分 proxyContext
         // 根据透明代理的特性，好需要设置IP端口
         ProxyContext proxyContext = ChannelAttributes.getProxyContext(socketChannel);
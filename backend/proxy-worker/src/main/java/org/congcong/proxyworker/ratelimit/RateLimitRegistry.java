@@ -0,0 +1,133 @@
+package org.congcong.proxyworker.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.congcong.common.enums.RateLimitScopeType;
+import org.congcong.proxyworker.config.RateLimitConfig;
+
+import java.util.*;
+
+/**
+ * 限流规则注册表
+ * 配置刷新时整体替换快照，读路径只做一次 volatile 读；
+ * 未变更的规则沿用原有令牌桶，刷新配置不会清空已有的透支额度。
+ */
+@Slf4j
+public final class RateLimitRegistry {
+
+    public enum Direction {
+        /**
+         * 客户端 -> 目标服务器
+         */
+        UPLINK,
+        /**
+         * 目标服务器 -> 客户端
+         */
+        DOWNLINK
+    }
+
+    private static volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    private RateLimitRegistry() {
+    }
+
+    public static synchronized void refresh(List<RateLimitConfig> rateLimits) {
+        Snapshot previous = snapshot;
+        long nowNanos = System.nanoTime();
+        List<RateLimitRule> globalRules = new ArrayList<>();
+        Map<Long, List<RateLimitRule>> userRules = new HashMap<>();
+        Map<RuleKey, RateLimitRule> rulesByKey = new HashMap<>();
+        if (rateLimits != null) {
+            for (RateLimitConfig config : rateLimits) {
+                if (config == null || !Boolean.TRUE.equals(config.getEnabled()) || config.getScopeType() == null) {
+                    continue;
+                }
+                if (config.getScopeType() == RateLimitScopeType.GLOBAL) {
+                    RateLimitRule rule = reuseOrCreate(previous, new RuleKey(config.getId(), null), config, nowNanos, rulesByKey);
+                    if (rule.hasLimit()) {
+                        globalRules.add(rule);
+                    }
+                } else if (config.getScopeType() == RateLimitScopeType.USERS && config.getUserIds() != null) {
+                    for (Long userId : config.getUserIds()) {
+                        if (userId == null) {
+                            continue;
+                        }
+                        RateLimitRule rule = reuseOrCreate(previous, new RuleKey(config.getId(), userId), config, nowNanos, rulesByKey);
+                        if (rule.hasLimit()) {
+                            userRules.computeIfAbsent(userId, k -> new ArrayList<>()).add(rule);
+                        }
+                    }
+                }
+            }
+        }
+        snapshot = new Snapshot(List.copyOf(globalRules), Map.copyOf(userRules), Map.copyOf(rulesByKey));
+        log.info("已刷新限流规则，全局规则数量: {}，受限用户数量: {}", globalRules.size(), userRules.size());
+    }
+
+    /**
+     * 记录一次转发的字节数
+     * @return 需要暂停读取的时长（纳秒），多条规则同时生效时取最长的一条
+     */
+    public static long consume(Long userId, Direction direction, long bytes) {
+        Snapshot current = snapshot;
+        if (current.isEmpty() || bytes <= 0) {
+            return 0;
+        }
+        long nowNanos = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        long waitNanos = 0;
+        for (RateLimitRule rule : current.globalRules) {
+            waitNanos = Math.max(waitNanos, rule.consume(direction, bytes, nowNanos, nowMillis));
+        }
+        if (userId != null) {
+            List<RateLimitRule> rules = current.userRules.get(userId);
+            if (rules != null) {
+                for (RateLimitRule rule : rules) {
+                    waitNanos = Math.max(waitNanos, rule.consume(direction, bytes, nowNanos, nowMillis));
+                }
+            }
+        }
+        return waitNanos;
+    }
+
+    public static boolean isEmpty() {
+        return snapshot.isEmpty();
+    }
+
+    /**
+     * 该用户是否受任何限流规则约束（不区分规则当前是否处于生效时间窗口）
+     */
+    public static boolean isLimited(Long userId) {
+        Snapshot current = snapshot;
+        if (!current.globalRules.isEmpty()) {
+            return true;
+        }
+        return userId != null && current.userRules.containsKey(userId);
+    }
+
+    private static RateLimitRule reuseOrCreate(Snapshot previous,
+                                               RuleKey key,
+                                               RateLimitConfig config,
+                                               long nowNanos,
+                                               Map<RuleKey, RateLimitRule> rulesByKey) {
+        RateLimitRule existing = previous.rulesByKey.get(key);
+        RateLimitRule rule = existing != null && Objects.equals(existing.getConfig(), config)
+                ? existing
+                : new RateLimitRule(config, nowNanos);
+        rulesByKey.put(key, rule);
+        return rule;
+    }
+
+    private record RuleKey(Long configId, Long userId) {
+    }
+
+    private record Snapshot(List<RateLimitRule> globalRules,
+                            Map<Long, List<RateLimitRule>> userRules,
+                            Map<RuleKey, RateLimitRule> rulesByKey) {
+
+        private static final Snapshot EMPTY = new Snapshot(List.of(), Map.of(), Map.of());
+
+        private boolean isEmpty() {
+            return globalRules.isEmpty() && userRules.isEmpty();
+        }
+    }
+}
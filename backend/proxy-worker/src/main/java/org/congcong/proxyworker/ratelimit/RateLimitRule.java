@@ -0,0 +1,96 @@
+package org.congcong.proxyworker.ratelimit;
+
+import org.congcong.proxyworker.config.RateLimitConfig;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * 编译后的限流规则：一条 GLOBAL 配置对应一条规则，USERS 配置按用户各自展开一条规则，
+ * 每条规则持有独立的上下行令牌桶。
+ */
+final class RateLimitRule {
+
+    /**
+     * 生效时间窗口的判定结果缓存 1 秒，避免每次读事件都构造日期对象
+     */
+    private static final long ACTIVE_CHECK_INTERVAL_MILLIS = 1000;
+
+    private final RateLimitConfig config;
+    private final TokenBucket uplink;
+    private final TokenBucket downlink;
+
+    private volatile boolean active;
+    private volatile long activeCheckedAtMillis;
+
+    RateLimitRule(RateLimitConfig config, long nowNanos) {
+        this.config = config;
+        this.uplink = newBucket(config.getUplinkLimitBps(), config.getBurstBytes(), nowNanos);
+        this.downlink = newBucket(config.getDownlinkLimitBps(), config.getBurstBytes(), nowNanos);
+    }
+
+    RateLimitConfig getConfig() {
+        return config;
+    }
+
+    boolean hasLimit() {
+        return uplink != null || downlink != null;
+    }
+
+    long consume(RateLimitRegistry.Direction direction, long bytes, long nowNanos, long nowMillis) {
+        TokenBucket bucket = direction == RateLimitRegistry.Direction.UPLINK ? uplink : downlink;
+        if (bucket == null || !isActive(nowMillis)) {
+            return 0;
+        }
+        return bucket.consume(bytes, nowNanos);
+    }
+
+    private boolean isActive(long nowMillis) {
+        if (nowMillis - activeCheckedAtMillis >= ACTIVE_CHECK_INTERVAL_MILLIS) {
+            active = isActiveAt(config, LocalDateTime.now());
+            activeCheckedAtMillis = nowMillis;
+        }
+        return active;
+    }
+
+    static boolean isActiveAt(RateLimitConfig config, LocalDateTime now) {
+        LocalDate today = now.toLocalDate();
+        if (config.getEffectiveFrom() != null && today.isBefore(config.getEffectiveFrom())) {
+            return false;
+        }
+        if (config.getEffectiveTo() != null && today.isAfter(config.getEffectiveTo())) {
+            return false;
+        }
+        LocalTime start = config.getEffectiveTimeStart();
+        LocalTime end = config.getEffectiveTimeEnd();
+        if (start == null && end == null) {
+            return true;
+        }
+        LocalTime time = now.toLocalTime();
+        if (start == null) {
+            return time.isBefore(end);
+        }
+        if (end == null) {
+            return !time.isBefore(start);
+        }
+        if (start.equals(end)) {
+            return true;
+        }
+        if (start.isBefore(end)) {
+            return !time.isBefore(start) && time.isBefore(end);
+        }
+        // 跨零点的窗口，例如 22:00 - 06:00
+        return !time.isBefore(start) || time.isBefore(end);
+    }
+
+    private static TokenBucket newBucket(Long limitBps, Long burstBytes, long nowNanos) {
+        if (limitBps == null || limitBps <= 0) {
+            return null;
+        }
+        // 配置单位为 bit/s，令牌桶按字节计费
+        long bytesPerSecond = Math.max(1, limitBps / 8);
+        long capacity = burstBytes != null && burstBytes > 0 ? burstBytes : bytesPerSecond;
+        return new TokenBucket(bytesPerSecond, capacity, nowNanos);
+    }
+}
@@ -0,0 +1,62 @@
+package org.congcong.proxyworker.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶：按字节计费，允许透支。
+ * 读到的数据总是放行，透支部分折算成需要暂停读取的时长，由调用方关闭 autoRead 实现整形，
+ * 这样不需要在代理内部缓存任何数据。
+ * 全局限流的桶会被多个 event loop 同时访问，因此方法加锁，临界区只有几次算术运算。
+ */
+final class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long bytesPerSecond;
+    private final long capacity;
+    private long tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(long bytesPerSecond, long capacity, long nowNanos) {
+        this.bytesPerSecond = Math.max(1, bytesPerSecond);
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * 消费指定字节数的令牌
+     * @return 令牌恢复到非负所需的等待时长（纳秒），0 表示无需等待
+     */
+    synchronized long consume(long bytes, long nowNanos) {
+        refill(nowNanos);
+        tokens -= bytes;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (-tokens * NANOS_PER_SECOND + bytesPerSecond - 1) / bytesPerSecond;
+    }
+
+    long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    long getCapacity() {
+        return capacity;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed <= 0) {
+            return;
+        }
+        // 先按整秒累加，避免 elapsed * bytesPerSecond 溢出
+        long refill = (elapsed / NANOS_PER_SECOND) * bytesPerSecond
+                + (elapsed % NANOS_PER_SECOND) * bytesPerSecond / NANOS_PER_SECOND;
+        if (refill <= 0) {
+            return;
+        }
+        tokens = Math.min(capacity, tokens + refill);
+        lastRefillNanos = nowNanos;
+    }
+}
@@ -0,0 +1,99 @@
+package org.congcong.proxyworker.router;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.congcong.proxyworker.config.FindRoutes;
+import org.congcong.proxyworker.config.InboundConfig;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 按 入站配置 / 用户 保存编译后的路由表
+ * 入站配置对象按引用（弱引用）作为键：配置下发会生成新的 InboundConfig，旧对象在不再被服务和连接引用后回收；
+ * 策略级配置热更新只替换服务持有的快照，已建立的连接仍引用旧对象，旧对象对应的路由表在连接关闭前继续有效。
+ * 每次下发配置递增 generation，路由决策缓存以它为键的一部分，规则集等运行时数据变化后旧决策自然失效。
+ */
+@Slf4j
+public final class CompiledRouteRegistry {
+
+    private static final Cache<InboundConfig, InboundRoutes> BY_INBOUND = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    private static volatile long generation;
+
+    private CompiledRouteRegistry() {
+    }
+
+    /**
+     * 配置下发时预编译所有入站下已绑定用户的路由表，以及未识别用户（免认证入站）使用的路由表
+     */
+    public static synchronized void refresh(List<InboundConfig> inboundConfigs) {
+        int compiled = 0;
+        if (inboundConfigs != null) {
+            for (InboundConfig inboundConfig : inboundConfigs) {
+                if (inboundConfig == null || inboundConfig.getRoutesMap() == null) {
+                    continue;
+                }
+                InboundRoutes routes = routesOf(inboundConfig);
+                routes.anonymous(inboundConfig);
+                compiled++;
+                for (Long userId : inboundConfig.getRoutesMap().keySet()) {
+                    if (userId != null) {
+                        routes.byUser.computeIfAbsent(userId, id -> CompiledRoutes.compile(FindRoutes.find(id, inboundConfig)));
+                        compiled++;
+                    }
+                }
+            }
+        }
+        generation++;
+        log.info("已编译路由表数量: {}，generation: {}", compiled, generation);
+    }
+
+    public static long generation() {
+        return generation;
+    }
+
+    public static CompiledRoutes get(Long userId, InboundConfig inboundConfig) {
+        InboundRoutes routes = routesOf(inboundConfig);
+        if (userId == null) {
+            return routes.anonymous(inboundConfig);
+        }
+        return routes.byUser.computeIfAbsent(userId, id -> CompiledRoutes.compile(FindRoutes.find(id, inboundConfig)));
+    }
+
+    private static InboundRoutes routesOf(InboundConfig inboundConfig) {
+        try {
+            return BY_INBOUND.get(inboundConfig, InboundRoutes::new);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 单个入站配置下的路由表：按用户 ID 保存，未识别用户的路由表单独保存（ConcurrentHashMap 不支持 null 键）
+     */
+    private static final class InboundRoutes {
+
+        private final Map<Long, CompiledRoutes> byUser = new ConcurrentHashMap<>();
+        private volatile CompiledRoutes anonymous;
+
+        CompiledRoutes anonymous(InboundConfig inboundConfig) {
+            CompiledRoutes routes = anonymous;
+            if (routes == null) {
+                synchronized (this) {
+                    routes = anonymous;
+                    if (routes == null) {
+                        routes = CompiledRoutes.compile(FindRoutes.find(null, inboundConfig));
+                        anonymous = routes;
+                    }
+                }
+            }
+            return routes;
+        }
+    }
+}
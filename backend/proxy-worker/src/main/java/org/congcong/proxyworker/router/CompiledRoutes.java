@@ -0,0 +1,205 @@
+package org.congcong.proxyworker.router;
+
+import org.congcong.common.dto.RouteRule;
+import org.congcong.common.enums.MatchOp;
+import org.congcong.common.util.geo.DomainMatcher;
+import org.congcong.common.util.geo.DomainPattern;
+import org.congcong.common.util.geo.DomainPriorityIndex;
+import org.congcong.proxyworker.config.RouteConfig;
+import org.congcong.proxyworker.rules.RuleSetRegistry;
+
+import java.util.*;
+
+/**
+ * 编译后的路由表，对应某个入站下某个用户绑定的有序路由列表
+ * 路由在列表中的下标就是优先级，原先“按顺序找到第一条任一规则命中的路由”等价于“所有命中规则中取最小优先级”：
+ * <ul>
+ *     <li>所有 DOMAIN IN 条件合并为一个后缀索引，一次 label 遍历得到最小优先级</li>
+ *     <li>所有 GEO 条件合并为 国家 -> 优先级 的索引，只在可能改变结果时才解析地理位置</li>
+ *     <li>其余条件（DOMAIN NOT_IN、RULE_SET）按优先级排序，只检查优先级比当前结果更小的条件；
+ *     规则集中的 IP_CIDR 规则只在规则集包含这类规则时才取目标 IP</li>
+ * </ul>
+ */
+public final class CompiledRoutes {
+
+    /**
+     * 路由匹配所需的请求信息，地理位置按需解析
+     */
+    interface Target {
+
+        String normalizedHost();
+
+        boolean hostIsIp();
+
+        /**
+         * @return 目标 IP（4 或 16 字节），供规则集中的 IP_CIDR 规则匹配；主机名是域名且不知道解析结果时返回 null
+         */
+        byte[] targetAddress();
+
+        /**
+         * @return 无法确定地理位置时返回 null
+         */
+        String country();
+    }
+
+    private final List<RouteConfig> routes;
+    private final DomainPriorityIndex domainIndex = new DomainPriorityIndex();
+    private final Map<String, Integer> geoInPriorities = new HashMap<>();
+    /**
+     * GEO NOT_IN 条件，按优先级升序
+     */
+    private final List<GeoNotIn> geoNotIn = new ArrayList<>();
+    private int minGeoPriority = DomainPriorityIndex.NO_MATCH;
+    /**
+     * 其余逐条判断的条件，按优先级升序
+     */
+    private final List<Condition> conditions = new ArrayList<>();
+
+    private CompiledRoutes(List<RouteConfig> routes) {
+        this.routes = routes;
+    }
+
+    public static CompiledRoutes compile(List<RouteConfig> routes) {
+        List<RouteConfig> ordered = routes == null ? List.of() : List.copyOf(routes.stream().filter(Objects::nonNull).toList());
+        CompiledRoutes compiled = new CompiledRoutes(ordered);
+        for (int priority = 0; priority < ordered.size(); priority++) {
+            List<RouteRule> rules = ordered.get(priority).getRules();
+            if (rules == null) {
+                continue;
+            }
+            for (RouteRule rule : rules) {
+                if (rule != null && rule.getConditionType() != null) {
+                    compiled.addRule(rule, priority);
+                }
+            }
+        }
+        return compiled;
+    }
+
+    public List<RouteConfig> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * @return 命中的路由，全部未命中返回 null
+     */
+    RouteConfig select(Target target) {
+        String host = target.normalizedHost();
+        int best = domainIndex.find(host);
+        for (Condition condition : conditions) {
+            if (condition.priority >= best) {
+                break;
+            }
+            if (condition.matches(target)) {
+                best = condition.priority;
+                break;
+            }
+        }
+        if (minGeoPriority < best) {
+            String country = target.country();
+            if (country != null) {
+                best = Math.min(best, geoPriority(country));
+            }
+        }
+        return best == DomainPriorityIndex.NO_MATCH ? null : routes.get(best);
+    }
+
+    private int geoPriority(String country) {
+        int best = geoInPriorities.getOrDefault(country, DomainPriorityIndex.NO_MATCH);
+        for (GeoNotIn condition : geoNotIn) {
+            if (condition.priority >= best) {
+                break;
+            }
+            if (!Objects.equals(country, condition.country)) {
+                return condition.priority;
+            }
+        }
+        return best;
+    }
+
+    private void addRule(RouteRule rule, int priority) {
+        boolean in = rule.getOp() == MatchOp.IN;
+        switch (rule.getConditionType()) {
+            case DOMAIN -> {
+                DomainPattern pattern = DomainMatcher.compile(rule.getValue() == null ? "" : rule.getValue());
+                if (in) {
+                    domainIndex.add(pattern, priority);
+                } else {
+                    conditions.add(new DomainNotIn(priority, pattern));
+                }
+            }
+            case GEO -> {
+                if (in) {
+                    geoInPriorities.merge(rule.getValue(), priority, Math::min);
+                } else {
+                    geoNotIn.add(new GeoNotIn(priority, rule.getValue()));
+                }
+                minGeoPriority = Math.min(minGeoPriority, priority);
+            }
+            case RULE_SET -> conditions.add(new RuleSetCondition(priority, rule.getValue(), in));
+            case AD_BLOCK -> {
+                // 已废弃，永不命中
+            }
+        }
+    }
+
+    private record GeoNotIn(int priority, String country) {
+    }
+
+    private abstract static class Condition {
+        final int priority;
+
+        Condition(int priority) {
+            this.priority = priority;
+        }
+
+        abstract boolean matches(Target target);
+    }
+
+    private static final class DomainNotIn extends Condition {
+        private final DomainPattern pattern;
+
+        DomainNotIn(int priority, DomainPattern pattern) {
+            super(priority);
+            this.pattern = pattern;
+        }
+
+        @Override
+        boolean matches(Target target) {
+            return !pattern.matches(target.normalizedHost());
+        }
+    }
+
+    private static final class RuleSetCondition extends Condition {
+        private final String ruleSetKey;
+        private final boolean in;
+
+        RuleSetCondition(int priority, String ruleSetKey, boolean in) {
+            super(priority);
+            this.ruleSetKey = ruleSetKey;
+            this.in = in;
+        }
+
+        /**
+         * 域名类规则项只对域名目标判断，IP 类规则项只在知道目标 IP 时判断；
+         * 两者都不适用时无论 IN 还是 NOT_IN 都不命中，避免 IP 目标被只含域名的 NOT_IN 规则集误命中
+         */
+        @Override
+        boolean matches(Target target) {
+            boolean applicable = false;
+            boolean matched = false;
+            if (!target.hostIsIp()) {
+                applicable = true;
+                matched = RuleSetRegistry.matchNormalized(ruleSetKey, target.normalizedHost());
+            }
+            if (!matched && RuleSetRegistry.hasIpRules(ruleSetKey)) {
+                byte[] address = target.targetAddress();
+                if (address != null) {
+                    applicable = true;
+                    matched = RuleSetRegistry.matchAddress(ruleSetKey, address);
+                }
+            }
+            return applicable && in == matched;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.congcong.proxyworker.router;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.dns.DefaultDnsQuestion;
+import io.netty.handler.codec.dns.DnsRawRecord;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.resolver.dns.DnsNameResolver;
+import io.netty.util.NetUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import lombok.extern.slf4j.Slf4j;
+import org.congcong.common.util.geo.GeoIPUtil;
+import org.congcong.proxyworker.config.ProxyWorkerConfig;
+import org.congcong.proxyworker.server.EventLoopDnsResolvers;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GEO 路由条件使用的地理位置解析
+ * 地理位置用 ISO 国家代码表示（见 {@link GeoIPUtil#countryCode(InetAddress)}），GEO 条件的值直接与它比较。
+ * IP 目标直接查国家区间索引，不经过 InetAddress 的名字解析；域名目标通过 channel 所在 event loop 上的 {@link DnsNameResolver}
+ * 异步解析，结果按 A/AAAA 记录的 TTL 缓存（有上限），同一域名并发的解析只发出一次。
+ */
+@Slf4j
+public class HostGeoResolver {
+
+    /**
+     * 解析失败、域名不存在时的否定缓存时长，同时也是正常记录 TTL 的下限，避免 TTL 为 0 的域名每个连接都触发解析
+     */
+    static final long MIN_TTL_SECONDS = 30;
+    private static final long MAX_TTL_SECONDS = 86_400;
+
+    /**
+     * 域名 -> 首个地址及其 TTL 的异步查询
+     */
+    interface AddressLookup {
+
+        /**
+         * @return 成功时给出首个地址，没有地址记录时结果为 null
+         */
+        Future<ResolvedAddress> lookup(EventLoop eventLoop, String host);
+    }
+
+    record ResolvedAddress(InetAddress address, long ttlSeconds) {
+    }
+
+    /**
+     * @param country 无法确定地理位置时为 null
+     */
+    record Entry(String ip, String country, long expiresAtMillis) {
+    }
+
+    private static class Holder {
+        private static final HostGeoResolver INSTANCE = new HostGeoResolver(new DnsAddressLookup(),
+                ProxyWorkerConfig.getInstance().getRouteGeoCacheMaxEntries());
+    }
+
+    public static HostGeoResolver getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private final AddressLookup addressLookup;
+    private final Cache<String, Entry> entries;
+    private final Map<String, Promise<Entry>> inflight = new ConcurrentHashMap<>();
+
+    HostGeoResolver(AddressLookup addressLookup, long maxEntries) {
+        this.addressLookup = addressLookup;
+        this.entries = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(MAX_TTL_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 查询 IP 所属国家，IP 字面量直接转换为 InetAddress，不会发起 DNS 查询
+     * @return 国家代码，没有可用的 GeoIP 库时返回 null
+     */
+    public static String countryOfIp(String ip) {
+        InetAddress address = NetUtil.createInetAddressFromIpAddressString(ip);
+        return GeoIPUtil.getInstance().countryCode(address);
+    }
+
+    /**
+     * @return 未缓存或已过期时返回 null
+     */
+    Entry cached(String normalizedHost, long nowMillis) {
+        Entry entry = entries.getIfPresent(normalizedHost);
+        if (entry == null) {
+            return null;
+        }
+        if (nowMillis >= entry.expiresAtMillis()) {
+            entries.asMap().remove(normalizedHost, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * 异步解析域名并判断地理位置，返回的 future 总是成功完成，并在 eventLoop 上通知监听器
+     */
+    Future<Entry> resolve(EventLoop eventLoop, String normalizedHost) {
+        Entry entry = cached(normalizedHost, System.currentTimeMillis());
+        if (entry != null) {
+            return eventLoop.newSucceededFuture(entry);
+        }
+        Promise<Entry> fresh = eventLoop.newPromise();
+        Promise<Entry> existing = inflight.putIfAbsent(normalizedHost, fresh);
+        if (existing == null) {
+            start(eventLoop, normalizedHost, fresh);
+            return fresh;
+        }
+        // 其他连接已经在解析同一域名，解析完成后切回本连接所在的 event loop 通知
+        existing.addListener(f -> fresh.trySuccess(existing.getNow()));
+        return fresh;
+    }
+
+    private void start(EventLoop eventLoop, String normalizedHost, Promise<Entry> promise) {
+        Future<ResolvedAddress> lookup;
+        try {
+            lookup = addressLookup.lookup(eventLoop, normalizedHost);
+        } catch (Exception e) {
+            lookup = eventLoop.newFailedFuture(e);
+        }
+        lookup.addListener(f -> {
+            long nowMillis = System.currentTimeMillis();
+            Entry entry;
+            ResolvedAddress resolved = f.isSuccess() ? (ResolvedAddress) f.getNow() : null;
+            if (resolved == null) {
+                if (!f.isSuccess()) {
+                    log.debug("GEO 路由解析域名 {} 失败: {}", normalizedHost, f.cause().getMessage());
+                }
+                entry = new Entry(null, null, nowMillis + TimeUnit.SECONDS.toMillis(MIN_TTL_SECONDS));
+            } else {
+                String ip = NetUtil.toAddressString(resolved.address());
+                long ttlSeconds = Math.min(Math.max(resolved.ttlSeconds(), MIN_TTL_SECONDS), MAX_TTL_SECONDS);
+                String country = GeoIPUtil.getInstance().countryCode(resolved.address());
+                entry = new Entry(ip, country, nowMillis + TimeUnit.SECONDS.toMillis(ttlSeconds));
+            }
+            entries.put(normalizedHost, entry);
+            inflight.remove(normalizedHost, promise);
+            promise.trySuccess(entry);
+        });
+    }
+
+    /**
+     * 基于 {@link EventLoopDnsResolvers} 中 event loop 上共用的 Netty 解析器，使用系统 resolv.conf 中的上游
+     * 按记录类型发出原始查询，不经过解析器的地址缓存，TTL 由 {@link HostGeoResolver} 统一管理
+     */
+    private static final class DnsAddressLookup implements AddressLookup {
+
+        @Override
+        public Future<ResolvedAddress> lookup(EventLoop eventLoop, String host) {
+            DnsNameResolver resolver = EventLoopDnsResolvers.ipv4(eventLoop);
+            Promise<ResolvedAddress> promise = eventLoop.newPromise();
+            query(resolver, host, DnsRecordType.A, promise);
+            return promise;
+        }
+
+        private static void query(DnsNameResolver resolver, String host, DnsRecordType type, Promise<ResolvedAddress> promise) {
+            resolver.resolveAll(new DefaultDnsQuestion(host, type)).addListener(f -> {
+                ResolvedAddress resolved = null;
+                if (f.isSuccess()) {
+                    @SuppressWarnings("unchecked")
+                    List<DnsRecord> records = (List<DnsRecord>) f.getNow();
+                    try {
+                        resolved = firstAddress(host, type, records);
+                    } finally {
+                        records.forEach(ReferenceCountUtil::release);
+                    }
+                }
+                if (resolved == null && type == DnsRecordType.A) {
+                    // 没有 IPv4 地址时再查一次 IPv6
+                    query(resolver, host, DnsRecordType.AAAA, promise);
+                } else if (resolved == null && !f.isSuccess()) {
+                    promise.tryFailure(f.cause());
+                } else {
+                    promise.trySuccess(resolved);
+                }
+            });
+        }
+
+        private static ResolvedAddress firstAddress(String host, DnsRecordType type, List<DnsRecord> records)
+                throws UnknownHostException {
+            int expectedLength = type == DnsRecordType.A ? 4 : 16;
+            InetAddress address = null;
+            long ttlSeconds = Long.MAX_VALUE;
+            for (DnsRecord record : records) {
+                if (record.type() != type || !(record instanceof DnsRawRecord raw)) {
+                    continue;
+                }
+                ByteBuf content = raw.content();
+                if (content.readableBytes() != expectedLength) {
+                    continue;
+                }
+                if (address == null) {
+                    address = InetAddress.getByAddress(host, ByteBufUtil.getBytes(content));
+                }
+                ttlSeconds = Math.min(ttlSeconds, record.timeToLive());
+            }
+            return address == null ? null : new ResolvedAddress(address, ttlSeconds);
+        }
+    }
+}
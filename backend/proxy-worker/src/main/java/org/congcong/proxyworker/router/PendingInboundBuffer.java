@@ -0,0 +1,53 @@
+package org.congcong.proxyworker.router;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * 路由决策挂起（等待异步解析）期间插在 {@link RouterService} 之后，暂存客户端在此期间发来的数据，
+ * 决策完成后先放行隧道请求，再按原顺序回放暂存的数据并移除自身。
+ */
+public final class PendingInboundBuffer extends ChannelInboundHandlerAdapter {
+
+    private final Queue<Object> pending = new ArrayDeque<>();
+    private ChannelHandlerContext ctx;
+
+    PendingInboundBuffer() {
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        pending.add(msg);
+    }
+
+    /**
+     * 放行隧道请求与暂存的数据
+     */
+    void release(Object request) {
+        ctx.fireChannelRead(request);
+        Object msg;
+        while ((msg = pending.poll()) != null) {
+            ctx.fireChannelRead(msg);
+        }
+        if (!ctx.isRemoved()) {
+            ctx.pipeline().remove(this);
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        Object msg;
+        while ((msg = pending.poll()) != null) {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+}
@@ -1,31 +1,37 @@
 package org.congcong.proxyworker.router;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.NetUtil;
+import io.netty.util.concurrent.Future;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.validator.routines.InetAddressValidator;
 import org.congcong.common.dto.ProxyContext;
-import org.congcong.common.dto.RouteRule;
 import org.congcong.common.enums.*;
 import org.congcong.common.util.geo.*;
-import org.congcong.proxyworker.config.FindRoutes;
 import org.congcong.proxyworker.config.InboundConfig;
+import org.congcong.proxyworker.config.ProxyWorkerConfig;
 import org.congcong.proxyworker.config.RouteConfig;
 import org.congcong.proxyworker.context.ProxyContextResolver;
-import org.congcong.proxyworker.rules.RuleSetRegistry;
 import org.congcong.proxyworker.server.tunnel.ProxyTunnelRequest;
 import org.congcong.proxyworker.util.ProxyContextFillUtil;
 
-import java.util.*;
 
 @ChannelHandler.Sharable
 @Slf4j
 public class RouterService extends SimpleChannelInboundHandler<ProxyTunnelRequest> {
 
-    private RouterService() {
+    /**
+     * 为 null 时域名目标不参与 GEO 匹配
+     */
+    private final HostGeoResolver geoResolver;
 
+    RouterService(HostGeoResolver geoResolver) {
+        this.geoResolver = geoResolver;
     }
 
     public static RouterService getInstance() {
@@ -33,106 +39,202 @@ public class RouterService extends SimpleChannelInboundHandler<ProxyTunnelReques
     }
 
     private static class Holder {
-        private static final RouterService INSTANCE = new RouterService();
+        private static final RouterService INSTANCE = new RouterService(
+                ProxyWorkerConfig.getInstance().isRouteGeoResolveDomainEnabled() ? HostGeoResolver.getInstance() : null);
     }
 
-    private static final InetAddressValidator inetAddressValidator = InetAddressValidator.getInstance();
+    /**
+     * 路由决策缓存：(generation, 路由表, 主机名) -> 路由，依赖域名解析结果的 GEO 决策不缓存
+     */
+    private static final int DECISION_CACHE_SIZE = 10_000;
+    private static final RouteConfig NO_ROUTE = new RouteConfig();
 
+    private final Cache<DecisionKey, RouteConfig> decisions = CacheBuilder.newBuilder()
+            .maximumSize(DECISION_CACHE_SIZE)
+            .build();
+
+    private record DecisionKey(long generation, CompiledRoutes routes, String normalizedHost) {
+    }
 
     @Override
     protected void channelRead0(ChannelHandlerContext channelHandlerContext, ProxyTunnelRequest proxyTunnelRequest) throws Exception {
-        ProxyContext proxyContext = ProxyContextResolver.resolveProxyContext(channelHandlerContext.channel(), proxyTunnelRequest);
         InboundConfig inboundConfig = proxyTunnelRequest.getInboundConfig();
-        List<RouteConfig> routes = FindRoutes.find(proxyTunnelRequest.getUser().getId(), inboundConfig);
-        String targetHost = proxyTunnelRequest.getTargetHost();
-        boolean hostIsIp = isIp(targetHost);
-        RouteConfig matchedRoute = selectMatchedRoute(routes, targetHost, hostIsIp, proxyTunnelRequest);
+        CompiledRoutes routes = CompiledRouteRegistry.get(proxyTunnelRequest.getUser().getId(), inboundConfig);
+        RouteTarget target = new RouteTarget(proxyTunnelRequest, geoResolver != null);
+        RouteConfig matchedRoute = selectMatchedRoute(routes, target);
+        if (target.awaitingResolution) {
+            suspendUntilResolved(channelHandlerContext, proxyTunnelRequest, routes, target.normalizedHost);
+            return;
+        }
+        dispatch(channelHandlerContext, proxyTunnelRequest, matchedRoute, null);
+    }
+
+    private void dispatch(ChannelHandlerContext channelHandlerContext,
+                          ProxyTunnelRequest proxyTunnelRequest,
+                          RouteConfig matchedRoute,
+                          PendingInboundBuffer pendingBuffer) {
         if (matchedRoute == null) {
-            matchedRoute = fallbackRoute(inboundConfig, channelHandlerContext, proxyTunnelRequest);
+            matchedRoute = fallbackRoute(proxyTunnelRequest.getInboundConfig(), channelHandlerContext, proxyTunnelRequest);
             if (matchedRoute == null) {
                 return;
             }
         }
+        ProxyContext proxyContext = ProxyContextResolver.resolveProxyContext(channelHandlerContext.channel(), proxyTunnelRequest);
         ProxyContextFillUtil.proxyContextRouteFill(matchedRoute, proxyContext);
         proxyTunnelRequest.setRouteConfig(matchedRoute);
-        channelHandlerContext.fireChannelRead(proxyTunnelRequest);
+        if (pendingBuffer != null) {
+            pendingBuffer.release(proxyTunnelRequest);
+        } else {
+            channelHandlerContext.fireChannelRead(proxyTunnelRequest);
+        }
     }
 
-    private RouteConfig selectMatchedRoute(List<RouteConfig> routes, String targetHost, boolean hostIsIp, ProxyTunnelRequest proxyTunnelRequest) {
-        for (RouteConfig route : routes) {
-            if (routeMatches(route, targetHost, hostIsIp, proxyTunnelRequest)) {
-                return route;
+    /**
+     * GEO 条件需要域名的解析结果时，暂停读取并暂存后续数据，解析完成后在同一 event loop 上重新选路
+     */
+    private void suspendUntilResolved(ChannelHandlerContext channelHandlerContext,
+                                      ProxyTunnelRequest proxyTunnelRequest,
+                                      CompiledRoutes routes,
+                                      String normalizedHost) {
+        Channel channel = channelHandlerContext.channel();
+        PendingInboundBuffer pendingBuffer = new PendingInboundBuffer();
+        channelHandlerContext.pipeline().addAfter(channelHandlerContext.name(), null, pendingBuffer);
+        channel.config().setAutoRead(false);
+        geoResolver.resolve(channel.eventLoop(), normalizedHost).addListener((Future<HostGeoResolver.Entry> f) -> {
+            channel.config().setAutoRead(true);
+            if (!channel.isActive()) {
+                ByteBuf initialPayload = proxyTunnelRequest.getInitialPayload();
+                if (initialPayload != null && initialPayload.refCnt() > 0) {
+                    initialPayload.release();
+                    proxyTunnelRequest.setInitialPayload(null);
+                }
+                return;
             }
-        }
-        return null;
+            try {
+                HostGeoResolver.Entry entry = f.getNow();
+                if (entry != null && entry.country() != null) {
+                    proxyTunnelRequest.setCountry(entry.country());
+                    proxyTunnelRequest.setLocationResolveSuccess(true);
+                }
+                RouteConfig matchedRoute = selectMatchedRoute(routes, new RouteTarget(proxyTunnelRequest, false));
+                dispatch(channelHandlerContext, proxyTunnelRequest, matchedRoute, pendingBuffer);
+            } catch (Exception e) {
+                channelHandlerContext.fireExceptionCaught(e);
+            }
+        });
     }
 
-    private boolean routeMatches(RouteConfig route, String targetHost, boolean hostIsIp, ProxyTunnelRequest proxyTunnelRequest) {
-        for (RouteRule rule : route.getRules()) {
-            if (ruleMatches(route, rule, targetHost, hostIsIp, proxyTunnelRequest)) {
-                return true;
-            }
+    private RouteConfig selectMatchedRoute(CompiledRoutes routes, RouteTarget target) {
+        DecisionKey key = new DecisionKey(CompiledRouteRegistry.generation(), routes, target.normalizedHost);
+        RouteConfig cached = decisions.getIfPresent(key);
+        if (cached != null) {
+            return cached == NO_ROUTE ? null : cached;
+        }
+        String targetHost = target.targetHost;
+        RouteConfig matched = routes.select(target);
+        if (matched != null) {
+            log.debug("路由 {} 命中 {}", matched.getName(), targetHost);
         }
-        return false;
+        if (target.isCacheable()) {
+            decisions.put(key, matched == null ? NO_ROUTE : matched);
+        }
+        return matched;
     }
 
-    private boolean ruleMatches(RouteConfig route, RouteRule rule, String targetHost, boolean hostIsIp, ProxyTunnelRequest proxyTunnelRequest) {
-        RouteConditionType conditionType = rule.getConditionType();
-        String value = rule.getValue();
-        MatchOp op = rule.getOp();
-        return switch (conditionType) {
-            case GEO -> matchesGeoRoute(route, value, op, targetHost, hostIsIp, proxyTunnelRequest);
-            case DOMAIN -> matchesDomainRoute(route, value, op, targetHost);
-            case AD_BLOCK -> false;
-            case RULE_SET -> matchesRuleSetRoute(value, op, targetHost, hostIsIp);
-        };
-    }
+    private final class RouteTarget implements CompiledRoutes.Target {
+        private final ProxyTunnelRequest proxyTunnelRequest;
+        private final String targetHost;
+        private final String normalizedHost;
+        private final boolean hostIsIp;
+        /**
+         * 本次选路是否允许发起异步域名解析，解析完成后的重新选路不再发起
+         */
+        private final boolean resolveAllowed;
+        private boolean geoAttemptedForDomain;
+        private boolean addressUsedForDomain;
+        private boolean awaitingResolution;
 
-    private boolean matchesGeoRoute(RouteConfig route, String expectedCountry, MatchOp op, String targetHost, boolean hostIsIp, ProxyTunnelRequest proxyTunnelRequest) {
-        String geoTarget = geoLookupTarget(proxyTunnelRequest, targetHost, hostIsIp);
-        if (geoTarget == null) {
-            return false;
+        private RouteTarget(ProxyTunnelRequest proxyTunnelRequest, boolean resolveAllowed) {
+            this.proxyTunnelRequest = proxyTunnelRequest;
+            this.targetHost = proxyTunnelRequest.getTargetHost();
+            // 每个连接只规范化一次主机名，后续所有域名类规则都基于它匹配
+            this.normalizedHost = DomainMatcher.normalizeHost(targetHost);
+            this.hostIsIp = isIp(targetHost);
+            this.resolveAllowed = resolveAllowed;
         }
-        ensureLocationResolved(proxyTunnelRequest, geoTarget);
-        if (!proxyTunnelRequest.isLocationResolveSuccess()) {
-            return false;
+
+        @Override
+        public String normalizedHost() {
+            return normalizedHost;
         }
-        String country = proxyTunnelRequest.getCountry();
-        boolean matchCondition = Objects.equals(country, expectedCountry);
-        boolean matched = (op == MatchOp.IN) == matchCondition;
-        if (matched) {
-            log.debug("地理 {} {} 路由策略命中 {}", op, expectedCountry, targetHost);
+
+        @Override
+        public boolean hostIsIp() {
+            return hostIsIp;
         }
-        return matched;
-    }
 
-    private void ensureLocationResolved(ProxyTunnelRequest proxyTunnelRequest, String targetIp) {
-        if (proxyTunnelRequest.isLocationResolveSuccess()) {
-            return;
+        /**
+         * 域名目标只使用请求中已有的解析结果（如透明代理的原始目标地址），不为 IP_CIDR 规则单独发起解析
+         */
+        @Override
+        public byte[] targetAddress() {
+            if (hostIsIp) {
+                return NetUtil.createByteArrayFromIpAddressString(targetHost);
+            }
+            String targetIp = proxyTunnelRequest.getTargetIp();
+            if (!isIp(targetIp)) {
+                return null;
+            }
+            addressUsedForDomain = true;
+            return NetUtil.createByteArrayFromIpAddressString(targetIp);
         }
-        boolean foreign = GeoIPUtil.getInstance().isForeign(targetIp, null);
-        proxyTunnelRequest.setCountry(foreign ? "NOT CN" : "CN");
-        proxyTunnelRequest.setLocationResolveSuccess(true);
-    }
 
-    private boolean matchesDomainRoute(RouteConfig route, String ruleValue, MatchOp op, String targetHost) {
-        boolean matched = (op == MatchOp.IN) == DomainMatcher.matches(targetHost, ruleValue);
-        if (matched) {
-            log.debug("域名路由 {} 策略命中 {}", ruleValue, targetHost);
+        @Override
+        public String country() {
+            geoAttemptedForDomain = !hostIsIp;
+            if (proxyTunnelRequest.isLocationResolveSuccess()) {
+                return proxyTunnelRequest.getCountry();
+            }
+            String geoTarget = geoLookupTarget(proxyTunnelRequest, targetHost, hostIsIp);
+            if (geoTarget == null) {
+                return domainCountry();
+            }
+            ensureLocationResolved(proxyTunnelRequest, geoTarget);
+            if (!proxyTunnelRequest.isLocationResolveSuccess()) {
+                return null;
+            }
+            return proxyTunnelRequest.getCountry();
         }
-        return matched;
-    }
 
-    private boolean matchesRuleSetRoute(String ruleSetKey, MatchOp op, String targetHost, boolean hostIsIp) {
-        if (hostIsIp) {
-            return false;
+        /**
+         * 域名目标按缓存的解析结果判断，未缓存时标记为待解析，由 channelRead0 挂起连接异步解析
+         */
+        private String domainCountry() {
+            if (geoResolver == null || normalizedHost.isEmpty()) {
+                return null;
+            }
+            HostGeoResolver.Entry entry = geoResolver.cached(normalizedHost, System.currentTimeMillis());
+            if (entry != null) {
+                return entry.country();
+            }
+            awaitingResolution = resolveAllowed;
+            return null;
         }
-        boolean match = RuleSetRegistry.match(ruleSetKey, targetHost);
-        boolean matched = (op == MatchOp.IN) == match;
-        if (matched) {
-            log.debug("规则集 {} 策略命中 {}", ruleSetKey, targetHost);
+
+        /**
+         * 域名目标的地理位置和 IP 取决于本次请求解析出的 IP，用到它们的决策不能按主机名缓存
+         */
+        private boolean isCacheable() {
+            return !geoAttemptedForDomain && !addressUsedForDomain;
         }
-        return matched;
+    }
+
+    private void ensureLocationResolved(ProxyTunnelRequest proxyTunnelRequest, String targetIp) {
+        if (proxyTunnelRequest.isLocationResolveSuccess()) {
+            return;
+        }
+        proxyTunnelRequest.setCountry(HostGeoResolver.countryOfIp(targetIp));
+        proxyTunnelRequest.setLocationResolveSuccess(true);
     }
 
     private String geoLookupTarget(ProxyTunnelRequest proxyTunnelRequest, String targetHost, boolean hostIsIp) {
@@ -146,8 +248,8 @@ public class RouterService extends SimpleChannelInboundHandler<ProxyTunnelReques
         return null;
     }
 
-    private boolean isIp(String value) {
-        return value != null && inetAddressValidator.isValid(value);
+    private static boolean isIp(String value) {
+        return value != null && (NetUtil.isValidIpV4Address(value) || NetUtil.isValidIpV6Address(value));
     }
 
     private RouteConfig fallbackRoute(InboundConfig inboundConfig, ChannelHandlerContext channelHandlerContext, ProxyTunnelRequest proxyTunnelRequest) {
@@ -0,0 +1,100 @@
+package org.congcong.proxyworker.rules;
+
+import lombok.extern.slf4j.Slf4j;
+import org.congcong.common.util.geo.RuleSetArtifact;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 规则集产物的本地缓存
+ * 产物按内容摘要命名：本地已有且校验通过的直接读取，否则从管理端下载，校验摘要后先写临时文件再原子替换，
+ * 同一产物只下载一次，重启后也不再下载。
+ */
+@Slf4j
+public class RuleSetArtifactStore {
+
+    private static final Pattern DIGEST = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     * 从管理端下载产物
+     */
+    @FunctionalInterface
+    public interface Downloader {
+        byte[] download(String digest) throws IOException, InterruptedException;
+    }
+
+    private final Path dir;
+    private final Downloader downloader;
+
+    public RuleSetArtifactStore(Path dir, Downloader downloader) {
+        this.dir = dir;
+        this.downloader = downloader;
+    }
+
+    /**
+     * @throws UncheckedIOException 本地没有且下载失败，或下载内容与摘要不符
+     */
+    public byte[] load(String digest) {
+        if (digest == null || !DIGEST.matcher(digest).matches()) {
+            throw new UncheckedIOException(new IOException("无效的规则集产物摘要: " + digest));
+        }
+        Path file = dir.resolve(digest);
+        try {
+            if (Files.isRegularFile(file)) {
+                byte[] cached = Files.readAllBytes(file);
+                if (digest.equals(RuleSetArtifact.digest(cached))) {
+                    return cached;
+                }
+                log.warn("规则集产物缓存 {} 校验失败，重新下载", file);
+            }
+            byte[] downloaded = downloader.download(digest);
+            String actual = RuleSetArtifact.digest(downloaded);
+            if (!digest.equals(actual)) {
+                throw new IOException("规则集产物 " + digest + " 内容摘要不符: " + actual);
+            }
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, digest, ".tmp");
+            try {
+                Files.write(tmp, downloaded);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            log.info("已下载规则集产物 {}，大小: {} 字节", digest, downloaded.length);
+            return downloaded;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("下载规则集产物 " + digest + " 被中断", e));
+        }
+    }
+
+    /**
+     * 删除当前配置不再引用的产物
+     */
+    public void retain(Collection<String> digests) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        Set<String> keep = new HashSet<>(digests);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                if (!keep.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理规则集产物缓存 {} 失败: {}", dir, e.getMessage());
+        }
+    }
+}
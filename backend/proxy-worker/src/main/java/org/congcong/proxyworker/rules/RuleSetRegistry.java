@@ -2,103 +2,167 @@ package org.congcong.proxyworker.rules;
 
 import lombok.extern.slf4j.Slf4j;
 import org.congcong.common.dto.RuleSetDTO;
-import org.congcong.common.dto.RuleSetItemDTO;
-import org.congcong.common.enums.RuleSetItemType;
-import org.congcong.common.enums.RuleSetMatchTarget;
+import org.congcong.common.util.geo.DomainMatcher;
 import org.congcong.common.util.geo.DomainTrie;
+import org.congcong.common.util.geo.IpCidrSet;
+import org.congcong.common.util.geo.KeywordAutomaton;
+import org.congcong.common.util.geo.RuleSetArtifact;
 
-import java.net.IDN;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
+/**
+ * RULE_SET 条件使用的规则集
+ * 控制面下发的是规则集产物的摘要（见 {@link RuleSetArtifact}），产物字节由调用方按摘要提供；
+ * 编译结果按 规则集 id + 版本号 + 产物摘要/规则项摘要 复用，配置下发时只重新编译有变化的规则集：
+ * 先在调用线程上依次取得产物字节（可能阻塞在下载上），再在调用线程及公共 ForkJoin 池上并行反序列化/编译（纯计算，
+ * 不占用 event loop），完整的新注册表构建好后一次替换引用，匹配过程始终看到某一次下发的完整规则集。
+ */
 @Slf4j
 public final class RuleSetRegistry {
 
-    private static final Map<String, CompiledRuleSet> RULE_SETS = new ConcurrentHashMap<>();
+    private static volatile Map<String, CompiledRuleSet> ruleSets = Map.of();
 
     private RuleSetRegistry() {
     }
 
-    public static void refresh(List<RuleSetDTO> ruleSets) {
-        Map<String, CompiledRuleSet> compiled = new HashMap<>();
-        if (ruleSets != null) {
-            for (RuleSetDTO ruleSet : ruleSets) {
-                if (ruleSet == null || ruleSet.getRuleKey() == null || Boolean.FALSE.equals(ruleSet.getEnabled())) {
+    public static void refresh(List<RuleSetDTO> dtos) {
+        refresh(dtos, digest -> {
+            throw new UncheckedIOException(new IOException("未配置规则集产物来源: " + digest));
+        });
+    }
+
+    /**
+     * @param artifacts 按摘要取得规则集产物字节，只对新出现的摘要调用；任一产物无法取得时抛出异常，注册表保持不变
+     */
+    public static synchronized void refresh(List<RuleSetDTO> dtos, Function<String, byte[]> artifacts) {
+        Map<Fingerprint, CompiledRuleSet> previous = new HashMap<>();
+        for (CompiledRuleSet ruleSet : ruleSets.values()) {
+            previous.put(ruleSet.fingerprint(), ruleSet);
+        }
+        Map<String, RuleSetDTO> enabled = new LinkedHashMap<>();
+        if (dtos != null) {
+            for (RuleSetDTO dto : dtos) {
+                if (dto == null || dto.getRuleKey() == null || Boolean.FALSE.equals(dto.getEnabled())) {
                     continue;
                 }
-                compiled.put(ruleSet.getRuleKey(), compile(ruleSet));
+                enabled.put(dto.getRuleKey(), dto);
+            }
+        }
+        Map<String, CompiledRuleSet> next = new HashMap<>();
+        List<RuleSetDTO> changed = new ArrayList<>();
+        for (RuleSetDTO dto : enabled.values()) {
+            CompiledRuleSet reusable = previous.get(Fingerprint.of(dto));
+            if (reusable != null) {
+                next.put(dto.getRuleKey(), reusable);
+            } else {
+                changed.add(dto);
+            }
+        }
+        // 下载只在调用线程上进行，公共 ForkJoin 池只做计算，不被阻塞的 HTTP 请求占住
+        Map<RuleSetDTO, byte[]> downloaded = new IdentityHashMap<>();
+        for (RuleSetDTO dto : changed) {
+            if (dto.getArtifactDigest() != null) {
+                downloaded.put(dto, artifacts.apply(dto.getArtifactDigest()));
             }
         }
-        RULE_SETS.clear();
-        RULE_SETS.putAll(compiled);
-        log.info("已刷新规则集注册表，数量: {}", RULE_SETS.size());
+        changed.parallelStream()
+                .map(dto -> compile(dto, downloaded.get(dto)))
+                .toList()
+                .forEach(ruleSet -> next.put(ruleSet.ruleKey(), ruleSet));
+        ruleSets = Map.copyOf(next);
+        log.info("已刷新规则集注册表，数量: {}，重新编译: {}", next.size(), changed.size());
+    }
+
+    static CompiledRuleSet get(String ruleSetKey) {
+        return ruleSetKey == null ? null : ruleSets.get(ruleSetKey);
     }
 
     public static boolean match(String ruleSetKey, String host) {
-        if (ruleSetKey == null || ruleSetKey.isBlank() || host == null || host.isBlank()) {
+        if (host == null || host.isBlank()) {
+            return false;
+        }
+        return matchNormalized(ruleSetKey, DomainMatcher.normalizeHost(host));
+    }
+
+    /**
+     * @param normalizedHost 经 {@link DomainMatcher#normalizeHost(String)} 处理过的主机名，匹配过程不分配内存
+     */
+    public static boolean matchNormalized(String ruleSetKey, String normalizedHost) {
+        if (ruleSetKey == null || ruleSetKey.isBlank() || normalizedHost == null || normalizedHost.isEmpty()) {
             return false;
         }
-        CompiledRuleSet ruleSet = RULE_SETS.get(ruleSetKey);
+        CompiledRuleSet ruleSet = ruleSets.get(ruleSetKey);
         if (ruleSet == null) {
             return false;
         }
-        return ruleSet.matches(host);
+        return ruleSet.matches(normalizedHost);
     }
 
-    private static CompiledRuleSet compile(RuleSetDTO dto) {
-        DomainTrie trie = new DomainTrie();
-        List<String> keywords = new ArrayList<>();
-        List<RuleSetItemDTO> items = dto.getItems();
-        if (items != null) {
-            for (RuleSetItemDTO item : items) {
-                if (item == null || item.getType() == null || item.getValue() == null || item.getValue().isBlank()) {
-                    continue;
-                }
-                String normalized = normalizeHost(item.getValue());
-                if (normalized.isEmpty()) {
-                    continue;
-                }
-                if (item.getType() == RuleSetItemType.DOMAIN) {
-                    trie.addFull(normalized);
-                } else if (item.getType() == RuleSetItemType.DOMAIN_SUFFIX) {
-                    trie.addDomain(normalized);
-                } else if (item.getType() == RuleSetItemType.DOMAIN_KEYWORD) {
-                    keywords.add(normalized);
-                }
-            }
-        }
-        return new CompiledRuleSet(dto.getMatchTarget(), trie, keywords);
+    /**
+     * 规则集是否包含 IP_CIDR/IP_CIDR6 规则项，不包含时目标 IP 与该规则集无关
+     */
+    public static boolean hasIpRules(String ruleSetKey) {
+        CompiledRuleSet ruleSet = ruleSetKey == null ? null : ruleSets.get(ruleSetKey);
+        return ruleSet != null && !ruleSet.cidrs().isEmpty();
     }
 
-    private static String normalizeHost(String input) {
-        String normalized = input.trim();
-        if (normalized.endsWith(".")) {
-            normalized = normalized.substring(0, normalized.length() - 1);
-        }
-        try {
-            normalized = IDN.toASCII(normalized.toLowerCase(Locale.ROOT));
-        } catch (IllegalArgumentException ignored) {
-            normalized = normalized.toLowerCase(Locale.ROOT);
+    /**
+     * @param address 目标 IP，4 字节 IPv4 或 16 字节 IPv6，匹配过程不分配内存
+     */
+    public static boolean matchAddress(String ruleSetKey, byte[] address) {
+        CompiledRuleSet ruleSet = ruleSetKey == null ? null : ruleSets.get(ruleSetKey);
+        return ruleSet != null && ruleSet.cidrs().contains(address);
+    }
+
+    /**
+     * @param bytes 已取得的产物字节，规则集没有产物摘要时为 null
+     */
+    private static CompiledRuleSet compile(RuleSetDTO dto, byte[] bytes) {
+        RuleSetArtifact artifact;
+        String digest = dto.getArtifactDigest();
+        if (digest != null) {
+            try {
+                artifact = RuleSetArtifact.fromBytes(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("规则集 " + dto.getRuleKey() + " 的产物 " + digest + " 无法加载", e);
+            }
+        } else {
+            // 旧版控制面仍随配置下发规则项
+            artifact = RuleSetArtifact.compile(dto.getRuleKey(), dto.getItems());
         }
-        return normalized;
+        return new CompiledRuleSet(dto.getRuleKey(), Fingerprint.of(dto), artifact.trie(), artifact.keywords(), artifact.cidrs());
     }
 
-    private record CompiledRuleSet(RuleSetMatchTarget matchTarget, DomainTrie trie, List<String> keywords) {
+    /**
+     * 域名类规则项匹配主机名，IP 类规则项匹配目标 IP，与规则集的 matchTarget 无关（一个规则集可以同时包含两类）
+     * @param keywords DOMAIN_KEYWORD 条目编译成的自动机，主机名只扫描一遍
+     * @param cidrs    IP_CIDR/IP_CIDR6 条目合并成的区间集合
+     */
+    record CompiledRuleSet(String ruleKey, Fingerprint fingerprint, DomainTrie trie, KeywordAutomaton keywords,
+                           IpCidrSet cidrs) {
 
-        private boolean matches(String host) {
-            if (matchTarget != RuleSetMatchTarget.DOMAIN) {
-                return false;
-            }
-            String normalizedHost = normalizeHost(host);
-            if (trie.matchType(normalizedHost) != DomainTrie.MatchType.NONE) {
+        private boolean matches(String normalizedHost) {
+            if (trie.matchTypeNormalized(normalizedHost) != DomainTrie.MatchType.NONE) {
                 return true;
             }
-            for (String keyword : keywords) {
-                if (normalizedHost.contains(keyword)) {
-                    return true;
-                }
-            }
-            return false;
+            return keywords.containsAny(normalizedHost);
+        }
+    }
+
+    /**
+     * 判断规则集是否需要重新编译的依据；控制面修改规则项时会递增版本号，内容摘要用于兜底版本号未变化的情况
+     * @param contentDigest 下发了产物摘要时直接使用，否则是规则项的 SHA-256（{@link RuleSetArtifact#itemsDigest(List)}）
+     */
+    record Fingerprint(Long id, String ruleKey, Long versionNo, String contentDigest) {
+
+        static Fingerprint of(RuleSetDTO dto) {
+            String contentDigest = dto.getArtifactDigest() != null
+                    ? dto.getArtifactDigest()
+                    : RuleSetArtifact.itemsDigest(dto.getItems());
+            return new Fingerprint(dto.getId(), dto.getRuleKey(), dto.getVersionNo(), contentDigest);
         }
     }
 }
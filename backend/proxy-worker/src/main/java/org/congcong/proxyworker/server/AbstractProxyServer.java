@@ -1,43 +1,132 @@
 package org.congcong.proxyworker.server;
 
+import io.netty.bootstrap.AbstractBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.epoll.Epoll;
+import io.netty.util.concurrent.EventExecutor;
 import lombok.extern.slf4j.Slf4j;
 import org.congcong.proxyworker.config.InboundConfig;
+import org.congcong.proxyworker.config.ProxyWorkerConfig;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * 入站服务模板
+ * 线程组从 {@link SharedEventLoopGroups} 借用，关闭服务只关闭监听的 channel，不会关闭共享线程。
+ */
 @Slf4j
 public abstract class AbstractProxyServer {
 
-    protected volatile EventLoopGroup bossGroup;
-    protected volatile EventLoopGroup workerGroup;
     protected volatile Channel serverChannel;
     protected volatile ChannelFuture bindFuture;
+    /**
+     * 监听的全部 channel，SO_REUSEPORT 模式下同一端口会绑定多个
+     */
+    protected final List<Channel> serverChannels = new CopyOnWriteArrayList<>();
     private final AtomicBoolean running = new AtomicBoolean(false);
+    /**
+     * 当前生效的入站配置，新连接初始化时读取；策略级配置热更新时整体替换，已建立的连接继续使用旧快照
+     */
+    private volatile InboundConfig inboundConfig;
+
+    protected AbstractProxyServer() {
+    }
+
+    protected AbstractProxyServer(InboundConfig inboundConfig) {
+        this.inboundConfig = inboundConfig;
+    }
 
     // === 原来就有的抽象方法，保持不变 ===
     public abstract int getPort();
     public abstract String getIp();
     public abstract String getServerName();
 
-    // 如果 UDP 也要用，可以放这
-    public abstract InboundConfig getInboundConfig();
+    public InboundConfig getInboundConfig() {
+        return inboundConfig;
+    }
+
+    /**
+     * 热更新策略级配置（用户、路由、加密方式等），调用方需保证监听参数未变化，不会重新绑定端口
+     */
+    public void updateInboundConfig(InboundConfig inboundConfig) {
+        this.inboundConfig = inboundConfig;
+    }
 
     // === 模板方法：留给子类真正启动 / 关闭 ===
     protected abstract void doStart() throws InterruptedException;
     protected abstract void doClose() throws InterruptedException;
 
     protected boolean useEpoll() {
-        if (!Boolean.parseBoolean(System.getProperty("proxyworker.netty.epoll.enabled", "true"))) {
-            log.info("native epoll disabled by system property proxyworker.netty.epoll.enabled=false");
-            return false;
+        return SharedEventLoopGroups.epollEnabled();
+    }
+
+    protected SharedEventLoopGroups eventLoopGroups() {
+        return SharedEventLoopGroups.getInstance();
+    }
+
+    /**
+     * 需要绑定的监听 socket 数量
+     * 仅在 epoll 且开启 SO_REUSEPORT 时，每个 IO event loop 绑定一个 socket，由内核在多个 socket 间分发连接/报文；
+     * 端口为 0（随机端口）时无法共享端口，只绑定一个。
+     */
+    protected int listenerCount(SharedEventLoopGroups groups) {
+        if (!groups.isEpoll() || !ProxyWorkerConfig.getInstance().isNettyReusePortEnabled() || getPort() <= 0) {
+            return 1;
         }
-        boolean available = Epoll.isAvailable();
-        log.info("enable native epoll {}", available);
-        return available;
+        return groups.getIoThreads();
+    }
+
+    /**
+     * 逐个绑定监听 socket，任一失败时关闭已经绑定的部分
+     * 多个监听 socket 时显式遍历共享 IO 线程组，每个 event loop 固定注册一个，不依赖线程组的轮询计数器
+     * （其他入站或出站连接也在消耗同一个计数器，轮询结果无法保证一一对应）。
+     *
+     * @param count        需要绑定的监听 socket 数量，见 {@link #listenerCount(SharedEventLoopGroups)}
+     * @param defaultGroup 只绑定一个监听 socket 时使用的线程组
+     * @param bootstrapFor 按给定线程组（或单个 event loop）生成独立的 bootstrap
+     */
+    protected void bindAll(int count, EventLoopGroup defaultGroup,
+                           Function<EventLoopGroup, AbstractBootstrap<?, ?>> bootstrapFor) throws InterruptedException {
+        List<EventLoopGroup> groups = new ArrayList<>();
+        if (count > 1) {
+            for (EventExecutor executor : eventLoopGroups().getIoGroup()) {
+                groups.add((EventLoop) executor);
+            }
+        } else {
+            groups.add(defaultGroup);
+        }
+        try {
+            for (int i = 0; i < groups.size(); i++) {
+                ChannelFuture future = bootstrapFor.apply(groups.get(i)).bind(getIp(), getPort()).sync();
+                serverChannels.add(future.channel());
+                if (i == 0) {
+                    bindFuture = future;
+                    serverChannel = future.channel();
+                }
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            closeServerChannels();
+            throw e;
+        }
+        if (groups.size() > 1) {
+            log.info("{} 已通过 SO_REUSEPORT 在 {}:{} 绑定 {} 个监听 socket", getServerName(), getIp(), getPort(), groups.size());
+        }
+    }
+
+    protected void closeServerChannels() throws InterruptedException {
+        for (Channel channel : serverChannels) {
+            if (channel.isOpen()) {
+                channel.close().sync();
+            }
+        }
+        serverChannels.clear();
+        serverChannel = null;
     }
 
     public void start() throws InterruptedException {
@@ -56,12 +145,6 @@ public abstract class AbstractProxyServer {
         try {
             doClose();
         } finally {
-            if (workerGroup != null) {
-                workerGroup.shutdownGracefully().sync();
-            }
-            if (bossGroup != null) {
-                bossGroup.shutdownGracefully().sync();
-            }
             log.info("{} 代理服务器停止{}:{}", getServerName(), getIp(), getPort());
         }
     }
@@ -0,0 +1,97 @@
+package org.congcong.proxyworker.server;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.resolver.ResolvedAddressTypes;
+import io.netty.resolver.dns.DefaultDnsCache;
+import io.netty.resolver.dns.DefaultDnsCnameCache;
+import io.netty.resolver.dns.DnsCache;
+import io.netty.resolver.dns.DnsCnameCache;
+import io.netty.resolver.dns.DnsNameResolver;
+import io.netty.resolver.dns.DnsNameResolverBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每个 event loop 上的 Netty {@link DnsNameResolver}，直连出站的地址解析和 GEO 路由的域名解析共用
+ * <ul>
+ *     <li>按地址族各一个解析器，AAAA 与 A 分别查询、分别按记录 TTL 缓存，直连出站先拿到哪个地址族就先连哪个；
+ *     两个地址族的否定结果互不影响</li>
+ *     <li>同一 event loop 上的解析器只建一次，所有 event loop 共用缓存</li>
+ *     <li>{@link SharedEventLoopGroups#shutdown()} 关闭线程组前调用 {@link #closeAll()} 关闭全部解析器</li>
+ * </ul>
+ */
+@Slf4j
+public final class EventLoopDnsResolvers {
+
+    private static final long QUERY_TIMEOUT_MILLIS = 5_000;
+
+    private static final DnsCache IPV4_CACHE = new DefaultDnsCache();
+    private static final DnsCache IPV6_CACHE = new DefaultDnsCache();
+    private static final DnsCnameCache CNAME_CACHE = new DefaultDnsCnameCache();
+    private static final Map<EventLoop, Resolvers> RESOLVERS = new ConcurrentHashMap<>();
+
+    private EventLoopDnsResolvers() {
+    }
+
+    /**
+     * 只解析 A 记录的解析器；按记录类型发出的原始查询不受地址族限制，也可以用它发出
+     */
+    public static DnsNameResolver ipv4(EventLoop eventLoop) {
+        return RESOLVERS.computeIfAbsent(eventLoop, EventLoopDnsResolvers::newResolvers).ipv4();
+    }
+
+    /**
+     * 只解析 AAAA 记录的解析器
+     */
+    public static DnsNameResolver ipv6(EventLoop eventLoop) {
+        return RESOLVERS.computeIfAbsent(eventLoop, EventLoopDnsResolvers::newResolvers).ipv6();
+    }
+
+    /**
+     * 关闭全部解析器及其 UDP channel，并清空缓存
+     */
+    public static void closeAll() {
+        int closed = 0;
+        for (EventLoop eventLoop : RESOLVERS.keySet()) {
+            Resolvers resolvers = RESOLVERS.remove(eventLoop);
+            if (resolvers != null) {
+                resolvers.ipv4().close();
+                resolvers.ipv6().close();
+                closed++;
+            }
+        }
+        IPV4_CACHE.clear();
+        IPV6_CACHE.clear();
+        CNAME_CACHE.clear();
+        if (closed > 0) {
+            log.info("已关闭 {} 个 event loop 上的 DNS 解析器", closed);
+        }
+    }
+
+    private static Resolvers newResolvers(EventLoop eventLoop) {
+        return new Resolvers(newResolver(eventLoop, ResolvedAddressTypes.IPV4_ONLY, IPV4_CACHE),
+                newResolver(eventLoop, ResolvedAddressTypes.IPV6_ONLY, IPV6_CACHE));
+    }
+
+    private static DnsNameResolver newResolver(EventLoop eventLoop, ResolvedAddressTypes types, DnsCache cache) {
+        Class<? extends DatagramChannel> channelType = eventLoop.parent() instanceof EpollEventLoopGroup
+                ? EpollDatagramChannel.class
+                : NioDatagramChannel.class;
+        return new DnsNameResolverBuilder(eventLoop)
+                .datagramChannelType(channelType)
+                .resolvedAddressTypes(types)
+                .resolveCache(cache)
+                .cnameCache(CNAME_CACHE)
+                .queryTimeoutMillis(QUERY_TIMEOUT_MILLIS)
+                .build();
+    }
+
+    private record Resolvers(DnsNameResolver ipv4, DnsNameResolver ipv6) {
+    }
+}
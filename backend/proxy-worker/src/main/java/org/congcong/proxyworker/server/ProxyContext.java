@@ -51,14 +51,16 @@ public class ProxyContext {
             }
         }
 
-        // 2) 更新变更的服务（关闭旧的，启动新的）与新增的服务
+        // 2) 更新变更的服务与新增的服务
+        // 监听参数变化才需要关闭旧服务重新绑定；用户、路由等策略级配置直接替换快照，已建立的连接不受影响
         for (Map.Entry<Long, InboundConfig> e : newConfigs.entrySet()) {
             Long id = e.getKey();
             InboundConfig newCfg = e.getValue();
             InboundConfig oldCfg = configs.get(id);
             AbstractProxyServer existing = servers.get(id);
 
-            boolean needsRestart = (oldCfg == null) || !Objects.equals(oldCfg, newCfg);
+            boolean needsRestart = oldCfg == null || existing == null || !existing.isRunning()
+                    || !sameListener(oldCfg, newCfg);
             if (needsRestart) {
                 // 关闭旧服务
                 if (existing != null && existing.isRunning()) {
@@ -80,11 +82,32 @@ public class ProxyContext {
                 servers.put(id, newServer);
                 configs.put(id, newCfg);
             } else {
-                log.info("配置未变更");
+                // 即使内容相同也替换为新对象，新连接使用本次下发时预编译的路由表
+                existing.updateInboundConfig(newCfg);
+                configs.put(id, newCfg);
+                if (Objects.equals(oldCfg, newCfg)) {
+                    log.info("配置未变更");
+                } else {
+                    log.info("{} 策略配置已热更新，监听 {}:{} 保持不变", newCfg.getName(), newCfg.getListenIp(), newCfg.getPort());
+                }
             }
         }
     }
 
+    /**
+     * 监听级配置：协议、监听地址、端口、是否启用 TLS，任一变化都需要重新绑定端口
+     */
+    static boolean sameListener(InboundConfig oldCfg, InboundConfig newCfg) {
+        return oldCfg.getProtocol() == newCfg.getProtocol()
+                && Objects.equals(oldCfg.getListenIp(), newCfg.getListenIp())
+                && Objects.equals(oldCfg.getPort(), newCfg.getPort())
+                && Objects.equals(oldCfg.getTlsEnabled(), newCfg.getTlsEnabled());
+    }
+
+    synchronized AbstractProxyServer getServer(Long id) {
+        return servers.get(id);
+    }
+
     public synchronized void closeAll() {
         for (AbstractProxyServer proxyServer : servers.values()) {
             try {
@@ -95,6 +118,7 @@ public class ProxyContext {
         }
         servers.clear();
         configs.clear();
+        SharedEventLoopGroups.shutdown();
     }
 
     public synchronized int getRunningServerCount() {
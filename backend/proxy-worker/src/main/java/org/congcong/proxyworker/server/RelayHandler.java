@@ -136,7 +136,7 @@ public class RelayHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
-    private static int readableBytes(Object msg) {
+    static int readableBytes(Object msg) {
         if (msg instanceof ByteBuf buf) {
             return buf.readableBytes();
         }
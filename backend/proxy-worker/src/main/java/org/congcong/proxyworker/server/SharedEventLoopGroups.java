@@ -0,0 +1,91 @@
+package org.congcong.proxyworker.server;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.congcong.proxyworker.config.ProxyWorkerConfig;
+
+/**
+ * worker 进程级共享的 event loop 线程组
+ * 所有入站服务（TCP/UDP）共用同一组 IO 线程，出站连接也复用入站 channel 所在的 event loop，
+ * 线程总数只由配置决定，不再随入站数量线性增长。
+ * 可选的独立 acceptor 线程组只负责 accept，未配置时 accept 也在 IO 线程组上执行。
+ */
+@Slf4j
+public final class SharedEventLoopGroups {
+
+    private static SharedEventLoopGroups instance;
+
+    private final boolean epoll;
+    private final int ioThreads;
+    private final EventLoopGroup acceptorGroup;
+    private final EventLoopGroup ioGroup;
+
+    private SharedEventLoopGroups(boolean epoll, int ioThreads, int acceptorThreads) {
+        this.epoll = epoll;
+        this.ioThreads = ioThreads;
+        this.ioGroup = newGroup(epoll, ioThreads, "proxy-io");
+        this.acceptorGroup = acceptorThreads > 0 ? newGroup(epoll, acceptorThreads, "proxy-acceptor") : ioGroup;
+        log.info("共享 event loop 已创建，epoll: {}，IO 线程数: {}，独立 acceptor 线程数: {}", epoll, ioThreads, acceptorThreads);
+    }
+
+    public static synchronized SharedEventLoopGroups getInstance() {
+        if (instance == null || instance.ioGroup.isShuttingDown()) {
+            ProxyWorkerConfig config = ProxyWorkerConfig.getInstance();
+            instance = new SharedEventLoopGroups(epollEnabled(), config.getNettyIoThreads(), config.getNettyAcceptorThreads());
+        }
+        return instance;
+    }
+
+    /**
+     * 优雅关闭共享线程组，所有入站服务关闭后调用
+     */
+    public static synchronized void shutdown() {
+        SharedEventLoopGroups current = instance;
+        instance = null;
+        if (current == null) {
+            return;
+        }
+        // 解析器的 UDP channel 注册在 IO 线程上，先关闭
+        EventLoopDnsResolvers.closeAll();
+        if (current.acceptorGroup != current.ioGroup) {
+            current.acceptorGroup.shutdownGracefully().syncUninterruptibly();
+        }
+        current.ioGroup.shutdownGracefully().syncUninterruptibly();
+        log.info("共享 event loop 已关闭");
+    }
+
+    static boolean epollEnabled() {
+        if (!Boolean.parseBoolean(System.getProperty("proxyworker.netty.epoll.enabled", "true"))) {
+            log.info("native epoll disabled by system property proxyworker.netty.epoll.enabled=false");
+            return false;
+        }
+        boolean available = Epoll.isAvailable();
+        log.info("enable native epoll {}", available);
+        return available;
+    }
+
+    public boolean isEpoll() {
+        return epoll;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public EventLoopGroup getAcceptorGroup() {
+        return acceptorGroup;
+    }
+
+    public EventLoopGroup getIoGroup() {
+        return ioGroup;
+    }
+
+    private static EventLoopGroup newGroup(boolean epoll, int threads, String poolName) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(poolName);
+        return epoll ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+    }
+}
@@ -0,0 +1,361 @@
+package org.congcong.proxyworker.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.epoll.AbstractEpollStreamChannel;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.UncheckedBooleanSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.congcong.common.dto.ProxyContext;
+import org.congcong.common.enums.ProtocolType;
+import org.congcong.common.enums.RoutePolicy;
+import org.congcong.proxyworker.config.ProxyWorkerConfig;
+import org.congcong.proxyworker.config.RouteConfig;
+import org.congcong.proxyworker.protocol.RequestAppendHandler;
+import org.congcong.proxyworker.ratelimit.RateLimitRegistry;
+import org.congcong.proxyworker.router.PendingInboundBuffer;
+import org.congcong.proxyworker.server.netty.ChannelAttributes;
+import org.congcong.proxyworker.server.tunnel.ProxyTunnelRequest;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于 Linux splice 的零拷贝中继
+ * 直连的明文隧道在首包转发完成后，把两个方向切换为 socket -> pipe -> socket 的内核态搬运，
+ * 数据不再进入用户态 ByteBuf，也不再经过 pipeline 中的 RelayHandler。
+ * 以下任一条件不满足时保持原有的 RelayHandler 路径：
+ * <ul>
+ *     <li>开启了 netty.splice.enabled，且两端都是同一 event loop 上的 level-triggered epoll 流式 channel</li>
+ *     <li>入站为透明代理 / SOCKS5 / HTTP CONNECT 且未启用 TLS，出站为直连（pipeline 中只剩中继处理器）</li>
+ *     <li>两端都没有未写出的数据，入站 pipeline 中没有解码器累积或暂存的已读数据</li>
+ *     <li>该用户没有生效的限流规则（splice 绕过了 TrafficShapingHandler）</li>
+ *     <li>两端 channel 创建时已通过 {@link #installCounter(Channel)} 装上字节计数</li>
+ * </ul>
+ * 字节统计：splice 读取不经过 pipeline，由装在 channel 上的 {@link RecvByteBufAllocator} 在每次 splice 读入时按实际字节数累加，
+ * 与 RelayHandler 的统计互不重叠（按读入计，写出端关闭时管道中未送达的数据也会计入）。
+ * 限流：切换后数据不再经过 TrafficShapingHandler，限流规则刷新时由 {@link #onRateLimitsRefreshed()} 关闭新受限用户的 splice 连接，
+ * 客户端重连后走带整形的 RelayHandler 路径。
+ */
+@Slf4j
+public final class SpliceRelay {
+
+    /**
+     * 每次 splice 的字节数，完成后继续下一片
+     */
+    static final int SPLICE_CHUNK_BYTES = 256 * 1024;
+
+    private static final AttributeKey<SpliceCounter> SPLICE_COUNTER = AttributeKey.valueOf("SPLICE_COUNTER");
+
+    /**
+     * 已切换为 splice 的连接，连接关闭时移除
+     */
+    private static final Set<SplicedTunnel> SPLICED = ConcurrentHashMap.newKeySet();
+
+    private static final Set<ProtocolType> PLAINTEXT_INBOUNDS = Set.of(
+            ProtocolType.TP_PROXY,
+            ProtocolType.SOCKS5,
+            ProtocolType.HTTPS_CONNECT);
+
+    private SpliceRelay() {
+    }
+
+    /**
+     * 新建的入站/直连出站 channel 是否需要配置为 level-triggered，splice 要求注册前设置
+     */
+    public static boolean isEnabled() {
+        return ProxyWorkerConfig.getInstance().isNettySpliceEnabled();
+    }
+
+    /**
+     * 给入站 channel 的 initializer 套一层，先装字节计数再装配原有的 handler
+     */
+    public static ChannelInitializer<Channel> withCounter(ChannelHandler childHandler) {
+        return new ChannelInitializer<>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                installCounter(ch);
+                ch.pipeline().addLast(childHandler);
+            }
+        };
+    }
+
+    /**
+     * 替换 channel 的 RecvByteBufAllocator 以统计 splice 读入的字节，必须在 channel 第一次读取前调用（如 initChannel 中）
+     */
+    public static void installCounter(Channel channel) {
+        if (!(channel instanceof AbstractEpollStreamChannel)) {
+            return;
+        }
+        SpliceCounter counter = new SpliceCounter();
+        channel.attr(SPLICE_COUNTER).set(counter);
+        channel.config().setRecvByteBufAllocator(new CountingRecvByteBufAllocator(channel.config().getRecvByteBufAllocator(), counter));
+    }
+
+    /**
+     * 限流规则刷新后调用，关闭已切换为 splice 且现在受限流约束的连接
+     */
+    public static void onRateLimitsRefreshed() {
+        for (SplicedTunnel tunnel : SPLICED) {
+            if (RateLimitRegistry.isLimited(tunnel.userId())) {
+                log.info("用户 {} 已受限流约束，关闭 splice 中继 {} <-> {}", tunnel.userId(), tunnel.inbound(), tunnel.outbound());
+                tunnel.inbound().close();
+                tunnel.outbound().close();
+            }
+        }
+    }
+
+    /**
+     * 首包转发完成后调用，满足条件时两个方向都切换到 splice
+     * @return 是否已切换
+     */
+    public static boolean tryStart(Channel inboundChannel, Channel outboundChannel, ProxyTunnelRequest request) {
+        if (!isEnabled() || !isEligible(inboundChannel, outboundChannel, request)) {
+            return false;
+        }
+        Long userId = request.getUser() != null ? request.getUser().getId() : null;
+        start((AbstractEpollStreamChannel) inboundChannel, (AbstractEpollStreamChannel) outboundChannel, userId);
+        log.debug("已切换为 splice 中继 {} <-> {}", inboundChannel, outboundChannel);
+        return true;
+    }
+
+    static void start(AbstractEpollStreamChannel inbound, AbstractEpollStreamChannel outbound, Long userId) {
+        ProxyContext proxyContext = ChannelAttributes.getProxyContext(inbound);
+        inbound.attr(SPLICE_COUNTER).get().start(proxyContext, true);
+        outbound.attr(SPLICE_COUNTER).get().start(proxyContext, false);
+        SplicedTunnel tunnel = new SplicedTunnel(inbound, outbound, userId);
+        SPLICED.add(tunnel);
+        inbound.closeFuture().addListener(future -> SPLICED.remove(tunnel));
+        spliceNext(inbound, outbound);
+        spliceNext(outbound, inbound);
+    }
+
+    static boolean isEligible(Channel inboundChannel, Channel outboundChannel, ProxyTunnelRequest request) {
+        if (!(inboundChannel instanceof AbstractEpollStreamChannel inbound)
+                || !(outboundChannel instanceof AbstractEpollStreamChannel outbound)) {
+            return false;
+        }
+        if (!inbound.isActive() || !outbound.isActive() || inbound.eventLoop() != outbound.eventLoop()) {
+            return false;
+        }
+        if (inbound.config().getEpollMode() != EpollMode.LEVEL_TRIGGERED
+                || outbound.config().getEpollMode() != EpollMode.LEVEL_TRIGGERED) {
+            return false;
+        }
+        if (!inbound.hasAttr(SPLICE_COUNTER) || !outbound.hasAttr(SPLICE_COUNTER)) {
+            // 没有计数的 channel 切换后无法统计流量
+            return false;
+        }
+        if (request == null || !PLAINTEXT_INBOUNDS.contains(request.getProtocolType())) {
+            return false;
+        }
+        RouteConfig route = request.getRouteConfig();
+        if (!isDirectRoute(route)) {
+            return false;
+        }
+        Long userId = request.getUser() != null ? request.getUser().getId() : null;
+        if (RateLimitRegistry.isLimited(userId)) {
+            return false;
+        }
+        if (hasPendingWrites(inbound) || hasPendingWrites(outbound)) {
+            // 仍有经 pipeline 写出的数据未发送完，此时切换会打乱字节顺序
+            return false;
+        }
+        if (hasBufferedReads(inbound.pipeline())) {
+            // 已读入用户态但尚未转发的数据会被 splice 越过，同样会打乱字节顺序
+            return false;
+        }
+        return inbound.pipeline().get(SslHandler.class) == null && onlyRelayHandlers(outbound.pipeline());
+    }
+
+    private static boolean hasPendingWrites(Channel channel) {
+        ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+        return buffer != null && buffer.totalPendingWriteBytes() > 0;
+    }
+
+    /**
+     * 入站 pipeline 中是否可能还有已读入但未转发的数据：
+     * 握手用的解码器正常情况下都已移除（移除时累积的字节会向后传递），仍在 pipeline 中的解码器无法从外部确认累积缓冲为空，按有数据处理；
+     * 路由挂起的暂存和连接建立前的首包缓存只在放行前存在。
+     */
+    private static boolean hasBufferedReads(ChannelPipeline pipeline) {
+        for (Map.Entry<String, ChannelHandler> entry : pipeline) {
+            ChannelHandler handler = entry.getValue();
+            if (handler instanceof ByteToMessageDecoder
+                    || handler instanceof PendingInboundBuffer
+                    || handler instanceof RequestAppendHandler) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 与 OutboundConnectorFactory 一致：DIRECT 以及未指定出站代理的目标重写都走直连
+     */
+    private static boolean isDirectRoute(RouteConfig route) {
+        if (route == null) {
+            return false;
+        }
+        if (route.getPolicy() == RoutePolicy.DIRECT) {
+            return true;
+        }
+        ProtocolType outboundType = route.getOutboundProxyType();
+        return route.getPolicy() == RoutePolicy.DESTINATION_OVERRIDE
+                && (outboundType == null || outboundType == ProtocolType.NONE);
+    }
+
+    private static boolean onlyRelayHandlers(ChannelPipeline pipeline) {
+        for (Map.Entry<String, ChannelHandler> entry : pipeline) {
+            ChannelHandler handler = entry.getValue();
+            if (!(handler instanceof RelayHandler) && !(handler instanceof TrafficShapingHandler)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void spliceNext(AbstractEpollStreamChannel source, AbstractEpollStreamChannel target) {
+        if (!source.isActive() || !target.isActive()) {
+            return;
+        }
+        source.spliceTo(target, SPLICE_CHUNK_BYTES).addListener(future -> {
+            // 任一端关闭时 splice 失败，关闭流程由 RelayHandler.channelInactive 负责
+            if (future.isSuccess()) {
+                spliceNext(source, target);
+            }
+        });
+    }
+
+    private record SplicedTunnel(Channel inbound, Channel outbound, Long userId) {
+    }
+
+    /**
+     * 单个 channel 的 splice 字节计数，只在 event loop 线程上访问
+     */
+    static final class SpliceCounter {
+
+        private ProxyContext proxyContext;
+        private boolean uplink;
+
+        void start(ProxyContext proxyContext, boolean uplink) {
+            this.proxyContext = proxyContext;
+            this.uplink = uplink;
+        }
+
+        void add(int bytes) {
+            if (proxyContext == null || bytes <= 0) {
+                return;
+            }
+            if (uplink) {
+                proxyContext.setBytesIn(proxyContext.getBytesIn() + bytes);
+            } else {
+                proxyContext.setBytesOut(proxyContext.getBytesOut() + bytes);
+            }
+        }
+    }
+
+    /**
+     * 包装原有的分配器：epoll 的 splice 读取路径先调用 {@link RecvByteBufAllocator.Handle#guess()} 再逐次上报 lastBytesRead，
+     * 普通读取路径先调用 allocate，据此只统计 splice 读入的字节，普通读取仍由 RelayHandler 统计
+     */
+    private static final class CountingRecvByteBufAllocator implements RecvByteBufAllocator {
+
+        private final RecvByteBufAllocator delegate;
+        private final SpliceCounter counter;
+
+        CountingRecvByteBufAllocator(RecvByteBufAllocator delegate, SpliceCounter counter) {
+            this.delegate = delegate;
+            this.counter = counter;
+        }
+
+        @Override
+        public Handle newHandle() {
+            return new CountingHandle((ExtendedHandle) delegate.newHandle(), counter);
+        }
+    }
+
+    private static final class CountingHandle implements RecvByteBufAllocator.ExtendedHandle {
+
+        private final RecvByteBufAllocator.ExtendedHandle delegate;
+        private final SpliceCounter counter;
+        private boolean splicing;
+
+        CountingHandle(RecvByteBufAllocator.ExtendedHandle delegate, SpliceCounter counter) {
+            this.delegate = delegate;
+            this.counter = counter;
+        }
+
+        @Override
+        public ByteBuf allocate(ByteBufAllocator alloc) {
+            splicing = false;
+            return delegate.allocate(alloc);
+        }
+
+        @Override
+        public int guess() {
+            splicing = true;
+            return delegate.guess();
+        }
+
+        @Override
+        public void lastBytesRead(int bytes) {
+            if (splicing) {
+                counter.add(bytes);
+            }
+            delegate.lastBytesRead(bytes);
+        }
+
+        @Override
+        public int lastBytesRead() {
+            return delegate.lastBytesRead();
+        }
+
+        @Override
+        public void reset(ChannelConfig config) {
+            delegate.reset(config);
+        }
+
+        @Override
+        public void incMessagesRead(int numMessages) {
+            delegate.incMessagesRead(numMessages);
+        }
+
+        @Override
+        public void attemptedBytesRead(int bytes) {
+            delegate.attemptedBytesRead(bytes);
+        }
+
+        @Override
+        public int attemptedBytesRead() {
+            return delegate.attemptedBytesRead();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public boolean continueReading() {
+            return delegate.continueReading();
+        }
+
+        @Override
+        public boolean continueReading(UncheckedBooleanSupplier maybeMoreDataSupplier) {
+            return delegate.continueReading(maybeMoreDataSupplier);
+        }
+
+        @Override
+        public void readComplete() {
+            delegate.readComplete();
+        }
+    }
+}
@@ -3,9 +3,8 @@ package org.congcong.proxyworker.server;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
 import io.netty.channel.epoll.EpollChannelOption;
-import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
 import io.netty.channel.epoll.EpollServerSocketChannel;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
@@ -18,42 +17,48 @@ public abstract class TcpProxyServer extends AbstractProxyServer {
     // 保持原来的抽象方法签名不变
     public abstract ChannelInitializer<Channel> getChildHandler();
 
-    @Override
-    public abstract InboundConfig getInboundConfig();
+    protected TcpProxyServer() {
+    }
+
+    protected TcpProxyServer(InboundConfig inboundConfig) {
+        super(inboundConfig);
+    }
 
     @Override
     protected void doStart() throws InterruptedException {
-        if (useEpoll()) {
-            bossGroup = new EpollEventLoopGroup(1);
-            workerGroup = new EpollEventLoopGroup();
-        } else {
-            bossGroup = new NioEventLoopGroup(1);
-            workerGroup = new NioEventLoopGroup();
-        }
+        SharedEventLoopGroups groups = eventLoopGroups();
+        int listeners = listenerCount(groups);
 
+        // 线程组在 bindAll 时按监听 socket 分别设置
         ServerBootstrap bootstrap = new ServerBootstrap();
-        bootstrap.group(bossGroup, workerGroup)
+        bootstrap
                 //.handler(new LoggingHandler(LogLevel.DEBUG))
                 .childHandler(getChildHandler());
 
-        if (useEpoll()) {
+        // channel 类型必须与共享线程组的实现一致
+        if (groups.isEpoll()) {
             bootstrap.channel(EpollServerSocketChannel.class)
                     .option(ChannelOption.SO_REUSEADDR, true)
                     .option(EpollChannelOption.IP_TRANSPARENT, true)
                     .childOption(ChannelOption.SO_REUSEADDR, true)
                     .childOption(EpollChannelOption.IP_TRANSPARENT, true);
+            if (listeners > 1) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
+            if (SpliceRelay.isEnabled()) {
+                // splice 只支持 level-triggered，且必须在 channel 注册前设置
+                bootstrap.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED)
+                        .childHandler(SpliceRelay.withCounter(bootstrap.config().childHandler()));
+            }
         } else {
             bootstrap.channel(NioServerSocketChannel.class);
         }
-        bindFuture = bootstrap.bind(getIp(), getPort()).sync();
-        serverChannel = bindFuture.channel();
+        // SO_REUSEPORT 模式下每个监听 socket 固定注册到一个 IO event loop 上各自 accept，不再经过独立 acceptor
+        bindAll(listeners, groups.getAcceptorGroup(), parent -> bootstrap.clone().group(parent, groups.getIoGroup()));
     }
 
     @Override
     protected void doClose() throws InterruptedException {
-        // 照搬原来 close() 里关闭 serverChannel 的部分
-        if (serverChannel != null && serverChannel.isOpen()) {
-            serverChannel.close().sync();
-        }
+        closeServerChannels();
     }
 }
@@ -0,0 +1,105 @@
+package org.congcong.proxyworker.server;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.congcong.proxyworker.ratelimit.RateLimitRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流量整形处理器，位于 RelayHandler 之前
+ * 每次读到数据都先放行，再按限流规则计算透支时长；需要等待时关闭 autoRead 并拦截 read()，
+ * 到期后再恢复读取。与 RelayHandler 的写缓冲背压共用 autoRead 开关，因此恢复时会先确认对端可写。
+ */
+public class TrafficShapingHandler extends ChannelDuplexHandler {
+
+    /**
+     * 透支时长低于该值时不暂停，避免频繁切换 autoRead
+     */
+    private static final long MIN_SUSPEND_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Channel relayChannel;
+    private final Long userId;
+    private final RateLimitRegistry.Direction direction;
+
+    private boolean suspended;
+    private ScheduledFuture<?> resumeFuture;
+
+    public TrafficShapingHandler(Channel relayChannel, Long userId, RateLimitRegistry.Direction direction) {
+        this.relayChannel = relayChannel;
+        this.userId = userId;
+        this.direction = direction;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        int bytes = RelayHandler.readableBytes(msg);
+        if (bytes > 0) {
+            long waitNanos = RateLimitRegistry.consume(userId, direction, bytes);
+            if (waitNanos >= MIN_SUSPEND_NANOS) {
+                suspend(ctx, waitNanos);
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void read(ChannelHandlerContext ctx) throws Exception {
+        // 暂停期间吞掉其他处理器（例如背压恢复）触发的读请求
+        if (!suspended) {
+            ctx.read();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelResume();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        cancelResume();
+        super.handlerRemoved(ctx);
+    }
+
+    boolean isSuspended() {
+        return suspended;
+    }
+
+    private void suspend(ChannelHandlerContext ctx, long waitNanos) {
+        if (suspended) {
+            return;
+        }
+        suspended = true;
+        ctx.channel().config().setAutoRead(false);
+        resumeFuture = ctx.executor().schedule(() -> resume(ctx), waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void resume(ChannelHandlerContext ctx) {
+        suspended = false;
+        resumeFuture = null;
+        Channel channel = ctx.channel();
+        if (!channel.isActive()) {
+            return;
+        }
+        // 对端写缓冲已满时保持暂停，交给 RelayHandler 在可写后恢复
+        if (relayChannel != null && !relayChannel.isWritable()) {
+            return;
+        }
+        if (channel.config().isAutoRead()) {
+            ctx.read();
+        } else {
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    private void cancelResume() {
+        if (resumeFuture != null) {
+            resumeFuture.cancel(false);
+            resumeFuture = null;
+        }
+    }
+}
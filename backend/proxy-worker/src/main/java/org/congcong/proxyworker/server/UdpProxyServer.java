@@ -6,10 +6,10 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollDatagramChannel;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.nio.NioDatagramChannel;
+import org.congcong.proxyworker.config.InboundConfig;
+import org.congcong.proxyworker.server.netty.ChannelAttributes;
 
 public abstract class UdpProxyServer extends AbstractProxyServer {
 
@@ -19,40 +19,52 @@ public abstract class UdpProxyServer extends AbstractProxyServer {
      */
     public abstract ChannelInitializer<Channel> getChannelInitializer();
 
+    protected UdpProxyServer(InboundConfig inboundConfig) {
+        super(inboundConfig);
+    }
+
+    /**
+     * UDP 监听 channel 只在绑定时初始化一次，报文处理从 channel 属性读取配置，这里同步替换
+     */
     @Override
-    protected void doStart() throws InterruptedException {
-        // UDP 通常只需要一个 workerGroup
-        if (useEpoll()) {
-            workerGroup = new EpollEventLoopGroup();
-        } else {
-            workerGroup = new NioEventLoopGroup();
+    public void updateInboundConfig(InboundConfig inboundConfig) {
+        super.updateInboundConfig(inboundConfig);
+        for (Channel channel : serverChannels) {
+            ChannelAttributes.setInboundConfig(channel, inboundConfig);
         }
+    }
 
+    @Override
+    protected void doStart() throws InterruptedException {
+        // 每个 UDP channel 绑定到共享 IO 线程组中的某个 event loop；
+        // SO_REUSEPORT 模式下绑定多个 channel，由内核按四元组把报文分散到不同的 event loop
+        SharedEventLoopGroups groups = eventLoopGroups();
+        int listeners = listenerCount(groups);
+
+        // 线程组在 bindAll 时按监听 socket 分别设置
         Bootstrap bootstrap = new Bootstrap();
-        bootstrap.group(workerGroup)
-                 // 注意：UDP 没有 childHandler，只有一个 handler
-                 .handler(getChannelInitializer());
 
-        if (useEpoll()) {
+        if (groups.isEpoll()) {
             bootstrap.channel(EpollDatagramChannel.class)
                      .option(ChannelOption.SO_REUSEADDR, true)
                     // 允许接收目的 IP 为非本地 IP 的包（TPROXY 场景）
                     .option(EpollChannelOption.IP_TRANSPARENT, true)
                     // 内核通过 ancillary data 把“原始目的地址”带上来
                     .option(EpollChannelOption.IP_RECVORIGDSTADDR, true);
+            if (listeners > 1) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
         } else {
             bootstrap.channel(NioDatagramChannel.class)
                      .option(ChannelOption.SO_REUSEADDR, true);
         }
 
-        bindFuture = bootstrap.bind(getIp(), getPort()).sync();
-        serverChannel = bindFuture.channel();
+        // 注意：UDP 没有 childHandler，只有一个 handler；每个 channel 使用独立的初始化器
+        bindAll(listeners, groups.getIoGroup(), group -> bootstrap.clone().group(group).handler(getChannelInitializer()));
     }
 
     @Override
     protected void doClose() throws InterruptedException {
-        if (serverChannel != null && serverChannel.isOpen()) {
-            serverChannel.close().sync();
-        }
+        closeServerChannels();
     }
 }
@@ -9,35 +9,27 @@ import org.congcong.proxyworker.server.TcpProxyServer;
 
 public class HttpProxyServer extends TcpProxyServer {
 
-
-    private final InboundConfig cfg;
-
     public HttpProxyServer(InboundConfig cfg) {
-        this.cfg = cfg;
+        super(cfg);
     }
 
     @Override
     public int getPort() {
-        return cfg.getPort();
+        return getInboundConfig().getPort();
     }
 
     @Override
     public String getIp() {
-        return cfg.getListenIp();
+        return getInboundConfig().getListenIp();
     }
 
     @Override
     public String getServerName() {
-        return cfg.getName();
-    }
-
-    @Override
-    public InboundConfig getInboundConfig() {
-        return cfg;
+        return getInboundConfig().getName();
     }
 
     @Override
     public ChannelInitializer<Channel> getChildHandler() {
-        return new HttpServerInitializer(getInboundConfig());
+        return new HttpServerInitializer(this::getInboundConfig);
     }
 }
\ No newline at end of file
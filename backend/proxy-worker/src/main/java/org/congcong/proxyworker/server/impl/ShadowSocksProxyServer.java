@@ -8,34 +8,28 @@ import org.congcong.proxyworker.protocol.shadowsock.ShadowSocksInitializer;
 import org.congcong.proxyworker.server.TcpProxyServer;
 
 public class ShadowSocksProxyServer extends TcpProxyServer {
-    private final InboundConfig cfg;
 
     public ShadowSocksProxyServer(InboundConfig cfg) {
-        this.cfg = cfg;
+        super(cfg);
     }
 
     @Override
     public int getPort() {
-        return cfg.getPort();
+        return getInboundConfig().getPort();
     }
 
     @Override
     public String getIp() {
-        return cfg.getListenIp();
+        return getInboundConfig().getListenIp();
     }
 
     @Override
     public String getServerName() {
-        return cfg.getName();
-    }
-
-    @Override
-    public InboundConfig getInboundConfig() {
-        return cfg;
+        return getInboundConfig().getName();
     }
 
     @Override
     public ChannelInitializer<Channel> getChildHandler() {
-        return new ShadowSocksInitializer(getInboundConfig());
+        return new ShadowSocksInitializer(this::getInboundConfig);
     }
 }
@@ -9,34 +9,27 @@ import org.congcong.proxyworker.server.TcpProxyServer;
 
 public class TransparentProxyServer extends TcpProxyServer {
 
-    private final InboundConfig cfg;
-
     public TransparentProxyServer(InboundConfig cfg) {
-        this.cfg = cfg;
+        super(cfg);
     }
 
     @Override
     public int getPort() {
-        return cfg.getPort();
+        return getInboundConfig().getPort();
     }
 
     @Override
     public String getIp() {
-        return cfg.getListenIp();
+        return getInboundConfig().getListenIp();
     }
 
     @Override
     public String getServerName() {
-        return cfg.getName();
+        return getInboundConfig().getName();
     }
 
     @Override
     public ChannelInitializer<Channel> getChildHandler() {
-        return new TransparentServerInitializer(this.cfg);
-    }
-
-    @Override
-    public InboundConfig getInboundConfig() {
-        return cfg;
+        return new TransparentServerInitializer(this::getInboundConfig);
     }
 }
@@ -17,22 +17,33 @@ import io.netty.handler.ssl.SslHandler;
 import org.congcong.proxyworker.server.netty.tls.TlsContextManager;
 
 import java.util.Objects;
+import java.util.function.Supplier;
 
 
+/**
+ * 入站连接的 pipeline 初始化
+ * 入站配置通过 supplier 在每个连接初始化时读取一次并挂到 channel 属性上，配置热更新后只影响新连接，
+ * 同一连接的整个生命周期内看到的配置保持一致。
+ */
 public abstract class AbstractChannelInitializer extends ChannelInitializer<Channel> {
 
-    protected final InboundConfig inboundConfig;
+    private final Supplier<InboundConfig> inboundConfigSupplier;
 
     protected AbstractChannelInitializer(InboundConfig inboundConfig) {
-        this.inboundConfig = inboundConfig;
+        this(() -> inboundConfig);
+    }
+
+    protected AbstractChannelInitializer(Supplier<InboundConfig> inboundConfigSupplier) {
+        this.inboundConfigSupplier = inboundConfigSupplier;
     }
 
     @Override
     protected void initChannel(Channel ch) throws Exception {
-        trackTcpConnection(ch);
-        pipeLineContextInit(ch);
+        InboundConfig inboundConfig = inboundConfigSupplier.get();
+        trackTcpConnection(ch, inboundConfig);
+        pipeLineContextInit(ch, inboundConfig);
         // 在最前面处理 TLS（如启用）
-        processSSL(ch);
+        processSSL(ch, inboundConfig);
         // 添加根据各个协议的channelHandler
         // 认证相关的处理器
         // ch.pipeline().addFirst(new LoggingHandler(LogLevel.DEBUG));
@@ -47,7 +58,7 @@ public abstract class AbstractChannelInitializer extends ChannelInitializer<Chan
         ch.pipeline().addLast(TerminalExceptionHandler.getInstance());
     }
 
-    private void trackTcpConnection(Channel ch) {
+    private void trackTcpConnection(Channel ch, InboundConfig inboundConfig) {
         if (inboundConfig == null || inboundConfig.getProtocol() == ProtocolType.DNS_SERVER) {
             return;
         }
@@ -57,10 +68,13 @@ public abstract class AbstractChannelInitializer extends ChannelInitializer<Chan
         ch.closeFuture().addListener(future -> proxyContext.decrementActiveConnectionCount());
     }
 
+    /**
+     * 添加协议相关的处理器，当前连接的入站配置可通过 {@link ChannelAttributes#getInboundConfig(Channel)} 获取
+     */
     protected abstract void init(Channel socketChannel);
 
 
-    protected void processSSL(Channel socketChannel) {
+    protected void processSSL(Channel socketChannel, InboundConfig inboundConfig) {
         // 开启TLS
         if (Objects.equals(inboundConfig.getTlsEnabled(), true) && inboundConfig.getProtocol() != ProtocolType.SHADOW_SOCKS) {
             SslContext sslContext = TlsContextManager.getInstance().getServerContext(inboundConfig);
@@ -69,7 +83,7 @@ public abstract class AbstractChannelInitializer extends ChannelInitializer<Chan
         }
     }
 
-    protected void pipeLineContextInit(Channel socketChannel) {
+    protected void pipeLineContextInit(Channel socketChannel, InboundConfig inboundConfig) {
         ChannelAttributes.setInboundConfig(socketChannel, inboundConfig);
         // 生成上下文对象
         ProxyContext proxyContext = new ProxyContext();
@@ -2,6 +2,7 @@ package org.congcong.proxyworker.server.tunnel;
 
 import io.netty.handler.codec.dns.DnsRecordType;
 import lombok.Getter;
+import lombok.Setter;
 
 import java.net.InetSocketAddress;
 
@@ -11,6 +12,11 @@ public class DnsProxyContext {
     private final String qName;
     private final DnsRecordType qType;
     private final InetSocketAddress client;  // 新增
+    /**
+     * 客户端已用应答缓存中的过期条目答复，这次上游查询只用于刷新缓存
+     */
+    @Setter
+    private boolean refreshOnly;
 
     public DnsProxyContext(int id, String qName, DnsRecordType qType, InetSocketAddress client) {
         this.id = id;
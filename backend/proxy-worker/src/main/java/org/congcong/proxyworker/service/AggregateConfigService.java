@@ -5,6 +5,7 @@ import org.congcong.proxyworker.http.HttpClientManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -95,7 +96,9 @@ public class AggregateConfigService {
                         try {
                             configChangeListener.onConfigChanged(result.getConfig());
                         } catch (Exception e) {
-                            log.error("通知配置变更监听器时发生异常", e);
+                            // 配置未能完整应用（如规则集产物下载失败），丢弃 ETag 让下次轮询重新下发
+                            httpClientManager.invalidateETag();
+                            log.error("通知配置变更监听器时发生异常，下次轮询重新获取配置", e);
                         }
                     }
                 } else {
@@ -110,6 +113,13 @@ public class AggregateConfigService {
         }
     }
     
+    /**
+     * 按摘要下载规则集产物
+     */
+    public byte[] fetchRuleSetArtifact(String digest) throws IOException, InterruptedException {
+        return httpClientManager.fetchRuleSetArtifact(digest);
+    }
+
     /**
      * 获取当前缓存的配置
      */
@@ -1,66 +1,25 @@
 package org.congcong.proxyworker.util.encryption.algorithm;
 
-import org.bouncycastle.crypto.engines.AESEngine;
-import org.bouncycastle.crypto.modes.GCMBlockCipher;
-import org.bouncycastle.crypto.params.AEADParameters;
-import org.bouncycastle.crypto.params.KeyParameter;
+import javax.crypto.spec.GCMParameterSpec;
+import java.security.spec.AlgorithmParameterSpec;
 
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
-
-public class AESGCMProcessor implements CryptoProcessor {
+public class AESGCMProcessor extends AbstractAeadProcessor {
 
     private static final int GCM_TAG_LENGTH = 128;
-    private SecretKey secretKey;
-
-    private byte[] key;
-
-
-
-
-
-    @Override
-    public byte[] encrypt(byte[] plaintext, byte[] nonce) throws Exception {
-        GCMBlockCipher cipher = new GCMBlockCipher(new AESEngine());
-        AEADParameters params = new AEADParameters(new KeyParameter(secretKey.getEncoded()), GCM_TAG_LENGTH, nonce);
-        cipher.init(true, params);
-
-        byte[] ciphertext = new byte[cipher.getOutputSize(plaintext.length)];
-        int len = cipher.processBytes(plaintext, 0, plaintext.length, ciphertext, 0);
-        cipher.doFinal(ciphertext, len);
-
-        return ciphertext;
-    }
-
-    @Override
-    public byte[] decrypt(byte[] ciphertext, byte[] nonce) throws Exception {
-        GCMBlockCipher cipher = new GCMBlockCipher(new AESEngine());
-        AEADParameters params = new AEADParameters(new KeyParameter(secretKey.getEncoded()), GCM_TAG_LENGTH, nonce);
-        cipher.init(false, params);
-
-        byte[] plaintext = new byte[cipher.getOutputSize(ciphertext.length)];
-        int len = cipher.processBytes(ciphertext, 0, ciphertext.length, plaintext, 0);
-        cipher.doFinal(plaintext, len);
-
-        return plaintext;
-    }
-
-
 
     @Override
-    public byte[] getKey() {
-        return key;
+    protected String transformation() {
+        return "AES/GCM/NoPadding";
     }
 
     @Override
-    public void refreshKey(byte[] key) {
-        this.key = key;
-        this.secretKey = new SecretKeySpec(key, "AES");
+    protected String keyAlgorithm() {
+        return "AES";
     }
 
     @Override
-    public void setKey(byte[] key) {
-        this.key = key;
+    protected AlgorithmParameterSpec parameterSpec(byte[] nonce) {
+        return new GCMParameterSpec(GCM_TAG_LENGTH, nonce);
     }
 
     @Override
@@ -72,16 +31,4 @@ public class AESGCMProcessor implements CryptoProcessor {
     public int getSaltSize() {
         return 32;
     }
-
-    @Override
-    public int getNonceSize() {
-        return 12;
-    }
-
-    @Override
-    public int getTagSize() {
-        return 16;
-    }
-
-
 }
@@ -0,0 +1,106 @@
+package org.congcong.proxyworker.util.encryption.algorithm;
+
+import io.netty.buffer.ByteBuf;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * 基于 JCE 的 AEAD 实现
+ * 每个实例对应一个连接的一个方向，Cipher 只创建一次，子密钥在 {@link #refreshKey(byte[])} 时构建一次，
+ * 之后每个块只用新的 nonce 重新 init；ByteBuf 版本直接在输入输出缓冲区的 NIO 视图之间加解密，不经过中间 byte[]。
+ */
+public abstract class AbstractAeadProcessor implements CryptoProcessor {
+
+    private byte[] key;
+    private SecretKeySpec secretKey;
+    private Cipher cipher;
+
+    protected abstract String transformation();
+
+    protected abstract String keyAlgorithm();
+
+    protected abstract AlgorithmParameterSpec parameterSpec(byte[] nonce);
+
+    @Override
+    public byte[] encrypt(byte[] plaintext, byte[] nonce) throws Exception {
+        return init(Cipher.ENCRYPT_MODE, nonce).doFinal(plaintext);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] ciphertext, byte[] nonce) throws Exception {
+        return init(Cipher.DECRYPT_MODE, nonce).doFinal(ciphertext);
+    }
+
+    @Override
+    public void encrypt(ByteBuf in, int length, ByteBuf out, AeadNonce nonce) throws Exception {
+        doFinal(Cipher.ENCRYPT_MODE, in, length, out, nonce);
+    }
+
+    @Override
+    public void decrypt(ByteBuf in, int length, ByteBuf out, AeadNonce nonce) throws Exception {
+        doFinal(Cipher.DECRYPT_MODE, in, length, out, nonce);
+    }
+
+    private void doFinal(int mode, ByteBuf in, int length, ByteBuf out, AeadNonce nonce) throws GeneralSecurityException {
+        Cipher c = init(mode, nonce.current());
+        int outputSize = c.getOutputSize(length);
+        out.ensureWritable(outputSize);
+        ByteBuffer src = in.nioBufferCount() == 1
+                ? in.internalNioBuffer(in.readerIndex(), length)
+                : in.nioBuffer(in.readerIndex(), length);
+        int written;
+        if (out.nioBufferCount() == 1) {
+            written = c.doFinal(src, out.internalNioBuffer(out.writerIndex(), outputSize));
+            out.writerIndex(out.writerIndex() + written);
+        } else {
+            // 组合缓冲区没有单一的可写视图，退回到临时数组
+            ByteBuffer dst = ByteBuffer.allocate(outputSize);
+            written = c.doFinal(src, dst);
+            dst.flip();
+            out.writeBytes(dst);
+        }
+        in.skipBytes(length);
+        nonce.increment();
+    }
+
+    private Cipher init(int mode, byte[] nonce) throws GeneralSecurityException {
+        if (secretKey == null) {
+            throw new IllegalStateException("AEAD session key is not initialized");
+        }
+        if (cipher == null) {
+            cipher = Cipher.getInstance(transformation());
+        }
+        cipher.init(mode, secretKey, parameterSpec(nonce));
+        return cipher;
+    }
+
+    @Override
+    public byte[] getKey() {
+        return key;
+    }
+
+    @Override
+    public void refreshKey(byte[] key) {
+        this.key = key;
+        this.secretKey = new SecretKeySpec(key, keyAlgorithm());
+    }
+
+    @Override
+    public void setKey(byte[] key) {
+        this.key = key;
+    }
+
+    @Override
+    public int getNonceSize() {
+        return 12;
+    }
+
+    @Override
+    public int getTagSize() {
+        return 16;
+    }
+}
@@ -0,0 +1,35 @@
+package org.congcong.proxyworker.util.encryption.algorithm;
+
+/**
+ * Shadowsocks AEAD 使用的 nonce：小端序计数器，每次加解密后原地加一，不再为每个块分配新数组
+ */
+public final class AeadNonce {
+
+    private final byte[] value;
+
+    public AeadNonce(int size) {
+        this(size, 0);
+    }
+
+    public AeadNonce(int size, long initialCounter) {
+        this.value = new byte[size];
+        for (int i = 0; i < Long.BYTES && i < size; i++) {
+            value[i] = (byte) (initialCounter >>> (i * 8));
+        }
+    }
+
+    /**
+     * @return 内部数组本身，只能在下一次 {@link #increment()} 之前使用
+     */
+    public byte[] current() {
+        return value;
+    }
+
+    public void increment() {
+        for (int i = 0; i < value.length; i++) {
+            if (++value[i] != 0) {
+                return;
+            }
+        }
+    }
+}
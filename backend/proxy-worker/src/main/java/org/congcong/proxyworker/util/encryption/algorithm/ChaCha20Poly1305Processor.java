@@ -1,34 +1,26 @@
 package org.congcong.proxyworker.util.encryption.algorithm;
 
+import javax.crypto.spec.IvParameterSpec;
+import java.security.spec.AlgorithmParameterSpec;
 
-public class ChaCha20Poly1305Processor implements CryptoProcessor {
-    private byte[] secretKey;
+/**
+ * jdk11原生支持该算法
+ */
+public class ChaCha20Poly1305Processor extends AbstractAeadProcessor {
 
     @Override
-    public byte[] encrypt(byte[] plaintext, byte[] nonce) throws Exception {
-        return ChaCha20Poly1305ByJava11.encrypt(plaintext, getKey(), nonce);
+    protected String transformation() {
+        return "ChaCha20-Poly1305/None/NoPadding";
     }
 
     @Override
-    public byte[] decrypt(byte[] ciphertext, byte[] nonce) throws Exception {
-        // jdk11原生支持该算法
-        return ChaCha20Poly1305ByJava11.decrypt(ciphertext, getKey(), nonce);
-    }
-
-
-    @Override
-    public byte[] getKey() {
-        return secretKey;
-    }
-
-    @Override
-    public void refreshKey(byte[] key) {
-        secretKey = key;
+    protected String keyAlgorithm() {
+        return "ChaCha20";
     }
 
     @Override
-    public void setKey(byte[] key) {
-        this.secretKey = key;
+    protected AlgorithmParameterSpec parameterSpec(byte[] nonce) {
+        return new IvParameterSpec(nonce);
     }
 
     @Override
@@ -40,14 +32,4 @@ public class ChaCha20Poly1305Processor implements CryptoProcessor {
     public int getSaltSize() {
         return 32;
     }
-
-    @Override
-    public int getNonceSize() {
-        return 12;
-    }
-
-    @Override
-    public int getTagSize() {
-        return 16;
-    }
 }
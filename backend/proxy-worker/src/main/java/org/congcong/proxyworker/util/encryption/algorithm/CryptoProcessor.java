@@ -1,9 +1,21 @@
 package org.congcong.proxyworker.util.encryption.algorithm;
 
+import io.netty.buffer.ByteBuf;
+
 public interface CryptoProcessor {
     byte[] encrypt(byte[] plaintext, byte[] nonce) throws Exception;
     byte[] decrypt(byte[] ciphertext, byte[] nonce) throws Exception;
 
+    /**
+     * 用 nonce 当前值加密 in 中 length 字节明文，密文和 tag 直接写入 out，完成后 nonce 原地递增
+     */
+    void encrypt(ByteBuf in, int length, ByteBuf out, AeadNonce nonce) throws Exception;
+
+    /**
+     * 用 nonce 当前值解密 in 中 length 字节（含 tag），明文直接写入 out，完成后 nonce 原地递增
+     */
+    void decrypt(ByteBuf in, int length, ByteBuf out, AeadNonce nonce) throws Exception;
+
     byte[] getKey();
 
     void refreshKey(byte[] key);
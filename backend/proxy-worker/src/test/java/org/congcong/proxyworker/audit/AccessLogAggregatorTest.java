@@ -0,0 +1,81 @@
+package org.congcong.proxyworker.audit;
+
+import org.congcong.common.dto.AccessLog;
+import org.congcong.common.dto.AccessLogRollup;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessLogAggregatorTest {
+
+    private static final Instant MINUTE = Instant.parse("2026-05-13T06:19:00Z");
+
+    @Test
+    void rollsUpConfiguredProtocolsPerMinuteAndKey() {
+        List<AccessLogRollup> rollups = new ArrayList<>();
+        AccessLogAggregator aggregator = new AccessLogAggregator(Set.of("DNS_SERVER"), 0.0, 1000, rollups::add);
+
+        assertTrue(aggregator.offer(accessLog("SOCKS5", "example.com", 200, 5)), "未开启聚合的入站按明细上报");
+        assertFalse(aggregator.offer(accessLog("DNS_SERVER", "example.com", 200, 1)));
+        assertFalse(aggregator.offer(accessLog("DNS_SERVER", "example.com", 200, 15)));
+        assertFalse(aggregator.offer(accessLog("DNS_SERVER", "example.com", 502, 40)));
+
+        // 窗口尚未结束
+        assertEquals(0, aggregator.drain(MINUTE.toEpochMilli() + 59_000));
+        assertEquals(2, aggregator.drain(MINUTE.toEpochMilli() + AccessLogAggregator.WINDOW_MS));
+        assertEquals(0, aggregator.drain(Long.MAX_VALUE - AccessLogAggregator.WINDOW_MS));
+
+        rollups.sort(Comparator.comparing(AccessLogRollup::getStatus));
+        AccessLogRollup ok = rollups.get(0);
+        assertEquals(MINUTE, ok.getTs());
+        assertEquals("example.com", ok.getOriginalTargetHost());
+        assertEquals("alice", ok.getUsername());
+        assertEquals(2L, ok.getRequests());
+        assertEquals(200L, ok.getBytesIn());
+        assertEquals(400L, ok.getBytesOut());
+        assertEquals(0L, ok.getSampled());
+        assertEquals(502, rollups.get(1).getStatus());
+        assertEquals(1L, rollups.get(1).getRequests());
+    }
+
+    @Test
+    void marksSampledRowsAndFallsBackToRawWhenKeysOverflow() {
+        List<AccessLogRollup> rollups = new ArrayList<>();
+        AccessLogAggregator aggregator = new AccessLogAggregator(Set.of("DNS_SERVER"), 1.0, 100, rollups::add);
+
+        AccessLog sampled = accessLog("DNS_SERVER", "host-0", 200, 0);
+        assertTrue(aggregator.offer(sampled));
+        assertEquals(Boolean.TRUE, sampled.getSampled());
+        for (int i = 1; i < 100; i++) {
+            aggregator.offer(accessLog("DNS_SERVER", "host-" + i, 200, i));
+        }
+        AccessLog overflow = accessLog("DNS_SERVER", "host-100", 200, 58);
+        assertTrue(aggregator.offer(overflow));
+        assertNull(overflow.getSampled(), "超出维度上限的日志按普通明细上报");
+
+        aggregator.stop();
+        assertEquals(100, rollups.size());
+        assertTrue(rollups.stream().allMatch(r -> r.getSampled() == 1L && r.getRequests() == 1L));
+    }
+
+    private static AccessLog accessLog(String protocol, String host, int status, int second) {
+        AccessLog accessLog = new AccessLog();
+        accessLog.setTs(MINUTE.plusSeconds(second));
+        accessLog.setUserId(1L);
+        accessLog.setUsername("alice");
+        accessLog.setInboundId(7L);
+        accessLog.setRoutePolicyId(3L);
+        accessLog.setInboundProtocolType(protocol);
+        accessLog.setOriginalTargetHost(host);
+        accessLog.setStatus(status);
+        accessLog.setBytesIn(100L);
+        accessLog.setBytesOut(200L);
+        return accessLog;
+    }
+}
@@ -0,0 +1,286 @@
+package org.congcong.proxyworker.audit.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.congcong.common.dto.AccessLog;
+import org.congcong.common.dto.AccessLogRollup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncHttpLogPublisherTest {
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void retriesFailedBatchesWithBackoffAndDeliversEverythingInOrder() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        List<String> received = new CopyOnWriteArrayList<>();
+        ObjectMapper mapper = new ObjectMapper();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/logs/access", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            int status;
+            if (!"application/json".equals(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                // 旧版管理端只接受 JSON
+                status = 415;
+            } else {
+                // 前两次模拟管理端重启中
+                status = attempts.incrementAndGet() <= 2 ? 503 : 200;
+            }
+            if (status == 200) {
+                for (JsonNode node : mapper.readTree(body)) {
+                    received.add(node.get("requestId").asText());
+                }
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/logs/access";
+
+        DiskLogSpool accessSpool = new DiskLogSpool(dir, 4096, 1 << 20);
+        AsyncHttpLogPublisher publisher = new AsyncHttpLogPublisher(1024, 10, 20, 1000,
+                LogBatchEncoder.Format.SMILE_GZIP, url, url, url,
+                name -> name.equals("access") ? accessSpool : new MemoryLogSpool(1 << 20));
+        try {
+            for (int i = 0; i < 25; i++) {
+                AccessLog accessLog = new AccessLog();
+                accessLog.setRequestId("req-" + i);
+                publisher.publishAccess(accessLog);
+            }
+            waitFor(() -> received.size() >= 25);
+        } finally {
+            publisher.shutdown();
+        }
+
+        assertTrue(attempts.get() >= 5);
+        assertEquals(25, received.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals("req-" + i, received.get(i));
+        }
+        try (DiskLogSpool spool = new DiskLogSpool(dir, 4096, 1 << 20)) {
+            assertTrue(spool.peek(10).isEmpty());
+        }
+    }
+
+    @Test
+    void sendsGzippedSmileBatchesByDefault() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/logs/access", exchange -> {
+            assertEquals("application/x-jackson-smile", exchange.getRequestHeaders().getFirst("Content-Type"));
+            assertEquals("gzip", exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            try (GZIPInputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+                for (JsonNode node : smileMapper.readTree(in)) {
+                    received.add(node.get("requestId").asText() + "@" + node.get("originalTargetHost").asText());
+                }
+            }
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+        });
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/logs/access";
+
+        AsyncHttpLogPublisher publisher = new AsyncHttpLogPublisher(1024, 10, 20, 1000,
+                LogBatchEncoder.Format.SMILE_GZIP, url, url, url, name -> new MemoryLogSpool(1 << 20));
+        try {
+            for (int i = 0; i < 5; i++) {
+                AccessLog accessLog = new AccessLog();
+                accessLog.setRequestId("req-" + i);
+                accessLog.setOriginalTargetHost("example.com");
+                publisher.publishAccess(accessLog);
+            }
+            waitFor(() -> received.size() >= 5);
+        } finally {
+            publisher.shutdown();
+        }
+
+        assertEquals(List.of("req-0@example.com", "req-1@example.com", "req-2@example.com", "req-3@example.com",
+                "req-4@example.com"), received);
+    }
+
+    @Test
+    void neverTouchesSpoolOnCallerThreadWhenHandoffQueueIsFull() throws Exception {
+        Set<String> received = ConcurrentHashMap.newKeySet();
+        ObjectMapper mapper = new ObjectMapper();
+        server = jsonServer(received, mapper, exchange -> 200);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/logs/access";
+        CountDownLatch diskStalled = new CountDownLatch(1);
+        Set<Thread> appendThreads = ConcurrentHashMap.newKeySet();
+
+        // 模拟磁盘卡住：写线程阻塞在追加上，交接队列与溢出队列很快写满
+        AsyncHttpLogPublisher publisher = new AsyncHttpLogPublisher(4, 100, 20, 1000,
+                LogBatchEncoder.Format.JSON, url, url, url, name -> new MemoryLogSpool(1 << 24) {
+                    @Override
+                    public synchronized boolean append(byte[] record) {
+                        appendThreads.add(Thread.currentThread());
+                        try {
+                            diskStalled.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return super.append(record);
+                    }
+                });
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < 2000; i++) {
+                AccessLog accessLog = new AccessLog();
+                accessLog.setRequestId("req-" + i);
+                publisher.publishAccess(accessLog);
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+            diskStalled.countDown();
+            // 交接队列与溢出队列中的记录都会送达，其余计为丢弃
+            waitFor(() -> received.size() >= 8);
+        } finally {
+            publisher.shutdown();
+        }
+
+        assertFalse(appendThreads.contains(Thread.currentThread()));
+        assertTrue(received.size() < 2000);
+    }
+
+    @Test
+    void quarantinesRejectedBatchesAndRedeliversThemLater() throws Exception {
+        Set<String> received = ConcurrentHashMap.newKeySet();
+        ObjectMapper mapper = new ObjectMapper();
+        AtomicBoolean authorized = new AtomicBoolean(false);
+        server = jsonServer(received, mapper, exchange -> authorized.get() ? 200 : 401);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/logs/access";
+        Map<String, LogSpool> spools = new ConcurrentHashMap<>();
+        Function<String, LogSpool> spoolFactory = name -> spools.computeIfAbsent(name, n -> new MemoryLogSpool(1 << 20));
+
+        AsyncHttpLogPublisher publisher = new AsyncHttpLogPublisher(1024, 10, 20, 1000,
+                LogBatchEncoder.Format.JSON, url, url, url, spoolFactory);
+        try {
+            for (int i = 0; i < 5; i++) {
+                AccessLog accessLog = new AccessLog();
+                accessLog.setRequestId("req-" + i);
+                publisher.publishAccess(accessLog);
+            }
+            waitFor(() -> spools.get("access-quarantine").sizeBytes() > 0 && spools.get("access").sizeBytes() == 0);
+        } finally {
+            publisher.shutdown();
+        }
+        assertTrue(received.isEmpty());
+
+        // 鉴权恢复后，重启时隔离缓冲立即重发
+        authorized.set(true);
+        publisher = new AsyncHttpLogPublisher(1024, 10, 20, 1000,
+                LogBatchEncoder.Format.JSON, url, url, url, spoolFactory);
+        try {
+            waitFor(() -> received.size() >= 5);
+        } finally {
+            publisher.shutdown();
+        }
+
+        assertEquals(Set.of("req-0", "req-1", "req-2", "req-3", "req-4"), received);
+        assertEquals(0, spools.get("access-quarantine").sizeBytes());
+    }
+
+    @Test
+    void stopsAggregatingWhenControlManagerHasNoRollupEndpoint() throws Exception {
+        AtomicBoolean upgraded = new AtomicBoolean(false);
+        AtomicInteger rollupsReceived = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/logs/access/rollup", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            int code = upgraded.get() ? 202 : 404;
+            if (code == 202) {
+                rollupsReceived.incrementAndGet();
+            }
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+        });
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/logs/access/rollup";
+        Map<String, LogSpool> spools = new ConcurrentHashMap<>();
+        Function<String, LogSpool> spoolFactory = name -> spools.computeIfAbsent(name, n -> new MemoryLogSpool(1 << 20));
+
+        AsyncHttpLogPublisher publisher = new AsyncHttpLogPublisher(1024, 10, 20, 1000,
+                LogBatchEncoder.Format.JSON, url, url, url, spoolFactory);
+        try {
+            assertTrue(publisher.acceptsRollups());
+            AccessLogRollup rollup = new AccessLogRollup();
+            rollup.setRequests(3L);
+            publisher.publishRollup(rollup);
+            waitFor(() -> !publisher.acceptsRollups());
+            waitFor(() -> spools.get("rollup-quarantine").sizeBytes() > 0);
+        } finally {
+            publisher.shutdown();
+        }
+
+        // 管理端升级后，重启时隔离缓冲送达，恢复聚合
+        upgraded.set(true);
+        AsyncHttpLogPublisher restarted = new AsyncHttpLogPublisher(1024, 10, 20, 1000,
+                LogBatchEncoder.Format.JSON, url, url, url, spoolFactory);
+        try {
+            waitFor(() -> rollupsReceived.get() == 1);
+            assertTrue(restarted.acceptsRollups());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    private static HttpServer jsonServer(Set<String> received, ObjectMapper mapper,
+                                         ToIntFunction<HttpExchange> status) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/logs/access", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            int code = status.applyAsInt(exchange);
+            if (code == 200) {
+                for (JsonNode node : mapper.readTree(body)) {
+                    received.add(node.get("requestId").asText());
+                }
+            }
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
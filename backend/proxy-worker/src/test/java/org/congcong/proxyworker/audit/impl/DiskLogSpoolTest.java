@@ -0,0 +1,91 @@
+package org.congcong.proxyworker.audit.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskLogSpoolTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void deliversInOrderAcrossSegmentsAndResumesFromAckedPositionAfterRestart() throws IOException {
+        // 每条记录 8 字节头 + 10 字节内容，段大小 64 字节时每段 3 条
+        try (DiskLogSpool spool = new DiskLogSpool(dir, 64, 1 << 20)) {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(spool.append(record(i)));
+            }
+            assertEquals(4, segmentCount());
+
+            assertEquals(List.of("record-000", "record-001", "record-002", "record-003"), strings(spool.peek(4)));
+            // 未确认前重复读取到同一批
+            assertEquals("record-000", strings(spool.peek(1)).get(0));
+            spool.peek(4);
+            spool.ack();
+            assertEquals(3, segmentCount());
+        }
+
+        try (DiskLogSpool reopened = new DiskLogSpool(dir, 64, 1 << 20)) {
+            List<String> rest = strings(reopened.peek(100));
+            assertEquals(6, rest.size());
+            assertEquals("record-004", rest.get(0));
+            assertEquals("record-009", rest.get(5));
+            reopened.ack();
+            assertTrue(reopened.append(record(10)));
+            assertEquals(List.of("record-010"), strings(reopened.peek(100)));
+        }
+    }
+
+    @Test
+    void truncatesTornTailOnRecoveryAndRejectsAppendsBeyondCapacity() throws IOException {
+        try (DiskLogSpool spool = new DiskLogSpool(dir, 1024, 1024)) {
+            assertTrue(spool.append(record(0)));
+            assertTrue(spool.append(record(1)));
+        }
+        // 模拟写到一半时进程退出
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(p -> p.toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(segment) - 3);
+        }
+
+        try (DiskLogSpool spool = new DiskLogSpool(dir, 1024, 1024)) {
+            assertEquals(18, spool.sizeBytes());
+            assertEquals(List.of("record-000"), strings(spool.peek(10)));
+
+            int appended = 0;
+            while (spool.append(record(appended))) {
+                appended++;
+            }
+            assertEquals((1024 - 18) / 18, appended);
+            assertTrue(spool.sizeBytes() <= 1024);
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".seg")).count();
+        }
+    }
+
+    private static byte[] record(int i) {
+        return String.format("record-%03d", i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> records) {
+        return records.stream().map(r -> new String(r, StandardCharsets.UTF_8)).toList();
+    }
+}
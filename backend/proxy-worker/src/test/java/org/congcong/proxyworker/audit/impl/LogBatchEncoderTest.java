@@ -0,0 +1,62 @@
+package org.congcong.proxyworker.audit.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.congcong.common.dto.AccessLog;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogBatchEncoderTest {
+
+    private final LogBatchEncoder encoder = new LogBatchEncoder();
+    private final ObjectMapper recordMapper = new ObjectMapper(encoder.recordFactory());
+
+    @Test
+    void smileBatchRoundTripsAndIsSmallerThanJson() throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            records.add(recordMapper.writeValueAsBytes(accessLog(i)));
+        }
+        // 旧版本缓冲里残留的 JSON 记录
+        records.add("{\"requestId\":\"legacy\",\"username\":\"alice\"}".getBytes(StandardCharsets.UTF_8));
+
+        byte[] smile = encoder.encode(records, LogBatchEncoder.Format.SMILE_GZIP);
+        byte[] json = encoder.encode(records, LogBatchEncoder.Format.JSON);
+
+        JsonNode fromSmile;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(smile))) {
+            fromSmile = new ObjectMapper(encoder.recordFactory()).readTree(in);
+        }
+        JsonNode fromJson = new ObjectMapper().readTree(json);
+        assertEquals(101, fromSmile.size());
+        assertEquals(fromJson, fromSmile);
+        assertEquals("req-42", fromJson.get(42).get("requestId").asText());
+        assertEquals("legacy", fromJson.get(100).get("requestId").asText());
+        assertTrue(smile.length * 5 < json.length, "smile=" + smile.length + ", json=" + json.length);
+    }
+
+    @Test
+    void emptyBatchIsAnEmptyArray() throws IOException {
+        assertEquals("[]", new String(encoder.encode(List.of(), LogBatchEncoder.Format.JSON), StandardCharsets.UTF_8));
+    }
+
+    private static AccessLog accessLog(int i) {
+        AccessLog accessLog = new AccessLog();
+        accessLog.setTs(null);
+        accessLog.setRequestId("req-" + i);
+        accessLog.setUsername("alice");
+        accessLog.setProxyName("dns-inbound");
+        accessLog.setOriginalTargetHost("www.example.com");
+        accessLog.setStatus(200);
+        accessLog.setBytesIn(100L + i);
+        return accessLog;
+    }
+}
@@ -61,4 +61,45 @@ class WorkerVlessRealityVisionIT {
             assertEquals(1, echo.requestCount());
         }
     }
+
+    @Test
+    void socks5InboundCanShareXrayVlessRealityMuxSessionAcrossConnections() {
+        int workerPort = PortAllocator.tcpPort();
+        int xrayPort = PortAllocator.tcpPort();
+        RouteConfig outbound = ProxyWorkerIntegrationFixtures.vlessRealityMuxOutboundRoute(
+                "127.0.0.1",
+                xrayPort,
+                SERVER_NAME,
+                PUBLIC_KEY,
+                SHORT_ID,
+                UUID);
+
+        try (HttpsEchoServer echo = HttpsEchoServer.start();
+             XrayProcess ignoredXray = XrayProcess.start("vless-reality-mux-upstream",
+                     XrayConfigs.vlessRealityInbound(
+                             xrayPort,
+                             UUID,
+                             PRIVATE_KEY,
+                             SHORT_ID,
+                             SERVER_NAME,
+                             "localhost:" + echo.port()),
+                     xrayPort);
+             WorkerServerHarness ignoredWorker = WorkerServerHarness.start(
+                     ProxyWorkerIntegrationFixtures.socksInbound(workerPort, List.of(), outbound))) {
+            NetworkWait.waitForTcpPort("127.0.0.1", workerPort, Duration.ofSeconds(5));
+
+            for (int i = 0; i < 3; i++) {
+                String response = Socks5TestClient.httpsGet(
+                        workerPort,
+                        ProxyWorkerIntegrationFixtures.USERNAME,
+                        ProxyWorkerIntegrationFixtures.PASSWORD,
+                        "localhost",
+                        echo.port(),
+                        "/xray-vless-reality-mux-" + i);
+
+                assertTrue(response.contains("echo:/xray-vless-reality-mux-" + i), response);
+            }
+            assertEquals(3, echo.requestCount());
+        }
+    }
 }
@@ -90,6 +90,43 @@ public final class XrayConfigs {
                 """.formatted(port, uuid, dest, serverName, privateKey, shortId);
     }
 
+    public static String vlessRealityInbound(int port,
+                                             String uuid,
+                                             String privateKey,
+                                             String shortId,
+                                             String serverName,
+                                             String dest) {
+        return """
+                {
+                  "log": { "loglevel": "warning" },
+                  "inbounds": [{
+                    "listen": "127.0.0.1",
+                    "port": %d,
+                    "protocol": "vless",
+                    "settings": {
+                      "clients": [{
+                        "id": "%s",
+                        "flow": ""
+                      }],
+                      "decryption": "none"
+                    },
+                    "streamSettings": {
+                      "network": "tcp",
+                      "security": "reality",
+                      "realitySettings": {
+                        "show": false,
+                        "dest": "%s",
+                        "serverNames": ["%s"],
+                        "privateKey": "%s",
+                        "shortIds": ["%s"]
+                      }
+                    }
+                  }],
+                  "outbounds": [{ "protocol": "freedom" }]
+                }
+                """.formatted(port, uuid, dest, serverName, privateKey, shortId);
+    }
+
     public static String socksClientToWorkerSocks(int localSocksPort, int workerSocksPort, String user, String pass) {
         return """
                 {
@@ -0,0 +1,144 @@
+package org.congcong.proxyworker.outbound.direct;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class HappyEyeballsConnectTest {
+
+    private final NioEventLoopGroup group = new NioEventLoopGroup(1);
+    private final EventLoop eventLoop = group.next();
+    private final Promise<Channel> relayPromise = eventLoop.newPromise();
+
+    @AfterEach
+    void shutdown() {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void alternatesAddressFamiliesPreferringIpv6() throws Exception {
+        InetAddress v6a = InetAddress.getByName("2001:db8::1");
+        InetAddress v6b = InetAddress.getByName("2001:db8::2");
+        InetAddress v4a = InetAddress.getByName("192.0.2.1");
+        InetAddress v4b = InetAddress.getByName("192.0.2.2");
+        InetAddress v4c = InetAddress.getByName("192.0.2.3");
+
+        // A 记录先到，IPv6 仍然排在前面
+        HappyEyeballsConnect.AddressQueue queue = new HappyEyeballsConnect.AddressQueue(443);
+        queue.add(List.of(v4a, v4b, v4c));
+        queue.add(List.of(v6a, v6b));
+        List<InetSocketAddress> ordered = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            ordered.add(queue.poll());
+        }
+
+        assertEquals(List.of(v6a, v4a, v6b, v4b, v4c), ordered.stream().map(InetSocketAddress::getAddress).toList());
+        assertTrue(ordered.stream().allMatch(a -> a.getPort() == 443));
+    }
+
+    @Test
+    void familyArrivingAfterConnectingStartedJoinsTheAlternation() throws Exception {
+        InetAddress v4a = InetAddress.getByName("192.0.2.1");
+        InetAddress v4b = InetAddress.getByName("192.0.2.2");
+        InetAddress v6a = InetAddress.getByName("2001:db8::1");
+        HappyEyeballsConnect.AddressQueue queue = new HappyEyeballsConnect.AddressQueue(80);
+        queue.add(List.of(v4a, v4b));
+
+        assertEquals(v4a, queue.poll().getAddress());
+        queue.add(List.of(v6a));
+        assertEquals(v6a, queue.poll().getAddress());
+        assertEquals(v4b, queue.poll().getAddress());
+    }
+
+    @Test
+    void startsWithIpv4AfterResolutionDelayWhenAaaaNeverAnswers() throws Exception {
+        InetAddress listening = InetAddress.getByName("127.0.0.1");
+        try (ServerSocket server = new ServerSocket(0, 1, listening)) {
+            Promise<List<InetAddress>> slowAaaa = eventLoop.newPromise();
+
+            ChannelFuture connect = race(slowAaaa, eventLoop.newSucceededFuture(List.of(listening)), server.getLocalPort());
+
+            assertTrue(connect.await(5, TimeUnit.SECONDS));
+            assertTrue(connect.isSuccess());
+            assertFalse(slowAaaa.isDone());
+            connect.channel().close().sync();
+        }
+    }
+
+    @Test
+    void failsWithResolverCauseWhenNeitherFamilyResolves() throws Exception {
+        UnknownHostException noAaaa = new UnknownHostException("no AAAA");
+        UnknownHostException noA = new UnknownHostException("no A");
+
+        ChannelFuture connect = race(eventLoop.newFailedFuture(noAaaa), eventLoop.newFailedFuture(noA), 80);
+
+        assertTrue(connect.await(5, TimeUnit.SECONDS));
+        assertInstanceOf(UnknownHostException.class, connect.cause());
+        assertFalse(connect.channel().isOpen());
+    }
+
+    @Test
+    void fallsBackToNextAddressAsSoonAsAttemptIsRefused() throws Exception {
+        InetAddress refused = InetAddress.getByName("127.0.0.1");
+        InetAddress listening = InetAddress.getByName("127.0.0.2");
+        try (ServerSocket server = new ServerSocket(0, 1, listening)) {
+            // attemptDelay 远大于等待时间，5 秒内成功说明第一个地址被拒绝后立即发起了下一个
+            ChannelFuture connect = race(List.of(refused, listening), server.getLocalPort());
+
+            assertTrue(connect.await(5, TimeUnit.SECONDS));
+            assertTrue(connect.isSuccess());
+            assertEquals(listening, ((InetSocketAddress) connect.channel().remoteAddress()).getAddress());
+            assertSame(connect.channel(), relayPromise.syncUninterruptibly().getNow());
+            connect.channel().close().sync();
+        }
+    }
+
+    @Test
+    void failsAndClosesChannelWhenAllAttemptsFail() throws Exception {
+        int closedPort;
+        try (ServerSocket probe = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            closedPort = probe.getLocalPort();
+        }
+
+        ChannelFuture connect = race(List.of(InetAddress.getByName("127.0.0.1"), InetAddress.getByName("127.0.0.2")), closedPort);
+
+        assertTrue(connect.await(5, TimeUnit.SECONDS));
+        assertFalse(connect.isSuccess());
+        assertFalse(connect.channel().isOpen());
+        assertFalse(relayPromise.isDone());
+    }
+
+    private ChannelFuture race(List<InetAddress> addresses, int port) throws Exception {
+        return race(eventLoop.newSucceededFuture(List.of()), eventLoop.newSucceededFuture(addresses), port);
+    }
+
+    private ChannelFuture race(Future<List<InetAddress>> ipv6, Future<List<InetAddress>> ipv4, int port) throws Exception {
+        Bootstrap b = new Bootstrap().group(eventLoop).channel(NioSocketChannel.class).handler(new ChannelInitializer<>() {
+            @Override
+            protected void initChannel(Channel ch) {
+            }
+        });
+        return eventLoop.submit(() -> HappyEyeballsConnect.start(b, eventLoop, ipv6, ipv4, port, 60_000, relayPromise)).get();
+    }
+}
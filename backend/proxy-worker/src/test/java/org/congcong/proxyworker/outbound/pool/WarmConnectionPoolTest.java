@@ -0,0 +1,159 @@
+package org.congcong.proxyworker.outbound.pool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class WarmConnectionPoolTest {
+
+    private static final String KEY = "TEST|upstream";
+
+    private final NioEventLoopGroup group = new NioEventLoopGroup(1);
+    private final EventLoop eventLoop = group.next();
+    private final AtomicInteger dials = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void handsOutWarmChannelAndReplaysDataReceivedWhileIdle() throws Exception {
+        WarmConnectionPool pool = new WarmConnectionPool(true, 4, 10_000);
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            CompletableFuture<Socket> accepted = CompletableFuture.supplyAsync(() -> {
+                try {
+                    Socket socket = server.accept();
+                    OutputStream out = socket.getOutputStream();
+                    out.write("hello".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    return socket;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            // 第一次取用没有预热连接，同时按需求开始预热
+            assertNull(acquire(pool, server.getLocalPort(), new CompletableFuture<>()));
+            try (Socket ignored = accepted.get(5, TimeUnit.SECONDS)) {
+                awaitIdleCount(pool, 1);
+                Thread.sleep(200);
+
+                CompletableFuture<String> received = new CompletableFuture<>();
+                Channel channel = acquire(pool, server.getLocalPort(), received);
+
+                assertNotNull(channel);
+                assertTrue(channel.isActive());
+                assertEquals("hello", received.get(5, TimeUnit.SECONDS));
+                channel.close().sync();
+            }
+        }
+    }
+
+    @Test
+    void dropsIdleChannelClosedByPeer() throws Exception {
+        WarmConnectionPool pool = new WarmConnectionPool(true, 4, 10_000);
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            assertNull(acquire(pool, server.getLocalPort(), new CompletableFuture<>()));
+            awaitIdleCount(pool, 1);
+
+            server.accept().close();
+
+            awaitIdleCount(pool, 0);
+        }
+    }
+
+    @Test
+    void channelWhosePeerSentFinIsNotReusableBeforeEventLoopReadsEof() throws Exception {
+        assumeTrue(Epoll.isAvailable());
+        EpollEventLoopGroup epollGroup = new EpollEventLoopGroup(1);
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            Channel channel = new Bootstrap().group(epollGroup).channel(EpollSocketChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(InetAddress.getLoopbackAddress(), server.getLocalPort()).sync().channel();
+            Socket peer = server.accept();
+            assertTrue(epollGroup.submit(() -> WarmChannelHandler.isReusable(channel)).get(5, TimeUnit.SECONDS));
+
+            // 在 event loop 上等待 FIN 到达，期间 event loop 无法处理 EOF，channel 仍是 active
+            boolean[] result = epollGroup.submit(() -> {
+                peer.close();
+                Thread.sleep(200);
+                return new boolean[]{channel.isActive(), WarmChannelHandler.isReusable(channel)};
+            }).get(5, TimeUnit.SECONDS);
+
+            assertTrue(result[0]);
+            assertFalse(result[1]);
+        } finally {
+            epollGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void credentialsDigestHidesPasswordAndSeparatesUsers() {
+        String digest = WarmConnectionPool.credentialsDigest("alice", "secret");
+
+        assertEquals(64, digest.length());
+        assertFalse(digest.contains("secret"));
+        assertEquals(digest, WarmConnectionPool.credentialsDigest("alice", "secret"));
+        assertNotEquals(digest, WarmConnectionPool.credentialsDigest("alic", "esecret"));
+    }
+
+    @Test
+    void disabledPoolNeverDials() throws Exception {
+        WarmConnectionPool pool = new WarmConnectionPool(false, 4, 10_000);
+
+        assertNull(acquire(pool, 1, new CompletableFuture<>()));
+        assertNull(acquire(pool, 1, new CompletableFuture<>()));
+        assertEquals(0, dials.get());
+    }
+
+    private Channel acquire(WarmConnectionPool pool, int port, CompletableFuture<String> received) throws Exception {
+        Bootstrap bootstrap = new Bootstrap().group(eventLoop).channel(NioSocketChannel.class);
+        return eventLoop.submit(() -> pool.acquire(eventLoop, KEY,
+                warmHandler -> {
+                    dials.incrementAndGet();
+                    return bootstrap.handler(warmHandler).connect(InetAddress.getLoopbackAddress(), port);
+                },
+                pipeline -> pipeline.addLast(new SimpleChannelInboundHandler<ByteBuf>() {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                        received.complete(msg.toString(StandardCharsets.US_ASCII));
+                    }
+                }))).get(5, TimeUnit.SECONDS);
+    }
+
+    private void awaitIdleCount(WarmConnectionPool pool, int expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (eventLoop.submit(() -> pool.idleCount(eventLoop, KEY)).get() != expected) {
+            assertTrue(System.nanoTime() < deadline, "idle count did not reach " + expected);
+            Thread.sleep(20);
+        }
+    }
+}
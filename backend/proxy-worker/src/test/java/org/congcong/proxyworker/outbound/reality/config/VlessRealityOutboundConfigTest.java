@@ -1,7 +1,9 @@
 package org.congcong.proxyworker.outbound.reality.config;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Map;
 import java.util.UUID;
@@ -31,6 +33,24 @@ class VlessRealityOutboundConfigTest {
         assertEquals(UUID.fromString("11111111-1111-1111-1111-111111111111"), config.uuid());
         assertEquals(VlessFlow.XTLS_RPRX_VISION, config.flow());
         assertEquals(10000, config.connectTimeoutMillis());
+        assertFalse(config.muxEnabled());
+    }
+
+    @Test
+    void readsMuxSettings() {
+        RouteConfig route = baseRoute(Map.of(
+                "serverName", "www.example.com",
+                "publicKey", "j4VYpQ2F2P7N5L3S0M9K8J6H4G2F1D0C",
+                "shortId", "6ba85179e30d4fc2",
+                "uuid", "11111111-1111-1111-1111-111111111111",
+                "mux", "true",
+                "muxConcurrency", 16));
+
+        VlessRealityOutboundConfig config = VlessRealityOutboundConfig.from(route);
+
+        assertTrue(config.muxEnabled());
+        assertEquals(16, config.muxConcurrency());
+        assertEquals(30000, config.muxIdleTimeoutMillis());
     }
 
     @Test
@@ -0,0 +1,44 @@
+package org.congcong.proxyworker.outbound.reality.mux;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBufUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MuxFrameCodecTest {
+
+    @Test
+    void encodesNewFrameWithPortThenAddress() {
+        assertEquals("0014" + "0001" + "01" + "00" + "01" + "01bb" + "02" + "0b"
+                        + ByteBufUtil.hexDump("example.com".getBytes(StandardCharsets.US_ASCII)),
+                ByteBufUtil.hexDump(MuxFrameCodec.encodeNew(1, "example.com", 443)));
+        assertEquals("000c" + "0002" + "01" + "00" + "01" + "0050" + "01" + "0a000001",
+                ByteBufUtil.hexDump(MuxFrameCodec.encodeNew(2, "10.0.0.1", 80)));
+    }
+
+    @Test
+    void decodesFramesSplitAcrossChunks() {
+        byte[] keep = MuxFrameCodec.encodeKeep(3, "hello".getBytes(StandardCharsets.US_ASCII), 0, 5);
+        byte[] end = MuxFrameCodec.encodeEnd(3);
+        byte[] stream = new byte[keep.length + end.length];
+        System.arraycopy(keep, 0, stream, 0, keep.length);
+        System.arraycopy(end, 0, stream, keep.length, end.length);
+        MuxFrameCodec codec = new MuxFrameCodec();
+
+        assertTrue(codec.decode(Arrays.copyOfRange(stream, 0, 7)).isEmpty());
+        List<MuxFrame> frames = codec.decode(Arrays.copyOfRange(stream, 7, stream.length));
+
+        assertEquals(2, frames.size());
+        assertEquals(3, frames.get(0).sessionId());
+        assertEquals(MuxFrame.STATUS_KEEP, frames.get(0).status());
+        assertArrayEquals("hello".getBytes(StandardCharsets.US_ASCII), frames.get(0).data());
+        assertEquals(MuxFrame.STATUS_END, frames.get(1).status());
+        assertEquals(0, frames.get(1).data().length);
+        codec.release();
+    }
+}
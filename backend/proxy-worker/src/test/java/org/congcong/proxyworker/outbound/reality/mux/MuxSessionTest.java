@@ -0,0 +1,105 @@
+package org.congcong.proxyworker.outbound.reality.mux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.Promise;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.congcong.proxyworker.outbound.reality.tls.TlsApplicationDataWriter;
+import org.congcong.proxyworker.outbound.reality.tls.TlsRecord;
+import org.congcong.proxyworker.outbound.reality.tls.TlsRecordType;
+import org.junit.jupiter.api.Test;
+
+class MuxSessionTest {
+
+    private static final TlsApplicationDataWriter PLAINTEXT_WRITER =
+            payload -> new TlsRecord(TlsRecordType.APPLICATION_DATA, 0x0303, payload);
+
+    private final EmbeddedChannel parent = new EmbeddedChannel();
+
+    @Test
+    void relaysStreamDataAsKeepFramesAndClosesIdleSession() {
+        MuxSession session = readySession(8, 30_000);
+        Promise<Channel> relayPromise = parent.eventLoop().newPromise();
+
+        ChannelFuture opened = session.openStream("example.com", 443, relayPromise);
+
+        assertTrue(opened.isSuccess());
+        Channel stream = opened.channel();
+        assertSame(stream, relayPromise.getNow());
+        assertEquals(ByteBufUtil.hexDump(MuxFrameCodec.encodeNew(1, "example.com", 443)), nextFrame());
+        List<String> received = new ArrayList<>();
+        stream.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                ByteBuf data = (ByteBuf) msg;
+                received.add(data.toString(StandardCharsets.US_ASCII));
+                data.release();
+            }
+        });
+
+        stream.writeAndFlush(Unpooled.copiedBuffer("ping", StandardCharsets.US_ASCII));
+        assertEquals("0004" + "0001" + "02" + "01" + "0004" + "70696e67", nextFrame());
+
+        session.onFrames(frames(MuxFrameCodec.encodeKeep(1, "pong".getBytes(StandardCharsets.US_ASCII), 0, 4)));
+        assertEquals(List.of("pong"), received);
+
+        session.onFrames(frames(MuxFrameCodec.encodeEnd(1)));
+        assertFalse(stream.isOpen());
+        assertNull(parent.readOutbound());
+
+        parent.advanceTimeBy(30, TimeUnit.SECONDS);
+        parent.runScheduledPendingTasks();
+        assertFalse(parent.isOpen());
+    }
+
+    @Test
+    void localCloseSendsEndAndFreesCapacity() {
+        MuxSession session = readySession(1, 30_000);
+
+        Channel stream = session.openStream("10.0.0.1", 80, parent.eventLoop().newPromise()).channel();
+        nextFrame();
+        assertFalse(session.hasCapacity());
+
+        stream.close();
+
+        assertEquals("0004" + "0001" + "03" + "00", nextFrame());
+        assertTrue(session.hasCapacity());
+        assertTrue(parent.isOpen());
+    }
+
+    private MuxSession readySession(int concurrency, long idleTimeoutMillis) {
+        MuxSession session = new MuxSession(parent.eventLoop(), concurrency, idleTimeoutMillis);
+        session.attach(parent, () -> { });
+        session.onReady(PLAINTEXT_WRITER);
+        return session;
+    }
+
+    private String nextFrame() {
+        TlsRecord record = parent.readOutbound();
+        return ByteBufUtil.hexDump(record.payload());
+    }
+
+    private static List<MuxFrame> frames(byte[] bytes) {
+        MuxFrameCodec codec = new MuxFrameCodec();
+        try {
+            return codec.decode(bytes);
+        } finally {
+            codec.release();
+        }
+    }
+}
@@ -42,4 +42,13 @@ class VlessCodecTest {
         assertEquals("20010db8000000000000000000000001", ByteBufUtil.hexDump(ipv6, 22, 16));
         assertTrue(ipv6.length > ipv4.length);
     }
+
+    @Test
+    void encodesMuxCommandWithoutAddress() {
+        byte[] encoded = new VlessCodec().encode(VlessRequest.mux(UUID.fromString("11111111-1111-1111-1111-111111111111")));
+
+        assertEquals(19, encoded.length);
+        assertEquals(0x00, encoded[17] & 0xff);
+        assertEquals(0x03, encoded[18] & 0xff);
+    }
 }
@@ -0,0 +1,117 @@
+package org.congcong.proxyworker.protocol.dns;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.dns.DatagramDnsResponse;
+import io.netty.handler.codec.dns.DefaultDnsQuestion;
+import io.netty.handler.codec.dns.DefaultDnsRawRecord;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.handler.codec.dns.DnsResponseCode;
+import io.netty.handler.codec.dns.DnsSection;
+import org.congcong.common.enums.ProtocolType;
+import org.congcong.proxyworker.ProxyWorkerTestFixtures;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DnsAnswerCacheTest {
+
+    private static final InetSocketAddress SERVER = ProxyWorkerTestFixtures.socket("192.168.1.1", 53);
+    private static final InetSocketAddress CLIENT = ProxyWorkerTestFixtures.socket("192.168.1.30", 5353);
+    private static final DnsAnswerCache.Key KEY =
+            DnsAnswerCache.Key.of(ProtocolType.DNS_SERVER, "1.1.1.1:53", "Example.COM.", DnsRecordType.A);
+
+    @Test
+    void hitRewritesIdAndDecrementsTtl() {
+        DnsAnswerCache cache = new DnsAnswerCache(100, 60);
+        DatagramDnsResponse upstream = response(DnsResponseCode.NOERROR);
+        upstream.addRecord(DnsSection.ANSWER, new DefaultDnsRawRecord(
+                "example.com.", DnsRecordType.A, 300, Unpooled.wrappedBuffer(new byte[]{10, 0, 0, 1})));
+        assertTrue(cache.store(KEY, upstream, 1_000));
+        upstream.release();
+
+        DnsAnswerCache.Key sameKeyOtherCase =
+                DnsAnswerCache.Key.of(ProtocolType.DNS_SERVER, "1.1.1.1:53", "example.com.", DnsRecordType.A);
+        DnsAnswerCache.Entry entry = cache.lookup(sameKeyOtherCase, 101_000);
+        assertNotNull(entry);
+        assertFalse(entry.isStale(101_000));
+        DatagramDnsResponse hit = toResponse(entry, 0x4321, 101_000);
+        try {
+            assertEquals(0x4321, hit.id());
+            DnsRecord answer = hit.recordAt(DnsSection.ANSWER);
+            assertEquals(200, answer.timeToLive());
+        } finally {
+            hit.release();
+        }
+    }
+
+    @Test
+    void negativeAnswerUsesSoaMinimumAndExpiresIntoStaleWindow() {
+        DnsAnswerCache cache = new DnsAnswerCache(100, 60);
+        DatagramDnsResponse upstream = response(DnsResponseCode.NXDOMAIN);
+        upstream.addRecord(DnsSection.AUTHORITY, soa(900, 120));
+        assertTrue(cache.store(KEY, upstream, 0));
+        upstream.release();
+
+        DnsAnswerCache.Entry entry = cache.lookup(KEY, 119_000);
+        assertNotNull(entry);
+        assertFalse(entry.isStale(119_000));
+
+        entry = cache.lookup(KEY, 150_000);
+        assertNotNull(entry);
+        assertTrue(entry.isStale(150_000));
+        assertTrue(entry.tryStartRefresh(150_000));
+        assertFalse(entry.tryStartRefresh(151_000));
+        DatagramDnsResponse stale = toResponse(entry, 1, 150_000);
+        try {
+            assertEquals(DnsResponseCode.NXDOMAIN, stale.code());
+            assertEquals(DnsAnswerCache.STALE_TTL_SECONDS, stale.recordAt(DnsSection.AUTHORITY).timeToLive());
+        } finally {
+            stale.release();
+        }
+
+        assertNull(cache.lookup(KEY, 180_000));
+    }
+
+    @Test
+    void doesNotCacheServfailOrNegativeAnswersWithoutSoa() {
+        DnsAnswerCache cache = new DnsAnswerCache(100, 60);
+        DatagramDnsResponse servfail = response(DnsResponseCode.SERVFAIL);
+        DatagramDnsResponse nodata = response(DnsResponseCode.NOERROR);
+
+        assertFalse(cache.store(KEY, servfail, 0));
+        assertFalse(cache.store(KEY, nodata, 0));
+        assertEquals(0, cache.size());
+        servfail.release();
+        nodata.release();
+    }
+
+    private DatagramDnsResponse toResponse(DnsAnswerCache.Entry entry, int id, long nowMillis) {
+        return entry.toResponse(SERVER, CLIENT, id, new DefaultDnsQuestion("example.com.", DnsRecordType.A), nowMillis);
+    }
+
+    private DatagramDnsResponse response(DnsResponseCode code) {
+        DatagramDnsResponse response = new DatagramDnsResponse(SERVER, CLIENT, 7);
+        response.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion("example.com.", DnsRecordType.A));
+        response.setCode(code);
+        return response;
+    }
+
+    private DefaultDnsRawRecord soa(long ttl, int minimum) {
+        // MNAME/RNAME 用根域名占位，后面是 SERIAL REFRESH RETRY EXPIRE MINIMUM
+        return new DefaultDnsRawRecord("example.com.", DnsRecordType.SOA, ttl, Unpooled.buffer()
+                .writeByte(0)
+                .writeByte(0)
+                .writeInt(1)
+                .writeInt(3600)
+                .writeInt(600)
+                .writeInt(86400)
+                .writeInt(minimum));
+    }
+}
@@ -1,8 +1,10 @@
 package org.congcong.proxyworker.protocol.dns;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
@@ -17,6 +19,7 @@ import org.congcong.common.enums.ProtocolType;
 import org.congcong.proxyworker.AddressedEmbeddedChannel;
 import org.congcong.proxyworker.ProxyWorkerTestFixtures;
 import org.congcong.proxyworker.config.InboundConfig;
+import org.congcong.proxyworker.config.RouteConfig;
 import org.congcong.proxyworker.config.UserConfig;
 import org.congcong.proxyworker.server.tunnel.ProxyTunnelRequest;
 import org.junit.jupiter.api.AfterEach;
@@ -110,6 +113,46 @@ class DnsForwardProtocolStrategyTest {
         }
     }
 
+    @Test
+    void answersRepeatedQueryFromCacheWithoutUpstreamRoundTrip() {
+        DnsForwardProtocolStrategy strategy = new DnsForwardProtocolStrategy(new DnsAnswerCache(100, 0));
+        ProxyTunnelRequest first = dnsRequest(0x4444, "cached.example.", DnsRecordType.A, "192.168.1.30", 5353);
+        first.setRouteConfig(upstreamRoute());
+        assertFalse(strategy.completeWithoutConnect(inboundCtx, first));
+        strategy.onConnectSuccess(inboundCtx, outbound, first);
+        DatagramDnsQuery query = outbound.readOutbound();
+        try {
+            outbound.writeInbound(upstreamResponse(query.id(), "cached.example.", DnsRecordType.A, 10, 0, 0, 4));
+            DatagramDnsResponse upstreamAnswer = inbound.readOutbound();
+            upstreamAnswer.release();
+        } finally {
+            query.release();
+        }
+
+        ProxyTunnelRequest second = dnsRequest(0x5555, "cached.example.", DnsRecordType.A, "192.168.1.31", 5354);
+        second.setRouteConfig(upstreamRoute());
+        // 命中缓存时在连接上游之前就答复，不再交给出站连接器
+        assertTrue(strategy.completeWithoutConnect(inboundCtx, second));
+
+        assertNull(outbound.readOutbound());
+        DatagramDnsResponse cachedAnswer = inbound.readOutbound();
+        try {
+            assertEquals(0x5555, cachedAnswer.id());
+            assertEquals(5354, cachedAnswer.recipient().getPort());
+            assertTrue(cachedAnswer.recordAt(DnsSection.ANSWER).timeToLive() <= 60);
+        } finally {
+            cachedAnswer.release();
+        }
+    }
+
+    private RouteConfig upstreamRoute() {
+        RouteConfig route = new RouteConfig();
+        route.setOutboundProxyType(ProtocolType.DNS_SERVER);
+        route.setOutboundProxyHost("1.1.1.1");
+        route.setOutboundProxyPort(53);
+        return route;
+    }
+
     private ProxyTunnelRequest dnsRequest(int inboundId,
                                           String qName,
                                           DnsRecordType qType,
@@ -0,0 +1,128 @@
+package org.congcong.proxyworker.protocol.shadowsock;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.congcong.common.enums.ProxyEncAlgo;
+import org.congcong.proxyworker.server.netty.ChannelAttributes;
+import org.congcong.proxyworker.util.encryption.CryptoProcessorFactory;
+import org.congcong.proxyworker.util.encryption.algorithm.AESGCMProcessor;
+import org.congcong.proxyworker.util.encryption.algorithm.AeadNonce;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShadowSocksAeadCodecTest {
+
+    private static final String PASSWORD = "test-password";
+    private static final String PSK_128 = Base64.getEncoder().encodeToString(new byte[16]);
+
+    @Test
+    void streamRoundTripsAcrossChunkBoundariesAndFragmentedReads() {
+        for (ProxyEncAlgo algo : new ProxyEncAlgo[]{ProxyEncAlgo.aes_128_gcm, ProxyEncAlgo.aes_256_gcm, ProxyEncAlgo.chacha20_ietf_poly1305}) {
+            assertStreamRoundTrips(algo);
+        }
+    }
+
+    private void assertStreamRoundTrips(ProxyEncAlgo algo) {
+        byte[] plaintext = randomBytes(AeadChunkCodec.MAX_CHUNK_PAYLOAD * 2 + 123);
+        EmbeddedChannel sender = new EmbeddedChannel(
+                new EncryptedSocksHandler(CryptoProcessorFactory.createProcessor(algo, PASSWORD)));
+        EmbeddedChannel receiver = new EmbeddedChannel(
+                new DecryptedSocksHandler(CryptoProcessorFactory.createProcessor(algo, PASSWORD)));
+
+        sender.writeOutbound(Unpooled.wrappedBuffer(plaintext, 0, 1000));
+        sender.writeOutbound(Unpooled.wrappedBuffer(plaintext, 1000, plaintext.length - 1000));
+        ByteBuf wire = drainOutbound(sender);
+        // 按小片段投递，覆盖长度块、负载块被拆开的情况
+        while (wire.isReadable()) {
+            receiver.writeInbound(wire.readRetainedSlice(Math.min(777, wire.readableBytes())));
+        }
+        wire.release();
+
+        assertArrayEquals(plaintext, drainInbound(receiver), algo.name());
+        sender.finishAndReleaseAll();
+        receiver.finishAndReleaseAll();
+    }
+
+    @Test
+    void byteBufEncryptionMatchesBouncyCastleGcm() throws Exception {
+        byte[] key = randomBytes(32);
+        byte[] plaintext = randomBytes(4096);
+        AESGCMProcessor processor = new AESGCMProcessor();
+        processor.refreshKey(key);
+        AeadNonce nonce = new AeadNonce(12, 255);
+
+        ByteBuf out = Unpooled.directBuffer();
+        processor.encrypt(Unpooled.wrappedBuffer(plaintext), plaintext.length, out, nonce);
+
+        byte[] expectedNonce = new byte[12];
+        expectedNonce[0] = (byte) 0xFF;
+        GCMBlockCipher cipher = new GCMBlockCipher(new AESEngine());
+        cipher.init(true, new AEADParameters(new KeyParameter(key), 128, expectedNonce));
+        byte[] expected = new byte[cipher.getOutputSize(plaintext.length)];
+        cipher.doFinal(expected, cipher.processBytes(plaintext, 0, plaintext.length, expected, 0));
+
+        assertArrayEquals(expected, ByteBufUtil.getBytes(out));
+        // 255 + 1 需要进位到第二个字节
+        assertArrayEquals(new byte[]{0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, nonce.current());
+        out.release();
+    }
+
+    @Test
+    void shadowSocks2022ResponseRoundTrips() {
+        byte[] requestSalt = randomBytes(16);
+        byte[] plaintext = randomBytes(AeadChunkCodec.MAX_CHUNK_PAYLOAD + 10);
+        EmbeddedChannel server = new EmbeddedChannel(new ShadowSocks2022ServerEncoder(
+                CryptoProcessorFactory.createProcessor(ProxyEncAlgo.blake3_2022_aes_128_gcm, PSK_128)));
+        ChannelAttributes.setShadowSocks2022RequestSalt(server, requestSalt);
+        ShadowSocks2022ClientSession session = new ShadowSocks2022ClientSession();
+        session.setRequestSalt(requestSalt);
+        EmbeddedChannel client = new EmbeddedChannel(new ShadowSocks2022ClientResponseDecoder(
+                CryptoProcessorFactory.createProcessor(ProxyEncAlgo.blake3_2022_aes_128_gcm, PSK_128), session));
+
+        server.writeOutbound(Unpooled.wrappedBuffer(plaintext));
+        server.writeOutbound(Unpooled.wrappedBuffer(new byte[]{1, 2, 3}));
+        client.writeInbound(drainOutbound(server));
+
+        ByteBuf received = Unpooled.wrappedBuffer(drainInbound(client));
+        assertArrayEquals(plaintext, ByteBufUtil.getBytes(received, 0, plaintext.length));
+        assertArrayEquals(new byte[]{1, 2, 3}, ByteBufUtil.getBytes(received, plaintext.length, 3));
+        server.finishAndReleaseAll();
+        client.finishAndReleaseAll();
+    }
+
+    private static ByteBuf drainOutbound(EmbeddedChannel channel) {
+        ByteBuf all = Unpooled.buffer();
+        ByteBuf buf;
+        while ((buf = channel.readOutbound()) != null) {
+            all.writeBytes(buf);
+            buf.release();
+        }
+        return all;
+    }
+
+    private static byte[] drainInbound(EmbeddedChannel channel) {
+        ByteBuf all = Unpooled.buffer();
+        ByteBuf buf;
+        while ((buf = channel.readInbound()) != null) {
+            all.writeBytes(buf);
+            buf.release();
+        }
+        return ByteBufUtil.getBytes(all);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,95 @@
+package org.congcong.proxyworker.ratelimit;
+
+import org.congcong.common.enums.RateLimitScopeType;
+import org.congcong.proxyworker.config.RateLimitConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitRegistryTest {
+
+    @AfterEach
+    void tearDown() {
+        RateLimitRegistry.refresh(List.of());
+    }
+
+    @Test
+    void tokenBucketAllowsBurstThenReportsDebtAsWaitTime() {
+        TokenBucket bucket = new TokenBucket(1000, 500, 0);
+
+        assertEquals(0, bucket.consume(500, 0));
+        // 透支 1000 字节，按 1000 B/s 需要等待 1 秒
+        assertEquals(1_000_000_000L, bucket.consume(1000, 0));
+        // 0.5 秒后补充 500 字节，仍欠 500 字节
+        assertEquals(500_000_000L, bucket.consume(0, 500_000_000L));
+    }
+
+    @Test
+    void userScopedLimitOnlyAppliesToListedUsers() {
+        RateLimitConfig config = config(1L, RateLimitScopeType.USERS, List.of(7L));
+        config.setUplinkLimitBps(8_000L);
+        config.setBurstBytes(1_000L);
+        RateLimitRegistry.refresh(List.of(config));
+
+        assertEquals(0, RateLimitRegistry.consume(7L, RateLimitRegistry.Direction.UPLINK, 1_000));
+        assertTrue(RateLimitRegistry.consume(7L, RateLimitRegistry.Direction.UPLINK, 1_000) > 0);
+        assertEquals(0, RateLimitRegistry.consume(7L, RateLimitRegistry.Direction.DOWNLINK, 10_000));
+        assertEquals(0, RateLimitRegistry.consume(8L, RateLimitRegistry.Direction.UPLINK, 10_000));
+        assertTrue(RateLimitRegistry.isLimited(7L));
+        assertFalse(RateLimitRegistry.isLimited(8L));
+        assertFalse(RateLimitRegistry.isLimited(null));
+    }
+
+    @Test
+    void refreshKeepsBucketStateForUnchangedRules() {
+        RateLimitConfig config = config(1L, RateLimitScopeType.GLOBAL, null);
+        config.setDownlinkLimitBps(8_000L);
+        config.setBurstBytes(1_000L);
+        RateLimitRegistry.refresh(List.of(config));
+        RateLimitRegistry.consume(null, RateLimitRegistry.Direction.DOWNLINK, 1_000);
+
+        RateLimitRegistry.refresh(List.of(config));
+
+        assertTrue(RateLimitRegistry.consume(null, RateLimitRegistry.Direction.DOWNLINK, 1_000) > 0);
+    }
+
+    @Test
+    void disabledRulesAreIgnored() {
+        RateLimitConfig config = config(1L, RateLimitScopeType.GLOBAL, null);
+        config.setEnabled(false);
+        config.setUplinkLimitBps(8L);
+        RateLimitRegistry.refresh(List.of(config));
+
+        assertTrue(RateLimitRegistry.isEmpty());
+    }
+
+    @Test
+    void timeWindowSupportsRangesCrossingMidnight() {
+        RateLimitConfig config = config(1L, RateLimitScopeType.GLOBAL, null);
+        config.setEffectiveTimeStart(LocalTime.of(22, 0));
+        config.setEffectiveTimeEnd(LocalTime.of(6, 0));
+        config.setEffectiveFrom(LocalDate.of(2026, 1, 1));
+
+        assertTrue(RateLimitRule.isActiveAt(config, LocalDateTime.of(2026, 3, 1, 23, 30)));
+        assertTrue(RateLimitRule.isActiveAt(config, LocalDateTime.of(2026, 3, 1, 5, 59)));
+        assertFalse(RateLimitRule.isActiveAt(config, LocalDateTime.of(2026, 3, 1, 12, 0)));
+        assertFalse(RateLimitRule.isActiveAt(config, LocalDateTime.of(2025, 12, 31, 23, 30)));
+    }
+
+    private RateLimitConfig config(Long id, RateLimitScopeType scopeType, List<Long> userIds) {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setId(id);
+        config.setScopeType(scopeType);
+        config.setUserIds(userIds);
+        config.setEnabled(true);
+        return config;
+    }
+}
@@ -0,0 +1,159 @@
+package org.congcong.proxyworker.router;
+
+import io.netty.util.NetUtil;
+import org.congcong.common.dto.RouteRule;
+import org.congcong.common.dto.RuleSetDTO;
+import org.congcong.common.dto.RuleSetItemDTO;
+import org.congcong.common.enums.MatchOp;
+import org.congcong.common.enums.RouteConditionType;
+import org.congcong.common.enums.RoutePolicy;
+import org.congcong.common.enums.RuleSetItemType;
+import org.congcong.common.enums.RuleSetMatchTarget;
+import org.congcong.proxyworker.config.RouteConfig;
+import org.congcong.proxyworker.rules.RuleSetRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CompiledRoutesTest {
+
+    @AfterEach
+    void tearDown() {
+        RuleSetRegistry.refresh(List.of());
+    }
+
+    @Test
+    void picksFirstRouteWithAnyMatchingRuleAcrossConditionTypes() {
+        RuleSetRegistry.refresh(List.of(ruleSet("streaming", "video.example")));
+        RouteConfig ruleSetRoute = route("rule-set", rule(RouteConditionType.RULE_SET, MatchOp.IN, "streaming"));
+        RouteConfig notInRoute = route("not-internal", rule(RouteConditionType.DOMAIN, MatchOp.NOT_IN, ".internal.lan"));
+        RouteConfig domainRoute = route("domain", rule(RouteConditionType.DOMAIN, MatchOp.IN, "nas.internal.lan"));
+        CompiledRoutes routes = CompiledRoutes.compile(List.of(ruleSetRoute, notInRoute, domainRoute));
+
+        assertSame(ruleSetRoute, routes.select(target("cdn.video.example", false, null)));
+        assertSame(notInRoute, routes.select(target("www.example.com", false, null)));
+        assertSame(domainRoute, routes.select(target("nas.internal.lan", false, null)));
+        assertNull(routes.select(target("printer.internal.lan", false, null)));
+    }
+
+    @Test
+    void resolvesCountryOnlyWhenGeoRuleCanChangeTheResult() {
+        RouteConfig domainRoute = route("domain", rule(RouteConditionType.DOMAIN, MatchOp.IN, "*"));
+        RouteConfig geoRoute = route("geo", rule(RouteConditionType.GEO, MatchOp.IN, "CN"));
+        CompiledRoutes domainFirst = CompiledRoutes.compile(List.of(domainRoute, geoRoute));
+        CompiledRoutes geoFirst = CompiledRoutes.compile(List.of(geoRoute, domainRoute));
+
+        CountingTarget target = target("1.2.3.4", true, "CN");
+        assertSame(domainRoute, domainFirst.select(target));
+        assertEquals(0, target.countryLookups);
+
+        target = target("1.2.3.4", true, "CN");
+        assertSame(geoRoute, geoFirst.select(target));
+        assertEquals(1, target.countryLookups);
+
+        target = target("1.2.3.4", true, "NOT CN");
+        assertSame(domainRoute, geoFirst.select(target));
+    }
+
+    @Test
+    void ruleSetConditionsNeverMatchIpTargets() {
+        RouteConfig notInRuleSet = route("not-in", rule(RouteConditionType.RULE_SET, MatchOp.NOT_IN, "missing"));
+        CompiledRoutes routes = CompiledRoutes.compile(List.of(notInRuleSet));
+
+        assertNull(routes.select(target("10.0.0.1", true, null)));
+        assertSame(notInRuleSet, routes.select(target("example.com", false, null)));
+    }
+
+    @Test
+    void ipCidrItemsMatchIpTargetsAndKnownAddressesOfDomains() {
+        RuleSetRegistry.refresh(List.of(ruleSet("lan", RuleSetItemType.IP_CIDR, "192.168.0.0/16"),
+                ruleSet("v6", RuleSetItemType.IP_CIDR6, "2001:db8::/32")));
+        RouteConfig lanRoute = route("lan", rule(RouteConditionType.RULE_SET, MatchOp.IN, "lan"));
+        RouteConfig v6Route = route("v6", rule(RouteConditionType.RULE_SET, MatchOp.IN, "v6"));
+        RouteConfig notLanRoute = route("not-lan", rule(RouteConditionType.RULE_SET, MatchOp.NOT_IN, "lan"));
+        CompiledRoutes routes = CompiledRoutes.compile(List.of(lanRoute, v6Route, notLanRoute));
+
+        assertSame(lanRoute, routes.select(target("192.168.1.10", true, null)));
+        assertSame(v6Route, routes.select(target("2001:db8::1", true, null)));
+        assertSame(notLanRoute, routes.select(target("10.0.0.1", true, null)));
+        // 域名目标只在请求带有解析结果时参与 IP 规则
+        assertSame(lanRoute, routes.select(new CountingTarget("nas.example", false, null, "192.168.3.3")));
+        assertSame(notLanRoute, routes.select(target("nas.example", false, null)));
+    }
+
+    private CountingTarget target(String host, boolean ip, String country) {
+        return new CountingTarget(host, ip, country, ip ? host : null);
+    }
+
+    private RouteConfig route(String name, RouteRule rule) {
+        RouteConfig route = new RouteConfig();
+        route.setName(name);
+        route.setPolicy(RoutePolicy.DIRECT);
+        route.setRules(List.of(rule));
+        return route;
+    }
+
+    private RouteRule rule(RouteConditionType type, MatchOp op, String value) {
+        RouteRule rule = new RouteRule();
+        rule.setConditionType(type);
+        rule.setOp(op);
+        rule.setValue(value);
+        return rule;
+    }
+
+    private RuleSetDTO ruleSet(String key, String suffix) {
+        return ruleSet(key, RuleSetItemType.DOMAIN_SUFFIX, suffix);
+    }
+
+    private RuleSetDTO ruleSet(String key, RuleSetItemType type, String value) {
+        RuleSetItemDTO item = new RuleSetItemDTO();
+        item.setType(type);
+        item.setValue(value);
+        RuleSetDTO ruleSet = new RuleSetDTO();
+        ruleSet.setRuleKey(key);
+        ruleSet.setMatchTarget(RuleSetMatchTarget.DOMAIN);
+        ruleSet.setItems(List.of(item));
+        return ruleSet;
+    }
+
+    private static final class CountingTarget implements CompiledRoutes.Target {
+        private final String host;
+        private final boolean ip;
+        private final String country;
+        private final String address;
+        private int countryLookups;
+
+        private CountingTarget(String host, boolean ip, String country, String address) {
+            this.host = host;
+            this.ip = ip;
+            this.country = country;
+            this.address = address;
+        }
+
+        @Override
+        public String normalizedHost() {
+            return host;
+        }
+
+        @Override
+        public boolean hostIsIp() {
+            return ip;
+        }
+
+        @Override
+        public byte[] targetAddress() {
+            return address == null ? null : NetUtil.createByteArrayFromIpAddressString(address);
+        }
+
+        @Override
+        public String country() {
+            countryLookups++;
+            return country;
+        }
+    }
+}
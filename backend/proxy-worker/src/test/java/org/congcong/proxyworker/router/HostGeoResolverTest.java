@@ -0,0 +1,60 @@
+package org.congcong.proxyworker.router;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import org.congcong.common.util.geo.GeoIPUtil;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostGeoResolverTest {
+
+    @Test
+    void concurrentResolutionsShareOneLookupAndRespectTtl() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        Promise<HostGeoResolver.ResolvedAddress> lookup = channel.eventLoop().newPromise();
+        AtomicInteger lookups = new AtomicInteger();
+        HostGeoResolver resolver = new HostGeoResolver((eventLoop, host) -> {
+            lookups.incrementAndGet();
+            return lookup;
+        }, 16);
+
+        Future<HostGeoResolver.Entry> first = resolver.resolve(channel.eventLoop(), "nas.lan");
+        Future<HostGeoResolver.Entry> second = resolver.resolve(channel.eventLoop(), "nas.lan");
+        long before = System.currentTimeMillis();
+        lookup.setSuccess(new HostGeoResolver.ResolvedAddress(InetAddress.getByAddress("nas.lan", new byte[]{10, 0, 0, 2}), 600));
+        channel.runPendingTasks();
+
+        assertEquals(1, lookups.get());
+        assertEquals("10.0.0.2", first.getNow().ip());
+        assertEquals(GeoIPUtil.PRIVATE, second.getNow().country());
+        long expiresAt = first.getNow().expiresAtMillis();
+        assertTrue(expiresAt >= before + TimeUnit.SECONDS.toMillis(600));
+        assertNotNull(resolver.cached("nas.lan", expiresAt - 1));
+        assertNull(resolver.cached("nas.lan", expiresAt));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void failedLookupIsNegativelyCachedWithoutCountry() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        HostGeoResolver resolver = new HostGeoResolver(
+                (eventLoop, host) -> eventLoop.newFailedFuture(new UnknownHostException(host)), 16);
+
+        Future<HostGeoResolver.Entry> result = resolver.resolve(channel.eventLoop(), "missing.lan");
+        channel.runPendingTasks();
+
+        assertTrue(result.isSuccess());
+        assertNull(result.getNow().country());
+        HostGeoResolver.Entry cached = resolver.cached("missing.lan", System.currentTimeMillis());
+        assertNotNull(cached);
+        assertTrue(cached.expiresAtMillis() <= System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(HostGeoResolver.MIN_TTL_SECONDS));
+        channel.finishAndReleaseAll();
+    }
+}
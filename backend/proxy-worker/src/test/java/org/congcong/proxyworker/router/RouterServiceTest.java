@@ -1,23 +1,33 @@
 package org.congcong.proxyworker.router;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.Promise;
 import org.congcong.common.dto.ProxyContext;
 import org.congcong.common.dto.RouteRule;
+import org.congcong.common.dto.RuleSetDTO;
+import org.congcong.common.dto.RuleSetItemDTO;
 import org.congcong.common.enums.MatchOp;
 import org.congcong.common.enums.ProtocolType;
 import org.congcong.common.enums.RouteConditionType;
 import org.congcong.common.enums.RoutePolicy;
+import org.congcong.common.enums.RuleSetItemType;
+import org.congcong.common.enums.RuleSetMatchTarget;
 import org.congcong.proxyworker.config.InboundConfig;
 import org.congcong.proxyworker.config.RouteConfig;
 import org.congcong.proxyworker.config.UserConfig;
+import org.congcong.proxyworker.rules.RuleSetRegistry;
 import org.congcong.proxyworker.server.netty.ChannelAttributes;
 import org.congcong.proxyworker.server.tunnel.ProxyTunnelRequest;
 import org.junit.jupiter.api.Test;
 
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.*;
 
 class RouterServiceTest {
 
@@ -67,6 +77,99 @@ class RouterServiceTest {
         channel.finishAndReleaseAll();
     }
 
+    @Test
+    void decisionCacheIsInvalidatedWhenConfigIsRefreshed() {
+        UserConfig user = user();
+        RouteConfig ruleSetRoute = route(1L, "rule-set-direct", RoutePolicy.DIRECT, ruleSetRule("cn-sites"));
+        RouteConfig fallback = route(2L, "fallback-block", RoutePolicy.BLOCK, domainRule("*"));
+        InboundConfig inbound = inbound(user, List.of(ruleSetRoute), fallback);
+        try {
+            RuleSetRegistry.refresh(List.of());
+            CompiledRouteRegistry.refresh(List.of(inbound));
+            assertSame(fallback, route(user, inbound, "www.example.cn"));
+
+            RuleSetRegistry.refresh(List.of(ruleSet("cn-sites", "example.cn")));
+            assertSame(fallback, route(user, inbound, "www.example.cn"));
+            CompiledRouteRegistry.refresh(List.of(inbound));
+            assertSame(ruleSetRoute, route(user, inbound, "www.example.cn"));
+        } finally {
+            RuleSetRegistry.refresh(List.of());
+        }
+    }
+
+    @Test
+    void routesWithoutUserAreCompiledOncePerInbound() {
+        UserConfig user = user();
+        RouteConfig fallback = route(2L, "fallback-block", RoutePolicy.BLOCK, domainRule("*"));
+        InboundConfig inbound = inbound(user, List.of(), fallback);
+        CompiledRouteRegistry.refresh(List.of(inbound));
+
+        CompiledRoutes routes = CompiledRouteRegistry.get(null, inbound);
+
+        assertSame(routes, CompiledRouteRegistry.get(null, inbound));
+        assertNotSame(routes, CompiledRouteRegistry.get(null, inbound(user, List.of(), fallback)));
+    }
+
+    @Test
+    void geoRouteForDomainWaitsForAsyncResolutionAndKeepsPayloadOrder() throws Exception {
+        UserConfig user = user();
+        RouteConfig notCn = route(1L, "not-cn-proxy", RoutePolicy.DIRECT, geoRule("CN", MatchOp.NOT_IN));
+        RouteConfig fallback = route(2L, "fallback-block", RoutePolicy.BLOCK, domainRule("*"));
+        InboundConfig inbound = inbound(user, List.of(notCn), fallback);
+        EmbeddedChannel channel = new EmbeddedChannel();
+        Promise<HostGeoResolver.ResolvedAddress> lookup = channel.eventLoop().newPromise();
+        HostGeoResolver geoResolver = new HostGeoResolver((eventLoop, host) -> lookup, 16);
+        channel.pipeline().addLast(new RouterService(geoResolver));
+        ChannelAttributes.setProxyContext(channel, new ProxyContext());
+
+        channel.writeInbound(new ProxyTunnelRequest(ProtocolType.SOCKS5, "nas.lan", 443, user, inbound, null));
+        channel.writeInbound(Unpooled.copiedBuffer("hello", StandardCharsets.US_ASCII));
+        assertNull(channel.readInbound());
+        assertFalse(channel.config().isAutoRead());
+
+        // 内网地址按“非中国”处理，不依赖 GeoIP 库
+        lookup.setSuccess(new HostGeoResolver.ResolvedAddress(InetAddress.getByAddress("nas.lan", new byte[]{(byte) 192, (byte) 168, 1, 20}), 60));
+        channel.runPendingTasks();
+
+        ProxyTunnelRequest routed = channel.readInbound();
+        assertSame(notCn, routed.getRouteConfig());
+        ByteBuf payload = channel.readInbound();
+        assertEquals("hello", payload.toString(StandardCharsets.US_ASCII));
+        payload.release();
+        assertTrue(channel.config().isAutoRead());
+        assertNull(channel.pipeline().get(PendingInboundBuffer.class));
+        channel.finishAndReleaseAll();
+    }
+
+    private RouteConfig route(UserConfig user, InboundConfig inbound, String host) {
+        ProxyTunnelRequest request = new ProxyTunnelRequest(ProtocolType.SOCKS5, host, 443, user, inbound, null);
+        EmbeddedChannel channel = new EmbeddedChannel(RouterService.getInstance());
+        ChannelAttributes.setProxyContext(channel, new ProxyContext());
+        channel.writeInbound(request);
+        ProxyTunnelRequest routed = channel.readInbound();
+        channel.finishAndReleaseAll();
+        return routed.getRouteConfig();
+    }
+
+    private RouteRule ruleSetRule(String ruleSetKey) {
+        RouteRule rule = new RouteRule();
+        rule.setConditionType(RouteConditionType.RULE_SET);
+        rule.setOp(MatchOp.IN);
+        rule.setValue(ruleSetKey);
+        return rule;
+    }
+
+    private RuleSetDTO ruleSet(String key, String suffix) {
+        RuleSetItemDTO item = new RuleSetItemDTO();
+        item.setType(RuleSetItemType.DOMAIN_SUFFIX);
+        item.setValue(suffix);
+        RuleSetDTO ruleSet = new RuleSetDTO();
+        ruleSet.setRuleKey(key);
+        ruleSet.setMatchTarget(RuleSetMatchTarget.DOMAIN);
+        ruleSet.setItems(List.of(item));
+        return ruleSet;
+    }
+
     private InboundConfig inbound(UserConfig user, List<RouteConfig> routes, RouteConfig fallback) {
         InboundConfig inbound = new InboundConfig();
         inbound.setProtocol(ProtocolType.SOCKS5);
@@ -0,0 +1,138 @@
+package org.congcong.proxyworker.rules;
+
+import org.congcong.common.dto.RuleSetDTO;
+import org.congcong.common.dto.RuleSetItemDTO;
+import org.congcong.common.enums.RuleSetItemType;
+import org.congcong.common.util.geo.RuleSetArtifact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleSetRegistryTest {
+
+    @AfterEach
+    void tearDown() {
+        RuleSetRegistry.refresh(List.of());
+    }
+
+    @Test
+    void reusesCompiledRuleSetsWhoseVersionAndItemsAreUnchanged() {
+        RuleSetRegistry.refresh(List.of(ruleSet(1L, "ai", 1L, "openai.com"), ruleSet(2L, "cn", 1L, "example.cn")));
+        RuleSetRegistry.CompiledRuleSet ai = RuleSetRegistry.get("ai");
+        RuleSetRegistry.CompiledRuleSet cn = RuleSetRegistry.get("cn");
+
+        // 每次下发都是新的 DTO 对象
+        RuleSetRegistry.refresh(List.of(ruleSet(1L, "ai", 1L, "openai.com"), ruleSet(2L, "cn", 2L, "example.cn", "cn")));
+
+        assertSame(ai, RuleSetRegistry.get("ai"));
+        assertNotSame(cn, RuleSetRegistry.get("cn"));
+        assertTrue(RuleSetRegistry.match("cn", "www.gov.cn"));
+    }
+
+    @Test
+    void recompilesWhenItemsChangeWithoutVersionBump() {
+        RuleSetRegistry.refresh(List.of(ruleSet(1L, "ai", 1L, "openai.com")));
+        RuleSetRegistry.refresh(List.of(ruleSet(1L, "ai", 1L, "claude.ai")));
+
+        assertTrue(RuleSetRegistry.match("ai", "claude.ai"));
+        assertFalse(RuleSetRegistry.match("ai", "openai.com"));
+    }
+
+    @Test
+    void recompilesWhenChangedItemsHaveTheSameHashCode() {
+        // "Aa" 与 "BB" 的 String.hashCode 相同，规则项列表的 hashCode 也相同
+        RuleSetRegistry.refresh(List.of(ruleSet(1L, "ai", 1L, "Aa")));
+        RuleSetRegistry.refresh(List.of(ruleSet(1L, "ai", 1L, "BB")));
+
+        assertTrue(RuleSetRegistry.match("ai", "bb"));
+        assertFalse(RuleSetRegistry.match("ai", "aa"));
+    }
+
+    @Test
+    void removedAndDisabledRuleSetsAreDropped() {
+        RuleSetRegistry.refresh(List.of(ruleSet(1L, "ai", 1L, "openai.com"), ruleSet(2L, "cn", 1L, "example.cn")));
+        RuleSetDTO disabled = ruleSet(2L, "cn", 1L, "example.cn");
+        disabled.setEnabled(false);
+
+        RuleSetRegistry.refresh(List.of(disabled));
+
+        assertNull(RuleSetRegistry.get("ai"));
+        assertNull(RuleSetRegistry.get("cn"));
+        assertFalse(RuleSetRegistry.match("cn", "example.cn"));
+    }
+
+    @Test
+    void loadsPrecompiledArtifactByDigestAndReusesItWhileDigestIsUnchanged() {
+        byte[] bytes = RuleSetArtifact.compile("ai", ruleSet(1L, "ai", 1L, "openai.com").getItems()).toBytes();
+        String digest = RuleSetArtifact.digest(bytes);
+        Map<String, byte[]> store = Map.of(digest, bytes);
+        int[] loads = {0};
+        RuleSetDTO ai = ruleSet(1L, "ai", 1L);
+        ai.setItems(null);
+        ai.setArtifactDigest(digest);
+
+        RuleSetRegistry.refresh(List.of(ai), key -> {
+            loads[0]++;
+            return store.get(key);
+        });
+        RuleSetRegistry.refresh(List.of(ai), key -> {
+            loads[0]++;
+            return store.get(key);
+        });
+
+        assertEquals(1, loads[0]);
+        assertTrue(RuleSetRegistry.match("ai", "api.openai.com"));
+        assertFalse(RuleSetRegistry.match("ai", "example.com"));
+    }
+
+    @Test
+    void downloadsArtifactsOnCallingThreadOnly() {
+        Map<String, byte[]> store = new HashMap<>();
+        List<RuleSetDTO> dtos = new ArrayList<>();
+        for (long id = 1; id <= 8; id++) {
+            RuleSetDTO dto = ruleSet(id, "set" + id, 1L, "example" + id + ".com");
+            byte[] bytes = RuleSetArtifact.compile(dto.getRuleKey(), dto.getItems()).toBytes();
+            store.put(RuleSetArtifact.digest(bytes), bytes);
+            dto.setArtifactDigest(RuleSetArtifact.digest(bytes));
+            dto.setItems(null);
+            dtos.add(dto);
+        }
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        RuleSetRegistry.refresh(dtos, key -> {
+            threads.add(Thread.currentThread());
+            return store.get(key);
+        });
+
+        assertEquals(Set.of(Thread.currentThread()), threads);
+        assertTrue(RuleSetRegistry.match("set8", "www.example8.com"));
+    }
+
+    private RuleSetDTO ruleSet(Long id, String key, Long versionNo, String... suffixes) {
+        RuleSetDTO ruleSet = new RuleSetDTO();
+        ruleSet.setId(id);
+        ruleSet.setRuleKey(key);
+        ruleSet.setVersionNo(versionNo);
+        ruleSet.setItems(Arrays.stream(suffixes).map(suffix -> {
+            RuleSetItemDTO item = new RuleSetItemDTO();
+            item.setType(RuleSetItemType.DOMAIN_SUFFIX);
+            item.setValue(suffix);
+            return item;
+        }).toList());
+        return ruleSet;
+    }
+}
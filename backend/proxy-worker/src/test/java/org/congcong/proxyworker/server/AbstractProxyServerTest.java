@@ -1,7 +1,15 @@
 package org.congcong.proxyworker.server;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.util.concurrent.EventExecutor;
+import java.util.HashSet;
+import java.util.Set;
 import org.congcong.proxyworker.config.InboundConfig;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +19,7 @@ class AbstractProxyServerTest {
     @AfterEach
     void clearProperty() {
         System.clearProperty("proxyworker.netty.epoll.enabled");
+        SharedEventLoopGroups.shutdown();
     }
 
     @Test
@@ -20,6 +29,81 @@ class AbstractProxyServerTest {
         assertFalse(new TestProxyServer().epollEnabled());
     }
 
+    @Test
+    void serversBorrowSharedEventLoopsAndDoNotShutThemDownOnClose() throws Exception {
+        System.setProperty("proxyworker.netty.epoll.enabled", "false");
+        TestTcpProxyServer first = new TestTcpProxyServer();
+        TestTcpProxyServer second = new TestTcpProxyServer();
+
+        first.start();
+        second.start();
+        assertSame(first.serverChannel.eventLoop().parent(), second.serverChannel.eventLoop().parent());
+
+        first.close();
+
+        assertFalse(SharedEventLoopGroups.getInstance().getIoGroup().isShuttingDown());
+        second.close();
+    }
+
+    @Test
+    void bindsOneListenerPerIoEventLoop() throws Exception {
+        System.setProperty("proxyworker.netty.epoll.enabled", "false");
+        TestTcpProxyServer single = new TestTcpProxyServer();
+        TestTcpProxyServer perLoop = new TestTcpProxyServer() {
+            @Override
+            protected int listenerCount(SharedEventLoopGroups groups) {
+                // NIO 下端口为 0 时各 socket 分配到不同随机端口，只验证 event loop 分配
+                return Math.max(2, groups.getIoThreads());
+            }
+        };
+
+        // 先占用一次线程组的轮询计数器，确认监听 socket 不再依赖它
+        single.start();
+        perLoop.start();
+
+        Set<EventExecutor> ioLoops = new HashSet<>();
+        SharedEventLoopGroups.getInstance().getIoGroup().forEach(ioLoops::add);
+        Set<EventExecutor> listenerLoops = new HashSet<>();
+        perLoop.serverChannels.forEach(channel -> listenerLoops.add(channel.eventLoop()));
+        assertEquals(ioLoops.size(), perLoop.serverChannels.size());
+        assertEquals(ioLoops, listenerLoops);
+
+        perLoop.close();
+        single.close();
+    }
+
+    private static class TestTcpProxyServer extends TcpProxyServer {
+        @Override
+        public ChannelInitializer<Channel> getChildHandler() {
+            return new ChannelInitializer<>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                    ch.pipeline().addLast(new ChannelInboundHandlerAdapter());
+                }
+            };
+        }
+
+        @Override
+        public InboundConfig getInboundConfig() {
+            return null;
+        }
+
+        @Override
+        public int getPort() {
+            return 0;
+        }
+
+        @Override
+        public String getIp() {
+            return "127.0.0.1";
+        }
+
+        @Override
+        public String getServerName() {
+            return "test-tcp";
+        }
+    }
+
     private static final class TestProxyServer extends AbstractProxyServer {
         boolean epollEnabled() {
             return useEpoll();
@@ -1,9 +1,23 @@
 package org.congcong.proxyworker.server;
 
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.congcong.common.enums.ProtocolType;
+import org.congcong.proxyworker.ProxyWorkerTestFixtures;
+import org.congcong.proxyworker.config.InboundConfig;
+import org.congcong.proxyworker.config.UserConfig;
+import org.congcong.proxyworker.server.impl.SocksProxyServer;
+import org.congcong.proxyworker.server.netty.ChannelAttributes;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ProxyContextTest {
 
@@ -11,6 +25,8 @@ class ProxyContextTest {
 
     @AfterEach
     void tearDown() {
+        proxyContext.closeAll();
+        System.clearProperty("proxyworker.netty.epoll.enabled");
         proxyContext.resetActiveConnectionCountForTest();
     }
 
@@ -36,4 +52,66 @@ class ProxyContextTest {
 
         assertEquals(0, proxyContext.getActiveConnectionCount());
     }
+
+    @Test
+    void policyChangeSwapsConfigWithoutRebindingAndKeepsExistingConnections() throws Exception {
+        System.setProperty("proxyworker.netty.epoll.enabled", "false");
+        UserConfig alice = ProxyWorkerTestFixtures.user(1L, "alice", "secret", null);
+        InboundConfig before = listenOnRandomPort(ProxyWorkerTestFixtures.socksInbound(alice));
+        proxyContext.refresh(List.of(before));
+        AbstractProxyServer server = proxyContext.getServer(before.getId());
+        EmbeddedChannel existing = new EmbeddedChannel(((SocksProxyServer) server).getChildHandler());
+
+        UserConfig bob = ProxyWorkerTestFixtures.user(2L, "bob", "secret", null);
+        InboundConfig after = listenOnRandomPort(ProxyWorkerTestFixtures.socksInbound(bob));
+        after.setUsersMap(Map.of("alice", alice, "bob", bob));
+        proxyContext.refresh(List.of(after));
+
+        assertSame(server, proxyContext.getServer(after.getId()));
+        assertTrue(server.isRunning());
+        assertSame(after, server.getInboundConfig());
+        assertSame(before, ChannelAttributes.getInboundConfig(existing));
+        assertTrue(existing.isActive());
+        EmbeddedChannel fresh = new EmbeddedChannel(((SocksProxyServer) server).getChildHandler());
+        assertSame(after, ChannelAttributes.getInboundConfig(fresh));
+
+        existing.finishAndReleaseAll();
+        fresh.finishAndReleaseAll();
+    }
+
+    @Test
+    void listenerChangeRestartsServer() throws Exception {
+        System.setProperty("proxyworker.netty.epoll.enabled", "false");
+        UserConfig alice = ProxyWorkerTestFixtures.user(1L, "alice", "secret", null);
+        InboundConfig before = listenOnRandomPort(ProxyWorkerTestFixtures.socksInbound(alice));
+        proxyContext.refresh(List.of(before));
+        AbstractProxyServer server = proxyContext.getServer(before.getId());
+
+        InboundConfig after = listenOnRandomPort(ProxyWorkerTestFixtures.socksInbound(alice));
+        after.setTlsEnabled(true);
+        proxyContext.refresh(List.of(after));
+
+        assertNotSame(server, proxyContext.getServer(after.getId()));
+        assertFalse(server.isRunning());
+        assertTrue(proxyContext.getServer(after.getId()).isRunning());
+    }
+
+    @Test
+    void onlyListenLevelFieldsRequireRebind() {
+        InboundConfig base = ProxyWorkerTestFixtures.inbound(ProtocolType.SHADOW_SOCKS);
+        InboundConfig renamed = ProxyWorkerTestFixtures.inbound(ProtocolType.SHADOW_SOCKS);
+        renamed.setName("renamed");
+        renamed.setRoutesMap(Map.of());
+        InboundConfig moved = ProxyWorkerTestFixtures.inbound(ProtocolType.SHADOW_SOCKS);
+        moved.setPort(base.getPort() + 1);
+
+        assertTrue(ProxyContext.sameListener(base, renamed));
+        assertFalse(ProxyContext.sameListener(base, moved));
+        assertFalse(ProxyContext.sameListener(base, ProxyWorkerTestFixtures.inbound(ProtocolType.SOCKS5)));
+    }
+
+    private static InboundConfig listenOnRandomPort(InboundConfig inbound) {
+        inbound.setPort(0);
+        return inbound;
+    }
 }
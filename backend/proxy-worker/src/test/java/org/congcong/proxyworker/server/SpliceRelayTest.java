@@ -0,0 +1,274 @@
+package org.congcong.proxyworker.server;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.epoll.AbstractEpollStreamChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.ssl.SslHandler;
+import org.congcong.common.dto.ProxyContext;
+import org.congcong.common.enums.ProtocolType;
+import org.congcong.common.enums.RateLimitScopeType;
+import org.congcong.common.enums.RoutePolicy;
+import org.congcong.proxyworker.config.RateLimitConfig;
+import org.congcong.proxyworker.config.RouteConfig;
+import org.congcong.proxyworker.config.UserConfig;
+import org.congcong.proxyworker.protocol.RequestAppendHandler;
+import org.congcong.proxyworker.ratelimit.RateLimitRegistry;
+import org.congcong.proxyworker.server.netty.ChannelAttributes;
+import org.congcong.proxyworker.server.tunnel.ProxyTunnelRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SpliceRelayTest {
+
+    private EpollEventLoopGroup group;
+    private Channel echoServer;
+    private Channel proxyServer;
+    private final BlockingQueue<Channel> accepted = new LinkedBlockingQueue<>();
+    private Socket client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        assumeTrue(Epoll.isAvailable());
+        group = new EpollEventLoopGroup(1);
+        echoServer = new ServerBootstrap()
+                .group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ctx.writeAndFlush(msg);
+                    }
+
+                    @Override
+                    public boolean isSharable() {
+                        return true;
+                    }
+                })
+                .bind(InetAddress.getLoopbackAddress(), 0).sync().channel();
+        proxyServer = new ServerBootstrap()
+                .group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childOption(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED)
+                .childHandler(SpliceRelay.withCounter(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        accepted.add(ch);
+                    }
+                }))
+                .bind(InetAddress.getLoopbackAddress(), 0).sync().channel();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        RateLimitRegistry.refresh(List.of());
+        if (client != null) {
+            client.close();
+        }
+        if (group != null) {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    @Test
+    void directPlaintextTunnelIsEligible() throws Exception {
+        Channel inbound = acceptInbound();
+        Channel outbound = connectOutbound(true);
+
+        assertTrue(onLoop(() -> SpliceRelay.isEligible(inbound, outbound, request(RoutePolicy.DIRECT, null))));
+    }
+
+    @Test
+    void rateLimitedUserIsNotEligible() throws Exception {
+        Channel inbound = acceptInbound();
+        Channel outbound = connectOutbound(true);
+        RateLimitRegistry.refresh(List.of(limitFor(7L)));
+
+        assertFalse(onLoop(() -> SpliceRelay.isEligible(inbound, outbound, request(RoutePolicy.DIRECT, 7L))));
+        assertTrue(onLoop(() -> SpliceRelay.isEligible(inbound, outbound, request(RoutePolicy.DIRECT, 8L))));
+    }
+
+    @Test
+    void tlsInboundIsNotEligible() throws Exception {
+        Channel inbound = acceptInbound();
+        Channel outbound = connectOutbound(true);
+        SSLEngine engine = SSLContext.getDefault().createSSLEngine();
+        engine.setUseClientMode(false);
+        onLoop(() -> inbound.pipeline().addLast(new SslHandler(engine)));
+
+        assertFalse(onLoop(() -> SpliceRelay.isEligible(inbound, outbound, request(RoutePolicy.DIRECT, null))));
+    }
+
+    @Test
+    void pendingWritesAreNotEligible() throws Exception {
+        Channel inbound = acceptInbound();
+        Channel outbound = connectOutbound(true);
+        // 只写不 flush，数据停留在 ChannelOutboundBuffer 中
+        onLoop(() -> outbound.write(Unpooled.wrappedBuffer(new byte[16])));
+
+        assertFalse(onLoop(() -> SpliceRelay.isEligible(inbound, outbound, request(RoutePolicy.DIRECT, null))));
+    }
+
+    @Test
+    void inboundWithBufferedReadsIsNotEligible() throws Exception {
+        Channel inbound = acceptInbound();
+        Channel outbound = connectOutbound(true);
+        // 仍在 pipeline 中的解码器可能累积着未转发的字节
+        ByteToMessageDecoder decoder = new ByteToMessageDecoder() {
+            @Override
+            protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+            }
+        };
+        onLoop(() -> inbound.pipeline().addLast(decoder));
+        assertFalse(onLoop(() -> SpliceRelay.isEligible(inbound, outbound, request(RoutePolicy.DIRECT, null))));
+
+        onLoop(() -> inbound.pipeline().remove(decoder));
+        onLoop(() -> inbound.pipeline().addLast(new RequestAppendHandler(1024)));
+        assertFalse(onLoop(() -> SpliceRelay.isEligible(inbound, outbound, request(RoutePolicy.DIRECT, null))));
+
+        onLoop(() -> inbound.pipeline().remove(RequestAppendHandler.class));
+        assertTrue(onLoop(() -> SpliceRelay.isEligible(inbound, outbound, request(RoutePolicy.DIRECT, null))));
+    }
+
+    @Test
+    void outboundProxyRouteAndChannelsWithoutCounterAreNotEligible() throws Exception {
+        Channel inbound = acceptInbound();
+        Channel counted = connectOutbound(true);
+        Channel uncounted = connectOutbound(false);
+        ProxyTunnelRequest proxied = request(RoutePolicy.OUTBOUND_PROXY, null);
+        proxied.getRouteConfig().setOutboundProxyType(ProtocolType.SOCKS5);
+
+        assertFalse(onLoop(() -> SpliceRelay.isEligible(inbound, counted, proxied)));
+        assertFalse(onLoop(() -> SpliceRelay.isEligible(inbound, uncounted, request(RoutePolicy.DIRECT, null))));
+    }
+
+    @Test
+    void countsBytesActuallySplicedInBothDirections() throws Exception {
+        Channel inbound = acceptInbound();
+        Channel outbound = connectOutbound(true);
+        ProxyContext proxyContext = new ProxyContext();
+        proxyContext.setBytesIn(10);
+        ChannelAttributes.setProxyContext(inbound, proxyContext);
+        onLoop(() -> {
+            SpliceRelay.start((AbstractEpollStreamChannel) inbound, (AbstractEpollStreamChannel) outbound, null);
+            return null;
+        });
+
+        // 不是分片大小的整数倍，最后一片只搬运了一部分
+        byte[] payload = new byte[SpliceRelay.SPLICE_CHUNK_BYTES + 12_345];
+        new Random(7).nextBytes(payload);
+        OutputStream out = client.getOutputStream();
+        out.write(payload);
+        out.flush();
+        byte[] echoed = new byte[payload.length];
+        new DataInputStream(client.getInputStream()).readFully(echoed);
+
+        assertArrayEquals(payload, echoed);
+        assertEquals(10L + payload.length, (long) onLoop(proxyContext::getBytesIn));
+        assertEquals((long) payload.length, (long) onLoop(proxyContext::getBytesOut));
+    }
+
+    @Test
+    void rateLimitRefreshClosesSplicedTunnelsOfNewlyLimitedUsers() throws Exception {
+        Channel inbound = acceptInbound();
+        Channel outbound = connectOutbound(true);
+        onLoop(() -> {
+            SpliceRelay.start((AbstractEpollStreamChannel) inbound, (AbstractEpollStreamChannel) outbound, 7L);
+            return null;
+        });
+
+        RateLimitRegistry.refresh(List.of(limitFor(8L)));
+        SpliceRelay.onRateLimitsRefreshed();
+        assertTrue(inbound.isOpen());
+
+        RateLimitRegistry.refresh(List.of(limitFor(7L)));
+        SpliceRelay.onRateLimitsRefreshed();
+        assertTrue(inbound.closeFuture().await(5, TimeUnit.SECONDS));
+        assertTrue(outbound.closeFuture().await(5, TimeUnit.SECONDS));
+    }
+
+    private Channel acceptInbound() throws Exception {
+        client = new Socket();
+        client.connect(proxyServer.localAddress());
+        Channel inbound = accepted.poll(5, TimeUnit.SECONDS);
+        assertTrue(inbound != null && inbound.isActive());
+        return inbound;
+    }
+
+    private Channel connectOutbound(boolean counter) throws Exception {
+        InetSocketAddress address = (InetSocketAddress) echoServer.localAddress();
+        return new Bootstrap()
+                .group(group)
+                .channel(EpollSocketChannel.class)
+                .option(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        if (counter) {
+                            SpliceRelay.installCounter(ch);
+                        }
+                    }
+                })
+                .connect(address).sync().channel();
+    }
+
+    private <T> T onLoop(Callable<T> task) throws Exception {
+        return group.next().submit(task).get(5, TimeUnit.SECONDS);
+    }
+
+    private static ProxyTunnelRequest request(RoutePolicy policy, Long userId) {
+        UserConfig user = null;
+        if (userId != null) {
+            user = new UserConfig();
+            user.setId(userId);
+        }
+        ProxyTunnelRequest request = new ProxyTunnelRequest(ProtocolType.SOCKS5, "example.com", 80, user, null, null);
+        RouteConfig route = new RouteConfig();
+        route.setPolicy(policy);
+        request.setRouteConfig(route);
+        return request;
+    }
+
+    private static RateLimitConfig limitFor(Long userId) {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setId(1L);
+        config.setScopeType(RateLimitScopeType.USERS);
+        config.setUserIds(List.of(userId));
+        config.setUplinkLimitBps(8_000L);
+        config.setEnabled(true);
+        return config;
+    }
+}
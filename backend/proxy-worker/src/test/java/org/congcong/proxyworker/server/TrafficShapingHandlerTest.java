@@ -0,0 +1,63 @@
+package org.congcong.proxyworker.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.congcong.common.enums.RateLimitScopeType;
+import org.congcong.proxyworker.config.RateLimitConfig;
+import org.congcong.proxyworker.ratelimit.RateLimitRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrafficShapingHandlerTest {
+
+    @AfterEach
+    void tearDown() {
+        RateLimitRegistry.refresh(List.of());
+    }
+
+    @Test
+    void forwardsDataAndDisablesAutoReadWhenBudgetIsExceeded() {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setId(1L);
+        config.setScopeType(RateLimitScopeType.GLOBAL);
+        config.setEnabled(true);
+        config.setUplinkLimitBps(8_000L);
+        config.setBurstBytes(100L);
+        RateLimitRegistry.refresh(List.of(config));
+
+        EmbeddedChannel relay = new EmbeddedChannel();
+        TrafficShapingHandler handler = new TrafficShapingHandler(relay, 1L, RateLimitRegistry.Direction.UPLINK);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[1_000]));
+
+        ByteBuf forwarded = channel.readInbound();
+        assertNotNull(forwarded);
+        forwarded.release();
+        assertTrue(handler.isSuspended());
+        assertFalse(channel.config().isAutoRead());
+        channel.finishAndReleaseAll();
+        relay.finishAndReleaseAll();
+    }
+
+    @Test
+    void doesNotSuspendWithoutRateLimits() {
+        EmbeddedChannel relay = new EmbeddedChannel();
+        TrafficShapingHandler handler = new TrafficShapingHandler(relay, 1L, RateLimitRegistry.Direction.DOWNLINK);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[1_000]));
+
+        assertFalse(handler.isSuspended());
+        assertTrue(channel.config().isAutoRead());
+        channel.finishAndReleaseAll();
+        relay.finishAndReleaseAll();
+    }
+}
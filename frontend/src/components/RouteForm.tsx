@@ -14,6 +14,7 @@ import {
   Typography,
   Tag,
   Tooltip,
+  Switch,
 } from 'antd';
 import {
   PlusOutlined,
@@ -36,6 +37,7 @@ import {
   ProtocolType,
   PROTOCOL_TYPE_LABELS,
   OutboundProxyEncAlgo,
+  GEO_COUNTRY_OPTIONS,
 } from '../types/route';
 import {
   PROXY_ENC_ALGO_OPTIONS,
@@ -74,6 +76,9 @@ interface FormValues {
   realityUuid?: string;
   realityFlow?: string;
   realityConnectTimeoutMillis?: number;
+  realityMux?: boolean;
+  realityMuxConcurrency?: number;
+  realityMuxIdleTimeoutMillis?: number;
   status: RouteStatus;
   notes?: string;
 }
@@ -121,6 +126,9 @@ const RouteForm: React.FC<RouteFormProps> = ({
         realityUuid: outboundProxyConfig.uuid as string | undefined,
         realityFlow: (outboundProxyConfig.flow as string | undefined) || 'xtls-rprx-vision',
         realityConnectTimeoutMillis: (outboundProxyConfig.connectTimeoutMillis as number | undefined) || 10000,
+        realityMux: outboundProxyConfig.mux === true,
+        realityMuxConcurrency: (outboundProxyConfig.muxConcurrency as number | undefined) || 8,
+        realityMuxIdleTimeoutMillis: (outboundProxyConfig.muxIdleTimeoutMillis as number | undefined) || 30000,
         status: initialValues.status,
         notes: initialValues.notes,
       });
@@ -146,6 +154,9 @@ const RouteForm: React.FC<RouteFormProps> = ({
         realityUuid: undefined,
         realityFlow: undefined,
         realityConnectTimeoutMillis: undefined,
+        realityMux: undefined,
+        realityMuxConcurrency: undefined,
+        realityMuxIdleTimeoutMillis: undefined,
       });
     } else if (value === RoutePolicy.DNS_REWRITING) {
       // DNS 重写不需要认证信息
@@ -169,6 +180,9 @@ const RouteForm: React.FC<RouteFormProps> = ({
         realityUuid: undefined,
         realityFlow: undefined,
         realityConnectTimeoutMillis: undefined,
+        realityMux: undefined,
+        realityMuxConcurrency: undefined,
+        realityMuxIdleTimeoutMillis: undefined,
       });
     }
   };
@@ -236,6 +250,9 @@ const RouteForm: React.FC<RouteFormProps> = ({
                 uuid: values.realityUuid?.trim(),
                 flow: values.realityFlow || 'xtls-rprx-vision',
                 connectTimeoutMillis: values.realityConnectTimeoutMillis || 10000,
+                mux: values.realityMux === true,
+                muxConcurrency: values.realityMuxConcurrency || 8,
+                muxIdleTimeoutMillis: values.realityMuxIdleTimeoutMillis || 30000,
               }
             : {},
         }),
@@ -389,7 +406,12 @@ const RouteForm: React.FC<RouteFormProps> = ({
                     value={rule.value || 'CN'}
                     onChange={(val) => handleRuleValueChange(index, val as string)}
                     style={{ width: '100%' }}
-                    options={[{ value: 'CN', label: '中国' }]}
+                    showSearch
+                    optionFilterProp="label"
+                    options={GEO_COUNTRY_OPTIONS.map((item) => ({
+                      value: item.value,
+                      label: `${item.label} (${item.value})`,
+                    }))}
                   />
                 ) : rule.conditionType === RouteConditionType.RULE_SET ? (
                   <Select
@@ -653,6 +675,42 @@ const RouteForm: React.FC<RouteFormProps> = ({
                   </Form.Item>
                 </Col>
               </Row>
+              <Row gutter={16}>
+                <Col span={8}>
+                  <Form.Item
+                    name="realityMux"
+                    label={
+                      <Space>
+                        Mux 多路复用
+                        <Tooltip title="多个代理连接共用少量 REALITY 长连接（Xray Mux.Cool），省去每个连接的握手；开启后 Xray 服务端该用户的 flow 需为空">
+                          <InfoCircleOutlined />
+                        </Tooltip>
+                      </Space>
+                    }
+                    valuePropName="checked"
+                  >
+                    <Switch />
+                  </Form.Item>
+                </Col>
+                <Col span={8}>
+                  <Form.Item
+                    name="realityMuxConcurrency"
+                    label="单连接并发数"
+                    rules={[{ type: 'number', min: 1, max: 1024, message: '并发数必须在 1-1024 之间' }]}
+                  >
+                    <InputNumber placeholder="8" style={{ width: '100%' }} min={1} max={1024} />
+                  </Form.Item>
+                </Col>
+                <Col span={8}>
+                  <Form.Item
+                    name="realityMuxIdleTimeoutMillis"
+                    label="空闲关闭（毫秒）"
+                    rules={[{ type: 'number', min: 1, message: '空闲时间必须大于0' }]}
+                  >
+                    <InputNumber placeholder="30000" style={{ width: '100%' }} min={1} />
+                  </Form.Item>
+                </Col>
+              </Row>
             </>
           )}
         </>
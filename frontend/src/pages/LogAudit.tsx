@@ -1,9 +1,9 @@
-import React, { useEffect, useState } from 'react';
+import React, { useEffect, useRef, useState } from 'react';
 import dayjs from 'dayjs';
 import type { Dayjs } from 'dayjs';
 import { Card, Form, Row, Col, Input, DatePicker, Button, Table, Tag, Drawer, Space, Typography } from 'antd';
 import apiService from '../services/api';
-import { AccessLogListItem, AccessLogDetail, AccessLogQueryParams, PageResponse } from '../types/log';
+import { AccessLogListItem, AccessLogDetail, AccessLogQueryParams, AccessLogPageResponse } from '../types/log';
 import { formatBytes } from '../utils/format';
 import './LogAudit.css';
 
@@ -21,6 +21,8 @@ const LogAudit: React.FC = () => {
   const [pageInfo, setPageInfo] = useState<{ total: number; page: number; pageSize: number }>({ total: 0, page: 1, pageSize: 10 });
   const [detail, setDetail] = useState<AccessLogDetail | null>(null);
   const [detailOpen, setDetailOpen] = useState(false);
+  // 页码 -> 进入该页所用的游标，顺序翻页时服务端从上一页末尾直接往后读；筛选条件或每页条数变化时清空
+  const cursorsRef = useRef<Record<number, string>>({});
 
   // 人性化格式化耗时（ms/s/m/h）
   const formatDuration = (value?: number) => {
@@ -56,7 +58,11 @@ const LogAudit: React.FC = () => {
     setLoading(true);
     try {
       const query = buildQueryParams(params);
-      const res: PageResponse<AccessLogListItem> = await apiService.getAccessLogs(query);
+      query.cursor = query.page ? cursorsRef.current[query.page] : undefined;
+      const res: AccessLogPageResponse = await apiService.getAccessLogs(query);
+      if (res.nextCursor) {
+        cursorsRef.current[(res.page || 1) + 1] = res.nextCursor;
+      }
       setData(res.items || []);
       setPageInfo({
         total: res.total || 0,
@@ -77,12 +83,14 @@ const LogAudit: React.FC = () => {
   }, [pageInfo.page, pageInfo.pageSize]);
 
   const onSearch = () => {
+    cursorsRef.current = {};
     setPageInfo(prev => ({ ...prev, page: 1 }));
     fetchData({ page: 1 });
   };
 
   const onReset = () => {
     form.resetFields();
+    cursorsRef.current = {};
     const [start, end] = getTodayRange();
     form.setFieldsValue({ range: [start, end] });
     setPageInfo({ total: 0, page: 1, pageSize: 10 });
@@ -177,7 +185,10 @@ const LogAudit: React.FC = () => {
             current: pageInfo.page,
             pageSize: pageInfo.pageSize,
             showSizeChanger: true,
-            onChange: (p, ps) => setPageInfo({ ...pageInfo, page: p, pageSize: ps }),
+            onChange: (p, ps) => {
+              if (ps !== pageInfo.pageSize) cursorsRef.current = {};
+              setPageInfo({ ...pageInfo, page: p, pageSize: ps });
+            },
           }}
         />
       </Card>
@@ -780,7 +780,7 @@ const RuleSetManagement: React.FC = () => {
                             label={index === 0 ? '值' : ' '}
                             rules={[{ required: true, message: '请输入规则值' }]}
                           >
-                            <Input placeholder="例如：openai.com 或 chat.openai.com" />
+                            <Input placeholder="例如：openai.com、chat.openai.com 或 10.0.0.0/8" />
                           </Form.Item>
                         </Col>
                         <Col span={4}>
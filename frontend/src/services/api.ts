@@ -50,7 +50,7 @@ import {
   InboundTrafficStats
 } from '../types/inbound';
 import {
-  AccessLogListItem,
+  AccessLogPageResponse,
   AccessLogDetail,
   AccessLogQueryParams,
   TimeSeriesPoint as LogTimeSeriesPoint,
@@ -580,7 +580,7 @@ class ApiService {
 
   // ========== 日志查询与聚合 ==========
   // 分页查询访问日志
-  async getAccessLogs(params: AccessLogQueryParams = {}): Promise<PageResponse<AccessLogListItem>> {
+  async getAccessLogs(params: AccessLogQueryParams = {}): Promise<AccessLogPageResponse> {
     const searchParams = new URLSearchParams();
     if (params.from) searchParams.append('from', params.from);
     if (params.to) searchParams.append('to', params.to);
@@ -604,10 +604,11 @@ class ApiService {
     if (params.page !== undefined) searchParams.append('page', String(params.page));
     if (params.pageSize !== undefined) searchParams.append('pageSize', String(params.pageSize));
     if (params.sort) searchParams.append('sort', params.sort);
+    if (params.cursor) searchParams.append('cursor', params.cursor);
 
     const queryString = searchParams.toString();
     const endpoint = queryString ? `/logs/access?${queryString}` : '/logs/access';
-    return this.request<PageResponse<AccessLogListItem>>(endpoint);
+    return this.request<AccessLogPageResponse>(endpoint);
   }
 
   // 访问日志详情
@@ -83,6 +83,7 @@ export interface AccessLogQueryParams {
   page?: number;
   pageSize?: number;
   sort?: string;
+  cursor?: string; // 上一页返回的 nextCursor，按时间排序时从该位置直接往后读
 }
 
 // 时间序列点（后端 dto.TimeSeriesPoint）
@@ -109,3 +110,8 @@ export interface PageResponse<T> {
   page: number;
   pageSize: number;
 }
+
+// 访问日志分页结果（后端 dto.AccessLogPageResponse），total 为短时间缓存的近似值
+export interface AccessLogPageResponse extends PageResponse<AccessLogListItem> {
+  nextCursor?: string;
+}
@@ -22,6 +22,28 @@ export interface RouteRule {
   value: string;              // 具体值：域名或地理位置
 }
 
+// GEO 条件可选的国家/地区（ISO 3166-1 alpha-2 代码，与 worker 的国家区间索引一致）
+export const GEO_COUNTRY_OPTIONS = [
+  { value: 'CN', label: '中国' },
+  { value: 'HK', label: '中国香港' },
+  { value: 'MO', label: '中国澳门' },
+  { value: 'TW', label: '中国台湾' },
+  { value: 'US', label: '美国' },
+  { value: 'JP', label: '日本' },
+  { value: 'KR', label: '韩国' },
+  { value: 'SG', label: '新加坡' },
+  { value: 'GB', label: '英国' },
+  { value: 'DE', label: '德国' },
+  { value: 'FR', label: '法国' },
+  { value: 'NL', label: '荷兰' },
+  { value: 'RU', label: '俄罗斯' },
+  { value: 'CA', label: '加拿大' },
+  { value: 'AU', label: '澳大利亚' },
+  { value: 'IN', label: '印度' },
+  { value: 'PRIVATE', label: '内网/保留地址' },
+  { value: 'UNKNOWN', label: '未收录地址' },
+];
+
 // 协议类型枚举（与后端保持一致）
 export enum ProtocolType {
   SOCKS5 = 'SOCKS5',
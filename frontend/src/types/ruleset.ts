@@ -24,6 +24,8 @@ export enum RuleSetItemType {
   DOMAIN = 'DOMAIN',
   DOMAIN_SUFFIX = 'DOMAIN_SUFFIX',
   DOMAIN_KEYWORD = 'DOMAIN_KEYWORD',
+  IP_CIDR = 'IP_CIDR',
+  IP_CIDR6 = 'IP_CIDR6',
 }
 
 export enum RuleSetSourceFormat {
@@ -170,6 +172,8 @@ export const RULE_SET_ITEM_TYPE_LABELS: Record<RuleSetItemType, string> = {
   [RuleSetItemType.DOMAIN]: '精确域名',
   [RuleSetItemType.DOMAIN_SUFFIX]: '域名后缀',
   [RuleSetItemType.DOMAIN_KEYWORD]: '域名关键字',
+  [RuleSetItemType.IP_CIDR]: 'IPv4 网段',
+  [RuleSetItemType.IP_CIDR6]: 'IPv6 网段',
 };
 
 export const RULE_SET_SYNC_STATUS_COLORS: Record<RuleSetSyncStatus, string> = {